@@ -1,5 +1,5 @@
 import ast
-from .ir import IRModule, IRFunction, Op
+from .ir import IRModule, IRFunction, Op, OPF_REF_B
 from .ops import OpCode
 
 
@@ -41,6 +41,15 @@ def compile_stmt(stmt, fn: IRFunction):
             if name == "log" and args:
                 fn.ops.append(Op(OpCode.LOG, a=str(_const(args[0]))))
 
+            elif name == "debug" and args:
+                fn.ops.append(Op(OpCode.DEBUG, a=str(_const(args[0]))))
+
+            elif name == "batch_row" and args:
+                # batch_row(i): in an on_<event>_batch handler, the event arguments describe event i
+                if not isinstance(args[0], ast.Name):
+                    raise SyntaxError("batch_row() takes a variable, e.g. the loop variable")
+                fn.ops.append(Op(OpCode.BATCH_ROW, a=args[0].id))
+
             elif name == "broadcast" and args:
                 fn.ops.append(Op(OpCode.BROADCAST, a=str(_const(args[0]))))
 
@@ -50,11 +59,33 @@ def compile_stmt(stmt, fn: IRFunction):
             elif name == "set_block" and len(args) >= 4:
                 # set_block(x, y, z, block_id)
                 x, y, z = [int(_const(a)) for a in args[:3]]
-                packed = (x & 0xFFFF) | ((y & 0xFFFF) << 16) | ((z & 0xFFFF) << 32)
                 fn.ops.append(Op(
                     OpCode.SET_BLOCK,
                     a=str(_const(args[3])),
-                    i=packed
+                    d=float(y),
+                    i=_pack_xz(x, z)
+                ))
+
+            elif name == "fill_region" and len(args) >= 3:
+                # fill_region((x1, y1, z1), (x2, y2, z2), block_id)
+                (x1, y1, z1), corner = _pos(args[0]), _pos(args[1])
+                fn.ops.append(Op(
+                    OpCode.FILL_REGION,
+                    a=str(_const(args[2])),
+                    b=",".join(map(str, corner)),
+                    d=float(y1),
+                    i=_pack_xz(x1, z1)
+                ))
+
+            elif name == "replace_region" and len(args) >= 4:
+                # replace_region((x1, y1, z1), (x2, y2, z2), from_block, to_block)
+                (x1, y1, z1), corner = _pos(args[0]), _pos(args[1])
+                fn.ops.append(Op(
+                    OpCode.REPLACE_REGION,
+                    a=str(_const(args[3])),
+                    b=",".join(map(str, corner)) + "|" + str(_const(args[2])),
+                    d=float(y1),
+                    i=_pack_xz(x1, z1)
                 ))
 
             elif name == "give_item" and len(args) >= 3:
@@ -74,6 +105,62 @@ def compile_stmt(stmt, fn: IRFunction):
                     d=float(_const(args[1]))
                 ))
 
+            # ------------------------------------------------
+            # Scoreboard, tags, data storage (240–269)
+            # Entries and values may be variables: player is read, "player" is the text
+            # ------------------------------------------------
+            elif name == "scoreboard_create" and args:
+                # scoreboard_create(objective, criteria="dummy")
+                fn.ops.append(Op(
+                    OpCode.SCOREBOARD_CREATE,
+                    a=str(_const(args[0])),
+                    b=str(_const(args[1])) if len(args) >= 2 else "dummy"
+                ))
+
+            elif name == "scoreboard_remove" and args:
+                fn.ops.append(Op(OpCode.SCOREBOARD_REMOVE, a=str(_const(args[0]))))
+
+            elif name == "scoreboard_display" and len(args) >= 2:
+                # scoreboard_display(objective, slot)  slot: "sidebar", "list", "belowName"
+                fn.ops.append(Op(
+                    OpCode.SCOREBOARD_SET_DISPLAY,
+                    a=str(_const(args[0])),
+                    b=str(_const(args[1]))
+                ))
+
+            elif name in ("set_score", "add_score") and len(args) >= 3:
+                # set_score(entry, objective, value) / add_score(entry, objective, delta)
+                fn.ops.append(Op(
+                    OpCode.SCORE_SET if name == "set_score" else OpCode.SCORE_ADD,
+                    a=str(_const(args[1])),
+                    b=_ref(args[0]),
+                    i=int(_const(args[2])),
+                    flags=_ref_flag(args[0])
+                ))
+
+            elif name == "reset_score" and len(args) >= 2:
+                # reset_score(entry, objective)
+                fn.ops.append(Op(OpCode.SCORE_RESET, a=str(_const(args[1])), b=_ref(args[0]), flags=_ref_flag(args[0])))
+
+            elif name in ("tag_add", "tag_remove") and len(args) >= 2:
+                # tag_add(entity_type, tag): every entity of the type
+                fn.ops.append(Op(
+                    OpCode.TAG_ADD if name == "tag_add" else OpCode.TAG_REMOVE,
+                    a=str(_const(args[0])),
+                    b=str(_const(args[1]))
+                ))
+
+            elif name == "data_store_set" and len(args) >= 2:
+                # data_store_set(key, value): int in i, str/float/variable in b
+                value = args[1]
+                if isinstance(value, ast.Name) or isinstance(_const(value), (str, float)):
+                    fn.ops.append(Op(OpCode.DATA_STORE_SET, a=str(_const(args[0])), b=_ref(value), flags=_ref_flag(value)))
+                else:
+                    fn.ops.append(Op(OpCode.DATA_STORE_SET, a=str(_const(args[0])), i=int(_const(value))))
+
+            elif name == "data_store_delete" and args:
+                fn.ops.append(Op(OpCode.DATA_STORE_DELETE, a=str(_const(args[0]))))
+
             # ------------------------------------------------
             # Custom Mobs (600–699 reserved in OpCode)
             # ------------------------------------------------
@@ -150,11 +237,11 @@ def compile_stmt(stmt, fn: IRFunction):
             elif name == "spawn_custom_mob" and len(args) >= 4:
                 # spawn_custom_mob(mob_id, x, y, z)
                 x, y, z = [int(_const(a)) for a in args[1:4]]
-                packed = (x & 0xFFFF) | ((y & 0xFFFF) << 16) | ((z & 0xFFFF) << 32)
                 fn.ops.append(Op(
                     OpCode.SPAWN_CUSTOM_MOB,
                     a=str(_const(args[0])),
-                    i=packed
+                    d=float(y),
+                    i=_pack_xz(x, z)
                 ))
 
             elif name == "remove_custom_mobs" and len(args) >= 1:
@@ -164,7 +251,53 @@ def compile_stmt(stmt, fn: IRFunction):
                     a=str(_const(args[0]))
                 ))
 
-        return  # done with this Expr/Call
+            else:
+                raise SyntaxError(f"unsupported call: {name}(...) with {len(args)} arguments")
+            return  # done with this Expr/Call
+        raise SyntaxError(f"unsupported call: {ast.dump(call.func)}")
+
+    # --- var = query(...): ops with a result write into the variable named by a ---
+    if (
+        isinstance(stmt, ast.Assign)
+        and len(stmt.targets) == 1
+        and isinstance(stmt.targets[0], ast.Name)
+        and isinstance(stmt.value, ast.Call)
+        and isinstance(stmt.value.func, ast.Name)
+    ):
+        target = stmt.targets[0].id
+        name = stmt.value.func.id
+        args = stmt.value.args
+        if name == "get_score" and len(args) >= 2:
+            # get_score(entry, objective)
+            fn.ops.append(Op(OpCode.SCORE_GET, a=target, b=str(_const(args[1])) + "|" + _ref(args[0]), flags=_ref_flag(args[0])))
+        elif name == "tag_has" and len(args) >= 2:
+            # tag_has(entity_type, tag): number of entities of the type with the tag
+            fn.ops.append(Op(OpCode.TAG_HAS, a=target, b=str(_const(args[0])) + "|" + str(_const(args[1]))))
+        elif name == "data_store_get" and args:
+            fn.ops.append(Op(OpCode.DATA_STORE_GET, a=target, b=str(_const(args[0]))))
+        elif name == "count_entities_in_region" and len(args) >= 3:
+            # count_entities_in_region(entity_type, (x1, y1, z1), (x2, y2, z2))
+            (x1, y1, z1), corner = _pos(args[1]), _pos(args[2])
+            fn.ops.append(Op(
+                OpCode.FIND_ENTITIES_REGION,
+                a=target,
+                b=",".join(map(str, corner)) + "|" + str(_const(args[0])),
+                d=float(y1),
+                i=_pack_xz(x1, z1)
+            ))
+        else:
+            raise SyntaxError(f"unsupported assignment: {target} = {name}(...)")
+        return
+
+    # --- var = <int>, var += / -= / *= <int>: the VM's variables are integers here ---
+    if isinstance(stmt, ast.Assign) and len(stmt.targets) == 1 and isinstance(stmt.targets[0], ast.Name):
+        fn.ops.append(Op(OpCode.VAR_SET, a=stmt.targets[0].id, i=_int(stmt.value)))
+        return
+    if isinstance(stmt, ast.AugAssign) and isinstance(stmt.target, ast.Name):
+        if type(stmt.op) not in _AUG_OPS:
+            raise SyntaxError(f"unsupported operator: {stmt.target.id} {type(stmt.op).__name__}= ...")
+        fn.ops.append(Op(_AUG_OPS[type(stmt.op)], a=stmt.target.id, i=_int(stmt.value)))
+        return
 
     # --- If statements ---
     if isinstance(stmt, ast.If):
@@ -200,19 +333,21 @@ def compile_stmt(stmt, fn: IRFunction):
         target = stmt.target.id
         args = stmt.iter.args
 
-        # range(start, end, step) Formen
+        # range(start, end, step) Formen; the bounds are constants baked into FOR_INIT/FOR_ITER
+        if not 1 <= len(args) <= 3:
+            raise SyntaxError("range() takes 1 to 3 arguments")
         if len(args) == 1:
             start = 0
-            end = _const(args[0])
+            end = _int(args[0])
             step = 1
         elif len(args) == 2:
-            start = _const(args[0])
-            end = _const(args[1])
+            start = _int(args[0])
+            end = _int(args[1])
             step = 1
         else:
-            start = _const(args[0])
-            end = _const(args[1])
-            step = _const(args[2])
+            start = _int(args[0])
+            end = _int(args[1])
+            step = _int(args[2])
 
         fn.ops.append(Op(OpCode.FOR_INIT, a=target, i=int(start)))
         fn.ops.append(Op(OpCode.FOR_ITER, a=target, i=int(end), d=float(step)))
@@ -221,7 +356,44 @@ def compile_stmt(stmt, fn: IRFunction):
         fn.ops.append(Op(OpCode.FOR_END, a=target))
         return
 
-    # Other statements (pass, etc.) are ignored for now
+    # --- break / continue (jump targets are resolved by the runtime linker) ---
+    if isinstance(stmt, ast.Break):
+        fn.ops.append(Op(OpCode.BREAK))
+        return
+    if isinstance(stmt, ast.Continue):
+        fn.ops.append(Op(OpCode.CONTINUE))
+        return
+
+    # --- try / except: the VM has one CATCH per TRY and catches every error ---
+    if isinstance(stmt, ast.Try):
+        if len(stmt.handlers) != 1:
+            raise SyntaxError("try needs exactly one except handler")
+        if stmt.orelse or stmt.finalbody:
+            raise SyntaxError("try/else and try/finally are not supported")
+        handler = stmt.handlers[0]
+        if handler.name:
+            raise SyntaxError(f"except ... as {handler.name}: the error is not available to the mod")
+        fn.ops.append(Op(OpCode.TRY_BEGIN))
+        for s in stmt.body:
+            compile_stmt(s, fn)
+        fn.ops.append(Op(OpCode.CATCH))
+        for s in handler.body:
+            compile_stmt(s, fn)
+        fn.ops.append(Op(OpCode.TRY_END))
+        return
+
+    if isinstance(stmt, ast.Return) and stmt.value is None:
+        fn.ops.append(Op(OpCode.RETURN))
+        return
+    if isinstance(stmt, ast.Assert):
+        fn.ops.append(Op(OpCode.ASSERT, a=_expr_to_str(stmt.test)))
+        return
+
+    # pass, docstrings, and global (module variables are global anyway)
+    if isinstance(stmt, (ast.Pass, ast.Global)) or (isinstance(stmt, ast.Expr) and isinstance(stmt.value, ast.Constant)):
+        return
+
+    raise SyntaxError(f"unsupported statement at line {stmt.lineno}: {type(stmt).__name__}")
 
 
 def _const(node):
@@ -230,23 +402,96 @@ def _const(node):
     """
     if isinstance(node, ast.Constant):
         return node.value
+    if isinstance(node, ast.UnaryOp) and isinstance(node.op, ast.USub) and isinstance(node.operand, ast.Constant):
+        return -node.operand.value
     return 0
 
 
+def _int(node):
+    """Integer constant (True/False count as 1/0); anything else cannot be stored by VAR_SET."""
+    value = _const(node)
+    literal = node.operand if isinstance(node, ast.UnaryOp) else node
+    if not isinstance(literal, ast.Constant) or not isinstance(value, int):
+        raise SyntaxError(f"expected an integer constant: {ast.dump(node)}")
+    return int(value)
+
+
+_AUG_OPS = {ast.Add: OpCode.VAR_INC, ast.Sub: OpCode.VAR_DEC, ast.Mult: OpCode.MATH_MUL}
+
+
+def _ref(node):
+    """Score entry or stored value: a variable's name (see _ref_flag), constants as text."""
+    if isinstance(node, ast.Name):
+        return node.id
+    return str(_const(node))
+
+
+def _ref_flag(node):
+    """OPF_REF_B when _ref(node) names a variable; a string constant is always literal, even "$x"."""
+    return OPF_REF_B if isinstance(node, ast.Name) else 0
+
+
+def _pos(node):
+    """(x, y, z) tuple literal -> three ints."""
+    if not isinstance(node, (ast.Tuple, ast.List)) or len(node.elts) != 3:
+        raise SyntaxError("expected an (x, y, z) position")
+    return [int(_const(e)) for e in node.elts]
+
+
+def _pack_xz(x: int, z: int) -> int:
+    """Block ops: x and z as signed 32-bit halves of the i64 payload, y goes into d
+    (FLAG_WIDE_COORDS in PyBCModule.java)."""
+    packed = (x & 0xFFFFFFFF) | ((z & 0xFFFFFFFF) << 32)
+    return packed - (1 << 64) if packed >= 1 << 63 else packed
+
+
+_CMP_OPS = {
+    ast.Eq: "==", ast.NotEq: "!=", ast.Lt: "<", ast.LtE: "<=",
+    ast.Gt: ">", ast.GtE: ">=", ast.Is: "==", ast.IsNot: "!=",
+}
+
+_BIN_OPS = {
+    ast.Add: "+", ast.Sub: "-", ast.Mult: "*", ast.Div: "/",
+    ast.FloorDiv: "//", ast.Mod: "%",
+}
+
+
 def _expr_to_str(node):
     """
-    Turn a boolean/arith expression into a simple string
-    that the runtime can evaluate (very basic).
+    Turn a boolean/arith expression into the condition text the runtime
+    parses once at load time (see PyBCExpr.java): Python infix syntax with
+    and/or/not, comparisons, + - * / // % and int/float/str constants.
     """
     if isinstance(node, ast.Compare):
-        left = _expr_to_str(node.left)
-        op = type(node.ops[0]).__name__
-        right = _expr_to_str(node.comparators[0])
-        return f"{left} {op} {right}"
-    elif isinstance(node, ast.BinOp):
-        return f"{_expr_to_str(node.left)} {type(node.op).__name__} {_expr_to_str(node.right)}"
+        # a < b < c  ->  (a < b) and (b < c)
+        parts = []
+        left = node.left
+        for op, right in zip(node.ops, node.comparators):
+            if type(op) not in _CMP_OPS:
+                raise SyntaxError(f"unsupported comparison: {type(op).__name__}")
+            parts.append(f"({_expr_to_str(left)} {_CMP_OPS[type(op)]} {_expr_to_str(right)})")
+            left = right
+        return " and ".join(parts)
+    elif isinstance(node, ast.BoolOp):
+        joiner = " and " if isinstance(node.op, ast.And) else " or "
+        return joiner.join(f"({_expr_to_str(v)})" for v in node.values)
+    elif isinstance(node, ast.UnaryOp):
+        if isinstance(node.op, ast.Not):
+            return f"not ({_expr_to_str(node.operand)})"
+        if isinstance(node.op, ast.USub):
+            return f"-({_expr_to_str(node.operand)})"
+        if isinstance(node.op, ast.UAdd):
+            return _expr_to_str(node.operand)
+    elif isinstance(node, ast.BinOp) and type(node.op) in _BIN_OPS:
+        return f"({_expr_to_str(node.left)} {_BIN_OPS[type(node.op)]} {_expr_to_str(node.right)})"
     elif isinstance(node, ast.Name):
         return node.id
     elif isinstance(node, ast.Constant):
-        return str(node.value)
-    return ast.dump(node)
+        if isinstance(node.value, str):
+            escaped = node.value.replace("\\", "\\\\").replace('"', '\\"')
+            return f'"{escaped}"'
+        if node.value is None or isinstance(node.value, bool):
+            return str(node.value)
+        if isinstance(node.value, (int, float)):
+            return repr(node.value)
+    raise SyntaxError(f"unsupported expression in condition: {ast.dump(node)}")
@@ -1,17 +1,57 @@
-import struct
+import os, struct
+from dataclasses import replace
+from .ops import OpCode
 
 MAGIC = 0x50594243  # 'PYBC'
-VERSION = 2
+VERSION = 3
+# header flags, see PyBCModule.java
+FLAG_WIDE_COORDS = 1  # block ops: i = x | z << 32 (signed 32-bit), d = y
 
-def emit_ir_to_pybc(ir, out_path:str):
-    pool = []
+# v3 layout (little-endian), see PyBCModule.java
+HEADER_SIZE = 32
+FN_ENTRY_SIZE = 16
+OP = struct.Struct("<iiiidq")  # opcode, sA, sB, flags (Op.flags), num, i64 -> 32 bytes
+
+def emit_ir_to_pybc(ir, out_path:str, version:int=VERSION):
+    if version == 2:
+        return _emit_v2(ir, out_path)
+    pool, index = _pool(ir)
     for fn in ir.functions:
+        _intern(pool, index, fn.name)
+
+    name = _u32_utf(ir.name)
+    pool_offset = HEADER_SIZE + len(name)
+    pool_bytes = b"".join(_u32_utf(s) for s in pool)
+    fn_table_offset = _align(pool_offset + len(pool_bytes), 4)
+    code_offset = _align(fn_table_offset + FN_ENTRY_SIZE * len(ir.functions), OP.size)
+
+    table, code = [], []
+    start = code_offset
+    for fn in ir.functions:
+        table.append(struct.pack("<IIII", index[fn.name], start, len(fn.ops), 0))
         for op in fn.ops:
-            for s in (op.a, op.b):
-                if s and s not in pool: pool.append(s)
+            sA = index[op.a] if op.a else -1
+            sB = index[op.b] if op.b else -1
+            code.append(OP.pack(int(op.code), sA, sB, op.flags, float(op.d), int(op.i)))
+        start += OP.size * len(fn.ops)
 
-    with open(out_path, "wb") as out:
-        out.write(struct.pack(">II", MAGIC, VERSION))
+    with _replacing(out_path) as out:
+        out.write(b"PYBC")
+        out.write(struct.pack("<IIIIIII", VERSION, FLAG_WIDE_COORDS, len(pool), len(ir.functions),
+                              pool_offset, fn_table_offset, code_offset))
+        out.write(name)
+        out.write(pool_bytes)
+        out.write(b"\0" * (fn_table_offset - pool_offset - len(pool_bytes)))
+        out.write(b"".join(table))
+        out.write(b"\0" * (code_offset - fn_table_offset - FN_ENTRY_SIZE * len(ir.functions)))
+        out.write(b"".join(code))
+    return out_path
+
+def _emit_v2(ir, out_path:str):
+    pool, index = _pool(ir)
+
+    with _replacing(out_path) as out:
+        out.write(struct.pack(">II", MAGIC, 2))
         out.write(_utf(ir.name))
         out.write(struct.pack(">I", len(pool)))
         for s in pool: out.write(_utf(s))
@@ -20,14 +60,70 @@ def emit_ir_to_pybc(ir, out_path:str):
             out.write(_utf(fn.name))
             out.write(struct.pack(">I", len(fn.ops)))
             for op in fn.ops:
+                if op.flags:
+                    raise ValueError(f"{fn.name}: {op.code.name} reads a variable, which needs format v3")
+                op = _narrow(op)
                 out.write(struct.pack(">I", int(op.code)))
-                sA = pool.index(op.a) if op.a in pool else -1
-                sB = pool.index(op.b) if op.b in pool else -1
-                out.write(struct.pack(">ii", sA, sB))
+                out.write(struct.pack(">ii", index.get(op.a, -1), index.get(op.b, -1)))
                 out.write(struct.pack(">d", float(op.d)))
                 out.write(struct.pack(">q", int(op.i)))
     return out_path
 
+def _narrow(op):
+    """v2 has no header flags: point ops go back to the old 16-bit x | y << 16 | z << 32.
+    FILL_REGION/REPLACE_REGION/FIND_ENTITIES_REGION are always wide."""
+    if int(op.code) not in (OpCode.SET_BLOCK, OpCode.GET_BLOCK, OpCode.SPAWN_CUSTOM_MOB):
+        return op
+    x, z, y = _signed32(op.i), _signed32(op.i >> 32), int(op.d)
+    return replace(op, d=0.0, i=(x & 0xFFFF) | ((y & 0xFFFF) << 16) | ((z & 0xFFFF) << 32))
+
+def _signed32(v:int):
+    v &= 0xFFFFFFFF
+    return v - (1 << 32) if v >= 1 << 31 else v
+
+def _pool(ir):
+    """Deduplicated constant pool in first-use order, plus a string -> index map."""
+    pool, index = [], {}
+    for fn in ir.functions:
+        for op in fn.ops:
+            if op.a: _intern(pool, index, op.a)
+            if op.b: _intern(pool, index, op.b)
+    return pool, index
+
+def _intern(pool, index, s:str):
+    i = index.get(s)
+    if i is None:
+        i = index[s] = len(pool)
+        pool.append(s)
+    return i
+
+class _replacing:
+    """Writes to a temporary file and renames it over out_path when done.
+
+    The runtime memory-maps loaded modules and hot-reloads changed ones, so an
+    existing .pybc must never be truncated and rewritten in place.
+    """
+    def __init__(self, out_path:str):
+        self.out_path = out_path
+        self.tmp = out_path + ".tmp"
+    def __enter__(self):
+        self.f = open(self.tmp, "wb")
+        return self.f
+    def __exit__(self, exc_type, exc, tb):
+        self.f.close()
+        if exc_type is None:
+            os.replace(self.tmp, self.out_path)
+        else:
+            os.remove(self.tmp)
+        return False
+
+def _align(n:int, a:int):
+    return (n + a - 1) // a * a
+
 def _utf(s:str):
     b = s.encode("utf-8")
     return struct.pack(">H", len(b)) + b
+
+def _u32_utf(s:str):
+    b = s.encode("utf-8")
+    return struct.pack("<I", len(b)) + b
@@ -1,6 +1,9 @@
 from dataclasses import dataclass, field
 from typing import List
 
+# Op.flags, see PyBCModule.java
+OPF_REF_B = 1  # b (SCORE_GET: its right half) names a variable whose value is read
+
 @dataclass
 class Op:
     code: int
@@ -8,6 +11,7 @@ class Op:
     b: str = ""
     d: float = 0.0
     i: int = 0
+    flags: int = 0
 
 @dataclass
 class IRFunction:
@@ -1,15 +1,39 @@
-import argparse, os
+import argparse, os, sys
 from .compiler import compile_python_to_ir
 from .emit_pybc import emit_ir_to_pybc
 
 def main():
     p = argparse.ArgumentParser()
-    p.add_argument("--in", dest="inp", required=True, help="Path to Python mod")
-    p.add_argument("--out", dest="out", required=True, help="Directory to place .pybc")
+    p.add_argument("--in", dest="inp", help="Path to Python mod")
+    p.add_argument("--out", dest="out", help="Directory to place .pybc")
+    p.add_argument("--batch", dest="batch",
+                   help="File with one '<mod.py>\\t<out dir>' pair per line; compiles all in this process")
     args = p.parse_args()
 
-    ir = compile_python_to_ir(args.inp)
-    os.makedirs(args.out, exist_ok=True)
-    out_file = os.path.join(args.out, "mod.pybc")
+    if args.batch:
+        sys.exit(_batch(args.batch))
+    if not args.inp or not args.out:
+        p.error("--in and --out are required unless --batch is given")
+    _compile(args.inp, args.out)
+
+def _compile(inp:str, out:str):
+    ir = compile_python_to_ir(inp)
+    os.makedirs(out, exist_ok=True)
+    out_file = os.path.join(out, "mod.pybc")
     emit_ir_to_pybc(ir, out_file)
     print(f"[Pyrium AOT] Emitted: {out_file}")
+
+def _batch(list_file:str) -> int:
+    # Keep going after a failing mod so one run reports every error
+    failed = 0
+    with open(list_file, encoding="utf-8") as f:
+        for line in f:
+            line = line.rstrip("\n")
+            if not line: continue
+            inp, out = line.split("\t", 1)
+            try:
+                _compile(inp, out)
+            except Exception as e:
+                failed += 1
+                print(f"[Pyrium AOT] Failed: {inp}: {e}", file=sys.stderr)
+    return 1 if failed else 0
@@ -104,12 +104,12 @@ class OpCode(IntEnum):
     CRAFT_ITEM = 170
 
     # Blocks and world edits (200–239)
-    SET_BLOCK = 200
+    SET_BLOCK = 200                 # a = block_id, i = x | z << 32, d = y
     GET_BLOCK = 201
     SET_BLOCK_NBT = 202
     GET_BLOCK_NBT = 203
-    FILL_REGION = 204
-    REPLACE_REGION = 205
+    FILL_REGION = 204               # a = block_id, i/d = corner 1 like SET_BLOCK, b = "x2,y2,z2"
+    REPLACE_REGION = 205            # like FILL_REGION, b = "x2,y2,z2|from_block"
     PASTE_SCHEMATIC = 206
     SAVE_STRUCTURE = 207
     LOAD_STRUCTURE = 208
@@ -122,15 +122,20 @@ class OpCode(IntEnum):
     REMOVE_FLUID = 215
 
     # Scoreboard, tags, data storage (240–269)
-    SCOREBOARD_CREATE = 240
+    # a = objective / entity type / key, b = entry, criteria, slot, tag or value ("$var" = variable)
+    SCOREBOARD_CREATE = 240         # b = criteria ("dummy")
     SCOREBOARD_REMOVE = 241
-    SCOREBOARD_SET_DISPLAY = 242
-    TAG_ADD = 243
+    SCOREBOARD_SET_DISPLAY = 242    # b = slot
+    TAG_ADD = 243                   # a = entity type, b = tag
     TAG_REMOVE = 244
-    TAG_HAS = 245
-    DATA_STORE_SET = 246
-    DATA_STORE_GET = 247
+    TAG_HAS = 245                   # a = result var (count), b = "type|tag"
+    DATA_STORE_SET = 246            # b = value, or i if b is empty
+    DATA_STORE_GET = 247            # a = result var, b = key
     DATA_STORE_DELETE = 248
+    SCORE_SET = 249                 # b = entry, i = value
+    SCORE_ADD = 250                 # b = entry, i = delta
+    SCORE_GET = 251                 # a = result var, b = "objective|entry"
+    SCORE_RESET = 252               # b = entry
 
     # Loot, recipes, advancements (270–299)
     LOOT_TABLE_ROLL = 270
@@ -160,6 +165,7 @@ class OpCode(IntEnum):
     ON_BLOCK_BREAK = 338
     ON_INTERACT = 339
     ON_CRAFT = 340
+    BATCH_ROW = 350
 
     # Math and variables (utility for DSL runtime) (360–399)
     VAR_SET = 360
@@ -0,0 +1,59 @@
+package io.pyrium.bench;
+
+import io.pyrium.core.Events;
+import io.pyrium.core.PyBCExpr;
+import io.pyrium.core.PyBCModule;
+import io.pyrium.core.PyBCModule.OpCode;
+import io.pyrium.core.PyBCRuntime;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Condition evaluation (IF_BEGIN/WHILE_CHECK/ASSERT): PyBCExpr.test on a parsed
+ * condition, and parsing itself (done once per function at link time). Variables are
+ * set by running an init function first: ints x, y, z, the float f (NoopWorld.DATA)
+ * and the string b.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConditionBench {
+  @Param({
+    "x > 5",
+    "x + 1 < y * 2",
+    "(x % 3 == 0 or y > 10) and z != 0",
+    "f * 2.5 >= 1.0 and not z == 0",
+    "b == 'minecraft:air'",
+    "x + y * (z - 1) // 2 <= 100 - y % 7 and (b != 'stone' or f < 0.5)",
+  })
+  public String condition;
+
+  private PyBCRuntime vm;
+  private PyBCExpr expr;
+  private PyBCModule mod;
+
+  @Setup
+  public void setup() {
+    mod = new Synthetic("cond")
+      .fn("init")
+      .op(OpCode.VAR_SET, "x", 9).op(OpCode.VAR_SET, "y", 12).op(OpCode.VAR_SET, "z", 3)
+      .op(OpCode.DATA_STORE_GET, "f", "ratio", 0.0, 0)
+      .op(OpCode.GET_BLOCK, "b", "", 64.0, 0)
+      // registers the condition's variables with the module
+      .fn("check").op(OpCode.IF_BEGIN, condition, 0).op(OpCode.IF_END, "", 0)
+      .build();
+    vm = new PyBCRuntime(new NoopWorld(), mod);
+    vm.executeTick(mod.functions.get("init"), new Events.Tick(0, 50.0));
+    expr = PyBCExpr.parse(condition, mod.vars);
+  }
+
+  @Benchmark
+  public boolean test() { return expr.test(vm); }
+
+  @Benchmark
+  public PyBCExpr parse() { return PyBCExpr.parse(condition, mod.vars); }
+}
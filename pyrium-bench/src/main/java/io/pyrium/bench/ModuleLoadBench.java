@@ -0,0 +1,60 @@
+package io.pyrium.bench;
+
+import io.pyrium.core.Events;
+import io.pyrium.core.PyBCModule;
+import io.pyrium.core.PyBCRuntime;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Module load time for synthetic .pybc files of increasing size: functions of 256
+ * variable ops, each with its own variable names, so the pool grows with the code.
+ * read maps the file and builds pool, function table and VarTable; firstCall adds
+ * the VM and the first call of every function (linking: jumps, conditions, templates).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModuleLoadBench {
+  static final int FN_OPS = 256;
+
+  /** Total ops in the module. */
+  @Param({"1024", "16384", "262144", "1048576"})
+  public int ops;
+
+  private Path dir, file;
+  private final Events.Tick tick = new Events.Tick(0, 50.0);
+
+  @Setup
+  public void setup() throws IOException {
+    dir = Files.createTempDirectory("pyrium-bench");
+    file = dir.resolve("synthetic.pybc");
+    var mod = new Synthetic("synthetic");
+    for (int f = 0; f < ops / FN_OPS; f++) mod.fn("f" + f).vars("f" + f + "_", FN_OPS);
+    mod.write(file);
+  }
+
+  @TearDown
+  public void tearDown() {
+    // still mapped by modules the GC has not collected yet: Windows keeps the file
+    try { Files.deleteIfExists(file); Files.deleteIfExists(dir); } catch (IOException ignored) {}
+  }
+
+  @Benchmark
+  public PyBCModule read() throws IOException { return PyBCModule.read(file); }
+
+  @Benchmark
+  public PyBCRuntime firstCall() throws IOException {
+    var mod = PyBCModule.read(file);
+    var vm = new PyBCRuntime(new NoopWorld(), mod);
+    for (var fn : mod.functions.values()) vm.executeTick(fn, tick);
+    return vm;
+  }
+}
@@ -0,0 +1,88 @@
+package io.pyrium.bench;
+
+import io.pyrium.core.BlockStates;
+import io.pyrium.core.PyBCRuntime;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * WorldFacade that does nothing, so the benchmarks measure the VM and not a server.
+ * The command-string defaults (scoreboard, tags, data storage) are overridden too;
+ * reads return fixed values.
+ */
+public final class NoopWorld implements PyBCRuntime.WorldFacade {
+  static final String AIR = "minecraft:air";
+  private static final int AIR_ID = BlockStates.id(AIR);
+  // DATA_STORE_GET: the same float for every key
+  static final Double DATA = 2.5;
+
+  private long time;
+
+  // Entities
+  public List<PyBCRuntime.EntityFacade> entities(String type) { return List.of(); }
+  public List<PyBCRuntime.EntityFacade> entitiesInRegion(String type, int x1, int y1, int z1, int x2, int y2, int z2) { return List.of(); }
+  public void spawnEntity(String type, double x, double y, double z) {}
+  public void removeEntity(PyBCRuntime.EntityFacade e) {}
+  @Override public int countEntities(String type) { return 0; }
+  @Override public int countEntitiesInRegion(String type, int x1, int y1, int z1, int x2, int y2, int z2) { return 0; }
+  @Override public void forEachEntity(String type, Consumer<PyBCRuntime.EntityFacade> visitor) {}
+  @Override public void forEachEntityInRegion(String type, int x1, int y1, int z1, int x2, int y2, int z2, Consumer<PyBCRuntime.EntityFacade> visitor) {}
+
+  // Players/world
+  public void broadcast(String msg) {}
+  public void messagePlayer(String playerName, String msg) {}
+  public void execCommand(String cmd) {}
+  public void giveItem(String playerName, String itemId, int count) {}
+  public void takeItem(String playerName, String itemId, int count) {}
+  public void setBlock(int x, int y, int z, String blockId) {}
+  public String getBlock(int x, int y, int z) { return AIR; }
+  @Override public int getBlockState(int x, int y, int z) { return AIR_ID; }
+  public void setTime(long timeTicks) { time = timeTicks; }
+  public long getTime() { return time; }
+  public void setWeather(String mode) {}
+  @Override public void fillRegion(int x1, int y1, int z1, int x2, int y2, int z2, String blockId) {}
+  @Override public void replaceRegion(int x1, int y1, int z1, int x2, int y2, int z2, String from, String to) {}
+  @Override public void teleportPlayer(String playerName, double x, double y, double z) {}
+
+  // Scoreboard, tags, data storage
+  @Override public void createObjective(String objective, String criteria) {}
+  @Override public void removeObjective(String objective) {}
+  @Override public void setDisplaySlot(String objective, String slot) {}
+  @Override public void setScore(String objective, String entry, int value) {}
+  @Override public void addScore(String objective, String entry, int delta) {}
+  @Override public void resetScore(String objective, String entry) {}
+  @Override public int getScore(String objective, String entry) { return 0; }
+  @Override public void addTag(String type, String tag) {}
+  @Override public void removeTag(String type, String tag) {}
+  @Override public int countTagged(String type, String tag) { return 0; }
+  @Override public void dataSet(String key, Object value) {}
+  @Override public Object dataGet(String key) { return DATA; }
+  @Override public void dataDelete(String key) {}
+
+  // NBT/attributes
+  public void nbtSet(PyBCRuntime.EntityFacade e, String path, String value) {}
+  public String nbtGet(PyBCRuntime.EntityFacade e, String path) { return ""; }
+  public void setEntityAttr(PyBCRuntime.EntityFacade e, String attr, double value) {}
+  public double getEntityAttr(PyBCRuntime.EntityFacade e, String attr) { return 0.0; }
+  @Override public void scaleAttribute(String type, String attr, double factor) {}
+  @Override public void setAttrBulk(String type, String attr, double value) {}
+  @Override public void setNbtBulk(String type, String path, String value) {}
+  @Override public void removeEntities(String type) {}
+
+  // Vars
+  public void setVar(String name, long value) {}
+  public long getVar(String name) { return 0L; }
+
+  // Custom mobs
+  public void registerCustomMob(String mobId, String displayName) {}
+  public void setCustomMobModel(String mobId, String model) {}
+  public void setCustomMobTexture(String mobId, String texture) {}
+  public void setCustomMobSize(String mobId, double scale) {}
+  public void setCustomMobAttr(String mobId, String attr, double value) {}
+  public void setCustomMobLootTable(String mobId, String lootTable) {}
+  public void setCustomMobEquip(String mobId, String slot, String itemId) {}
+  public void setCustomMobAI(String mobId, String aiProfile) {}
+  public void spawnCustomMob(String mobId, int x, int y, int z) {}
+  public void removeCustomMobs(String mobId) {}
+}
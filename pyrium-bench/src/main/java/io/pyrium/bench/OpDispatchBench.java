@@ -0,0 +1,66 @@
+package io.pyrium.bench;
+
+import io.pyrium.core.Events;
+import io.pyrium.core.PyBCModule;
+import io.pyrium.core.PyBCRuntime;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Op dispatch throughput per opcode family: one straight-line function of OPS ops per
+ * family (the control family is a loop of the same order), run through executeTick
+ * against NoopWorld. Scores are per executed op. Interpreter runs the switch
+ * interpreter (-Dpyrium.jit=false), Jit the PyBCJit steps from the first call on.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public abstract class OpDispatchBench {
+  static final int OPS = 256;
+  static final int LOOPS = 50;
+
+  private PyBCRuntime vm;
+  private PyBCModule.Function vars, control, world, blocks, scores;
+  private final Events.Tick tick = new Events.Tick(0, 50.0);
+
+  @Fork(value = 1, jvmArgsAppend = "-Dpyrium.jit=false")
+  public static class Interpreter extends OpDispatchBench {}
+
+  @Fork(value = 1, jvmArgsAppend = "-Dpyrium.jit.threshold=1")
+  public static class Jit extends OpDispatchBench {}
+
+  @Setup
+  public void setup() {
+    var mod = new Synthetic("ops")
+      .fn("vars").vars("", OPS)
+      .fn("control").control(LOOPS)
+      .fn("world").world(OPS)
+      .fn("blocks").blocks(OPS)
+      .fn("scores").scores(OPS)
+      .build();
+    vm = new PyBCRuntime(new NoopWorld(), mod);
+    vars = mod.functions.get("vars");
+    control = mod.functions.get("control");
+    world = mod.functions.get("world");
+    blocks = mod.functions.get("blocks");
+    scores = mod.functions.get("scores");
+  }
+
+  @Benchmark @OperationsPerInvocation(OPS)
+  public void vars() { vm.executeTick(vars, tick); }
+
+  @Benchmark @OperationsPerInvocation(5 * LOOPS + 2)
+  public void control() { vm.executeTick(control, tick); }
+
+  @Benchmark @OperationsPerInvocation(OPS)
+  public void world() { vm.executeTick(world, tick); }
+
+  @Benchmark @OperationsPerInvocation(OPS)
+  public void blocks() { vm.executeTick(blocks, tick); }
+
+  @Benchmark @OperationsPerInvocation(OPS)
+  public void scores() { vm.executeTick(scores, tick); }
+}
@@ -0,0 +1,21 @@
+package io.pyrium.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks with the GC profiler, so every result comes with its allocation
+ * rate (gc.alloc.rate.norm = bytes per op). Takes the usual JMH arguments:
+ *
+ *   java -jar pyrium-bench/target/pyrium-bench-0.1.0.jar OpDispatch -f 1 -wi 2
+ */
+public final class PyriumBench {
+  private PyriumBench() {}
+
+  public static void main(String[] args) throws Exception {
+    var cli = new CommandLineOptions(args);
+    new Runner(new OptionsBuilder().parent(cli).addProfiler(GCProfiler.class).build()).run();
+  }
+}
@@ -0,0 +1,187 @@
+package io.pyrium.bench;
+
+import io.pyrium.core.PyBCModule;
+import io.pyrium.core.PyBCModule.OpCode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Builds synthetic PyBC modules for the benchmarks, in memory or as v3 files laid out
+ * like emit_pybc.py writes them (block ops with FLAG_WIDE_COORDS).
+ */
+public final class Synthetic {
+  private final String name;
+  private final ArrayList<String> pool = new ArrayList<>();
+  private final HashMap<String, Integer> index = new HashMap<>();
+  private final LinkedHashMap<String, List<PyBCModule.Op>> functions = new LinkedHashMap<>();
+  private List<PyBCModule.Op> current;
+
+  public Synthetic(String name) { this.name = name; }
+
+  /** Starts function fn; following ops go into it. */
+  public Synthetic fn(String fn) {
+    str(fn);
+    functions.put(fn, current = new ArrayList<>());
+    return this;
+  }
+
+  public Synthetic op(OpCode code, String a, String b, double num, long i64) {
+    current.add(new PyBCModule.Op(code, str(a), str(b), num, i64));
+    return this;
+  }
+
+  public Synthetic op(OpCode code, String a, long i64) { return op(code, a, "", 0.0, i64); }
+
+  /** Score/data op whose entry or value in b names a variable (OPF_REF_B). */
+  public Synthetic ref(OpCode code, String a, String b, long i64) {
+    current.add(new PyBCModule.Op(code, str(a), str(b), 0.0, i64, PyBCModule.OPF_REF_B));
+    return this;
+  }
+
+  /** Pool index of s; "" is no operand (-1), as in emit_pybc.py. */
+  private int str(String s) {
+    if (s.isEmpty()) return -1;
+    Integer i = index.get(s);
+    if (i != null) return i;
+    pool.add(s);
+    index.put(s, pool.size() - 1);
+    return pool.size() - 1;
+  }
+
+  public int ops() {
+    int n = 0;
+    for (var ops : functions.values()) n += ops.size();
+    return n;
+  }
+
+  public PyBCModule build() {
+    var fns = new HashMap<String, PyBCModule.Function>();
+    functions.forEach((fn, ops) -> fns.put(fn, new PyBCModule.Function(fn, ops)));
+    return new PyBCModule(name, new PyBCModule.ConstPool(pool), fns, PyBCModule.FLAG_WIDE_COORDS);
+  }
+
+  /** Writes the module as a v3 .pybc file. */
+  public void write(Path file) throws IOException {
+    byte[] modName = name.getBytes(StandardCharsets.UTF_8);
+    List<byte[]> strings = new ArrayList<>(pool.size());
+    int poolBytes = 0;
+    for (String s : pool) {
+      byte[] b = s.getBytes(StandardCharsets.UTF_8);
+      strings.add(b);
+      poolBytes += 4 + b.length;
+    }
+    int poolOffset = 32 + 4 + modName.length;
+    int fnTableOffset = align(poolOffset + poolBytes, 4);
+    int codeOffset = align(fnTableOffset + 16 * functions.size(), 32);
+    var buf = ByteBuffer.allocate(codeOffset + 32 * ops()).order(ByteOrder.LITTLE_ENDIAN);
+
+    buf.put("PYBC".getBytes(StandardCharsets.US_ASCII));
+    buf.putInt(PyBCModule.VERSION).putInt(PyBCModule.FLAG_WIDE_COORDS).putInt(pool.size()).putInt(functions.size())
+      .putInt(poolOffset).putInt(fnTableOffset).putInt(codeOffset);
+    buf.putInt(modName.length).put(modName);
+    for (byte[] b : strings) buf.putInt(b.length).put(b);
+    buf.position(fnTableOffset);
+    int start = codeOffset;
+    for (var e : functions.entrySet()) {
+      buf.putInt(index.get(e.getKey())).putInt(start).putInt(e.getValue().size()).putInt(0);
+      start += 32 * e.getValue().size();
+    }
+    buf.position(codeOffset);
+    for (var ops : functions.values()) {
+      for (var op : ops) buf.putInt(op.code.id).putInt(op.sIdxA).putInt(op.sIdxB).putInt(op.flags).putDouble(op.num).putLong(op.i64);
+    }
+    buf.flip();
+    try (var ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buf.hasRemaining()) ch.write(buf);
+    }
+  }
+
+  private static int align(int v, int a) { return (v + a - 1) / a * a; }
+
+  // ========= Op families =========
+
+  /** n variable/arithmetic ops over eight int variables (prefix + "v0".."v7"). */
+  public Synthetic vars(String prefix, int n) {
+    for (int i = 0; i < n; i++) {
+      String v = prefix + "v" + (i & 7);
+      switch (i % 7) {
+        case 0 -> op(OpCode.VAR_SET, v, i);
+        case 1 -> op(OpCode.VAR_INC, v, 1);
+        case 2 -> op(OpCode.MATH_ADD, v, 3);
+        case 3 -> op(OpCode.MATH_MUL, v, 2);
+        case 4 -> op(OpCode.MATH_SUB, v, 5);
+        case 5 -> op(OpCode.MATH_DIV, v, 3);
+        default -> op(OpCode.VAR_DEC, v, 1);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * for i in range(loops): if i % 2 == 0: even += 1 else: odd += 1.
+   * Every iteration runs five ops, the whole loop 5 * loops + 2.
+   */
+  public Synthetic control(int loops) {
+    op(OpCode.FOR_INIT, "i", 0);
+    op(OpCode.FOR_ITER, "i", "", 1.0, loops);
+    op(OpCode.IF_BEGIN, "i % 2 == 0", 0);
+    op(OpCode.VAR_INC, "even", 1);
+    op(OpCode.IF_ELSE, "", 0);
+    op(OpCode.VAR_INC, "odd", 1);
+    op(OpCode.IF_END, "", 0);
+    op(OpCode.FOR_END, "i", 0);
+    return this;
+  }
+
+  /** n time, weather, chat, item, command and teleport ops. */
+  public Synthetic world(int n) {
+    for (int i = 0; i < n; i++) {
+      switch (i % 8) {
+        case 0 -> op(OpCode.SET_TIME, "", 6000);
+        case 1 -> op(OpCode.GET_TIME, "t", 0);
+        case 2 -> op(OpCode.SET_WEATHER, "clear", 0);
+        case 3 -> op(OpCode.BROADCAST, "Round started", 0);
+        case 4 -> op(OpCode.MESSAGE_PLAYER, "Steve", "Welcome", 0.0, 0);
+        case 5 -> op(OpCode.GIVE_ITEM, "Steve", "diamond", 0.0, 1);
+        case 6 -> op(OpCode.EXEC_CMD, "say hi", 0);
+        default -> op(OpCode.TELEPORT_PLAYER, "Steve", "", 10.0, 64);
+      }
+    }
+    return this;
+  }
+
+  /** n set_block, get_block and 4x4x4 fill_region ops at x, y, z = i, 64, -i. */
+  public Synthetic blocks(int n) {
+    for (int i = 0; i < n; i++) {
+      long xz = (i & 0xFFFFFFFFL) | (long) -i << 32;
+      switch (i % 3) {
+        case 0 -> op(OpCode.SET_BLOCK, "stone", "", 64.0, xz);
+        case 1 -> op(OpCode.GET_BLOCK, "b", "", 64.0, xz);
+        default -> op(OpCode.FILL_REGION, "glass", (i + 3) + ",67," + (-i - 3), 64.0, xz);
+      }
+    }
+    return this;
+  }
+
+  /** n score, tag and data storage ops; entries are literals and variables (player, k). */
+  public Synthetic scores(int n) {
+    for (int i = 0; i < n; i++) {
+      switch (i % 6) {
+        case 0 -> ref(OpCode.SCORE_SET, "kills", "player", 1);
+        case 1 -> op(OpCode.SCORE_ADD, "kills", "#round", 0.0, 1);
+        case 2 -> ref(OpCode.SCORE_GET, "k", "kills|player", 0);
+        case 3 -> op(OpCode.TAG_HAS, "n", "zombie|boss", 0.0, 0);
+        case 4 -> ref(OpCode.DATA_STORE_SET, "global.kills", "k", 0);
+        default -> op(OpCode.DATA_STORE_GET, "v", "global.kills", 0.0, 0);
+      }
+    }
+    return this;
+  }
+}
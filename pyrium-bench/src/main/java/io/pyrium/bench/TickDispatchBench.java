@@ -0,0 +1,63 @@
+package io.pyrium.bench;
+
+import io.pyrium.core.EventBus;
+import io.pyrium.core.Events;
+import io.pyrium.core.PyBCRuntime;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one EventBus.dispatchTick with mods x handlers on_tick handlers, each a VM call
+ * of a function with work variable ops (0 = the dispatch and VM entry overhead alone).
+ * Handlers are registered the way Mods does it: one Registrar commit, one owner and one
+ * VM per mod. Runs the serial executor; -Dpyrium.exec=parallel via -jvmArgsAppend.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickDispatchBench {
+  @Param({"1", "10", "50"})
+  public int mods;
+
+  @Param({"1", "4", "16"})
+  public int handlers;
+
+  @Param({"0", "16"})
+  public int work;
+
+  private final ArrayList<Object> owners = new ArrayList<>();
+  private long now;
+
+  @Setup
+  public void setup() {
+    EventBus.init();
+    var reg = new EventBus.Registrar();
+    for (int m = 0; m < mods; m++) {
+      var syn = new Synthetic("mod" + m);
+      for (int h = 0; h < handlers; h++) syn.fn("on_tick_" + h).vars("h" + h + "_", work);
+      var mod = syn.build();
+      var vm = new PyBCRuntime(new NoopWorld(), mod);
+      Object owner = new Object();
+      owners.add(owner);
+      for (var fn : mod.functions.values()) reg.on(Events.TICK, e -> vm.executeTick(fn, e), null, owner);
+    }
+    reg.commit();
+  }
+
+  @TearDown
+  public void tearDown() {
+    for (var owner : owners) EventBus.unregister(owner);
+    owners.clear();
+  }
+
+  @Benchmark
+  public void dispatchTick() {
+    now += 50_000_000L;
+    EventBus.dispatchTick(now, 50.0);
+  }
+}
@@ -0,0 +1,112 @@
+package io.pyrium.rpb;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Resource pack build over a synthetic asset tree (about 70% JSON/lang text, 30% PNG-like
+ * random data): the old single-stream ZipOutputStream build against ZipAssembler with
+ * threads deflate workers (1 = on the calling thread). zipOutputStream ignores threads.
+ * Lives in the builder's package, since ZipAssembler is package-private.
+ *
+ *   java -jar pyrium-bench/target/pyrium-bench-0.1.0.jar PackBench -p threads=1,4
+ *
+ * The worker pool only pays off with that many free cores: on one CPU, x4 is slightly
+ * slower than x1.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PackBench {
+  @Param({"4000"})
+  public int files;
+
+  @Param({"1", "2", "4", "8"})
+  public int threads;
+
+  private Path dir, out;
+  private List<ResourcePackBuilder.Asset> assets;
+
+  @Setup
+  public void setup() throws IOException {
+    dir = Files.createTempDirectory("pyrium-pack-bench");
+    out = dir.resolve("pack.zip");
+    assets = generate(dir.resolve("assets"), files);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    try (var w = Files.walk(dir)) {
+      for (var p : (Iterable<Path>) w.sorted(Comparator.reverseOrder())::iterator) Files.deleteIfExists(p);
+    }
+  }
+
+  /** The pre-assembler build: every asset through one ZipOutputStream. */
+  @Benchmark
+  public long zipOutputStream() throws IOException {
+    try (var zos = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(out), 1 << 16))) {
+      for (var a : assets) {
+        zos.putNextEntry(new ZipEntry(a.name()));
+        Files.copy(a.file(), zos);
+        zos.closeEntry();
+      }
+    }
+    return Files.size(out);
+  }
+
+  @Benchmark
+  public long assembler() throws IOException {
+    try (var zip = new ZipAssembler(out, threads)) {
+      for (var a : assets) {
+        if (ResourcePackBuilder.isCompressed(a.name())) zip.addStored(a.name(), a.file(), a.size(), a.crc());
+        else zip.addDeflated(a.name(), a.file());
+      }
+      zip.finish();
+    }
+    return Files.size(out);
+  }
+
+  private static List<ResourcePackBuilder.Asset> generate(Path root, int files) throws IOException {
+    var rnd = new Random(42);
+    var words = new String[]{"stone", "block", "item", "pyrium", "ore", "texture", "model", "parent", "layer0", "minecraft"};
+    var list = new ArrayList<ResourcePackBuilder.Asset>(files);
+    for (int i = 0; i < files; i++) {
+      boolean png = i % 10 < 3;
+      String name = (png ? "textures/block/t" : "models/item/m") + i + (png ? ".png" : ".json");
+      Path f = root.resolve(name);
+      Files.createDirectories(f.getParent());
+      byte[] data;
+      if (png) {
+        data = new byte[4096 + rnd.nextInt(60_000)];
+        rnd.nextBytes(data);
+      } else {
+        var sb = new StringBuilder("{\n");
+        int n = 200 + rnd.nextInt(4000);
+        for (int k = 0; k < n; k++) sb.append("  \"").append(words[rnd.nextInt(words.length)]).append(k).append("\": \"")
+          .append(words[rnd.nextInt(words.length)]).append("\",\n");
+        data = sb.append("}\n").toString().getBytes(StandardCharsets.UTF_8);
+      }
+      Files.write(f, data);
+      var crc = new CRC32();
+      crc.update(data);
+      list.add(new ResourcePackBuilder.Asset("pyrium/bench/" + name, f, data.length, 0, "", crc.getValue()));
+    }
+    return list;
+  }
+}
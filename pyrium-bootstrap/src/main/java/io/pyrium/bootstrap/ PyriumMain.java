@@ -1,6 +1,7 @@
 package io.pyrium.bootstrap;
 
 import java.nio.file.*;
+import java.util.*;
 
 public final class PyriumMain {
   public static void main(String[] args) throws Exception {
@@ -17,22 +18,112 @@ public final class PyriumMain {
     loader.start(art);
   }
 
+  // Python sources of the AOT compiler (installed editable by build.sh); part of every cache key
+  private static final Path COMPILER_SRC = Paths.get("pyrium-aot");
+  private static final String AOT = ".venv/bin/pyrium-aot";
+  // mods per compiler process; stale mods are split over at most one process per core
+  private static final int BATCH = Integer.getInteger("pyrium.aot.batch", 16);
+
+  private record Job(Path modDir, Path entry, Path outDir, String key) {}
+
+  /**
+   * Compiles pymod-examples/<mod>/mod.py into modsDir, skipping unchanged mods.
+   *
+   * Cache: cacheDir/<key>.pybc holds compiled modules, keyed by the SHA-256 of mod.py,
+   * manifest.json and the compiler sources; cacheDir/<mod>.stamp records the key that is
+   * currently installed in modsDir. Stale mods are compiled in batch mode, several mods
+   * per pyrium-aot process, with the batches running in parallel.
+   */
   static void compileModsToPybc(RuntimeLayout rt) throws Exception {
     Path examples = Paths.get("pymod-examples");
     if (!Files.exists(examples)) return;
+    long t0 = System.nanoTime();
+    Path cache = rt.cacheDir();
+    Files.createDirectories(cache);
+    String compiler = compilerFingerprint();
+
+    var stale = new ArrayList<Job>();
+    var live = new HashSet<String>();
+    int upToDate = 0, restored = 0;
     try (var dirs = Files.list(examples).filter(Files::isDirectory)) {
       for (Path modDir : (Iterable<Path>)dirs::iterator) {
         Path entry = modDir.resolve("mod.py");
         if (!Files.exists(entry)) continue;
+        Path manifest = modDir.resolve("manifest.json");
+        String key = Hashing.sha256(Hashing.sha256(entry) + "|"
+          + (Files.exists(manifest) ? Hashing.sha256(manifest) : "-") + "|" + compiler);
+        live.add(key + ".pybc");
         Path outDir = rt.modsDir().resolve(modDir.getFileName());
-        Files.createDirectories(outDir);
-        var proc = new ProcessBuilder()
-          .command(".venv/bin/pyrium-aot", "--in", entry.toString(), "--out", outDir.toString())
-          .inheritIO()
-          .start();
-        int code = proc.waitFor();
-        if (code != 0) throw new IllegalStateException("pyrium-aot failed for " + modDir);
+        Path out = outDir.resolve("mod.pybc");
+        Path stamp = cache.resolve(modDir.getFileName() + ".stamp");
+        Path cached = cache.resolve(key + ".pybc");
+        if (Files.exists(out) && Files.exists(stamp) && key.equals(Files.readString(stamp).trim())) {
+          upToDate++;
+        } else if (Files.exists(cached)) {
+          Files.createDirectories(outDir);
+          Files.copy(cached, out, StandardCopyOption.REPLACE_EXISTING);
+          Files.writeString(stamp, key);
+          restored++;
+        } else {
+          Files.createDirectories(outDir);
+          stale.add(new Job(modDir, entry, outDir, key));
+        }
+      }
+    }
+
+    int procs = compile(stale, cache);
+    for (var job : stale) {
+      Files.copy(job.outDir().resolve("mod.pybc"), cache.resolve(job.key() + ".pybc"), StandardCopyOption.REPLACE_EXISTING);
+      Files.writeString(cache.resolve(job.modDir().getFileName() + ".stamp"), job.key());
+    }
+    // drop cached modules no mod refers to anymore
+    try (var files = Files.list(cache)) {
+      for (Path f : (Iterable<Path>)files::iterator) {
+        String n = f.getFileName().toString();
+        if (n.endsWith(".pybc") && !live.contains(n)) Files.deleteIfExists(f);
+      }
+    }
+    System.out.println("[Pyrium] Mods: " + upToDate + " up to date, " + restored + " from cache, "
+      + stale.size() + " compiled (" + procs + " process" + (procs == 1 ? "" : "es") + ") in "
+      + (System.nanoTime() - t0) / 1_000_000 + " ms");
+  }
+
+  /** Runs pyrium-aot --batch over the jobs; returns the number of processes used. */
+  private static int compile(List<Job> jobs, Path cache) throws Exception {
+    if (jobs.isEmpty()) return 0;
+    int procs = Math.min(Runtime.getRuntime().availableProcessors(), (jobs.size() + BATCH - 1) / BATCH);
+    var running = new ArrayList<Process>();
+    var lists = new ArrayList<Path>();
+    for (int p = 0; p < procs; p++) {
+      var lines = new StringBuilder();
+      for (int j = p; j < jobs.size(); j += procs) {
+        lines.append(jobs.get(j).entry()).append('\t').append(jobs.get(j).outDir()).append('\n');
+      }
+      Path list = Files.createTempFile(cache, "batch-", ".txt");
+      Files.writeString(list, lines);
+      lists.add(list);
+      running.add(new ProcessBuilder()
+        .command(AOT, "--batch", list.toString())
+        .inheritIO()
+        .start());
+    }
+    boolean ok = true;
+    for (var proc : running) ok &= proc.waitFor() == 0;
+    for (Path list : lists) Files.deleteIfExists(list);
+    if (!ok) throw new IllegalStateException("pyrium-aot failed, see output above");
+    return procs;
+  }
+
+  private static String compilerFingerprint() throws Exception {
+    var sb = new StringBuilder();
+    if (Files.isDirectory(COMPILER_SRC)) {
+      try (var files = Files.walk(COMPILER_SRC)) {
+        var srcs = files.filter(f -> f.toString().endsWith(".py") || f.endsWith("pyproject.toml")).sorted().toList();
+        for (Path f : srcs) sb.append(COMPILER_SRC.relativize(f)).append('=').append(Hashing.sha256(f)).append(';');
       }
     }
+    Path aot = Paths.get(AOT);
+    if (Files.exists(aot)) sb.append("aot=").append(Hashing.sha256(aot));
+    return Hashing.sha256(sb.toString());
   }
 }
@@ -8,6 +8,13 @@ public record RuntimeLayout(Path versionDir, Path serverJar, Path modsDir) {
     Files.createDirectories(dir);
     Path mods = dir.resolve("mods");
     Files.createDirectories(mods);
+    Files.createDirectories(dir.resolve("cache"));
     return new RuntimeLayout(dir, art.path(), mods);
   }
+
+  /** Compiled-mod cache, see PyriumMain.compileModsToPybc. */
+  public Path cacheDir() { return versionDir.resolve("cache"); }
+
+  /** Persistent mod variables (VarStore in pyrium-core); created on first use. */
+  public Path dataDir() { return versionDir.resolve("data"); }
 }
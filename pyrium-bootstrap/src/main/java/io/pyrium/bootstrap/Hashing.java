@@ -2,7 +2,9 @@ package io.pyrium.bootstrap;
 
 import java.io.IOException;
 import java.nio.file.*;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 public final class Hashing {
   public static void assertSha256(Path file, String expectedHex) throws IOException {
@@ -19,12 +21,21 @@ public final class Hashing {
         int n;
         while ((n = in.read(buf)) > 0) md.update(buf, 0, n);
       }
-      var b = md.digest();
-      var sb = new StringBuilder();
-      for (byte x : b) sb.append(String.format("%02x", x));
-      return sb.toString();
+      return hex(md.digest());
     } catch (Exception e) {
       throw new IOException(e);
     }
   }
+  public static String sha256(String text) {
+    try {
+      return hex(MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+  private static String hex(byte[] b) {
+    var sb = new StringBuilder(b.length * 2);
+    for (byte x : b) sb.append(String.format("%02x", x));
+    return sb.toString();
+  }
 }
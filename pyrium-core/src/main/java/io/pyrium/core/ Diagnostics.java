@@ -6,4 +6,70 @@ public final class Diagnostics {
   public static void banner(RuntimeLayout rt) {
     System.out.println("[Pyrium] Active. Runtime: " + rt.versionDir() + " | Mods dir: " + rt.modsDir());
   }
+
+  public static void banner(RuntimeLayout rt, BootTimer boot) {
+    banner(rt);
+    System.out.println("[Pyrium] Boot: " + boot.summary());
+  }
+
+  /**
+   * Server tick timing: real dt between ticks and ticks lost to lag, whatever the tick
+   * source. A gap of more than 1.5 periods counts the missing periods as dropped.
+   */
+  public static final class Ticks {
+    public static final long PERIOD_NANOS = 50_000_000L; // 20 TPS
+    private static final long REPORT_EVERY = 6000;     // ticks, 5 min at 20 TPS
+    private static long last, ticks, dropped, maxDt, windowDropped;
+
+    /** Records a tick at now and returns the milliseconds since the previous one. */
+    static synchronized double record(long now) {
+      long dt = ticks == 0 ? PERIOD_NANOS : now - last;
+      last = now;
+      ticks++;
+      if (dt > PERIOD_NANOS * 3 / 2) {
+        long missed = (dt + PERIOD_NANOS / 2) / PERIOD_NANOS - 1;
+        dropped += missed;
+        windowDropped += missed;
+      }
+      if (dt > maxDt) maxDt = dt;
+      if (ticks % REPORT_EVERY == 0 && windowDropped > 0) {
+        System.out.println("[Pyrium] Ticks: " + windowDropped + " dropped in the last " + REPORT_EVERY + " (" + summary() + ")");
+        windowDropped = 0;
+      }
+      return dt / 1_000_000.0;
+    }
+
+    public static synchronized long ticks() { return ticks; }
+    public static synchronized long dropped() { return dropped; }
+
+    public static synchronized String summary() {
+      return ticks + " ticks, " + dropped + " dropped, max dt " + maxDt / 1_000_000 + " ms";
+    }
+  }
+
+  /** Wall-clock time per boot stage; stages running on other threads are added separately. */
+  public static final class BootTimer {
+    private final long start = System.nanoTime();
+    private long last = start;
+    private final StringBuilder stages = new StringBuilder();
+
+    /** Ends the stage that started at the previous mark. */
+    public synchronized void stage(String name) {
+      long now = System.nanoTime();
+      add(name, now - last, "");
+      last = now;
+    }
+
+    /** Records a stage that overlapped with others. */
+    public synchronized void parallel(String name, long nanos) { add(name, nanos, " (parallel)"); }
+
+    private void add(String name, long nanos, String note) {
+      if (stages.length() > 0) stages.append(" | ");
+      stages.append(name).append(' ').append(nanos / 1_000_000).append(" ms").append(note);
+    }
+
+    public synchronized String summary() {
+      return stages + " | total " + (System.nanoTime() - start) / 1_000_000 + " ms";
+    }
+  }
 }
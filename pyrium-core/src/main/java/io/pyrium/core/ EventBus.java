@@ -1,38 +1,389 @@
 package io.pyrium.core;
 
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.*;
+import java.util.concurrent.*;
 
 public final class EventBus {
-  private static final CopyOnWriteArrayList<TickHandler> tickHandlers = new CopyOnWriteArrayList<>();
-  private static volatile boolean externalTickSourceAttached = false;
+  // Handlers per event id in plain arrays; registration swaps in a new array (copy-on-write)
+  private static final Sub[] NONE = new Sub[0];
+  private static volatile Sub[][] subs = new Sub[Events.COUNT][];
+  static { Arrays.fill(subs, NONE); }
+  // Parallel mode: one lane per mod for tick handlers, each with its own command buffer
+  private static volatile Lane[] tickLanes = new Lane[0];
 
+  // -Dpyrium.exec=parallel runs each mod's handlers on a worker pool
+  private static final boolean PARALLEL = "parallel".equalsIgnoreCase(System.getProperty("pyrium.exec", "serial"));
+  private static final int THREADS = Integer.getInteger("pyrium.exec.threads", Runtime.getRuntime().availableProcessors());
+  private static volatile ExecutorService workers;
+
+  public interface Handler<E extends Events.Event> { void on(E e) throws Exception; }
   public interface TickHandler { void onTick(Events.Tick t) throws Exception; }
 
+  // owner: identifies the registering mod for unregister() (null = permanent)
+  private record Sub(Handler<Events.Event> handler, DeferredWorld buffer, Object owner) {}
+
+  // Immutable handler list: registration builds new Lanes and publishes them via tickLanes
+  private static final class Lane implements Callable<Void> {
+    final DeferredWorld buffer;
+    final Sub[] handlers;
+    Events.Tick evt;
+    Lane(DeferredWorld buffer, Sub[] handlers) { this.buffer = buffer; this.handlers = handlers; }
+    public Void call() {
+      for (var s : handlers) invoke(s, evt);
+      return null;
+    }
+  }
+
+  // Batched subscriptions: per source event id, a raw and a coalescing collector (null = none)
+  private static volatile Collector[] collectors = new Collector[Events.COUNT * 2];
+
+  // Immutable subscriber list; registration copies the Collector and keeps the shared Feed
+  private static final class Collector {
+    final Feed feed;
+    final Sub[] subs;
+    Collector(Feed feed, Sub[] subs) { this.feed = feed; this.subs = subs; }
+    Collector(Events.Type<?> source, boolean coalesce) { this(new Feed(source, coalesce), NONE); }
+    Collector with(Sub[] next) { return new Collector(feed, next); }
+    void add(long key, String player, String id, double x, double y, double z) { feed.add(key, player, id, x, y, z); }
+    Events.Batch swap() { return feed.swap(); }
+  }
+
+  private static final class Feed {
+    private final Events.Batch[] buffers;
+    private int front;
+    Feed(Events.Type<?> source, boolean coalesce) {
+      buffers = new Events.Batch[] { new Events.Batch(source, coalesce), new Events.Batch(source, coalesce) };
+    }
+    synchronized void add(long key, String player, String id, double x, double y, double z) {
+      buffers[front].add(key, player, id, x, y, z);
+    }
+    /** Swaps buffers so events raised during delivery land in the next tick's batch. */
+    synchronized Events.Batch swap() {
+      var full = buffers[front];
+      front ^= 1;
+      return full;
+    }
+  }
+
+  // Work handed over from other threads (e.g. mod reloads), run on the tick thread before dispatch
+  private static final ConcurrentLinkedQueue<Runnable> boundaryTasks = new ConcurrentLinkedQueue<>();
+
+  // Reused event objects for dispatch from the server thread
+  private static final Events.Tick tick = new Events.Tick(0, 0);
+  private static final Events.Event[] pooled = new Events.Event[Events.COUNT];
+  private static final boolean[] busy = new boolean[Events.COUNT];
+
   public static void init() {
-    System.out.println("[Pyrium] EventBus initialized.");
-    // Fallback tick loop only until a server bridge installs an external tick source.
-    Thread t = new Thread(() -> {
-      try {
-        long last = System.nanoTime();
-        while (!externalTickSourceAttached) {
-          long now = System.nanoTime();
-          var evt = new Events.Tick(now, (now - last) / 1_000_000.0);
-          last = now;
-          for (var h : tickHandlers) { try { h.onTick(evt); } catch (Throwable ex) { ex.printStackTrace(); } }
-          Thread.sleep(50);
+    System.out.println("[Pyrium] EventBus initialized" + (PARALLEL ? " (parallel, " + THREADS + " workers)." : "."));
+    if (PARALLEL) {
+      workers = Executors.newFixedThreadPool(THREADS, r -> {
+        Thread t = new Thread(r, "PyriumModWorker");
+        t.setDaemon(true);
+        return t;
+      });
+    }
+    // Ticks come from BridgeServer (server scheduler, server-thread hook or TickScheduler)
+  }
+
+  /** True while mod handlers run on the worker pool; decides whether Mods wraps worlds in DeferredWorld. */
+  public static boolean parallel() { return workers != null; }
+
+  /**
+   * Falls back to serial execution before mods are registered, for bridges whose world
+   * reads must not leave the server thread. Lanes registered later run inline.
+   */
+  static void serialOnly(String reason) {
+    var w = workers;
+    if (w == null) return;
+    workers = null;
+    w.shutdown();
+    System.out.println("[Pyrium] Parallel execution disabled: " + reason + ".");
+  }
+
+  // ========= Registration =========
+
+  public static void onTick(TickHandler h) { on(Events.TICK, h::onTick, null); }
+
+  public static <E extends Events.Event> void on(Events.Type<E> type, Handler<? super E> h) { on(type, h, null); }
+
+  public static <E extends Events.Event> void on(Events.Type<E> type, Handler<? super E> h, DeferredWorld buffer) {
+    on(type, h, buffer, null);
+  }
+
+  /**
+   * Registers a mod handler whose world mutations go through buffer (null = direct).
+   * Handlers sharing a buffer belong to one mod and never run concurrently with each other.
+   * All handlers of an owner can be removed again with unregister(owner).
+   */
+  public static <E extends Events.Event> void on(Events.Type<E> type, Handler<? super E> h, DeferredWorld buffer, Object owner) {
+    new Registrar().on(type, h, buffer, owner).commit();
+  }
+
+  /**
+   * Subscribes h to all events of source raised during a tick, delivered once per tick as a
+   * columnar Events.Batch before the tick handlers run. With coalesce, only the latest event
+   * per key is kept.
+   */
+  public static void onBatch(Events.Type<?> source, Handler<Events.Batch> h, DeferredWorld buffer, boolean coalesce) {
+    onBatch(source, h, buffer, coalesce, null);
+  }
+
+  public static void onBatch(Events.Type<?> source, Handler<Events.Batch> h, DeferredWorld buffer, boolean coalesce, Object owner) {
+    new Registrar().onBatch(source, h, buffer, coalesce, owner).commit();
+  }
+
+  /**
+   * Collects registrations and publishes them with one copy of the handler tables on
+   * commit(), instead of one copy per handler. Used to register all mods at boot.
+   */
+  public static final class Registrar {
+    private record Pending(Events.Type<?> type, Sub sub, boolean batch, boolean coalesce) {}
+    private final ArrayList<Pending> pending = new ArrayList<>();
+
+    @SuppressWarnings("unchecked")
+    public <E extends Events.Event> Registrar on(Events.Type<E> type, Handler<? super E> h, DeferredWorld buffer, Object owner) {
+      pending.add(new Pending(type, new Sub((Handler<Events.Event>) h, buffer, owner), false, false));
+      return this;
+    }
+
+    public Registrar onBatch(Events.Type<?> source, Handler<Events.Batch> h, DeferredWorld buffer, boolean coalesce, Object owner) {
+      if (source == Events.TICK) throw new IllegalArgumentException("tick events cannot be batched");
+      @SuppressWarnings("unchecked") var handler = (Handler<Events.Event>) (Handler<?>) h;
+      pending.add(new Pending(source, new Sub(handler, buffer, owner), true, coalesce));
+      return this;
+    }
+
+    public int size() { return pending.size(); }
+
+    public void commit() {
+      synchronized (EventBus.class) {
+        Sub[][] all = subs.clone();
+        Collector[] cs = collectors.clone();
+        Lane[] lanes = tickLanes;
+        for (var p : pending) {
+          if (p.batch()) {
+            int i = p.type().id * 2 + (p.coalesce() ? 1 : 0);
+            if (cs[i] == null) cs[i] = new Collector(p.type(), p.coalesce());
+            cs[i] = cs[i].with(append(cs[i].subs, p.sub()));
+          } else {
+            all[p.type().id] = append(all[p.type().id], p.sub());
+            if (p.type() == Events.TICK && p.sub().buffer() != null) lanes = withLane(lanes, p.sub());
+          }
         }
-      } catch (InterruptedException ignored) {}
-    }, "PyriumFallbackTick");
-    t.setDaemon(true);
-    t.start();
+        subs = all;
+        collectors = cs;
+        tickLanes = lanes;
+      }
+      pending.clear();
+    }
+  }
+
+  private static Sub[] append(Sub[] hs, Sub s) {
+    Sub[] next = Arrays.copyOf(hs, hs.length + 1);
+    next[hs.length] = s;
+    return next;
+  }
+
+  /** lanes with sub added to its buffer's lane; copies instead of changing published Lanes. */
+  private static Lane[] withLane(Lane[] lanes, Sub sub) {
+    for (int i = 0; i < lanes.length; i++) {
+      if (lanes[i].buffer == sub.buffer()) {
+        Lane[] next = lanes.clone();
+        next[i] = new Lane(sub.buffer(), append(lanes[i].handlers, sub));
+        return next;
+      }
+    }
+    Lane[] next = Arrays.copyOf(lanes, lanes.length + 1);
+    next[lanes.length] = new Lane(sub.buffer(), new Sub[] { sub });
+    return next;
+  }
+
+  /** Removes every handler, batch subscription and tick lane registered with owner. */
+  public static synchronized void unregister(Object owner) {
+    if (owner == null) return;
+    Sub[][] all = subs.clone();
+    for (int id = 0; id < all.length; id++) all[id] = without(all[id], owner);
+    subs = all;
+
+    Collector[] cs = collectors.clone();
+    for (int i = 0; i < cs.length; i++) {
+      if (cs[i] == null) continue;
+      Sub[] hs = without(cs[i].subs, owner);
+      cs[i] = hs.length == 0 ? null : hs == cs[i].subs ? cs[i] : cs[i].with(hs);
+    }
+    collectors = cs;
+
+    var lanes = new ArrayList<Lane>();
+    for (var lane : tickLanes) {
+      Sub[] hs = without(lane.handlers, owner);
+      if (hs.length == 0) continue;
+      lanes.add(hs == lane.handlers ? lane : new Lane(lane.buffer, hs));
+    }
+    tickLanes = lanes.toArray(new Lane[0]);
+  }
+
+  private static Sub[] without(Sub[] hs, Object owner) {
+    int keep = 0;
+    for (var s : hs) if (s.owner() != owner) keep++;
+    if (keep == hs.length) return hs;
+    Sub[] out = new Sub[keep];
+    int k = 0;
+    for (var s : hs) if (s.owner() != owner) out[k++] = s;
+    return out;
+  }
+
+  /**
+   * Runs task on the tick thread at the start of the next tick, before any handler.
+   * Used to swap registrations atomically with respect to event dispatch.
+   */
+  public static void atTickBoundary(Runnable task) { boundaryTasks.add(task); }
+
+  /** Lets event sources skip building events nobody listens to. */
+  public static boolean hasSubscribers(Events.Type<?> type) {
+    Collector[] cs = collectors;
+    return subs[type.id].length != 0 || cs[type.id * 2] != null || cs[type.id * 2 + 1] != null;
   }
 
-  public static void attachExternalTickSource() { externalTickSourceAttached = true; }
+  // ========= Dispatch =========
 
-  public static void onTick(TickHandler h) { tickHandlers.add(h); }
+  private static void invoke(Sub s, Events.Event e) {
+    try { s.handler().on(e); } catch (Throwable ex) { ex.printStackTrace(); }
+  }
+
+  /** Dispatches one server tick; dt is measured from the previous tick (see Diagnostics.Ticks). */
+  public static void dispatchTick(long nowNanos) {
+    dispatchTick(nowNanos, Diagnostics.Ticks.record(nowNanos));
+  }
 
   public static void dispatchTick(long nowNanos, double dtMillis) {
-    var evt = new Events.Tick(nowNanos, dtMillis);
-    for (var h : tickHandlers) { try { h.onTick(evt); } catch (Throwable ex) { ex.printStackTrace(); } }
+    for (Runnable task; (task = boundaryTasks.poll()) != null; ) {
+      try { task.run(); } catch (Throwable ex) { ex.printStackTrace(); }
+    }
+    deliverBatches(nowNanos);
+    Sub[] hs = subs[Events.TICK.id];
+    if (hs.length == 0) return;
+    var evt = tick.set(nowNanos, dtMillis);
+    var pool = workers;
+    if (pool == null) { dispatch(hs, evt); return; }
+
+    // Unbuffered handlers first, then all lanes in parallel; buffers are applied at the
+    // barrier in deterministic mod order
+    for (var s : hs) if (s.buffer() == null) invoke(s, evt);
+    Lane[] lanes = tickLanes;
+    if (lanes.length == 0) return;
+    for (var lane : lanes) lane.evt = evt;
+    try {
+      for (var f : pool.invokeAll(Arrays.asList(lanes))) {
+        try { f.get(); } catch (ExecutionException ex) { ex.getCause().printStackTrace(); }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    for (var lane : lanes) lane.buffer.flush();
+  }
+
+  private static void dispatch(Sub[] hs, Events.Event e) {
+    for (var s : hs) {
+      invoke(s, e);
+      if (s.buffer() != null) s.buffer().flush();
+    }
+  }
+
+  private static void deliverBatches(long nowNanos) {
+    for (var c : collectors) {
+      if (c == null) continue;
+      var batch = c.swap();
+      if (batch.size() == 0) continue;
+      batch.nowNanos = nowNanos;
+      try { dispatch(c.subs, batch); }
+      finally { batch.clear(); }
+    }
+  }
+
+  private static void collect(Events.Type<?> type, long key, String player, String id, double x, double y, double z) {
+    Collector[] cs = collectors;
+    var raw = cs[type.id * 2];
+    var latest = cs[type.id * 2 + 1];
+    if (raw != null) raw.add(key, player, id, x, y, z);
+    if (latest != null) latest.add(key, player, id, x, y, z);
+  }
+
+  /** Takes the pooled event for type, or a fresh one if a dispatch of that type is already running. */
+  @SuppressWarnings("unchecked")
+  private static <E extends Events.Event> E acquire(Events.Type<E> type, java.util.function.Function<Events.Type<E>, E> factory) {
+    int id = type.id;
+    if (busy[id]) return factory.apply(type);
+    busy[id] = true;
+    var e = (E) pooled[id];
+    if (e == null) pooled[id] = e = factory.apply(type);
+    e.nowNanos = System.nanoTime();
+    return e;
+  }
+
+  private static void fire(Events.Event e) {
+    int id = e.type.id;
+    try { dispatch(subs[id], e); }
+    finally { if (pooled[id] == e) busy[id] = false; }
+  }
+
+  // ========= Event sources (called by server bridges on the server thread) =========
+
+  public static void raiseEntitySpawn(long entityId, String entityType, double x, double y, double z) {
+    raiseEntity(Events.ENTITY_SPAWN, entityId, entityType, x, y, z);
+  }
+
+  public static void raiseEntityDeath(long entityId, String entityType, double x, double y, double z) {
+    raiseEntity(Events.ENTITY_DEATH, entityId, entityType, x, y, z);
+  }
+
+  private static void raiseEntity(Events.Type<Events.EntityEvent> type, long entityId, String entityType, double x, double y, double z) {
+    collect(type, entityId, null, entityType, x, y, z);
+    if (subs[type.id].length == 0) return;
+    var e = acquire(type, Events.EntityEvent::new);
+    e.entityId = entityId; e.entityType = entityType; e.x = x; e.y = y; e.z = z;
+    fire(e);
+  }
+
+  public static void raisePlayerJoin(String player) { raisePlayer(Events.PLAYER_JOIN, player); }
+  public static void raisePlayerQuit(String player) { raisePlayer(Events.PLAYER_QUIT, player); }
+
+  private static void raisePlayer(Events.Type<Events.PlayerEvent> type, String player) {
+    collect(type, 0, player, null, 0, 0, 0);
+    if (subs[type.id].length == 0) return;
+    var e = acquire(type, Events.PlayerEvent::new);
+    e.player = player;
+    fire(e);
+  }
+
+  public static void raiseChat(String player, String message) { raiseChat(Events.CHAT, player, message); }
+  public static void raiseCommand(String player, String command) { raiseChat(Events.COMMAND, player, command); }
+
+  private static void raiseChat(Events.Type<Events.ChatEvent> type, String player, String message) {
+    collect(type, 0, player, message, 0, 0, 0);
+    if (subs[type.id].length == 0) return;
+    var e = acquire(type, Events.ChatEvent::new);
+    e.player = player; e.message = message;
+    fire(e);
+  }
+
+  public static void raiseBlockPlace(String player, String block, int x, int y, int z) { raiseBlock(Events.BLOCK_PLACE, player, block, x, y, z); }
+  public static void raiseBlockBreak(String player, String block, int x, int y, int z) { raiseBlock(Events.BLOCK_BREAK, player, block, x, y, z); }
+  public static void raiseInteract(String player, String block, int x, int y, int z) { raiseBlock(Events.INTERACT, player, block, x, y, z); }
+
+  private static void raiseBlock(Events.Type<Events.BlockEvent> type, String player, String block, int x, int y, int z) {
+    collect(type, BlockPos.pack(x, y, z), player, block, x, y, z);
+    if (subs[type.id].length == 0) return;
+    var e = acquire(type, Events.BlockEvent::new);
+    e.player = player; e.block = block; e.x = x; e.y = y; e.z = z;
+    fire(e);
+  }
+
+  public static void raiseCraft(String player, String item) {
+    collect(Events.CRAFT, 0, player, item, 0, 0, 0);
+    if (subs[Events.CRAFT.id].length == 0) return;
+    var e = acquire(Events.CRAFT, Events.CraftEvent::new);
+    e.player = player; e.item = item;
+    fire(e);
   }
 }
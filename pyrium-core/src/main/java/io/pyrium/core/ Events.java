@@ -1,5 +1,190 @@
 package io.pyrium.core;
 
+import java.util.*;
+
 public final class Events {
-  public record Tick(long nowNanos, double dtMillis) {}
+
+  /** Typed key of an event; id is the offset of its ON_* opcode from ON_TICK (330). */
+  public static final class Type<E extends Event> {
+    public final int id;
+    public final String handlerName;
+    private Type(int id, String handlerName) { this.id = id; this.handlerName = handlerName; }
+    @Override public String toString() { return handlerName; }
+  }
+
+  private static final List<Type<?>> TYPES = new ArrayList<>();
+  private static <E extends Event> Type<E> type(String handlerName) {
+    var t = new Type<E>(TYPES.size(), handlerName);
+    TYPES.add(t);
+    return t;
+  }
+
+  public static final Type<Tick> TICK = type("on_tick");
+  public static final Type<EntityEvent> ENTITY_SPAWN = type("on_entity_spawn");
+  public static final Type<EntityEvent> ENTITY_DEATH = type("on_entity_death");
+  public static final Type<PlayerEvent> PLAYER_JOIN = type("on_player_join");
+  public static final Type<PlayerEvent> PLAYER_QUIT = type("on_player_quit");
+  public static final Type<ChatEvent> CHAT = type("on_chat");
+  public static final Type<ChatEvent> COMMAND = type("on_command");
+  public static final Type<BlockEvent> BLOCK_PLACE = type("on_block_place");
+  public static final Type<BlockEvent> BLOCK_BREAK = type("on_block_break");
+  public static final Type<BlockEvent> INTERACT = type("on_interact");
+  public static final Type<CraftEvent> CRAFT = type("on_craft");
+
+  public static final int COUNT = TYPES.size();
+
+  public static Type<?> byId(int id) { return TYPES.get(id); }
+
+  /** Event type for a mod function name such as "on_player_join", or null. */
+  public static Type<?> byHandlerName(String fnName) {
+    for (var t : TYPES) if (t.handlerName.equals(fnName)) return t;
+    return null;
+  }
+
+  // ========= Event objects =========
+  // Events are mutable and reused by EventBus per dispatch; handlers must not keep references.
+
+  public abstract static class Event {
+    final Type<?> type;
+    long nowNanos;
+    Event(Type<?> type) { this.type = type; }
+    public Type<?> type() { return type; }
+    public long nowNanos() { return nowNanos; }
+  }
+
+  public static final class Tick extends Event {
+    double dtMillis;
+    public Tick(long nowNanos, double dtMillis) { super(TICK); set(nowNanos, dtMillis); }
+    Tick set(long nowNanos, double dtMillis) { this.nowNanos = nowNanos; this.dtMillis = dtMillis; return this; }
+    public double dtMillis() { return dtMillis; }
+  }
+
+  public static final class EntityEvent extends Event {
+    long entityId; String entityType; double x, y, z;
+    EntityEvent(Type<EntityEvent> type) { super(type); }
+    public long entityId() { return entityId; }
+    public String entityType() { return entityType; }
+    public double x() { return x; }
+    public double y() { return y; }
+    public double z() { return z; }
+  }
+
+  public static final class PlayerEvent extends Event {
+    String player;
+    PlayerEvent(Type<PlayerEvent> type) { super(type); }
+    public String player() { return player; }
+  }
+
+  public static final class ChatEvent extends Event {
+    String player, message;
+    ChatEvent(Type<ChatEvent> type) { super(type); }
+    public String player() { return player; }
+    public String message() { return message; }
+  }
+
+  public static final class BlockEvent extends Event {
+    String player, block; int x, y, z;
+    BlockEvent(Type<BlockEvent> type) { super(type); }
+    public String player() { return player; }
+    public String block() { return block; }
+    public int x() { return x; }
+    public int y() { return y; }
+    public int z() { return z; }
+  }
+
+  /**
+   * All events of one source type raised during a tick, in columnar form. Delivered once per
+   * tick to batch subscribers. With coalescing, only the latest row per key (entity id,
+   * packed block position, player) is kept.
+   */
+  public static final class Batch extends Event {
+    final boolean coalescing;
+    int size;
+    long[] keys = new long[16];
+    String[] players = new String[16], ids = new String[16];
+    double[] xs = new double[16], ys = new double[16], zs = new double[16];
+    private int[] index; // open addressing: key slot -> row + 1
+
+    Batch(Type<?> source, boolean coalescing) {
+      super(source);
+      this.coalescing = coalescing;
+      if (coalescing) index = new int[32];
+    }
+
+    public Type<?> source() { return type; }
+    public boolean coalescing() { return coalescing; }
+    public int size() { return size; }
+    public long key(int i) { return keys[i]; }
+    public String player(int i) { return players[i]; }
+    /** Entity type, block id, chat message or item, depending on the source. */
+    public String id(int i) { return ids[i]; }
+    public double x(int i) { return xs[i]; }
+    public double y(int i) { return ys[i]; }
+    public double z(int i) { return zs[i]; }
+
+    /** Own rows for a handler that continues after delivery, when this batch is cleared and reused. */
+    Batch copy() {
+      var c = new Batch(type, false);
+      c.size = size;
+      c.keys = Arrays.copyOf(keys, size);
+      c.players = Arrays.copyOf(players, size); c.ids = Arrays.copyOf(ids, size);
+      c.xs = Arrays.copyOf(xs, size); c.ys = Arrays.copyOf(ys, size); c.zs = Arrays.copyOf(zs, size);
+      return c;
+    }
+
+    void add(long key, String player, String id, double x, double y, double z) {
+      int row = coalescing ? find(key, player) : -1;
+      if (row < 0) {
+        if (size == keys.length) grow();
+        row = size++;
+        if (coalescing) insert(key, player, row);
+      }
+      keys[row] = key; players[row] = player; ids[row] = id;
+      xs[row] = x; ys[row] = y; zs[row] = z;
+    }
+
+    void clear() {
+      Arrays.fill(players, 0, size, null);
+      Arrays.fill(ids, 0, size, null);
+      if (coalescing) Arrays.fill(index, 0);
+      size = 0;
+    }
+
+    private void grow() {
+      int n = keys.length * 2;
+      keys = Arrays.copyOf(keys, n);
+      players = Arrays.copyOf(players, n); ids = Arrays.copyOf(ids, n);
+      xs = Arrays.copyOf(xs, n); ys = Arrays.copyOf(ys, n); zs = Arrays.copyOf(zs, n);
+      if (coalescing) {
+        index = new int[n * 2];
+        for (int r = 0; r < size; r++) insert(keys[r], players[r], r);
+      }
+    }
+
+    private int slot(long key, String player) {
+      long h = key * 0x9E3779B97F4A7C15L + (player == null ? 0 : player.hashCode());
+      return (int) (h ^ (h >>> 32)) & (index.length - 1);
+    }
+
+    private int find(long key, String player) {
+      for (int i = slot(key, player); index[i] != 0; i = (i + 1) & (index.length - 1)) {
+        int r = index[i] - 1;
+        if (keys[r] == key && Objects.equals(players[r], player)) return r;
+      }
+      return -1;
+    }
+
+    private void insert(long key, String player, int row) {
+      int i = slot(key, player);
+      while (index[i] != 0) i = (i + 1) & (index.length - 1);
+      index[i] = row + 1;
+    }
+  }
+
+  public static final class CraftEvent extends Event {
+    String player, item;
+    CraftEvent(Type<CraftEvent> type) { super(type); }
+    public String player() { return player; }
+    public String item() { return item; }
+  }
 }
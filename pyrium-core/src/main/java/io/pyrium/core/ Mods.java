@@ -4,26 +4,201 @@ import io.pyrium.bootstrap.RuntimeLayout;
 import java.io.IOException;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class Mods {
 
+  // -Dpyrium.reload=false: no watching of modsDir for changed .pybc files
+  static final boolean RELOAD = !"false".equalsIgnoreCase(System.getProperty("pyrium.reload", "true"));
+  // -Dpyrium.reload.migrate=false: reloaded mods start with fresh variables
+  static final boolean MIGRATE = !"false".equalsIgnoreCase(System.getProperty("pyrium.reload.migrate", "true"));
+
+  /** A loaded .pybc file; also the EventBus owner of its handlers. */
+  static final class LoadedMod {
+    final Path file;
+    final PyBCModule mod;
+    final PyBCRuntime vm;
+    final DeferredWorld buffer;
+    LoadedMod(Path file, PyBCModule mod, PyBCRuntime vm, DeferredWorld buffer) {
+      this.file = file; this.mod = mod; this.vm = vm; this.buffer = buffer;
+    }
+  }
+
+  /** A parsed and linked module with its opened VarStore (null: not persisted), ready for registration. */
+  record Parsed(Path file, PyBCModule mod, VarStore store) {}
+
+  private static final Map<Path, LoadedMod> loaded = new ConcurrentHashMap<>();
+  private static volatile PyBCRuntime.WorldFacade world;
+  // persistent variables per mod file, kept across hot reloads (VarStore); boot and watcher thread only
+  private static final Map<Path, VarStore> stores = new ConcurrentHashMap<>();
+  // stores of deleted mod files until the tick has unloaded them; a file that comes back takes its store back
+  private static final Map<Path, VarStore> retiring = new ConcurrentHashMap<>();
+  private static volatile Path dataDir;
+  private static volatile Path modsDir;
+
   public static void loadAll(RuntimeLayout rt) throws IOException {
-    System.out.println("[Pyrium] Loading .pybc mods from " + rt.modsDir());
+    registerAll(readAll(rt), rt);
+    startReloader(rt);
+  }
 
-    var world = new DemoWorld(); // Replace with actual server bridge
+  /**
+   * Parses every .pybc under modsDir in parallel (fork-join common pool). Broken modules are
+   * reported and skipped. Functions are linked on their first call, so a function that fails
+   * to link is reported then and disabled. The result is in path order, so the registration
+   * order does not depend on thread timing.
+   */
+  static List<Parsed> readAll(RuntimeLayout rt) throws IOException {
+    System.out.println("[Pyrium] Loading .pybc mods from " + rt.modsDir());
+    modsDir = key(rt.modsDir());
+    if (VarStore.PERSIST) dataDir = rt.dataDir();
+    List<Path> files;
     try (var stream = Files.walk(rt.modsDir())) {
-      stream.filter(p -> p.toString().endsWith(".pybc")).forEach(p -> {
-        try {
-          var mod = PyBCModule.read(p);
-          var vm = new PyBCRuntime(world, mod.pool);
-          var tickFn = mod.functions.get("on_tick");
-          if (tickFn != null) {
-            EventBus.onTick(evt -> vm.executeTick(tickFn, evt));
-            System.out.println("[Pyrium] Registered tick from mod " + mod.moduleName + " (" + p.getFileName() + ")");
-          }
-        } catch (Exception e) { e.printStackTrace(); }
-      });
+      files = stream.filter(p -> p.toString().endsWith(".pybc")).sorted().toList();
     }
+    return files.parallelStream().map(p -> {
+      try {
+        var mod = PyBCModule.read(p);
+        return new Parsed(key(p), mod, store(key(p)));
+      } catch (Exception e) {
+        System.err.println("[Pyrium] Failed to load " + p + ": " + e.getMessage());
+        return null;
+      }
+    }).filter(Objects::nonNull).toList();
+  }
+
+  /** Creates the VMs and publishes all handlers in one EventBus update. */
+  static void registerAll(List<Parsed> mods, RuntimeLayout rt) {
+    if (world == null) world = BridgeServer.world();
+    if (world == null) world = new DemoWorld(); // vanilla: no server bridge yet
+    var reg = new EventBus.Registrar();
+    for (var p : mods) install(p.file(), p.mod(), p.store(), reg);
+    reg.commit();
+  }
+
+  static void startReloader(RuntimeLayout rt) {
+    if (RELOAD) ModReloader.start(rt.modsDir());
+  }
+
+  static Path key(Path file) { return file.toAbsolutePath().normalize(); }
+
+  /**
+   * Checks that every function of mod links, without keeping the result (watcher thread). A
+   * reloaded function that fails to link would replace a working one, so the whole module
+   * counts as broken.
+   */
+  static void checkLinks(PyBCModule mod) throws IOException {
+    var broken = new ArrayList<String>();
+    for (var fn : mod.functions.values()) {
+      String err = fn.linkError();
+      if (err != null) broken.add(fn.name + " (" + err + ")");
+    }
+    if (!broken.isEmpty()) throw new IOException("functions failed to link: " + String.join(", ", broken));
+  }
+
+  /**
+   * The mod's VarStore, opened on first use; null without persistence or if it cannot be
+   * opened. Reads files, so only off the tick thread (readAll, ModReloader).
+   */
+  static VarStore store(Path file) {
+    if (dataDir == null) return null;
+    var store = stores.get(file);
+    if (store == null) store = retiring.remove(file);
+    if (store != null) {
+      stores.put(file, store);
+      return store;
+    }
+    try {
+      store = VarStore.open(dataDir, storeName(modsDir, file));
+      stores.put(file, store);
+      return store;
+    } catch (IOException e) {
+      System.err.println("[Pyrium] Cannot open variable store for " + file.getFileName() + ": " + e.getMessage() + " (variables not persisted)");
+      return null;
+    }
+  }
+
+  /**
+   * mods/economy/mod.pybc -> "economy-<hash>", mods/foo.pybc -> "foo-<hash>"; file-name safe,
+   * no dots. The hash covers the path below modsDir with '/' separators, so "my.mod" and
+   * "my_mod" or mods/a/foo.pybc and mods/b/foo.pybc never share a store.
+   */
+  static String storeName(Path modsDir, Path file) {
+    String f = file.getFileName().toString();
+    String n = f.equals("mod.pybc") && file.getParent() != null ? file.getParent().getFileName().toString() : f.substring(0, f.length() - ".pybc".length());
+    String rel = key(modsDir).relativize(key(file)).toString().replace(file.getFileSystem().getSeparator(), "/");
+    return n.replaceAll("[^A-Za-z0-9_-]", "_") + "-" + String.format("%08x", rel.hashCode());
+  }
+
+  /**
+   * The mod file was deleted (watcher thread): unloads it at the next tick boundary, then
+   * hands its store to the writer thread for closing, unless the file came back meanwhile.
+   */
+  static void unload(Path file) {
+    var store = stores.remove(file);
+    if (store != null) retiring.put(file, store);
+    EventBus.atTickBoundary(() -> {
+      swap(file, null, null);
+      // commit and close on the writer thread: file I/O has no place in the tick
+      if (store != null && retiring.remove(file, store)) store.closeLater();
+    });
+  }
+
+  /**
+   * Replaces the mod loaded from file by mod (null = unload) with the store opened for it
+   * by store(file). Runs on the tick thread, see ModReloader; the old handlers are gone
+   * before the new ones see their first event.
+   */
+  static void swap(Path file, PyBCModule mod, VarStore store) {
+    var old = loaded.remove(file);
+    if (old != null) EventBus.unregister(old);
+    if (mod == null) {
+      if (old != null) System.out.println("[Pyrium] Unloaded mod " + old.mod.moduleName + " (" + file.getFileName() + ")");
+      return;
+    }
+    var reg = new EventBus.Registrar();
+    var next = install(file, mod, store, reg);
+    if (old != null && MIGRATE) next.vm.migrateFrom(old.vm);
+    reg.commit();
+    System.out.println("[Pyrium] " + (old != null ? "Reloaded" : "Loaded") + " mod " + mod.moduleName + " (" + file.getFileName() + ")");
+  }
+
+  private static LoadedMod install(Path file, PyBCModule mod, VarStore store, EventBus.Registrar reg) {
+    // parallel mode: mutations are buffered per mod and applied at the tick barrier
+    var buffer = EventBus.parallel() ? new DeferredWorld(world) : null;
+    var vm = new PyBCRuntime(buffer != null ? buffer : world, mod);
+    if (store != null) vm.attachStore(store);
+    var m = new LoadedMod(file, mod, vm, buffer);
+    boolean hasEventHandlers = false;
+    for (var fn : mod.functions.values()) {
+      if (!fn.name.startsWith("on_")) continue;
+      // on_<event>_batch: all events of a tick at once; on_<event>_latest: coalesced per key
+      boolean batch = fn.name.endsWith("_batch"), latest = fn.name.endsWith("_latest");
+      if (batch || latest) {
+        var source = Events.byHandlerName(fn.name.substring(0, fn.name.lastIndexOf('_')));
+        if (source == null || source == Events.TICK) {
+          System.out.println("[Pyrium] Unknown batch handler " + fn.name + " in mod " + mod.moduleName + " (ignored)");
+          continue;
+        }
+        reg.onBatch(source, e -> vm.execute(fn, e), buffer, latest, m);
+        hasEventHandlers = true;
+        System.out.println("[Pyrium] Registered " + fn.name + " from mod " + mod.moduleName + " (" + file.getFileName() + ")");
+        continue;
+      }
+      var type = Events.byHandlerName(fn.name);
+      if (type == null) {
+        System.out.println("[Pyrium] Unknown event handler " + fn.name + " in mod " + mod.moduleName + " (ignored)");
+        continue;
+      }
+      reg.on(type, e -> vm.execute(fn, e), buffer, m);
+      hasEventHandlers |= type != Events.TICK;
+      System.out.println("[Pyrium] Registered " + fn.name + " from mod " + mod.moduleName + " (" + file.getFileName() + ")");
+    }
+    // suspended (SLEEP/YIELD/over budget) event handlers continue on the tick
+    if (hasEventHandlers) {
+      reg.on(Events.TICK, evt -> { if (vm.hasSuspendedEvents()) vm.resumeSuspended(evt); }, buffer, m);
+    }
+    loaded.put(file, m);
+    return m;
   }
 
   // Demo world extended to satisfy new facade methods
@@ -33,17 +208,75 @@ public final class Mods {
       public double getSpeed(){ return speed; }
       public void setSpeed(double v){ speed = v; }
       public String getName(){ return name; }
+      public void setName(String s){ name = s; }
+      public void teleport(double x, double y, double z){ System.out.println("[Teleport] " + name + " -> " + x + "," + y + "," + z); }
+      final java.util.Set<String> tags = new java.util.HashSet<>();
+      public boolean hasTag(String tag){ return tags.contains(tag); }
+      public void addTag(String tag){ tags.add(tag); }
+      public void removeTag(String tag){ tags.remove(tag); }
     }
-    public java.util.List<PyBCRuntime.EntityFacade> entities(String type) {
-      return java.util.List.of(new Ent(), new Ent(), new Ent());
-    }
+    // three demo zombies near spawn, queried through the EntityIndex
+    final EntityIndex index = new EntityIndex();
+    { for (int i = 0; i < 3; i++) index.add(i + 1, "Zombie", new Ent(), i * 2, 64, 0); }
+    public java.util.List<PyBCRuntime.EntityFacade> entities(String type) { return index.list(type); }
     public java.util.List<PyBCRuntime.EntityFacade> entitiesInRegion(String type, int x1, int y1, int z1, int x2, int y2, int z2) {
-      return entities(type);
+      var out = new java.util.ArrayList<PyBCRuntime.EntityFacade>();
+      index.forEachInRegion(type, x1, y1, z1, x2, y2, z2, out::add);
+      return out;
+    }
+    public int countEntities(String type) { return index.count(type); }
+    public int countEntitiesInRegion(String type, int x1, int y1, int z1, int x2, int y2, int z2) {
+      return index.countInRegion(type, x1, y1, z1, x2, y2, z2);
+    }
+    public void forEachEntity(String type, java.util.function.Consumer<PyBCRuntime.EntityFacade> visitor) { index.forEach(type, visitor); }
+    public void forEachEntityInRegion(String type, int x1, int y1, int z1, int x2, int y2, int z2, java.util.function.Consumer<PyBCRuntime.EntityFacade> visitor) {
+      index.forEachInRegion(type, x1, y1, z1, x2, y2, z2, visitor);
     }
     public void broadcast(String msg) { System.out.println("[Broadcast] " + msg); }
     public void execCommand(String cmd) { System.out.println("[Command] " + cmd); }
+    public void teleportPlayer(String playerName, double x, double y, double z) { System.out.println("[Teleport] " + playerName + " -> " + x + "," + y + "," + z); }
+    // scores in a ScoreTable, printed as commands right away (no tick boundary here)
+    final ScoreTable scores = new ScoreTable(ScoreTable.commands(this::execCommand));
+    public void createObjective(String objective, String criteria) { scores.create(objective, criteria); scores.flush(); }
+    public void removeObjective(String objective) { scores.remove(objective); scores.flush(); }
+    public void setDisplaySlot(String objective, String slot) { scores.display(objective, slot); scores.flush(); }
+    public void setScore(String objective, String entry, int value) { scores.set(objective, entry, value); scores.flush(); }
+    public void addScore(String objective, String entry, int delta) { scores.add(objective, entry, delta); scores.flush(); }
+    public void resetScore(String objective, String entry) { scores.reset(objective, entry); scores.flush(); }
+    public int getScore(String objective, String entry) { return scores.get(objective, entry); }
     public void giveItem(String playerName, String itemId, int count) { System.out.println("[Give] " + playerName + " <- " + itemId + " x" + count); }
     public void nbtSet(PyBCRuntime.EntityFacade e, String path, String value) { System.out.println("[NBT SET] " + e.getName() + " " + path + "=" + value); }
     public String nbtGet(PyBCRuntime.EntityFacade e, String path) { String v = "value"; System.out.println("[NBT GET] " + e.getName() + " " + path + " -> " + v); return v; }
+    public void spawnEntity(String type, double x, double y, double z) { System.out.println("[Spawn] " + type + " @ " + x + "," + y + "," + z); }
+    public void removeEntity(PyBCRuntime.EntityFacade e) { System.out.println("[Remove] " + e.getName()); }
+    public void messagePlayer(String playerName, String msg) { System.out.println("[Msg] " + playerName + ": " + msg); }
+    public void takeItem(String playerName, String itemId, int count) { System.out.println("[Take] " + playerName + " -> " + itemId + " x" + count); }
+    public void setBlock(int x, int y, int z, String blockId) { System.out.println("[Block] " + x + "," + y + "," + z + " = " + blockId); }
+    public void fillRegion(int x1, int y1, int z1, int x2, int y2, int z2, String blockId) {
+      System.out.println("[Fill] " + x1 + "," + y1 + "," + z1 + " .. " + x2 + "," + y2 + "," + z2 + " = " + blockId);
+    }
+    public void replaceRegion(int x1, int y1, int z1, int x2, int y2, int z2, String from, String to) {
+      System.out.println("[Replace] " + x1 + "," + y1 + "," + z1 + " .. " + x2 + "," + y2 + "," + z2 + " " + from + " -> " + to);
+    }
+    public String getBlock(int x, int y, int z) { return "minecraft:air"; }
+    long time = 0;
+    public void setTime(long timeTicks) { time = timeTicks; }
+    public long getTime() { return time; }
+    public void setWeather(String mode) { System.out.println("[Weather] " + mode); }
+    public void setEntityAttr(PyBCRuntime.EntityFacade e, String attr, double value) { System.out.println("[ATTR SET] " + e.getName() + " " + attr + "=" + value); }
+    public double getEntityAttr(PyBCRuntime.EntityFacade e, String attr) { return 0.0; }
+    final Map<String, Long> vars = new ConcurrentHashMap<>();
+    public void setVar(String name, long value) { vars.put(name, value); }
+    public long getVar(String name) { return vars.getOrDefault(name, 0L); }
+    public void registerCustomMob(String mobId, String displayName) { System.out.println("[Mob] register " + mobId + " (" + displayName + ")"); }
+    public void setCustomMobModel(String mobId, String model) { System.out.println("[Mob] " + mobId + " model=" + model); }
+    public void setCustomMobTexture(String mobId, String texture) { System.out.println("[Mob] " + mobId + " texture=" + texture); }
+    public void setCustomMobSize(String mobId, double scale) { System.out.println("[Mob] " + mobId + " size=" + scale); }
+    public void setCustomMobAttr(String mobId, String attr, double value) { System.out.println("[Mob] " + mobId + " " + attr + "=" + value); }
+    public void setCustomMobLootTable(String mobId, String lootTable) { System.out.println("[Mob] " + mobId + " loot=" + lootTable); }
+    public void setCustomMobEquip(String mobId, String slot, String itemId) { System.out.println("[Mob] " + mobId + " " + slot + "=" + itemId); }
+    public void setCustomMobAI(String mobId, String aiProfile) { System.out.println("[Mob] " + mobId + " ai=" + aiProfile); }
+    public void spawnCustomMob(String mobId, int x, int y, int z) { System.out.println("[Mob] spawn " + mobId + " @ " + x + "," + y + "," + z); }
+    public void removeCustomMobs(String mobId) { System.out.println("[Mob] remove " + mobId); }
   }
 }
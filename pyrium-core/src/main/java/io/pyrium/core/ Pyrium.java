@@ -1,15 +1,37 @@
 package io.pyrium.core;
 
 import io.pyrium.bootstrap.RuntimeLayout;
+import io.pyrium.rpb.PackServer;
 import io.pyrium.rpb.ResourcePackBuilder;
+import java.util.concurrent.CompletableFuture;
 
 public final class Pyrium {
   public static void boot(ClassLoader cl, RuntimeLayout rt) throws Exception {
     System.out.println("[Pyrium] Core boot: Event bus, PyBC runtime, mods.");
+    var boot = new Diagnostics.BootTimer();
     EventBus.init();
+    boot.stage("event bus");
     BridgeServer.install(); // attach synchronized tick if possible
-    ResourcePackBuilder.buildIfNeeded(rt); // build assets before mods load
-    Mods.loadAll(rt);
-    Diagnostics.banner(rt);
+    boot.stage("bridge");
+
+    // The resource pack only reads mods/*/assets, so it builds while the modules are parsed
+    var pack = CompletableFuture.runAsync(() -> {
+      long t = System.nanoTime();
+      ResourcePackBuilder.buildIfNeeded(rt);
+      boot.parallel("resource pack", System.nanoTime() - t);
+    }, r -> {
+      Thread t = new Thread(r, "PyriumPackBuilder");
+      t.setDaemon(true);
+      t.start();
+    });
+    var mods = Mods.readAll(rt); // parallel parse + link
+    boot.stage("parse " + mods.size() + " mods");
+    pack.join();
+    boot.stage("pack wait");
+    PackServer.startIfEnabled(rt); // only with -Dpyrium.pack.http=<port>
+    Mods.registerAll(mods, rt); // one EventBus update for all handlers
+    Mods.startReloader(rt);
+    boot.stage("register");
+    Diagnostics.banner(rt, boot);
   }
 }
@@ -0,0 +1,143 @@
+package io.pyrium.core;
+
+import java.util.Arrays;
+
+/**
+ * Read-through cache for block states, keyed by chunk, holding BlockStates ids.
+ *
+ * Polling mods (pressure plates, doors) read the same few blocks every tick; a hit
+ * costs one chunk map probe and one small open-addressing probe instead of a world
+ * lookup and a state-to-string conversion. Entries are dropped by change
+ * notifications from the bridge (invalidate*) and expire after maxAge ticks as a
+ * backstop for changes that notify nothing; maxAge 1 means "valid for this tick
+ * only". Past MAX_ENTRIES the cache is cleared, so region scans cannot grow it
+ * without bound. Not thread-safe.
+ */
+public final class BlockCache {
+  // Höchstalter eines Eintrags in Ticks, wenn die Bridge Änderungen meldet
+  static final int MAX_AGE = Integer.getInteger("pyrium.blocks.cacheTicks", 100);
+  static final int MAX_ENTRIES = Integer.getInteger("pyrium.blocks.cacheSize", 1 << 16);
+  private static final int EMPTY = Integer.MIN_VALUE;
+  private static final long INVALID = Long.MIN_VALUE;
+
+  /** Positions of one chunk: key = local position (y << 8 | z << 4 | x), linear probing. */
+  private static final class Chunk {
+    int[] keys = new int[16];
+    int[] ids = new int[16];
+    long[] stamps = new long[16];
+    int size;
+    Chunk() { Arrays.fill(keys, EMPTY); }
+
+    int slot(int key) {
+      int mask = keys.length - 1;
+      int i = (key * 0x9E3779B1) >>> 16 & mask;
+      while (keys[i] != EMPTY && keys[i] != key) i = (i + 1) & mask;
+      return i;
+    }
+
+    void grow() {
+      int[] k = keys, v = ids;
+      long[] s = stamps;
+      keys = new int[k.length * 2];
+      ids = new int[k.length * 2];
+      stamps = new long[k.length * 2];
+      Arrays.fill(keys, EMPTY);
+      for (int j = 0; j < k.length; j++) {
+        if (k[j] == EMPTY) continue;
+        int i = slot(k[j]);
+        keys[i] = k[j]; ids[i] = v[j]; stamps[i] = s[j];
+      }
+    }
+  }
+
+  private final LongMap<Chunk> chunks = new LongMap<>();
+  private final int maxAge;
+  private Chunk last;
+  private long lastKey = Long.MIN_VALUE;
+  private long tick, entries;
+  private long hits, misses, invalidations;
+
+  public BlockCache(int maxAge) { this.maxAge = Math.max(1, maxAge); }
+
+  private static long chunkKey(int cx, int cz) { return ((long) cx << 32) | (cz & 0xFFFFFFFFL); }
+  private static int local(int x, int y, int z) { return y << 8 | (z & 15) << 4 | (x & 15); }
+
+  private Chunk chunk(int cx, int cz, boolean create) {
+    long k = chunkKey(cx, cz);
+    if (k == lastKey) return last;
+    var c = chunks.get(k);
+    if (c == null) {
+      if (!create) return null;
+      chunks.put(k, c = new Chunk());
+    }
+    lastKey = k;
+    return last = c;
+  }
+
+  /** Advances the clock; called once per server tick. */
+  public void tick() { tick++; }
+
+  /** The cached state id at x, y, z, or -1. */
+  public int get(int x, int y, int z) {
+    var c = chunk(x >> 4, z >> 4, false);
+    if (c != null) {
+      int i = c.slot(local(x, y, z));
+      long stamp = c.stamps[i];
+      if (c.keys[i] != EMPTY && stamp != INVALID && tick - stamp < maxAge) { hits++; return c.ids[i]; }
+    }
+    misses++;
+    return -1;
+  }
+
+  public void put(int x, int y, int z, int id) {
+    if (entries >= MAX_ENTRIES) clear();
+    var c = chunk(x >> 4, z >> 4, true);
+    if ((c.size + 1) * 2 > c.keys.length) c.grow();
+    int key = local(x, y, z), i = c.slot(key);
+    if (c.keys[i] == EMPTY) { c.keys[i] = key; c.size++; entries++; }
+    c.ids[i] = id;
+    c.stamps[i] = tick;
+  }
+
+  /** x, y, z changed; the slot stays as a tombstone until the position is cached again. */
+  public void invalidate(int x, int y, int z) {
+    var c = chunk(x >> 4, z >> 4, false);
+    if (c == null) return;
+    int i = c.slot(local(x, y, z));
+    if (c.keys[i] != EMPTY && c.stamps[i] != INVALID) { c.stamps[i] = INVALID; invalidations++; }
+  }
+
+  /** x, y, z and its six neighbours (door halves, shapes of connecting blocks). */
+  public void invalidateAround(int x, int y, int z) {
+    invalidate(x, y, z);
+    invalidate(x - 1, y, z); invalidate(x + 1, y, z);
+    invalidate(x, y - 1, z); invalidate(x, y + 1, z);
+    invalidate(x, y, z - 1); invalidate(x, y, z + 1);
+  }
+
+  public void invalidateChunk(int cx, int cz) {
+    var c = chunks.remove(chunkKey(cx, cz));
+    if (c == null) return;
+    entries -= c.size;
+    invalidations += c.size;
+    lastKey = Long.MIN_VALUE; last = null;
+  }
+
+  public void clear() {
+    chunks.clear();
+    entries = 0;
+    lastKey = Long.MIN_VALUE; last = null;
+  }
+
+  public int maxAge() { return maxAge; }
+  public long hits() { return hits; }
+  public long misses() { return misses; }
+  public long invalidations() { return invalidations; }
+  public long entries() { return entries; }
+
+  public String summary() {
+    long n = hits + misses;
+    return hits + " hits, " + misses + " misses (" + (n == 0 ? 0 : hits * 100 / n) + "% hit), "
+      + invalidations + " invalidations, " + entries + " entries";
+  }
+}
@@ -0,0 +1,250 @@
+package io.pyrium.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Block changes of one tick, grouped by chunk section (16x16x16) and applied in bulk.
+ *
+ * Each touched section keeps a small palette of block ids and one of three forms:
+ * - sparse: up to SPARSE_MAX (local index, palette entry) pairs, for scattered set_block
+ * - dense: a short[4096] of palette entries (0 = unchanged)
+ * - uniform: the whole section is one palette entry, no array (a fill covering it)
+ * so resetting an arena costs a few bytes per section instead of one entry per block.
+ * The last write per position wins, also across fills.
+ *
+ * apply() visits the sections ordered by chunk, then section y: a facade looks each chunk
+ * up once, and the server sends the changes of one section as one multi-block-change
+ * packet. Not thread-safe.
+ */
+public final class BlockEdits {
+  static final int SPARSE_MAX = 64;
+  // Größte Region für fill/replace in Blöcken; mehr wird beim Linken abgelehnt
+  static final long MAX_REGION = Long.getLong("pyrium.blocks.maxRegion", 1L << 24);
+
+  /** Receives the changes; edge = a neighbour of the position is not part of this batch. */
+  public interface Sink {
+    default void section(int sx, int sy, int sz) {}
+    void set(int x, int y, int z, String blockId, boolean edge);
+  }
+
+  private static final class Section {
+    final int sx, sy, sz;
+    String[] palette = new String[2];
+    int paletteSize;
+    int uniform = -1;
+    int[] sparse; // (local index << 16) | entry
+    int sparseCount;
+    short[] dense; // entry + 1, 0 = unchanged
+
+    Section(int sx, int sy, int sz) { this.sx = sx; this.sy = sy; this.sz = sz; }
+
+    int entry(String id) {
+      for (int i = 0; i < paletteSize; i++) if (palette[i] == id || palette[i].equals(id)) return i;
+      if (paletteSize == palette.length) palette = Arrays.copyOf(palette, paletteSize * 2);
+      palette[paletteSize] = id;
+      return paletteSize++;
+    }
+
+    void set(int local, int e) {
+      if (uniform >= 0) toDense();
+      if (dense != null) { dense[local] = (short) (e + 1); return; }
+      if (sparse == null) sparse = new int[8];
+      for (int i = 0; i < sparseCount; i++) {
+        if (sparse[i] >>> 16 == local) { sparse[i] = local << 16 | e; return; }
+      }
+      if (sparseCount == SPARSE_MAX) { toDense(); dense[local] = (short) (e + 1); return; }
+      if (sparseCount == sparse.length) sparse = Arrays.copyOf(sparse, sparseCount * 2);
+      sparse[sparseCount++] = local << 16 | e;
+    }
+
+    /** -1 = unchanged */
+    int get(int local) {
+      if (uniform >= 0) return uniform;
+      if (dense != null) return dense[local] - 1;
+      for (int i = 0; i < sparseCount; i++) if (sparse[i] >>> 16 == local) return sparse[i] & 0xFFFF;
+      return -1;
+    }
+
+    void fillAll(String id) {
+      palette = new String[]{ id, null };
+      paletteSize = 1;
+      uniform = 0;
+      dense = null; sparse = null; sparseCount = 0;
+    }
+
+    void toDense() {
+      dense = new short[4096];
+      if (uniform >= 0) Arrays.fill(dense, (short) (uniform + 1));
+      for (int i = 0; i < sparseCount; i++) dense[sparse[i] >>> 16] = (short) ((sparse[i] & 0xFFFF) + 1);
+      uniform = -1; sparse = null; sparseCount = 0;
+    }
+
+    int count() { return uniform >= 0 ? 4096 : dense != null ? denseCount() : sparseCount; }
+
+    private int denseCount() {
+      int n = 0;
+      for (short s : dense) if (s != 0) n++;
+      return n;
+    }
+  }
+
+  private final LongMap<Section> sections = new LongMap<>();
+  // zuletzt benutzter Abschnitt: set_block-Folgen treffen meist denselben
+  private Section last;
+
+  private static long key(int sx, int sy, int sz) {
+    return ((long) sx << 40) ^ ((long) (sz & 0xFFFFFF) << 16) ^ (sy & 0xFFFF);
+  }
+
+  private static int local(int x, int y, int z) { return (y & 15) << 8 | (z & 15) << 4 | (x & 15); }
+
+  private Section section(int sx, int sy, int sz, boolean create) {
+    var s = last;
+    if (s != null && s.sx == sx && s.sy == sy && s.sz == sz) return s;
+    long k = key(sx, sy, sz);
+    s = sections.get(k);
+    if (s == null) {
+      if (!create) return null;
+      sections.put(k, s = new Section(sx, sy, sz));
+    }
+    return last = s;
+  }
+
+  public boolean isEmpty() { return sections.size() == 0; }
+
+  public void set(int x, int y, int z, String blockId) {
+    var s = section(x >> 4, y >> 4, z >> 4, true);
+    s.set(local(x, y, z), s.entry(blockId));
+  }
+
+  /** The queued block at x, y, z, or null if this batch does not change it. */
+  public String get(int x, int y, int z) {
+    var s = section(x >> 4, y >> 4, z >> 4, false);
+    if (s == null) return null;
+    int e = s.get(local(x, y, z));
+    return e < 0 ? null : s.palette[e];
+  }
+
+  /** Sets every block of the box (corners inclusive, any order). */
+  public void fill(int x1, int y1, int z1, int x2, int y2, int z2, String blockId) {
+    int ax = Math.min(x1, x2), bx = Math.max(x1, x2);
+    int ay = Math.min(y1, y2), by = Math.max(y1, y2);
+    int az = Math.min(z1, z2), bz = Math.max(z1, z2);
+    for (int sx = ax >> 4; sx <= bx >> 4; sx++) {
+      for (int sz = az >> 4; sz <= bz >> 4; sz++) {
+        for (int sy = ay >> 4; sy <= by >> 4; sy++) {
+          int lx0 = Math.max(ax, sx << 4) & 15, lx1 = Math.min(bx, (sx << 4) + 15) & 15;
+          int ly0 = Math.max(ay, sy << 4) & 15, ly1 = Math.min(by, (sy << 4) + 15) & 15;
+          int lz0 = Math.max(az, sz << 4) & 15, lz1 = Math.min(bz, (sz << 4) + 15) & 15;
+          var s = section(sx, sy, sz, true);
+          if (lx0 == 0 && ly0 == 0 && lz0 == 0 && lx1 == 15 && ly1 == 15 && lz1 == 15) { s.fillAll(blockId); continue; }
+          int e = s.entry(blockId);
+          int volume = (lx1 - lx0 + 1) * (ly1 - ly0 + 1) * (lz1 - lz0 + 1);
+          if (s.dense == null && s.sparseCount + volume > SPARSE_MAX) s.toDense();
+          for (int y = ly0; y <= ly1; y++) {
+            for (int z = lz0; z <= lz1; z++) {
+              int row = y << 8 | z << 4;
+              if (s.dense != null) Arrays.fill(s.dense, row + lx0, row + lx1 + 1, (short) (e + 1));
+              else for (int x = lx0; x <= lx1; x++) s.set(row | x, e);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /** Number of blocks in a box; for limits before a fill is queued. */
+  public static long volume(int x1, int y1, int z1, int x2, int y2, int z2) {
+    return (Math.abs((long) x2 - x1) + 1) * (Math.abs((long) y2 - y1) + 1) * (Math.abs((long) z2 - z1) + 1);
+  }
+
+  /** current is a getBlock result ("minecraft:oak_stairs[facing=east]"), id a block id without states. */
+  public static boolean sameBlock(String current, String id) {
+    return current.startsWith(id) && (current.length() == id.length() || current.charAt(id.length()) == '[');
+  }
+
+  /** Moves all changes of other into this batch (other is cleared); later writes win. */
+  public void addAll(BlockEdits other) {
+    for (int i = 0; i < other.sections.capacity(); i++) {
+      var o = other.sections.valueAt(i);
+      if (o == null) continue;
+      long k = key(o.sx, o.sy, o.sz);
+      var s = sections.get(k);
+      if (s == null || o.uniform >= 0) { sections.put(k, o); continue; }
+      forEach(o, (x, y, z, id, edge) -> s.set(local(x, y, z), s.entry(id)));
+    }
+    last = null;
+    other.clear();
+  }
+
+  public int size() {
+    int n = 0;
+    for (int i = 0; i < sections.capacity(); i++) {
+      var s = sections.valueAt(i);
+      if (s != null) n += s.count();
+    }
+    return n;
+  }
+
+  public void clear() { sections.clear(); last = null; }
+
+  /**
+   * Hands every change to sink, section by section in chunk order, and clears the batch.
+   * edgesLast: blocks with a neighbour outside the batch come in a second pass after all
+   * others, so a facade can place the interior without physics and update only the edges.
+   */
+  public void apply(Sink sink, boolean edgesLast) {
+    var list = new ArrayList<Section>(sections.size());
+    for (int i = 0; i < sections.capacity(); i++) {
+      var s = sections.valueAt(i);
+      if (s != null) list.add(s);
+    }
+    list.sort(Comparator.<Section>comparingInt(s -> s.sx).thenComparingInt(s -> s.sz).thenComparingInt(s -> s.sy));
+    try {
+      if (!edgesLast) {
+        for (var s : list) { sink.section(s.sx, s.sy, s.sz); forEach(s, sink); }
+        return;
+      }
+      for (var s : list) {
+        sink.section(s.sx, s.sy, s.sz);
+        forEach(s, (x, y, z, id, edge) -> { if (!isEdge(s, x, y, z)) sink.set(x, y, z, id, false); });
+      }
+      for (var s : list) {
+        sink.section(s.sx, s.sy, s.sz);
+        forEach(s, (x, y, z, id, edge) -> { if (isEdge(s, x, y, z)) sink.set(x, y, z, id, true); });
+      }
+    } finally {
+      clear();
+    }
+  }
+
+  private boolean isEdge(Section s, int x, int y, int z) {
+    int lx = x & 15, ly = y & 15, lz = z & 15;
+    if (lx > 0 && lx < 15 && ly > 0 && ly < 15 && lz > 0 && lz < 15) {
+      // Nachbarn im selben Abschnitt: kein Map-Zugriff
+      if (s.uniform >= 0) return false;
+      int l = local(x, y, z);
+      return s.get(l - 1) < 0 || s.get(l + 1) < 0 || s.get(l - 256) < 0 || s.get(l + 256) < 0
+        || s.get(l - 16) < 0 || s.get(l + 16) < 0;
+    }
+    return get(x - 1, y, z) == null || get(x + 1, y, z) == null || get(x, y - 1, z) == null
+      || get(x, y + 1, z) == null || get(x, y, z - 1) == null || get(x, y, z + 1) == null;
+  }
+
+  private static void forEach(Section s, Sink sink) {
+    int bx = s.sx << 4, by = s.sy << 4, bz = s.sz << 4;
+    if (s.sparse != null && s.dense == null && s.uniform < 0) {
+      for (int i = 0; i < s.sparseCount; i++) {
+        int l = s.sparse[i] >>> 16;
+        sink.set(bx | (l & 15), by | (l >>> 8), bz | (l >>> 4 & 15), s.palette[s.sparse[i] & 0xFFFF], false);
+      }
+      return;
+    }
+    for (int l = 0; l < 4096; l++) {
+      int e = s.uniform >= 0 ? s.uniform : s.dense == null ? -1 : s.dense[l] - 1;
+      if (e >= 0) sink.set(bx | (l & 15), by | (l >>> 8), bz | (l >>> 4 & 15), s.palette[e], false);
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package io.pyrium.core;
+
+/**
+ * Packs block coordinates into one long using the vanilla layout
+ * (x: 26 bits, z: 26 bits, y: 12 bits), so positions can key primitive maps.
+ */
+public final class BlockPos {
+  private static final int XZ_BITS = 26, Y_BITS = 12;
+  private static final long XZ_MASK = (1L << XZ_BITS) - 1, Y_MASK = (1L << Y_BITS) - 1;
+  private static final int Z_SHIFT = Y_BITS, X_SHIFT = Y_BITS + XZ_BITS;
+
+  public static long pack(int x, int y, int z) {
+    return ((x & XZ_MASK) << X_SHIFT) | ((z & XZ_MASK) << Z_SHIFT) | (y & Y_MASK);
+  }
+
+  public static int x(long packed) { return (int) (packed << (64 - X_SHIFT - XZ_BITS) >> (64 - XZ_BITS)); }
+  public static int y(long packed) { return (int) (packed << (64 - Y_BITS) >> (64 - Y_BITS)); }
+  public static int z(long packed) { return (int) (packed << (64 - Z_SHIFT - XZ_BITS) >> (64 - XZ_BITS)); }
+}
@@ -0,0 +1,38 @@
+package io.pyrium.core;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns block state strings ("minecraft:oak_door[facing=north,half=lower,...]") to
+ * dense int ids, so caches can hold ints and GET_BLOCK hands out one shared String
+ * per state. Ids are process-wide and never reused; a server has a few tens of
+ * thousands of states at most. Thread-safe; lookups of known states do not lock.
+ */
+public final class BlockStates {
+  private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+  private static volatile String[] names = new String[1024];
+  private static int count;
+
+  private BlockStates() {}
+
+  public static int id(String state) {
+    Integer id = ids.get(state);
+    return id != null ? id : register(state);
+  }
+
+  public static String name(int id) { return names[id]; }
+
+  public static synchronized int size() { return count; }
+
+  private static synchronized int register(String state) {
+    Integer id = ids.get(state);
+    if (id != null) return id;
+    String[] n = names;
+    if (count == n.length) names = n = Arrays.copyOf(n, count * 2);
+    n[count] = state.intern();
+    // nach dem Array-Eintrag veröffentlichen: wer die id sieht, sieht auch den Namen
+    ids.put(n[count], count);
+    return count++;
+  }
+}
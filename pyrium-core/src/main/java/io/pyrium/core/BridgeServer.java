@@ -4,6 +4,12 @@ import java.lang.reflect.Method;
 
 public final class BridgeServer {
 
+  // Vanilla fallback until a server-thread hook calls serverTick()
+  private static volatile TickScheduler scheduler;
+  private static volatile boolean hooked;
+  // Bukkit/Paper world facade, null on vanilla
+  private static volatile PaperWorld paper;
+
   public static void install() {
     // Try Bukkit/Paper first
     try {
@@ -14,33 +20,56 @@ public final class BridgeServer {
       // scheduleSyncRepeatingTask(plugin=null allowed in modern Paper? fallback to reflective tick hook)
       // Instead, use server scheduler runTaskTimer with a dummy Runnable
       Method runTaskTimer = schedulerCls.getMethod("runTaskTimer", Class.forName("org.bukkit.plugin.Plugin"), Runnable.class, long.class, long.class);
-      Runnable tickTask = () -> {
-        long now = System.nanoTime();
-        EventBus.dispatchTick(now, 50.0);
-      };
       // Plugin instance cannot be null; we install via "PyriumBridge" synthetic plugin if present.
       Object plugin = tryFindPluginInstance();
+      // API entry points are resolved once here; the facade then calls them via MethodHandles
+      PaperWorld facade = null;
+      try {
+        facade = PaperWorld.create(server, plugin);
+      } catch (Throwable t) {
+        System.err.println("[Pyrium] Paper world facade unavailable: " + t);
+      }
+      var w = facade;
+      Runnable tickTask = () -> {
+        EventBus.dispatchTick(System.nanoTime());
+        if (w != null) w.flush(); // queued block changes and chat of this tick
+      };
       runTaskTimer.invoke(scheduler, plugin, tickTask, 1L, 1L);
-      EventBus.attachExternalTickSource();
+      // Published only now: the facade calls Bukkit and needs flush() on the server thread,
+      // the fallback scheduler below would run mods on PyriumTick with neither
+      paper = w;
+      hooked = true;
+      // Block and entity reads go to Bukkit and to unsynchronised caches; workers must not call them
+      if (w != null) EventBus.serialOnly("the Paper world is read on the server thread only");
       System.out.println("[Pyrium] Bukkit/Paper tick bridge installed.");
       return;
     } catch (Throwable ignored) {}
 
-    // Vanilla fallback: no official hook, we rely on server thread timing (approx 20 TPS)
-    // This is coarse; production should weave into MinecraftServer#tick
-    new Thread(() -> {
-      try {
-        while (true) {
-          long now = System.nanoTime();
-          EventBus.dispatchTick(now, 50.0);
-          Thread.sleep(50);
-        }
-      } catch (InterruptedException ignored) {}
-    }, "PyriumVanillaTick").start();
-    EventBus.attachExternalTickSource();
-    System.out.println("[Pyrium] Vanilla tick bridge (approx) installed.");
+    // Vanilla fallback: no official hook. Drift-free 20 TPS on a Pyrium thread until
+    // something woven into MinecraftServer#tick calls serverTick()
+    if (!hooked) scheduler = TickScheduler.start();
+    System.out.println("[Pyrium] Vanilla tick bridge (scheduled 20 TPS) installed.");
   }
 
+  /**
+   * Tick entry for a hook on the server thread (agent, mixin or plugin calling this at the
+   * end of MinecraftServer#tick). The first call replaces the fallback scheduler, so mod
+   * code runs on the server thread in step with the real tick.
+   */
+  public static void serverTick() {
+    if (!hooked) {
+      hooked = true;
+      var s = scheduler;
+      if (s != null) s.stop();
+      scheduler = null;
+      System.out.println("[Pyrium] Server-thread tick hook attached (" + Thread.currentThread().getName() + ").");
+    }
+    EventBus.dispatchTick(System.nanoTime());
+  }
+
+  /** The server's world facade, or null if there is none (vanilla). */
+  static PyBCRuntime.WorldFacade world() { return paper; }
+
   private static Object tryFindPluginInstance() {
     try {
       Class<?> pluginManagerCls = Class.forName("org.bukkit.plugin.PluginManager");
@@ -0,0 +1,30 @@
+package io.pyrium.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Key/value data of the DATA_STORE_* ops ("global.kills" -> 42), shared by all mods of
+ * the process. Values are Long, Double or String; a key holds one value at a time.
+ * Thread-safe.
+ */
+public final class DataStore {
+  private static final DataStore SHARED = new DataStore();
+
+  private final ConcurrentHashMap<String, Object> values = new ConcurrentHashMap<>();
+
+  public static DataStore shared() { return SHARED; }
+
+  public void set(String key, Object value) {
+    if (!(value instanceof Long || value instanceof Double || value instanceof String)) {
+      throw new IllegalArgumentException("data store value must be Long, Double or String: " + value);
+    }
+    values.put(key, value);
+  }
+
+  /** The value, or null if the key is not set. */
+  public Object get(String key) { return values.get(key); }
+
+  public void delete(String key) { values.remove(key); }
+
+  public int size() { return values.size(); }
+}
@@ -0,0 +1,147 @@
+package io.pyrium.core;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * WorldFacade wrapper used when mods run on worker threads.
+ *
+ * World-mutating calls are recorded into a per-mod command buffer instead of
+ * touching the server; EventBus applies the buffers on the tick thread at the
+ * tick barrier, in mod registration order. Read calls go straight to the
+ * target facade, which must therefore tolerate concurrent reads (PaperWorld does
+ * not, BridgeServer switches to serial execution when it installs one).
+ *
+ * Consecutive block changes (set_block, fill) share one BlockEdits command, so a mod
+ * placing thousands of blocks records one palette buffer instead of one lambda per block.
+ */
+public final class DeferredWorld implements PyBCRuntime.WorldFacade {
+  private final PyBCRuntime.WorldFacade target;
+  private final ArrayList<Consumer<PyBCRuntime.WorldFacade>> commands = new ArrayList<>();
+  // Stapel des letzten Kommandos, solange danach nichts anderes aufgezeichnet wurde
+  private BlockEdits blocks;
+
+  public DeferredWorld(PyBCRuntime.WorldFacade target) { this.target = target; }
+
+  public PyBCRuntime.WorldFacade target() { return target; }
+
+  public int pending() { return commands.size(); }
+
+  /** Applies and clears all recorded commands. Must run on the server thread. */
+  public void flush() {
+    for (int i = 0; i < commands.size(); i++) {
+      try { commands.get(i).accept(target); }
+      catch (Throwable t) { t.printStackTrace(); }
+    }
+    commands.clear();
+    blocks = null;
+  }
+
+  private void record(Consumer<PyBCRuntime.WorldFacade> c) { blocks = null; commands.add(c); }
+
+  private BlockEdits blocks() {
+    if (blocks == null) {
+      var b = new BlockEdits();
+      commands.add(w -> w.applyEdits(b));
+      blocks = b;
+    }
+    return blocks;
+  }
+
+  // ========= Reads (direct) =========
+  public List<PyBCRuntime.EntityFacade> entities(String type) { return wrap(target.entities(type)); }
+  public List<PyBCRuntime.EntityFacade> entitiesInRegion(String type, int x1, int y1, int z1, int x2, int y2, int z2) {
+    return wrap(target.entitiesInRegion(type, x1, y1, z1, x2, y2, z2));
+  }
+  public int countEntities(String type) { return target.countEntities(type); }
+  public int countEntitiesInRegion(String type, int x1, int y1, int z1, int x2, int y2, int z2) {
+    return target.countEntitiesInRegion(type, x1, y1, z1, x2, y2, z2);
+  }
+  public void forEachEntity(String type, Consumer<PyBCRuntime.EntityFacade> visitor) {
+    target.forEachEntity(type, e -> visitor.accept(new DeferredEntity(e)));
+  }
+  public void forEachEntityInRegion(String type, int x1, int y1, int z1, int x2, int y2, int z2, Consumer<PyBCRuntime.EntityFacade> visitor) {
+    target.forEachEntityInRegion(type, x1, y1, z1, x2, y2, z2, e -> visitor.accept(new DeferredEntity(e)));
+  }
+  public String getBlock(int x, int y, int z) { return target.getBlock(x, y, z); }
+  public int getBlockState(int x, int y, int z) { return target.getBlockState(x, y, z); }
+  public long getTime() { return target.getTime(); }
+  public String nbtGet(PyBCRuntime.EntityFacade e, String path) { return target.nbtGet(unwrap(e), path); }
+  public double getEntityAttr(PyBCRuntime.EntityFacade e, String attr) { return target.getEntityAttr(unwrap(e), attr); }
+  public long getVar(String name) { return target.getVar(name); }
+  public int getScore(String objective, String entry) { return target.getScore(objective, entry); }
+  public int countTagged(String type, String tag) { return target.countTagged(type, tag); }
+  public Object dataGet(String key) { return target.dataGet(key); }
+
+  // ========= Mutations (recorded) =========
+  public void spawnEntity(String type, double x, double y, double z) { record(w -> w.spawnEntity(type, x, y, z)); }
+  public void removeEntity(PyBCRuntime.EntityFacade e) { var t = unwrap(e); record(w -> w.removeEntity(t)); }
+  public void broadcast(String msg) { record(w -> w.broadcast(msg)); }
+  public void messagePlayer(String playerName, String msg) { record(w -> w.messagePlayer(playerName, msg)); }
+  public void execCommand(String cmd) { record(w -> w.execCommand(cmd)); }
+  public void giveItem(String playerName, String itemId, int count) { record(w -> w.giveItem(playerName, itemId, count)); }
+  public void takeItem(String playerName, String itemId, int count) { record(w -> w.takeItem(playerName, itemId, count)); }
+  public void setBlock(int x, int y, int z, String blockId) { blocks().set(x, y, z, blockId); }
+  public void fillRegion(int x1, int y1, int z1, int x2, int y2, int z2, String blockId) { blocks().fill(x1, y1, z1, x2, y2, z2, blockId); }
+  public void replaceRegion(int x1, int y1, int z1, int x2, int y2, int z2, String from, String to) {
+    record(w -> w.replaceRegion(x1, y1, z1, x2, y2, z2, from, to));
+  }
+  public void applyEdits(BlockEdits edits) { blocks().addAll(edits); }
+  public void teleportPlayer(String playerName, double x, double y, double z) { record(w -> w.teleportPlayer(playerName, x, y, z)); }
+  public void createObjective(String objective, String criteria) { record(w -> w.createObjective(objective, criteria)); }
+  public void removeObjective(String objective) { record(w -> w.removeObjective(objective)); }
+  public void setDisplaySlot(String objective, String slot) { record(w -> w.setDisplaySlot(objective, slot)); }
+  public void setScore(String objective, String entry, int value) { record(w -> w.setScore(objective, entry, value)); }
+  public void addScore(String objective, String entry, int delta) { record(w -> w.addScore(objective, entry, delta)); }
+  public void resetScore(String objective, String entry) { record(w -> w.resetScore(objective, entry)); }
+  public void addTag(String type, String tag) { record(w -> w.addTag(type, tag)); }
+  public void removeTag(String type, String tag) { record(w -> w.removeTag(type, tag)); }
+  public void dataSet(String key, Object value) { record(w -> w.dataSet(key, value)); }
+  public void dataDelete(String key) { record(w -> w.dataDelete(key)); }
+  public void setTime(long timeTicks) { record(w -> w.setTime(timeTicks)); }
+  public void setWeather(String mode) { record(w -> w.setWeather(mode)); }
+  public void nbtSet(PyBCRuntime.EntityFacade e, String path, String value) { var t = unwrap(e); record(w -> w.nbtSet(t, path, value)); }
+  public void setEntityAttr(PyBCRuntime.EntityFacade e, String attr, double value) { var t = unwrap(e); record(w -> w.setEntityAttr(t, attr, value)); }
+  public void scaleAttribute(String type, String attr, double factor) { record(w -> w.scaleAttribute(type, attr, factor)); }
+  public void setAttrBulk(String type, String attr, double value) { record(w -> w.setAttrBulk(type, attr, value)); }
+  public void setNbtBulk(String type, String path, String value) { record(w -> w.setNbtBulk(type, path, value)); }
+  public void removeEntities(String type) { record(w -> w.removeEntities(type)); }
+  public void setVar(String name, long value) { record(w -> w.setVar(name, value)); }
+  public void registerCustomMob(String mobId, String displayName) { record(w -> w.registerCustomMob(mobId, displayName)); }
+  public void setCustomMobModel(String mobId, String model) { record(w -> w.setCustomMobModel(mobId, model)); }
+  public void setCustomMobTexture(String mobId, String texture) { record(w -> w.setCustomMobTexture(mobId, texture)); }
+  public void setCustomMobSize(String mobId, double scale) { record(w -> w.setCustomMobSize(mobId, scale)); }
+  public void setCustomMobAttr(String mobId, String attr, double value) { record(w -> w.setCustomMobAttr(mobId, attr, value)); }
+  public void setCustomMobLootTable(String mobId, String lootTable) { record(w -> w.setCustomMobLootTable(mobId, lootTable)); }
+  public void setCustomMobEquip(String mobId, String slot, String itemId) { record(w -> w.setCustomMobEquip(mobId, slot, itemId)); }
+  public void setCustomMobAI(String mobId, String aiProfile) { record(w -> w.setCustomMobAI(mobId, aiProfile)); }
+  public void spawnCustomMob(String mobId, int x, int y, int z) { record(w -> w.spawnCustomMob(mobId, x, y, z)); }
+  public void removeCustomMobs(String mobId) { record(w -> w.removeCustomMobs(mobId)); }
+
+  // ========= Entities =========
+  // Entity setters are mutations too, so entities handed to the VM are wrapped.
+
+  private List<PyBCRuntime.EntityFacade> wrap(List<PyBCRuntime.EntityFacade> list) {
+    var out = new ArrayList<PyBCRuntime.EntityFacade>(list.size());
+    for (var e : list) out.add(new DeferredEntity(e));
+    return out;
+  }
+
+  private static PyBCRuntime.EntityFacade unwrap(PyBCRuntime.EntityFacade e) {
+    return e instanceof DeferredEntity d ? d.target : e;
+  }
+
+  private final class DeferredEntity implements PyBCRuntime.EntityFacade {
+    final PyBCRuntime.EntityFacade target;
+    double speed;
+    DeferredEntity(PyBCRuntime.EntityFacade target) { this.target = target; this.speed = target.getSpeed(); }
+    public double getSpeed() { return speed; }
+    public void setSpeed(double v) { speed = v; record(w -> target.setSpeed(v)); }
+    public String getName() { return target.getName(); }
+    public void setName(String s) { record(w -> target.setName(s)); }
+    public void teleport(double x, double y, double z) { record(w -> target.teleport(x, y, z)); }
+    public boolean hasTag(String tag) { return target.hasTag(tag); }
+    public void addTag(String tag) { record(w -> target.addTag(tag)); }
+    public void removeTag(String tag) { record(w -> target.removeTag(tag)); }
+  }
+}
@@ -0,0 +1,188 @@
+package io.pyrium.core;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Incrementally maintained entity index for server bridges.
+ *
+ * Entities are bucketed by type and by chunk section (16x16x16), so WorldFacade
+ * count, region and visitor queries touch only the matching buckets and never
+ * build a list. Bridges call add/move/remove from their spawn, movement and
+ * removal hooks.
+ *
+ * Mutations happen on the server thread only. In parallel mode mod workers read
+ * while the server thread waits at the tick barrier, and their removals are
+ * deferred, so reads never race with writes.
+ */
+public final class EntityIndex {
+
+  private static final class Entry {
+    final long id;
+    final String type;
+    final PyBCRuntime.EntityFacade entity;
+    double x, y, z;
+    long section;
+    int typePos, sectionPos;
+    Entry(long id, String type, PyBCRuntime.EntityFacade entity) { this.id = id; this.type = type; this.entity = entity; }
+  }
+
+  /** Dense bucket with swap-remove; each entry remembers its position in both of its buckets. */
+  private static final class Bucket {
+    final boolean spatial;
+    Entry[] items = new Entry[8];
+    int size;
+    Bucket(boolean spatial) { this.spatial = spatial; }
+
+    void add(Entry e) {
+      if (size == items.length) items = Arrays.copyOf(items, size * 2);
+      setPos(e, size);
+      items[size++] = e;
+    }
+
+    void remove(Entry e) {
+      int i = spatial ? e.sectionPos : e.typePos;
+      Entry last = items[--size];
+      items[i] = last;
+      setPos(last, i);
+      items[size] = null;
+    }
+
+    private void setPos(Entry e, int i) { if (spatial) e.sectionPos = i; else e.typePos = i; }
+  }
+
+  private final LongMap<Entry> byId = new LongMap<>(256);
+  private final HashMap<String, Bucket> byType = new HashMap<>();
+  private final LongMap<Bucket> bySection = new LongMap<>(256);
+
+  private static long sectionKey(double x, double y, double z) {
+    return BlockPos.pack((int) Math.floor(x) >> 4, (int) Math.floor(y) >> 4, (int) Math.floor(z) >> 4);
+  }
+
+  public int size() { return byId.size(); }
+
+  // ========= Updates =========
+
+  public void add(long id, String type, PyBCRuntime.EntityFacade entity, double x, double y, double z) {
+    remove(id);
+    var e = new Entry(id, type, entity);
+    e.x = x; e.y = y; e.z = z;
+    e.section = sectionKey(x, y, z);
+    byId.put(id, e);
+    byType.computeIfAbsent(type, t -> new Bucket(false)).add(e);
+    section(e.section).add(e);
+  }
+
+  /** Updates the position; only moves between buckets when the entity changes chunk section. */
+  public void move(long id, double x, double y, double z) {
+    var e = byId.get(id);
+    if (e == null) return;
+    e.x = x; e.y = y; e.z = z;
+    long key = sectionKey(x, y, z);
+    if (key == e.section) return;
+    unlinkSection(e);
+    e.section = key;
+    section(key).add(e);
+  }
+
+  public void remove(long id) {
+    var e = byId.remove(id);
+    if (e == null) return;
+    var t = byType.get(e.type);
+    t.remove(e);
+    if (t.size == 0) byType.remove(e.type);
+    unlinkSection(e);
+  }
+
+  public void clear() {
+    byId.clear();
+    byType.clear();
+    bySection.clear();
+  }
+
+  private Bucket section(long key) {
+    var b = bySection.get(key);
+    if (b == null) bySection.put(key, b = new Bucket(true));
+    return b;
+  }
+
+  private void unlinkSection(Entry e) {
+    var b = bySection.get(e.section);
+    b.remove(e);
+    if (b.size == 0) bySection.remove(e.section);
+  }
+
+  // ========= Queries =========
+
+  public int count(String type) {
+    var b = byType.get(type);
+    return b == null ? 0 : b.size;
+  }
+
+  /**
+   * Visits all entities of type. The visitor may remove the entity it is visiting
+   * (buckets are walked backwards, so swap-remove only moves visited entries).
+   */
+  public void forEach(String type, Consumer<PyBCRuntime.EntityFacade> visitor) {
+    var b = byType.get(type);
+    if (b == null) return;
+    for (int i = b.size - 1; i >= 0; i--) {
+      if (i < b.size) visitor.accept(b.items[i].entity);
+    }
+  }
+
+  /** Number of entities of type inside the block box (bounds inclusive, any corner order). */
+  public int countInRegion(String type, int x1, int y1, int z1, int x2, int y2, int z2) {
+    return region(type, x1, y1, z1, x2, y2, z2, null);
+  }
+
+  public void forEachInRegion(String type, int x1, int y1, int z1, int x2, int y2, int z2, Consumer<PyBCRuntime.EntityFacade> visitor) {
+    region(type, x1, y1, z1, x2, y2, z2, visitor);
+  }
+
+  /** Counts the matches and hands them to visitor, if any. */
+  private int region(String type, int x1, int y1, int z1, int x2, int y2, int z2, Consumer<PyBCRuntime.EntityFacade> visitor) {
+    var typed = byType.get(type);
+    if (typed == null) return 0;
+    int minX = Math.min(x1, x2), maxX = Math.max(x1, x2) + 1;
+    int minY = Math.min(y1, y2), maxY = Math.max(y1, y2) + 1;
+    int minZ = Math.min(z1, z2), maxZ = Math.max(z1, z2) + 1;
+    int sx0 = minX >> 4, sx1 = (maxX - 1) >> 4;
+    int sy0 = minY >> 4, sy1 = (maxY - 1) >> 4;
+    int sz0 = minZ >> 4, sz1 = (maxZ - 1) >> 4;
+    long sections = (long) (sx1 - sx0 + 1) * (sy1 - sy0 + 1) * (sz1 - sz0 + 1);
+
+    // Whichever is smaller: the sections covered by the box or all entities of the type
+    if (sections > typed.size) return scan(typed, type, minX, minY, minZ, maxX, maxY, maxZ, visitor);
+    int n = 0;
+    for (int sx = sx0; sx <= sx1; sx++)
+      for (int sy = sy0; sy <= sy1; sy++)
+        for (int sz = sz0; sz <= sz1; sz++) {
+          var b = bySection.get(BlockPos.pack(sx, sy, sz));
+          if (b != null) n += scan(b, type, minX, minY, minZ, maxX, maxY, maxZ, visitor);
+        }
+    return n;
+  }
+
+  private static int scan(Bucket b, String type, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+                          Consumer<PyBCRuntime.EntityFacade> visitor) {
+    int n = 0;
+    for (int i = b.size - 1; i >= 0; i--) {
+      if (i >= b.size) continue;
+      var e = b.items[i];
+      if (e.x >= minX && e.x < maxX && e.y >= minY && e.y < maxY && e.z >= minZ && e.z < maxZ
+          && (!b.spatial || e.type.equals(type))) {
+        n++;
+        if (visitor != null) visitor.accept(e.entity);
+      }
+    }
+    return n;
+  }
+
+  /** Materialised list, for the legacy WorldFacade.entities contract only. */
+  public List<PyBCRuntime.EntityFacade> list(String type) {
+    var out = new ArrayList<PyBCRuntime.EntityFacade>(count(type));
+    forEach(type, out::add);
+    return out;
+  }
+}
@@ -0,0 +1,97 @@
+package io.pyrium.core;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from primitive long keys to objects (linear probing,
+ * backward-shift deletion). Avoids boxing packed positions and section keys.
+ * Not thread-safe.
+ */
+final class LongMap<V> {
+  private long[] keys;
+  private Object[] vals;
+  private int size;
+
+  LongMap() { this(16); }
+  LongMap(int expected) {
+    int cap = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+    keys = new long[cap];
+    vals = new Object[cap];
+  }
+
+  int size() { return size; }
+
+  private static int mix(long k) {
+    long h = k * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  @SuppressWarnings("unchecked")
+  V get(long key) {
+    int mask = keys.length - 1;
+    for (int i = mix(key) & mask; vals[i] != null; i = (i + 1) & mask) {
+      if (keys[i] == key) return (V) vals[i];
+    }
+    return null;
+  }
+
+  /** Inserts or replaces; value must not be null. */
+  void put(long key, V value) {
+    if ((size + 1) * 2 > keys.length) rehash(keys.length * 2);
+    int mask = keys.length - 1;
+    int i = mix(key) & mask;
+    while (vals[i] != null) {
+      if (keys[i] == key) { vals[i] = value; return; }
+      i = (i + 1) & mask;
+    }
+    keys[i] = key;
+    vals[i] = value;
+    size++;
+  }
+
+  @SuppressWarnings("unchecked")
+  V remove(long key) {
+    int mask = keys.length - 1;
+    int i = mix(key) & mask;
+    while (vals[i] != null) {
+      if (keys[i] == key) {
+        V old = (V) vals[i];
+        // backward-shift deletion keeps probe chains intact
+        int gap = i;
+        for (int j = (i + 1) & mask; vals[j] != null; j = (j + 1) & mask) {
+          int home = mix(keys[j]) & mask;
+          if (((j - home) & mask) >= ((j - gap) & mask)) {
+            keys[gap] = keys[j];
+            vals[gap] = vals[j];
+            gap = j;
+          }
+        }
+        vals[gap] = null;
+        size--;
+        return old;
+      }
+      i = (i + 1) & mask;
+    }
+    return null;
+  }
+
+  void clear() {
+    Arrays.fill(vals, null);
+    size = 0;
+  }
+
+  // Iteration over raw slots: for (i < capacity()) if (valueAt(i) != null) ...
+  int capacity() { return vals.length; }
+  long keyAt(int i) { return keys[i]; }
+  @SuppressWarnings("unchecked") V valueAt(int i) { return (V) vals[i]; }
+
+  @SuppressWarnings("unchecked")
+  private void rehash(int cap) {
+    long[] ok = keys;
+    Object[] ov = vals;
+    keys = new long[cap];
+    vals = new Object[cap];
+    size = 0;
+    for (int i = 0; i < ov.length; i++) if (ov[i] != null) put(ok[i], (V) ov[i]);
+  }
+}
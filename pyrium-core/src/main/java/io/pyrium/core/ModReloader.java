@@ -0,0 +1,81 @@
+package io.pyrium.core;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches modsDir (and its mod subdirectories) for changed .pybc files.
+ *
+ * A changed file is parsed, checked to link, and its VarStore opened, on the watcher thread
+ * once it has been quiet for pyrium.reload.quietMillis; the swap of the mod's handlers then
+ * happens on the tick thread at the next tick boundary (Mods.swap). The functions themselves
+ * still link on their first call. Files that fail to load or link leave the running version
+ * in place. Writers must replace .pybc files atomically (write to a temporary file, then
+ * rename), since loaded modules are memory-mapped.
+ */
+final class ModReloader {
+  private static final long QUIET_MILLIS = Long.getLong("pyrium.reload.quietMillis", 250L);
+
+  static void start(Path modsDir) {
+    Thread t = new Thread(() -> watch(modsDir), "PyriumModReloader");
+    t.setDaemon(true);
+    t.start();
+    System.out.println("[Pyrium] Watching " + modsDir + " for mod changes.");
+  }
+
+  private static void watch(Path modsDir) {
+    try (WatchService ws = modsDir.getFileSystem().newWatchService()) {
+      register(ws, modsDir, null);
+      Set<Path> changed = new LinkedHashSet<>();
+      while (true) {
+        // block until something happens, then wait for writes to settle
+        WatchKey key = changed.isEmpty() ? ws.take() : ws.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+        if (key == null) {
+          for (Path p : changed) reload(p);
+          changed.clear();
+          continue;
+        }
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> ev : key.pollEvents()) {
+          if (ev.kind() == OVERFLOW) continue;
+          Path p = dir.resolve((Path) ev.context());
+          if (ev.kind() == ENTRY_CREATE && Files.isDirectory(p)) register(ws, p, changed);
+          else if (p.toString().endsWith(".pybc")) changed.add(Mods.key(p));
+        }
+        key.reset();
+      }
+    } catch (InterruptedException | ClosedWatchServiceException ignored) {
+    } catch (IOException e) {
+      System.err.println("[Pyrium] Mod reloader stopped: " + e);
+    }
+  }
+
+  /** Watches dir and all directories below it; .pybc files already there count as changed. */
+  private static void register(WatchService ws, Path dir, Set<Path> changed) throws IOException {
+    try (var stream = Files.walk(dir)) {
+      for (Path p : (Iterable<Path>) stream::iterator) {
+        if (Files.isDirectory(p)) p.register(ws, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        else if (changed != null && p.toString().endsWith(".pybc")) changed.add(Mods.key(p));
+      }
+    }
+  }
+
+  private static void reload(Path file) {
+    if (!Files.exists(file)) {
+      Mods.unload(file);
+      return;
+    }
+    try {
+      var mod = PyBCModule.read(file);
+      Mods.checkLinks(mod); // off the tick thread, like the store's file reads
+      var store = Mods.store(file);
+      EventBus.atTickBoundary(() -> Mods.swap(file, mod, store));
+    } catch (IOException e) {
+      System.err.println("[Pyrium] Reload of " + file + " failed, keeping the running version: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,973 @@
+package io.pyrium.core;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * WorldFacade for Bukkit/Paper.
+ *
+ * Every API entry point is resolved once at bridge install into a MethodHandle with an
+ * erased type (references as Object, primitives kept), so VM ops call invokeExact
+ * without reflection, boxing or per-call access checks. There is no compile-time
+ * dependency on the Bukkit API.
+ *
+ * - Block changes (set, fill, replace) are queued in BlockEdits and applied in flush() at
+ *   the end of the tick, section by section in chunk order: one chunk lookup per chunk,
+ *   last write per position wins, getBlock sees queued writes. With physics, only the
+ *   blocks on the surface of the change set are placed with neighbour updates, after
+ *   the interior was placed raw, so a 100k block fill does not cascade updates through
+ *   itself.
+ * - getBlock/GET_BLOCK read through a BlockCache of interned state ids. Entries are
+ *   dropped when this facade changes a block and on Bukkit block events (ChangeFeed,
+ *   needs a plugin); without the feed they are only valid for the current tick.
+ * - Scores live in a ScoreTable and reach the main scoreboard once per tick in flush(),
+ *   one API call per changed cell (vanilla commands if the server lacks the API).
+ * - Chat goes out asynchronously (Paper's sendMessage is thread-safe): players are
+ *   looked up on the server thread at flush, the sending runs on the async scheduler.
+ * - Entity queries use an EntityIndex seeded once from World#getEntities and then kept
+ *   up to date by Paper's add/remove-from-world and move/teleport events (ChangeFeed).
+ *   Entities without a move event (items, projectiles, vehicles) have their position
+ *   re-read on the first query of a tick. Without the Paper events the index is rebuilt
+ *   at most once per tick instead. Types are matched by lower case name without
+ *   namespace ("zombie", "minecraft:zombie" and "Zombie" are equal).
+ *
+ * Everything except the chat delivery runs on the server thread; with this facade the
+ * EventBus runs mods serially (pyrium.exec=parallel is turned off at bridge install).
+ */
+public final class PaperWorld implements PyBCRuntime.WorldFacade {
+
+  // Neighbour updates at the surface of each tick's block changes (like /fill); false = raw placement
+  static final boolean PHYSICS = !"false".equalsIgnoreCase(System.getProperty("pyrium.paper.physics", "true"));
+
+  /** Resolved Bukkit entry points; null members are optional API the server lacks. */
+  static final class Api {
+    final Class<?> living, player, entityType, attribute, itemStackArray;
+    final MethodHandle getWorlds, getWorld, createBlockData, getPlayerExact, getConsoleSender, dispatchCommand,
+      broadcastMessage, getScheduler, runTaskAsync;
+    final MethodHandle getChunkAt, chunkGetBlock, getBlockAt, setBlockData, getBlockData, blockDataAsString;
+    final MethodHandle getTime, setTime, setStorm, setThundering, getEntities, spawnEntity;
+    final MethodHandle entityId, entityTypeOf, entityWorld, enumName, getLocation, locX, locY, locZ, newLocation;
+    final MethodHandle remove, teleport, getName, getCustomName, setCustomName, addTag, removeTag, getTags;
+    final MethodHandle getAttribute, getBaseValue, setBaseValue;
+    final MethodHandle sendMessage, getInventory, addItem, removeItem, matchMaterial, newItemStack, newItemArray;
+    final MethodHandle pdc, pdcSet, pdcGet, keyFromString;
+    final Object pdcString;
+    final Class<?> displaySlot;
+    final MethodHandle scoreboardManager, mainScoreboard, getObjective, newObjective, unregister, setDisplaySlot,
+      getScore, scoreGet, scoreSet, scoreIsSet, scoreReset;
+
+    Api(ClassLoader cl) throws ReflectiveOperationException {
+      Class<?> server = c(cl, "org.bukkit.Server"), world = c(cl, "org.bukkit.World"), chunk = c(cl, "org.bukkit.Chunk");
+      Class<?> block = c(cl, "org.bukkit.block.Block"), blockData = c(cl, "org.bukkit.block.data.BlockData");
+      Class<?> entity = c(cl, "org.bukkit.entity.Entity");
+      living = c(cl, "org.bukkit.entity.LivingEntity");
+      player = c(cl, "org.bukkit.entity.Player");
+      Class<?> location = c(cl, "org.bukkit.Location");
+      Class<?> sender = c(cl, "org.bukkit.command.CommandSender"), inventory = c(cl, "org.bukkit.inventory.Inventory");
+      Class<?> itemStack = c(cl, "org.bukkit.inventory.ItemStack"), material = c(cl, "org.bukkit.Material");
+      Class<?> scheduler = c(cl, "org.bukkit.scheduler.BukkitScheduler"), plugin = c(cl, "org.bukkit.plugin.Plugin");
+      entityType = c(cl, "org.bukkit.entity.EntityType");
+      attribute = c(cl, "org.bukkit.attribute.Attribute");
+      Class<?> attrInstance = c(cl, "org.bukkit.attribute.AttributeInstance");
+      itemStackArray = itemStack.arrayType();
+
+      getWorlds = v(server, "getWorlds", List.class);
+      getWorld = v(server, "getWorld", world, String.class);
+      createBlockData = v(server, "createBlockData", blockData, String.class);
+      getPlayerExact = v(server, "getPlayerExact", player, String.class);
+      getConsoleSender = v(server, "getConsoleSender", c(cl, "org.bukkit.command.ConsoleCommandSender"));
+      dispatchCommand = v(server, "dispatchCommand", boolean.class, sender, String.class);
+      broadcastMessage = v(server, "broadcastMessage", int.class, String.class);
+      getScheduler = v(server, "getScheduler", scheduler);
+      runTaskAsync = v(scheduler, "runTaskAsynchronously", c(cl, "org.bukkit.scheduler.BukkitTask"), plugin, Runnable.class);
+
+      getChunkAt = v(world, "getChunkAt", chunk, int.class, int.class);
+      chunkGetBlock = v(chunk, "getBlock", block, int.class, int.class, int.class);
+      getBlockAt = v(world, "getBlockAt", block, int.class, int.class, int.class);
+      setBlockData = v(block, "setBlockData", void.class, blockData, boolean.class);
+      getBlockData = v(block, "getBlockData", blockData);
+      blockDataAsString = v(blockData, "getAsString", String.class);
+      getTime = v(world, "getTime", long.class);
+      setTime = v(world, "setTime", void.class, long.class);
+      setStorm = v(world, "setStorm", void.class, boolean.class);
+      setThundering = v(world, "setThundering", void.class, boolean.class);
+      getEntities = v(world, "getEntities", List.class);
+      spawnEntity = v(world, "spawnEntity", entity, location, entityType);
+
+      entityId = v(entity, "getEntityId", int.class);
+      entityTypeOf = v(entity, "getType", entityType);
+      entityWorld = v(entity, "getWorld", world);
+      enumName = v(Enum.class, "name", String.class);
+      getLocation = v(entity, "getLocation", location);
+      locX = v(location, "getX", double.class);
+      locY = v(location, "getY", double.class);
+      locZ = v(location, "getZ", double.class);
+      newLocation = erase(MethodHandles.publicLookup().findConstructor(location,
+        MethodType.methodType(void.class, world, double.class, double.class, double.class)));
+      remove = v(entity, "remove", void.class);
+      teleport = v(entity, "teleport", boolean.class, location);
+      getName = v(entity, "getName", String.class);
+      getCustomName = v(entity, "getCustomName", String.class);
+      setCustomName = v(entity, "setCustomName", void.class, String.class);
+      addTag = v(entity, "addScoreboardTag", boolean.class, String.class);
+      removeTag = v(entity, "removeScoreboardTag", boolean.class, String.class);
+      getTags = v(entity, "getScoreboardTags", Set.class);
+      getAttribute = v(living, "getAttribute", attrInstance, attribute);
+      getBaseValue = v(attrInstance, "getBaseValue", double.class);
+      setBaseValue = v(attrInstance, "setBaseValue", void.class, double.class);
+
+      sendMessage = v(player, "sendMessage", void.class, String.class);
+      getInventory = v(player, "getInventory", c(cl, "org.bukkit.inventory.PlayerInventory"));
+      addItem = v(inventory, "addItem", HashMap.class, itemStackArray);
+      removeItem = v(inventory, "removeItem", HashMap.class, itemStackArray);
+      matchMaterial = s(material, "matchMaterial", material, String.class);
+      newItemStack = erase(MethodHandles.publicLookup().findConstructor(itemStack, MethodType.methodType(void.class, material, int.class)));
+      newItemArray = erase(MethodHandles.arrayConstructor(itemStackArray));
+
+      // Entity NBT maps onto the persistent data container (pyrium:<path>), Bukkit has no raw NBT
+      MethodHandle pdc = null, pdcSet = null, pdcGet = null, keyFromString = null;
+      Object pdcString = null;
+      try {
+        Class<?> container = c(cl, "org.bukkit.persistence.PersistentDataContainer");
+        Class<?> dataType = c(cl, "org.bukkit.persistence.PersistentDataType");
+        Class<?> key = c(cl, "org.bukkit.NamespacedKey");
+        pdc = v(entity, "getPersistentDataContainer", container);
+        pdcSet = v(container, "set", void.class, key, dataType, Object.class);
+        pdcGet = v(container, "get", Object.class, key, dataType);
+        keyFromString = s(key, "fromString", key, String.class);
+        pdcString = MethodHandles.publicLookup().findStaticGetter(dataType, "STRING", dataType).invoke();
+      } catch (Throwable t) {
+        pdc = null;
+      }
+      this.pdc = pdc; this.pdcSet = pdcSet; this.pdcGet = pdcGet; this.keyFromString = keyFromString; this.pdcString = pdcString;
+
+      // Scoreboard API; without it ScoreTable falls back to commands. Score#resetScore is 1.20.4+
+      Class<?> displaySlot = null;
+      MethodHandle scoreboardManager = null, mainScoreboard = null, getObjective = null, newObjective = null, unregister = null,
+        setDisplaySlot = null, getScore = null, scoreGet = null, scoreSet = null, scoreIsSet = null, scoreReset = null;
+      try {
+        Class<?> manager = c(cl, "org.bukkit.scoreboard.ScoreboardManager"), board = c(cl, "org.bukkit.scoreboard.Scoreboard");
+        Class<?> objective = c(cl, "org.bukkit.scoreboard.Objective"), score = c(cl, "org.bukkit.scoreboard.Score");
+        displaySlot = c(cl, "org.bukkit.scoreboard.DisplaySlot");
+        scoreboardManager = v(server, "getScoreboardManager", manager);
+        mainScoreboard = v(manager, "getMainScoreboard", board);
+        getObjective = v(board, "getObjective", objective, String.class);
+        newObjective = v(board, "registerNewObjective", objective, String.class, String.class, String.class);
+        unregister = v(objective, "unregister", void.class);
+        setDisplaySlot = v(objective, "setDisplaySlot", void.class, displaySlot);
+        getScore = v(objective, "getScore", score, String.class);
+        scoreGet = v(score, "getScore", int.class);
+        scoreSet = v(score, "setScore", void.class, int.class);
+        scoreIsSet = v(score, "isScoreSet", boolean.class);
+        try { scoreReset = v(score, "resetScore", void.class); } catch (ReflectiveOperationException ignored) {}
+      } catch (ReflectiveOperationException e) {
+        scoreboardManager = null;
+      }
+      this.displaySlot = displaySlot;
+      this.scoreboardManager = scoreboardManager; this.mainScoreboard = mainScoreboard; this.getObjective = getObjective;
+      this.newObjective = newObjective; this.unregister = unregister; this.setDisplaySlot = setDisplaySlot; this.getScore = getScore;
+      this.scoreGet = scoreGet; this.scoreSet = scoreSet; this.scoreIsSet = scoreIsSet; this.scoreReset = scoreReset;
+    }
+
+    private static Class<?> c(ClassLoader cl, String name) throws ClassNotFoundException { return Class.forName(name, false, cl); }
+
+    private static MethodHandle v(Class<?> owner, String name, Class<?> ret, Class<?>... params) throws ReflectiveOperationException {
+      return erase(MethodHandles.publicLookup().findVirtual(owner, name, MethodType.methodType(ret, params)));
+    }
+
+    private static MethodHandle s(Class<?> owner, String name, Class<?> ret, Class<?>... params) throws ReflectiveOperationException {
+      return erase(MethodHandles.publicLookup().findStatic(owner, name, MethodType.methodType(ret, params)));
+    }
+
+    /**
+     * References become Object, primitives stay, so call sites can use invokeExact with plain
+     * Object values. Varargs methods take their array as one argument.
+     */
+    static MethodHandle erase(MethodHandle h) {
+      h = h.asFixedArity();
+      var t = h.type();
+      Class<?>[] ps = t.parameterArray();
+      for (int i = 0; i < ps.length; i++) if (!ps[i].isPrimitive()) ps[i] = Object.class;
+      Class<?> r = t.returnType().isPrimitive() ? t.returnType() : Object.class;
+      return h.asType(MethodType.methodType(r, ps));
+    }
+  }
+
+  private final Api api;
+  private final Object server, world, plugin, console, scheduler;
+
+  // Queued block changes, see flush()
+  private final BlockEdits edits = new BlockEdits();
+  private final BlockCache cache;
+  private static final int REPORT_EVERY = 6000; // ticks
+  private final Scores scoreSink = new Scores();
+  private final ScoreTable scores;
+  private final HashMap<String, Object> blockData = new HashMap<>();
+
+  private record Msg(String player, String text) {}
+  private final ConcurrentLinkedQueue<Msg> chat = new ConcurrentLinkedQueue<>();
+
+  private final EntityIndex index = new EntityIndex();
+  // Index follows entity events; false = rebuilt from getEntities once per tick
+  private final boolean liveIndex, livingMoves;
+  // Indexed entities whose movement fires no event, by entity id
+  private final LongMap<Object> drifting = new LongMap<>(64);
+  private long indexedTick = -1, tick;
+
+  private final HashMap<String, Object> entityTypes = new HashMap<>(), materials = new HashMap<>(), attributes = new HashMap<>();
+  private final Map<String, Long> vars = new ConcurrentHashMap<>();
+  private final Map<String, Map<String, Double>> mobAttrs = new HashMap<>();
+  private final Map<String, String> mobNames = new HashMap<>();
+
+  private PaperWorld(Api api, Object server, Object world, Object plugin) throws Throwable {
+    this.api = api; this.server = server; this.world = world; this.plugin = plugin;
+    this.console = api.getConsoleSender.invokeExact(server);
+    this.scheduler = api.getScheduler.invokeExact(server);
+    var feed = plugin == null ? null : new ChangeFeed();
+    int feeds = feed == null ? 0 : feed.install();
+    this.cache = new BlockCache(feeds > 0 ? BlockCache.MAX_AGE : 1);
+    this.liveIndex = feed != null && feed.entities;
+    this.livingMoves = liveIndex && feed.livingMoves;
+    this.scores = new ScoreTable(api.scoreboardManager != null ? scoreSink : ScoreTable.commands(this::execCommand));
+    System.out.println("[Pyrium] Block cache: " + (feeds > 0 ? feeds + " block events, max age " + cache.maxAge() + " ticks" : "per tick (no plugin for block events)"));
+    System.out.println("[Pyrium] Entity index: " + (liveIndex ? "entity events" + (livingMoves ? "" : ", mob positions re-read per tick") : "rebuilt per tick"));
+  }
+
+  /**
+   * Resolves the Bukkit API from the server's class loader. World: -Dpyrium.world or
+   * the first loaded world. plugin (may be null) is used for async chat delivery.
+   */
+  static PaperWorld create(Object server, Object plugin) throws Throwable {
+    var api = new Api(server.getClass().getClassLoader());
+    String name = System.getProperty("pyrium.world");
+    Object world = name != null ? api.getWorld.invokeExact(server, (Object) name) : ((List<?>) (Object) api.getWorlds.invokeExact(server)).get(0);
+    if (world == null) throw new IllegalStateException("world not found: " + name);
+    return new PaperWorld(api, server, world, plugin);
+  }
+
+  private static RuntimeException rethrow(Throwable t) {
+    if (t instanceof RuntimeException r) return r;
+    if (t instanceof Error e) throw e;
+    return new IllegalStateException(t);
+  }
+
+  // ========= Tick boundary =========
+
+  /**
+   * Applies queued block changes chunk by chunk, writes changed scores and hands queued
+   * chat to the async scheduler. Server thread.
+   */
+  public void flush() {
+    tick++;
+    flushBlocks();
+    scores.flush();
+    scoreSink.objectives.clear();
+    flushChat();
+    cache.tick();
+    if (tick % REPORT_EVERY == 0 && cache.hits() + cache.misses() > 0) System.out.println("[Pyrium] Block cache: " + cache.summary());
+  }
+
+  /** Pyrium-side scores of this world's bridge. */
+  public ScoreTable scoreTable() { return scores; }
+
+  /** Hit/miss counters of the GET_BLOCK cache. */
+  public BlockCache blockCache() { return cache; }
+
+  private void flushBlocks() {
+    if (edits.isEmpty()) return;
+    edits.apply(new BlockEdits.Sink() {
+      Object chunk;
+      int cx = Integer.MIN_VALUE, cz;
+      String lastId;
+      Object lastData;
+
+      public void section(int sx, int sy, int sz) {
+        if (sx == cx && sz == cz) return;
+        try { chunk = api.getChunkAt.invokeExact(world, sx, sz); } catch (Throwable t) { throw rethrow(t); }
+        cx = sx; cz = sz;
+      }
+
+      public void set(int x, int y, int z, String blockId, boolean edge) {
+        try {
+          if (blockId != lastId) { lastData = blockData(blockId); lastId = blockId; }
+          Object b = api.chunkGetBlock.invokeExact(chunk, x & 15, y, z & 15);
+          api.setBlockData.invokeExact(b, lastData, edge);
+          // placed states differ from the id (connections, defaults); with physics the neighbours may change too
+          if (edge) cache.invalidateAround(x, y, z); else cache.invalidate(x, y, z);
+        } catch (Throwable t) {
+          throw rethrow(t);
+        }
+      }
+    }, PHYSICS);
+  }
+
+  private Object blockData(String id) throws Throwable {
+    Object d = blockData.get(id);
+    if (d == null) blockData.put(id, d = api.createBlockData.invokeExact(server, (Object) id));
+    return d;
+  }
+
+  private void flushChat() {
+    if (chat.isEmpty()) return;
+    var out = new ArrayList<Object[]>();
+    try {
+      for (Msg m; (m = chat.poll()) != null; ) {
+        if (m.player() == null) { out.add(new Object[]{null, m.text()}); continue; }
+        Object p = api.getPlayerExact.invokeExact(server, (Object) m.player());
+        if (p != null) out.add(new Object[]{p, m.text()});
+      }
+      Runnable send = () -> {
+        try {
+          for (var m : out) {
+            if (m[0] == null) { int n = (int) api.broadcastMessage.invokeExact(server, m[1]); }
+            else api.sendMessage.invokeExact(m[0], m[1]);
+          }
+        } catch (Throwable t) {
+          t.printStackTrace();
+        }
+      };
+      if (plugin == null) send.run();
+      else { Object task = api.runTaskAsync.invokeExact(scheduler, plugin, (Object) send); }
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+  }
+
+  // ========= Blocks =========
+
+  public void setBlock(int x, int y, int z, String blockId) { edits.set(x, y, z, blockId); }
+
+  public void fillRegion(int x1, int y1, int z1, int x2, int y2, int z2, String blockId) { edits.fill(x1, y1, z1, x2, y2, z2, blockId); }
+
+  public void applyEdits(BlockEdits batch) { edits.addAll(batch); }
+
+  public String getBlock(int x, int y, int z) { return BlockStates.name(getBlockState(x, y, z)); }
+
+  public int getBlockState(int x, int y, int z) {
+    String queued = edits.get(x, y, z);
+    if (queued != null) return BlockStates.id(queued);
+    int id = cache.get(x, y, z);
+    if (id < 0) cache.put(x, y, z, id = BlockStates.id(lookup(x, y, z)));
+    return id;
+  }
+
+  /** Scans bypass the cache, a large region would only evict the polled blocks. */
+  public void replaceRegion(int x1, int y1, int z1, int x2, int y2, int z2, String from, String to) {
+    for (int x = Math.min(x1, x2); x <= Math.max(x1, x2); x++)
+      for (int z = Math.min(z1, z2); z <= Math.max(z1, z2); z++)
+        for (int y = Math.min(y1, y2); y <= Math.max(y1, y2); y++) {
+          String queued = edits.get(x, y, z);
+          if (BlockEdits.sameBlock(queued != null ? queued : lookup(x, y, z), from)) edits.set(x, y, z, to);
+        }
+  }
+
+  private String lookup(int x, int y, int z) {
+    try {
+      Object b = api.getBlockAt.invokeExact(world, x, y, z);
+      return (String) (Object) api.blockDataAsString.invokeExact(api.getBlockData.invokeExact(b));
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+  }
+
+  /**
+   * Invalidates BlockCache entries from Bukkit block events, at MONITOR priority: the
+   * change is applied right after the handlers return, before the next tick task can
+   * read it. Registered through Proxy listener/executor instances, so no Bukkit class is
+   * needed at compile time. Each event drops the block and its neighbours; changes
+   * without an event (redstone wire power, some physics) fall to the cache's max age.
+   *
+   * On Paper it also feeds the EntityIndex: add/remove-from-world events cover spawns,
+   * chunk loads, deaths and players joining; move and teleport events update positions.
+   */
+  private final class ChangeFeed {
+    private static final String[] EVENTS = {
+      "org.bukkit.event.block.BlockBreakEvent", "org.bukkit.event.block.BlockPlaceEvent",
+      "org.bukkit.event.block.BlockBurnEvent", "org.bukkit.event.block.BlockFadeEvent",
+      "org.bukkit.event.block.BlockFormEvent", "org.bukkit.event.block.BlockSpreadEvent",
+      "org.bukkit.event.block.BlockGrowEvent", "org.bukkit.event.block.BlockFromToEvent",
+      "org.bukkit.event.block.BlockRedstoneEvent", "org.bukkit.event.block.LeavesDecayEvent",
+      "org.bukkit.event.block.BlockPistonExtendEvent", "org.bukkit.event.block.BlockPistonRetractEvent",
+      "org.bukkit.event.block.BlockExplodeEvent", "org.bukkit.event.entity.EntityExplodeEvent",
+      "org.bukkit.event.entity.EntityChangeBlockEvent", "org.bukkit.event.world.ChunkUnloadEvent",
+      // doors, trapdoors, fence gates, levers and plates toggled by hand or by mobs notify nothing else
+      "org.bukkit.event.player.PlayerInteractEvent", "org.bukkit.event.entity.EntityInteractEvent",
+    };
+    // Paper only; both are needed for an incremental index
+    private static final String ENTITY_ADD = "com.destroystokyo.paper.event.entity.EntityAddToWorldEvent",
+      ENTITY_REMOVE = "com.destroystokyo.paper.event.entity.EntityRemoveFromWorldEvent";
+    // EntityMoveEvent (Paper) covers living entities; PlayerTeleportEvent has its own handler list
+    private static final String LIVING_MOVE = "io.papermc.paper.event.entity.EntityMoveEvent";
+    private static final String[] MOVES = {
+      LIVING_MOVE, "org.bukkit.event.player.PlayerMoveEvent",
+      "org.bukkit.event.player.PlayerTeleportEvent", "org.bukkit.event.entity.EntityTeleportEvent",
+    };
+    private MethodHandle blockX, blockY, blockZ, blockWorld, chunkX, chunkZ, chunkWorld;
+    private MethodHandle register;
+    private Object pm, listener, monitor;
+    boolean entities, livingMoves;
+
+    private interface On { void on(Object event) throws Throwable; }
+
+    /** Accessors of one event class; null where the event has no such part. */
+    private record Parts(Class<?> type, MethodHandle block, MethodHandle toBlock, MethodHandle blocks, MethodHandle chunk) {}
+
+    /** Returns the number of event types registered, 0 if the API is missing. */
+    int install() {
+      ClassLoader cl = server.getClass().getClassLoader();
+      int n = 0;
+      try {
+        Class<?> block = Api.c(cl, "org.bukkit.block.Block"), chunk = Api.c(cl, "org.bukkit.Chunk");
+        Class<?> listenerType = Api.c(cl, "org.bukkit.event.Listener"), executor = Api.c(cl, "org.bukkit.plugin.EventExecutor");
+        Class<?> priority = Api.c(cl, "org.bukkit.event.EventPriority"), manager = Api.c(cl, "org.bukkit.plugin.PluginManager");
+        blockX = Api.v(block, "getX", int.class);
+        blockY = Api.v(block, "getY", int.class);
+        blockZ = Api.v(block, "getZ", int.class);
+        blockWorld = Api.v(block, "getWorld", Api.c(cl, "org.bukkit.World"));
+        chunkX = Api.v(chunk, "getX", int.class);
+        chunkZ = Api.v(chunk, "getZ", int.class);
+        chunkWorld = Api.v(chunk, "getWorld", Api.c(cl, "org.bukkit.World"));
+        register = Api.v(manager, "registerEvent", void.class,
+          Class.class, listenerType, priority, executor, Api.c(cl, "org.bukkit.plugin.Plugin"), boolean.class);
+        pm = Api.v(Api.c(cl, "org.bukkit.Server"), "getPluginManager", manager).invokeExact(server);
+        monitor = priority.getField("MONITOR").get(null);
+        listener = Proxy.newProxyInstance(cl, new Class<?>[]{listenerType}, (proxy, m, args) -> object(proxy, m, args));
+        for (String name : EVENTS) {
+          Class<?> type;
+          try { type = Api.c(cl, name); } catch (ClassNotFoundException e) { continue; } // older API
+          MethodHandle one = part(type, "getBlock");
+          if (one == null) one = part(type, "getClickedBlock"); // PlayerInteractEvent; the other door half is a neighbour
+          var parts = new Parts(type, one, part(type, "getToBlock"),
+            part(type, "getBlocks") != null ? part(type, "getBlocks") : part(type, "blockList"), part(type, "getChunk"));
+          listen(type, e -> onEvent(parts, e));
+          n++;
+        }
+      } catch (Throwable t) {
+        System.err.println("[Pyrium] Block events unavailable (" + t + "), block cache entries live one tick");
+        return 0;
+      }
+      try {
+        entities = entityEvents(cl);
+      } catch (Throwable t) {
+        System.err.println("[Pyrium] Entity events unavailable (" + t + "), entity index rebuilt per tick");
+      }
+      return n;
+    }
+
+    /** Registers the entity feed; false (nothing registered) without Paper's add/remove events. */
+    private boolean entityEvents(ClassLoader cl) throws Throwable {
+      Class<?> add, remove;
+      try {
+        add = Api.c(cl, ENTITY_ADD);
+        remove = Api.c(cl, ENTITY_REMOVE);
+      } catch (ClassNotFoundException e) {
+        return false;
+      }
+      MethodHandle added = part(add, "getEntity"), removed = part(remove, "getEntity");
+      listen(add, e -> {
+        Object ent = added.invokeExact(e);
+        if (indexedTick >= 0 && entityWorld(ent) == world) track(ent);
+      });
+      listen(remove, e -> untrack(removed.invokeExact(e)));
+      for (String name : MOVES) {
+        Class<?> type;
+        try { type = Api.c(cl, name); } catch (ClassNotFoundException e) { continue; }
+        MethodHandle who = part(type, "getEntity") != null ? part(type, "getEntity") : part(type, "getPlayer"), to = part(type, "getTo");
+        if (who == null || to == null) continue;
+        listen(type, e -> moved(who.invokeExact(e), to.invokeExact(e)));
+        if (name.equals(LIVING_MOVE)) livingMoves = true;
+      }
+      return true;
+    }
+
+    /** Handler at MONITOR priority, skipped for cancelled events; subclasses with their own handler list need their own call. */
+    private void listen(Class<?> type, On handler) throws Throwable {
+      ClassLoader cl = server.getClass().getClassLoader();
+      Object exec = Proxy.newProxyInstance(cl, new Class<?>[]{Api.c(cl, "org.bukkit.plugin.EventExecutor")}, (proxy, m, args) -> {
+        if (!m.getName().equals("execute")) return object(proxy, m, args);
+        if (type.isInstance(args[1])) handler.on(args[1]);
+        return null;
+      });
+      register.invokeExact(pm, (Object) type, listener, monitor, exec, plugin, true);
+    }
+
+    private MethodHandle part(Class<?> type, String name) {
+      try {
+        Method m = type.getMethod(name);
+        return Api.erase(MethodHandles.publicLookup().unreflect(m));
+      } catch (ReflectiveOperationException e) {
+        return null;
+      }
+    }
+
+    private Object object(Object proxy, Method m, Object[] args) {
+      return switch (m.getName()) {
+        case "hashCode" -> System.identityHashCode(proxy);
+        case "equals" -> proxy == args[0];
+        case "toString" -> "PyriumBlockCache";
+        default -> null;
+      };
+    }
+
+    private void onEvent(Parts p, Object event) {
+      try {
+        if (p.block() != null) touched(p.block().invokeExact(event));
+        if (p.toBlock() != null) touched(p.toBlock().invokeExact(event));
+        if (p.blocks() != null) for (Object b : (List<?>) (Object) p.blocks().invokeExact(event)) touched(b);
+        if (p.chunk() != null) {
+          Object c = p.chunk().invokeExact(event);
+          if (chunkWorld.invokeExact(c) == world) cache.invalidateChunk((int) chunkX.invokeExact(c), (int) chunkZ.invokeExact(c));
+        }
+      } catch (Throwable t) {
+        cache.clear(); // safe fallback, the next reads go to the world
+      }
+    }
+
+    private void touched(Object b) throws Throwable {
+      if (b == null || blockWorld.invokeExact(b) != world) return;
+      cache.invalidateAround((int) blockX.invokeExact(b), (int) blockY.invokeExact(b), (int) blockZ.invokeExact(b));
+    }
+  }
+
+  // ========= Chat, commands, items, world =========
+
+  public void broadcast(String msg) { chat.add(new Msg(null, msg)); }
+  public void messagePlayer(String playerName, String msg) { chat.add(new Msg(playerName, msg)); }
+
+  public void execCommand(String cmd) {
+    try {
+      boolean ok = (boolean) api.dispatchCommand.invokeExact(server, console, (Object) cmd);
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+  }
+
+  public void teleportPlayer(String playerName, double x, double y, double z) {
+    try {
+      Object p = api.getPlayerExact.invokeExact(server, (Object) playerName);
+      if (p != null) { boolean ok = (boolean) api.teleport.invokeExact(p, api.newLocation.invokeExact(world, x, y, z)); }
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+  }
+
+  public void giveItem(String playerName, String itemId, int count) { items(playerName, itemId, count, true); }
+  public void takeItem(String playerName, String itemId, int count) { items(playerName, itemId, count, false); }
+
+  private void items(String playerName, String itemId, int count, boolean give) {
+    try {
+      Object p = api.getPlayerExact.invokeExact(server, (Object) playerName);
+      if (p == null || count <= 0) return;
+      Object mat = materials.get(itemId);
+      if (mat == null) {
+        mat = api.matchMaterial.invokeExact((Object) itemId);
+        if (mat == null) return;
+        materials.put(itemId, mat);
+      }
+      Object stacks = api.newItemArray.invokeExact(1);
+      ((Object[]) stacks)[0] = api.newItemStack.invokeExact(mat, count);
+      Object inv = api.getInventory.invokeExact(p);
+      Object rest = give ? api.addItem.invokeExact(inv, stacks) : api.removeItem.invokeExact(inv, stacks);
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+  }
+
+  public void setTime(long timeTicks) {
+    try { api.setTime.invokeExact(world, timeTicks); } catch (Throwable t) { throw rethrow(t); }
+  }
+
+  public long getTime() {
+    try { return (long) api.getTime.invokeExact(world); } catch (Throwable t) { throw rethrow(t); }
+  }
+
+  public void setWeather(String mode) {
+    boolean rain = !"clear".equalsIgnoreCase(mode), thunder = "thunder".equalsIgnoreCase(mode);
+    try {
+      api.setStorm.invokeExact(world, rain);
+      api.setThundering.invokeExact(world, thunder);
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+  }
+
+  // ========= Scoreboard =========
+
+  public void createObjective(String objective, String criteria) { scores.create(objective, criteria); }
+  public void removeObjective(String objective) { scores.remove(objective); }
+  public void setDisplaySlot(String objective, String slot) { scores.display(objective, slot); }
+  public void setScore(String objective, String entry, int value) { scores.set(objective, entry, value); }
+  public void addScore(String objective, String entry, int delta) { scores.add(objective, entry, delta); }
+  public void resetScore(String objective, String entry) { scores.reset(objective, entry); }
+  public int getScore(String objective, String entry) { return scores.get(objective, entry); }
+
+  /**
+   * ScoreTable sink on the main scoreboard. Objective handles are kept until the end of
+   * the flush, so each objective is looked up once per tick; scores of an objective the
+   * server does not know are dropped, like the failing command would.
+   */
+  private final class Scores implements ScoreTable.Sink {
+    final HashMap<String, Object> objectives = new HashMap<>();
+    private Object board;
+
+    private Object objective(String name) throws Throwable {
+      Object o = objectives.get(name);
+      if (o != null) return o;
+      if (board == null) {
+        // null until the first world is loaded
+        Object manager = api.scoreboardManager.invokeExact(server);
+        if (manager == null) return null;
+        board = api.mainScoreboard.invokeExact(manager);
+      }
+      o = api.getObjective.invokeExact(board, (Object) name);
+      if (o != null) objectives.put(name, o);
+      return o;
+    }
+
+    /** "sidebar", "list", "belowName" (or the enum name); null for slots the API lacks. */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object slot(String slot) {
+      String key = switch (slot.toLowerCase(Locale.ROOT)) {
+        case "list" -> "PLAYER_LIST";
+        case "belowname", "below_name" -> "BELOW_NAME";
+        default -> slot.toUpperCase(Locale.ROOT).replace('.', '_');
+      };
+      try { return Enum.valueOf((Class) api.displaySlot, key); } catch (IllegalArgumentException e) { return null; }
+    }
+
+    public void create(String objective, String criteria) {
+      try {
+        if (objective(objective) != null || board == null) return;
+        objectives.put(objective, api.newObjective.invokeExact(board, (Object) objective, (Object) criteria, (Object) objective));
+      } catch (IllegalArgumentException e) {
+        System.err.println("[Pyrium] Scoreboard: cannot create " + objective + " (" + criteria + "): " + e.getMessage());
+      } catch (Throwable t) {
+        throw rethrow(t);
+      }
+    }
+
+    public void remove(String objective) {
+      try {
+        Object o = objective(objective);
+        objectives.remove(objective);
+        if (o != null) api.unregister.invokeExact(o);
+      } catch (Throwable t) {
+        throw rethrow(t);
+      }
+    }
+
+    public void display(String objective, String slot) {
+      Object s = slot(slot);
+      if (s == null) { execCommand("scoreboard objectives setdisplay " + slot + " " + objective); return; }
+      try {
+        Object o = objective(objective);
+        if (o != null) api.setDisplaySlot.invokeExact(o, s);
+      } catch (Throwable t) {
+        throw rethrow(t);
+      }
+    }
+
+    public void set(String objective, String entry, int value) {
+      try {
+        Object o = objective(objective);
+        if (o != null) api.scoreSet.invokeExact(api.getScore.invokeExact(o, (Object) entry), value);
+      } catch (Throwable t) {
+        throw rethrow(t);
+      }
+    }
+
+    public void reset(String objective, String entry) {
+      if (api.scoreReset == null) { execCommand("scoreboard players reset " + entry + " " + objective); return; }
+      try {
+        Object o = objective(objective);
+        if (o != null) api.scoreReset.invokeExact(api.getScore.invokeExact(o, (Object) entry));
+      } catch (Throwable t) {
+        throw rethrow(t);
+      }
+    }
+
+    public int read(String objective, String entry) {
+      try {
+        Object o = objective(objective);
+        if (o == null) return ScoreTable.UNSET;
+        Object score = api.getScore.invokeExact(o, (Object) entry);
+        return (boolean) api.scoreIsSet.invokeExact(score) ? (int) api.scoreGet.invokeExact(score) : ScoreTable.UNSET;
+      } catch (Throwable t) {
+        throw rethrow(t);
+      }
+    }
+  }
+
+  // ========= Entities =========
+
+  /** Bukkit entity; the handle stays valid while the entity is in the index. */
+  final class Ent implements PyBCRuntime.EntityFacade {
+    final Object handle;
+    Ent(Object handle) { this.handle = handle; }
+    public double getSpeed() { return attr(this, "movement_speed"); }
+    public void setSpeed(double v) { setAttr(this, "movement_speed", v); }
+    public String getName() {
+      try {
+        String custom = (String) (Object) api.getCustomName.invokeExact(handle);
+        return custom != null ? custom : (String) (Object) api.getName.invokeExact(handle);
+      } catch (Throwable t) {
+        throw rethrow(t);
+      }
+    }
+    public void setName(String s) {
+      try { api.setCustomName.invokeExact(handle, (Object) s); } catch (Throwable t) { throw rethrow(t); }
+    }
+    public void teleport(double x, double y, double z) {
+      try {
+        boolean ok = (boolean) api.teleport.invokeExact(handle, api.newLocation.invokeExact(world, x, y, z));
+      } catch (Throwable t) {
+        throw rethrow(t);
+      }
+    }
+    public boolean hasTag(String tag) {
+      try { return ((Set<?>) (Object) api.getTags.invokeExact(handle)).contains(tag); } catch (Throwable t) { throw rethrow(t); }
+    }
+    public void addTag(String tag) {
+      try { boolean ok = (boolean) api.addTag.invokeExact(handle, (Object) tag); } catch (Throwable t) { throw rethrow(t); }
+    }
+    public void removeTag(String tag) {
+      try { boolean ok = (boolean) api.removeTag.invokeExact(handle, (Object) tag); } catch (Throwable t) { throw rethrow(t); }
+    }
+  }
+
+  private static String typeKey(String type) {
+    int colon = type.indexOf(':');
+    return (colon >= 0 ? type.substring(colon + 1) : type).toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * The index for this tick. Live: seeded from the world on first use, then only the
+   * drifting entities are re-read once per tick. Otherwise rebuilt on first use after flush().
+   */
+  private EntityIndex index() {
+    if (indexedTick == tick) return index;
+    try {
+      if (liveIndex && indexedTick >= 0) {
+        for (int i = 0; i < drifting.capacity(); i++) {
+          Object e = drifting.valueAt(i);
+          if (e != null) moved(e, api.getLocation.invokeExact(e));
+        }
+      } else {
+        index.clear();
+        drifting.clear();
+        for (Object e : (List<?>) (Object) api.getEntities.invokeExact(world)) track(e);
+      }
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+    indexedTick = tick;
+    return index;
+  }
+
+  private void track(Object e) throws Throwable {
+    int id = (int) api.entityId.invokeExact(e);
+    Object loc = api.getLocation.invokeExact(e);
+    String type = ((String) (Object) api.enumName.invokeExact(api.entityTypeOf.invokeExact(e))).toLowerCase(Locale.ROOT);
+    index.add(id, type, new Ent(e), (double) api.locX.invokeExact(loc), (double) api.locY.invokeExact(loc), (double) api.locZ.invokeExact(loc));
+    // players always fire move events, living entities only on Paper
+    if (liveIndex && !api.player.isInstance(e) && !(api.living.isInstance(e) && livingMoves)) drifting.put(id, e);
+  }
+
+  private void untrack(Object e) throws Throwable {
+    int id = (int) api.entityId.invokeExact(e);
+    index.remove(id);
+    drifting.remove(id);
+  }
+
+  private void moved(Object e, Object to) throws Throwable {
+    index.move((int) api.entityId.invokeExact(e), (double) api.locX.invokeExact(to), (double) api.locY.invokeExact(to), (double) api.locZ.invokeExact(to));
+  }
+
+  private Object entityWorld(Object e) throws Throwable { return api.entityWorld.invokeExact(e); }
+
+  public List<PyBCRuntime.EntityFacade> entities(String type) { return index().list(typeKey(type)); }
+
+  public List<PyBCRuntime.EntityFacade> entitiesInRegion(String type, int x1, int y1, int z1, int x2, int y2, int z2) {
+    var out = new ArrayList<PyBCRuntime.EntityFacade>();
+    index().forEachInRegion(typeKey(type), x1, y1, z1, x2, y2, z2, out::add);
+    return out;
+  }
+
+  public int countEntities(String type) { return index().count(typeKey(type)); }
+
+  public int countEntitiesInRegion(String type, int x1, int y1, int z1, int x2, int y2, int z2) {
+    return index().countInRegion(typeKey(type), x1, y1, z1, x2, y2, z2);
+  }
+
+  public void forEachEntity(String type, Consumer<PyBCRuntime.EntityFacade> visitor) { index().forEach(typeKey(type), visitor); }
+
+  public void forEachEntityInRegion(String type, int x1, int y1, int z1, int x2, int y2, int z2, Consumer<PyBCRuntime.EntityFacade> visitor) {
+    index().forEachInRegion(typeKey(type), x1, y1, z1, x2, y2, z2, visitor);
+  }
+
+  public void spawnEntity(String type, double x, double y, double z) { spawn(type, x, y, z); }
+
+  private Object spawn(String type, double x, double y, double z) {
+    try {
+      Object t = entityType(type);
+      if (t == null) return null;
+      Object e = api.spawnEntity.invokeExact(world, api.newLocation.invokeExact(world, x, y, z), t);
+      // the add event has indexed it already on Paper; same tick queries must see it either way
+      if (!liveIndex) indexedTick = -1; else if (e != null && indexedTick >= 0) track(e);
+      return e;
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private Object entityType(String type) {
+    String key = typeKey(type);
+    Object t = entityTypes.get(key);
+    if (t == null && !entityTypes.containsKey(key)) {
+      try { t = Enum.valueOf((Class) api.entityType, key.toUpperCase(Locale.ROOT)); } catch (IllegalArgumentException ignored) {}
+      entityTypes.put(key, t);
+    }
+    return t;
+  }
+
+  public void removeEntity(PyBCRuntime.EntityFacade e) {
+    if (!(e instanceof Ent ent)) return;
+    try {
+      api.remove.invokeExact(ent.handle);
+      // the remove event may only fire at the end of the tick
+      if (liveIndex) untrack(ent.handle); else indexedTick = -1;
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+  }
+
+  // ========= NBT / attributes =========
+
+  public void nbtSet(PyBCRuntime.EntityFacade e, String path, String value) {
+    if (!(e instanceof Ent ent) || api.pdc == null) return;
+    try {
+      api.pdcSet.invokeExact(api.pdc.invokeExact(ent.handle), api.keyFromString.invokeExact((Object) ("pyrium:" + path.toLowerCase(Locale.ROOT))),
+        api.pdcString, (Object) value);
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+  }
+
+  public String nbtGet(PyBCRuntime.EntityFacade e, String path) {
+    if (!(e instanceof Ent ent) || api.pdc == null) return "";
+    try {
+      Object v = api.pdcGet.invokeExact(api.pdc.invokeExact(ent.handle), api.keyFromString.invokeExact((Object) ("pyrium:" + path.toLowerCase(Locale.ROOT))),
+        api.pdcString);
+      return v == null ? "" : (String) v;
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+  }
+
+  public void setEntityAttr(PyBCRuntime.EntityFacade e, String attr, double value) {
+    if (e instanceof Ent ent) setAttr(ent, attr, value);
+  }
+
+  public double getEntityAttr(PyBCRuntime.EntityFacade e, String attr) {
+    return e instanceof Ent ent ? attr(ent, attr) : 0.0;
+  }
+
+  /** Attribute constant by name: "max_health" matches MAX_HEALTH (1.21.3+) and GENERIC_MAX_HEALTH. */
+  private Object attribute(String attr) {
+    String key = attr.toUpperCase(Locale.ROOT);
+    if (attributes.containsKey(key)) return attributes.get(key);
+    Object a = null;
+    for (String name : new String[]{key, "GENERIC_" + key}) {
+      try {
+        a = MethodHandles.publicLookup().findStaticGetter(api.attribute, name, api.attribute).invoke();
+        break;
+      } catch (Throwable ignored) {}
+    }
+    attributes.put(key, a);
+    return a;
+  }
+
+  private Object attrInstance(Ent e, String attr) throws Throwable {
+    Object a = attribute(attr);
+    if (a == null || !api.living.isInstance(e.handle)) return null;
+    return api.getAttribute.invokeExact(e.handle, a);
+  }
+
+  private double attr(Ent e, String attr) {
+    try {
+      Object inst = attrInstance(e, attr);
+      return inst == null ? 0.0 : (double) api.getBaseValue.invokeExact(inst);
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+  }
+
+  private void setAttr(Ent e, String attr, double value) {
+    try {
+      Object inst = attrInstance(e, attr);
+      if (inst != null) api.setBaseValue.invokeExact(inst, value);
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+  }
+
+  // ========= Vars =========
+
+  public void setVar(String name, long value) { vars.put(name, value); }
+  public long getVar(String name) { return vars.getOrDefault(name, 0L); }
+
+  // ========= Custom mobs =========
+  // Bukkit has no custom entity types: a custom mob is a tagged zombie (or the vanilla type
+  // named by its model) with name and attributes applied at spawn. Model, texture, loot,
+  // equipment and AI come from the resource pack and datapacks, not from here.
+
+  private final Map<String, String> mobBase = new HashMap<>();
+
+  public void registerCustomMob(String mobId, String displayName) { mobNames.put(mobId, displayName); }
+  public void setCustomMobModel(String mobId, String model) { if (entityType(model) != null) mobBase.put(mobId, model); }
+  public void setCustomMobTexture(String mobId, String texture) {}
+  public void setCustomMobSize(String mobId, double scale) { setCustomMobAttr(mobId, "scale", scale); }
+  public void setCustomMobAttr(String mobId, String attr, double value) {
+    mobAttrs.computeIfAbsent(mobId, k -> new LinkedHashMap<>()).put(attr, value);
+  }
+  public void setCustomMobLootTable(String mobId, String lootTable) {}
+  public void setCustomMobEquip(String mobId, String slot, String itemId) {}
+  public void setCustomMobAI(String mobId, String aiProfile) {}
+
+  public void spawnCustomMob(String mobId, int x, int y, int z) {
+    Object e = spawn(mobBase.getOrDefault(mobId, "zombie"), x + 0.5, y, z + 0.5);
+    if (e == null) return;
+    var ent = new Ent(e);
+    try {
+      boolean tagged = (boolean) api.addTag.invokeExact(e, (Object) ("pyrium.mob." + mobId));
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+    String name = mobNames.get(mobId);
+    if (name != null) ent.setName(name);
+    var attrs = mobAttrs.get(mobId);
+    if (attrs != null) attrs.forEach((a, v) -> setAttr(ent, a, v));
+  }
+
+  public void removeCustomMobs(String mobId) {
+    String tag = "pyrium.mob." + mobId;
+    try {
+      for (Object e : (List<?>) (Object) api.getEntities.invokeExact(world)) {
+        if (!((Set<?>) (Object) api.getTags.invokeExact(e)).contains(tag)) continue;
+        api.remove.invokeExact(e);
+        if (liveIndex) untrack(e);
+      }
+    } catch (Throwable t) {
+      throw rethrow(t);
+    }
+    if (!liveIndex) indexedTick = -1;
+  }
+}
@@ -0,0 +1,370 @@
+package io.pyrium.core;
+
+import java.util.*;
+
+/**
+ * PyBCExpr übersetzt die Bedingungstexte von IF_BEGIN, WHILE_BEGIN/WHILE_CHECK und
+ * ASSERT einmalig beim Laden in einen typisierten Ausdrucksbaum.
+ *
+ * Grammatik (Python-Teilmenge, so wie compiler.py sie ausgibt):
+ *   or   := and ("or" and)*
+ *   and  := not ("and" not)*
+ *   not  := "not" not | cmp
+ *   cmp  := sum (("==" | "!=" | "<" | "<=" | ">" | ">=") sum)?
+ *   sum  := prod (("+" | "-") prod)*
+ *   prod := unary (("*" | "/" | "//" | "%") unary)*
+ *   unary:= "-" unary | atom
+ *   atom := Zahl | 'str' | "str" | True | False | None | name | "(" or ")"
+ *
+ * Variablen werden über ihren Slot aus den Registerdateien der VM gelesen; Teilbäume
+ * ohne Variablen werden schon beim Parsen zu Konstanten gefaltet.
+ */
+public abstract class PyBCExpr {
+
+  static final byte INT = PyBCRuntime.INT, FLOAT = PyBCRuntime.FLOAT, STR = PyBCRuntime.STR;
+
+  /** Laufzeittyp des Ergebnisses (INT, FLOAT oder STR). */
+  abstract byte kind(PyBCRuntime vm);
+  abstract long asLong(PyBCRuntime vm);
+  abstract double asDouble(PyBCRuntime vm);
+  abstract String asString(PyBCRuntime vm);
+
+  /** Wahrheitswert nach Python-Regeln (0, 0.0 und "" sind falsch). */
+  public boolean test(PyBCRuntime vm) {
+    return switch (kind(vm)) {
+      case STR -> !asString(vm).isEmpty();
+      case FLOAT -> asDouble(vm) != 0.0;
+      default -> asLong(vm) != 0;
+    };
+  }
+
+  boolean isConst() { return false; }
+
+  // ========= Laden =========
+
+  static final Set<String> KEYWORDS = Set.of("and", "or", "not", "True", "False", "None");
+
+  /** Übersetzt alle Bedingungen einer Funktion; Index = pc, null für andere Ops. */
+  static PyBCExpr[] compileAll(PyBCModule.Function fn, PyBCModule.ConstPool pool, PyBCModule.VarTable vars) {
+    PyBCExpr[] out = new PyBCExpr[fn.size()];
+    for (int pc = 0; pc < out.length; pc++) {
+      if (!PyBCModule.VarTable.isCondition(fn.opCode(pc))) continue;
+      String src = pool.get(fn.sIdxA(pc));
+      try {
+        out[pc] = parse(src, vars);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalStateException("Bad condition '" + src + "' in " + fn.name + " at pc=" + pc + ": " + e.getMessage());
+      }
+    }
+    return out;
+  }
+
+  public static PyBCExpr parse(String src, PyBCModule.VarTable vars) {
+    if (src == null || src.isBlank()) return new Const(INT, 0, 0, "");
+    Parser p = new Parser(tokenize(src), vars);
+    PyBCExpr e = p.or();
+    if (p.pos != p.toks.size()) throw new IllegalArgumentException("unexpected '" + p.toks.get(p.pos) + "'");
+    return e;
+  }
+
+  /** Variablennamen eines Ausdrucks (ohne Schlüsselwörter und String-Literale). */
+  static List<String> identifiers(String src) {
+    List<String> out = new ArrayList<>();
+    try {
+      for (String t : tokenize(src)) {
+        if (isIdent(t) && !KEYWORDS.contains(t)) out.add(t);
+      }
+    } catch (IllegalArgumentException ignored) {
+      // Fehler werden beim Übersetzen der Bedingung gemeldet
+    }
+    return out;
+  }
+
+  private static boolean isIdent(String t) {
+    char c = t.charAt(0);
+    return Character.isLetter(c) || c == '_';
+  }
+
+  private static List<String> tokenize(String s) {
+    List<String> toks = new ArrayList<>();
+    int i = 0, n = s.length();
+    while (i < n) {
+      char c = s.charAt(i);
+      if (Character.isWhitespace(c)) { i++; continue; }
+      int st = i;
+      if (Character.isLetter(c) || c == '_') {
+        while (i < n && (Character.isLetterOrDigit(s.charAt(i)) || s.charAt(i) == '_')) i++;
+      } else if (Character.isDigit(c) || (c == '.' && i + 1 < n && Character.isDigit(s.charAt(i + 1)))) {
+        while (i < n && (Character.isDigit(s.charAt(i)) || s.charAt(i) == '.')) i++;
+        if (i < n && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+          i++;
+          if (i < n && (s.charAt(i) == '+' || s.charAt(i) == '-')) i++;
+          while (i < n && Character.isDigit(s.charAt(i))) i++;
+        }
+      } else if (c == '"' || c == '\'') {
+        i++;
+        while (i < n && s.charAt(i) != c) i += s.charAt(i) == '\\' ? 2 : 1;
+        if (i >= n) throw new IllegalArgumentException("unterminated string");
+        i++;
+      } else if (i + 1 < n && (s.startsWith("==", i) || s.startsWith("!=", i) || s.startsWith("<=", i)
+                 || s.startsWith(">=", i) || s.startsWith("//", i))) {
+        i += 2;
+      } else if ("<>+-*/%()".indexOf(c) >= 0) {
+        i++;
+      } else {
+        throw new IllegalArgumentException("unexpected character '" + c + "'");
+      }
+      toks.add(s.substring(st, i));
+    }
+    return toks;
+  }
+
+  private static final class Parser {
+    final List<String> toks;
+    final PyBCModule.VarTable vars;
+    int pos;
+
+    Parser(List<String> toks, PyBCModule.VarTable vars) { this.toks = toks; this.vars = vars; }
+
+    String peek() { return pos < toks.size() ? toks.get(pos) : ""; }
+    boolean eat(String t) { if (peek().equals(t)) { pos++; return true; } return false; }
+
+    PyBCExpr or() {
+      PyBCExpr l = and();
+      while (eat("or")) l = fold(new Logic(false, l, and()));
+      return l;
+    }
+    PyBCExpr and() {
+      PyBCExpr l = not();
+      while (eat("and")) l = fold(new Logic(true, l, not()));
+      return l;
+    }
+    PyBCExpr not() {
+      if (eat("not")) return fold(new Not(not()));
+      return cmp();
+    }
+    PyBCExpr cmp() {
+      PyBCExpr l = sum();
+      String t = peek();
+      int op = switch (t) {
+        case "==" -> Cmp.EQ; case "!=" -> Cmp.NE;
+        case "<" -> Cmp.LT; case "<=" -> Cmp.LE;
+        case ">" -> Cmp.GT; case ">=" -> Cmp.GE;
+        default -> -1;
+      };
+      if (op < 0) return l;
+      pos++;
+      return fold(new Cmp(op, l, sum()));
+    }
+    PyBCExpr sum() {
+      PyBCExpr l = prod();
+      while (true) {
+        if (eat("+")) l = fold(new Arith('+', l, prod()));
+        else if (eat("-")) l = fold(new Arith('-', l, prod()));
+        else return l;
+      }
+    }
+    PyBCExpr prod() {
+      PyBCExpr l = unary();
+      while (true) {
+        if (eat("*")) l = fold(new Arith('*', l, unary()));
+        else if (eat("//")) l = fold(new Arith('f', l, unary()));
+        else if (eat("/")) l = fold(new Arith('/', l, unary()));
+        else if (eat("%")) l = fold(new Arith('%', l, unary()));
+        else return l;
+      }
+    }
+    PyBCExpr unary() {
+      if (eat("-")) return fold(new Arith('-', new Const(INT, 0, 0, ""), unary()));
+      return atom();
+    }
+    PyBCExpr atom() {
+      if (pos >= toks.size()) throw new IllegalArgumentException("unexpected end of expression");
+      String t = toks.get(pos++);
+      if (t.equals("(")) {
+        PyBCExpr e = or();
+        if (!eat(")")) throw new IllegalArgumentException("missing ')'");
+        return e;
+      }
+      switch (t) {
+        case "True": return new Const(INT, 1, 1, "");
+        case "False": case "None": return new Const(INT, 0, 0, "");
+        default: break;
+      }
+      char c = t.charAt(0);
+      if (c == '"' || c == '\'') return new Const(STR, 0, 0, unescape(t.substring(1, t.length() - 1)));
+      if (Character.isDigit(c) || c == '.') {
+        try {
+          if (t.indexOf('.') < 0 && t.indexOf('e') < 0 && t.indexOf('E') < 0) {
+            long v = Long.parseLong(t);
+            return new Const(INT, v, v, "");
+          }
+          double d = Double.parseDouble(t);
+          return new Const(FLOAT, (long) d, d, "");
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("bad number '" + t + "'");
+        }
+      }
+      if (isIdent(t) && !KEYWORDS.contains(t)) {
+        int slot = vars.slotOf(t);
+        if (slot < 0) throw new IllegalArgumentException("unknown variable '" + t + "'");
+        return new Var(slot);
+      }
+      throw new IllegalArgumentException("unexpected '" + t + "'");
+    }
+
+    static String unescape(String s) {
+      if (s.indexOf('\\') < 0) return s;
+      StringBuilder sb = new StringBuilder(s.length());
+      for (int i = 0; i < s.length(); i++) {
+        char c = s.charAt(i);
+        if (c == '\\' && i + 1 < s.length()) {
+          char e = s.charAt(++i);
+          sb.append(switch (e) { case 'n' -> '\n'; case 't' -> '\t'; default -> e; });
+        } else sb.append(c);
+      }
+      return sb.toString();
+    }
+
+    /** Konstantenfaltung: Teilbäume ohne Variablen werden sofort ausgewertet. */
+    static PyBCExpr fold(PyBCExpr e) {
+      if (!e.isConst()) return e;
+      byte k = e.kind(null);
+      return new Const(k, e.asLong(null), e.asDouble(null), k == STR ? e.asString(null) : "");
+    }
+  }
+
+  // ========= Knoten =========
+
+  static final class Const extends PyBCExpr {
+    final byte kind; final long l; final double d; final String s;
+    Const(byte kind, long l, double d, String s) { this.kind = kind; this.l = l; this.d = d; this.s = s; }
+    byte kind(PyBCRuntime vm) { return kind; }
+    long asLong(PyBCRuntime vm) { return l; }
+    double asDouble(PyBCRuntime vm) { return d; }
+    String asString(PyBCRuntime vm) { return kind == STR ? s : kind == FLOAT ? String.valueOf(d) : String.valueOf(l); }
+    @Override boolean isConst() { return true; }
+  }
+
+  static final class Var extends PyBCExpr {
+    final int slot;
+    Var(int slot) { this.slot = slot; }
+    byte kind(PyBCRuntime vm) {
+      byte k = vm.kinds[slot];
+      return k == PyBCRuntime.UNSET ? INT : k;
+    }
+    long asLong(PyBCRuntime vm) {
+      return switch (vm.kinds[slot]) {
+        case FLOAT -> (long) vm.floats[slot];
+        case STR -> 0L;
+        default -> vm.ints[slot];
+      };
+    }
+    double asDouble(PyBCRuntime vm) {
+      return switch (vm.kinds[slot]) {
+        case FLOAT -> vm.floats[slot];
+        case STR -> 0.0;
+        default -> vm.ints[slot];
+      };
+    }
+    String asString(PyBCRuntime vm) {
+      return switch (vm.kinds[slot]) {
+        case FLOAT -> String.valueOf(vm.floats[slot]);
+        case STR -> vm.strs[slot] == null ? "" : vm.strs[slot];
+        default -> String.valueOf(vm.ints[slot]);
+      };
+    }
+  }
+
+  /** Bool-Ergebnisse werden als INT 0/1 geliefert. */
+  abstract static class Bool extends PyBCExpr {
+    byte kind(PyBCRuntime vm) { return INT; }
+    long asLong(PyBCRuntime vm) { return test(vm) ? 1 : 0; }
+    double asDouble(PyBCRuntime vm) { return test(vm) ? 1.0 : 0.0; }
+    String asString(PyBCRuntime vm) { return test(vm) ? "True" : "False"; }
+    @Override public abstract boolean test(PyBCRuntime vm);
+  }
+
+  static final class Not extends Bool {
+    final PyBCExpr e;
+    Not(PyBCExpr e) { this.e = e; }
+    @Override public boolean test(PyBCRuntime vm) { return !e.test(vm); }
+    @Override boolean isConst() { return e.isConst(); }
+  }
+
+  static final class Logic extends Bool {
+    final boolean and; final PyBCExpr l, r;
+    Logic(boolean and, PyBCExpr l, PyBCExpr r) { this.and = and; this.l = l; this.r = r; }
+    @Override public boolean test(PyBCRuntime vm) { return and ? l.test(vm) && r.test(vm) : l.test(vm) || r.test(vm); }
+    @Override boolean isConst() { return l.isConst() && r.isConst(); }
+  }
+
+  static final class Cmp extends Bool {
+    static final int EQ = 0, NE = 1, LT = 2, LE = 3, GT = 4, GE = 5;
+    final int op; final PyBCExpr l, r;
+    Cmp(int op, PyBCExpr l, PyBCExpr r) { this.op = op; this.l = l; this.r = r; }
+    @Override public boolean test(PyBCRuntime vm) {
+      byte lk = l.kind(vm), rk = r.kind(vm);
+      int c;
+      if (lk == STR || rk == STR) {
+        if (lk != rk) return op == NE; // str vs. Zahl: nur != ist wahr
+        c = l.asString(vm).compareTo(r.asString(vm));
+      } else if (lk == FLOAT || rk == FLOAT) {
+        c = Double.compare(l.asDouble(vm), r.asDouble(vm));
+      } else {
+        c = Long.compare(l.asLong(vm), r.asLong(vm));
+      }
+      return switch (op) {
+        case EQ -> c == 0; case NE -> c != 0;
+        case LT -> c < 0; case LE -> c <= 0;
+        case GT -> c > 0; default -> c >= 0;
+      };
+    }
+    @Override boolean isConst() { return l.isConst() && r.isConst(); }
+  }
+
+  static final class Arith extends PyBCExpr {
+    final char op; final PyBCExpr l, r;
+    Arith(char op, PyBCExpr l, PyBCExpr r) { this.op = op; this.l = l; this.r = r; }
+    byte kind(PyBCRuntime vm) {
+      byte lk = l.kind(vm), rk = r.kind(vm);
+      if (op == '+' && lk == STR && rk == STR) return STR;
+      return op == '/' || lk == FLOAT || rk == FLOAT ? FLOAT : INT;
+    }
+    long asLong(PyBCRuntime vm) {
+      if (kind(vm) != INT) return (long) asDouble(vm);
+      long a = l.asLong(vm), b = r.asLong(vm);
+      return switch (op) {
+        case '+' -> a + b;
+        case '-' -> a - b;
+        case '*' -> a * b;
+        case 'f' -> b == 0 ? 0 : Math.floorDiv(a, b);
+        case '%' -> b == 0 ? 0 : Math.floorMod(a, b);
+        default -> 0L;
+      };
+    }
+    double asDouble(PyBCRuntime vm) {
+      byte k = kind(vm);
+      if (k == INT) return asLong(vm);
+      if (k == STR) return 0.0;
+      double a = l.asDouble(vm), b = r.asDouble(vm);
+      return switch (op) {
+        case '+' -> a + b;
+        case '-' -> a - b;
+        case '*' -> a * b;
+        case '/' -> b == 0.0 ? 0.0 : a / b;
+        case 'f' -> b == 0.0 ? 0.0 : Math.floor(a / b);
+        case '%' -> b == 0.0 ? 0.0 : a - Math.floor(a / b) * b;
+        default -> 0.0;
+      };
+    }
+    String asString(PyBCRuntime vm) {
+      return switch (kind(vm)) {
+        case STR -> l.asString(vm) + r.asString(vm);
+        case FLOAT -> String.valueOf(asDouble(vm));
+        default -> String.valueOf(asLong(vm));
+      };
+    }
+    @Override boolean isConst() { return l.isConst() && r.isConst(); }
+  }
+}
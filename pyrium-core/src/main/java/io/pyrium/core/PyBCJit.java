@@ -0,0 +1,200 @@
+package io.pyrium.core;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * PyBCJit ist die zweite Ausführungsstufe der VM.
+ *
+ * Heiße Funktionen (Aufrufzähler >= pyrium.jit.threshold) werden einmalig in ein
+ * Array vorgebundener Schritte übersetzt: Konstanten aus dem Pool, Zahlen und
+ * Sprungziele sind bereits aufgelöst, jeder Schritt ruft die Fassade direkt auf.
+ * Damit entfallen der große switch und das Dekodieren der Op-Felder (Pool-Zugriffe,
+ * Slot-Suche) pro Op. Inlining ist nicht der Gewinn: der Aufruf steps[pc].run(this) in
+ * PyBCRuntime.executeCompiled sieht viele Lambda-Klassen und bleibt megamorph, jeder
+ * Schritt ist also ein echter Interface-Aufruf.
+ *
+ * Funktionen mit Ops, die hier nicht unterstützt werden, bleiben im Interpreter.
+ */
+public final class PyBCJit {
+
+  /** Führt eine Op aus und liefert den nächsten pc (>= size() beendet die Funktion). */
+  @FunctionalInterface
+  public interface Step { int run(PyBCRuntime vm); }
+
+  public static final class Compiled {
+    final Step[] steps;
+    Compiled(Step[] steps) { this.steps = steps; }
+    public int size() { return steps.length; }
+  }
+
+  static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("pyrium.jit", "true"));
+  static final int THRESHOLD = Integer.getInteger("pyrium.jit.threshold", 100);
+
+  /** Übersetzt fn oder liefert null, wenn eine Op nicht unterstützt wird. */
+  public static Compiled compile(PyBCModule.Function fn, PyBCModule.ConstPool pool, PyBCModule.VarTable vars) {
+    int n = fn.size();
+    Step[] steps = new Step[n];
+    for (int pc = 0; pc < n; pc++) {
+      Step s = compileOp(fn, pool, vars, pc);
+      if (s == null) return null;
+      steps[pc] = s;
+    }
+    return new Compiled(steps);
+  }
+
+  private static Step compileOp(PyBCModule.Function fn, PyBCModule.ConstPool pool, PyBCModule.VarTable vars, int pc) {
+    final String A = pool.get(fn.sIdxA(pc));
+    final String B = pool.get(fn.sIdxB(pc));
+    final String itemB = pool.resourceId(fn.sIdxB(pc));
+    final int a = vars.slotOf(fn.sIdxA(pc));
+    final int next = pc + 1;
+    final int jump = fn.jumps[pc];
+    final int end = fn.size();
+    final long i64 = fn.i64(pc);
+    final double num = fn.num(pc);
+    final PyBCExpr cond = fn.conds[pc];
+
+    return switch (fn.opCode(pc)) {
+      // ===== Core =====
+      case NOP, IF_END, WHILE_BEGIN, TRY_BEGIN, TRY_END, VAR_GET -> vm -> next;
+      case LOG -> { String line = "[Pyrium Mod] " + A; yield vm -> { System.out.println(line); return next; }; }
+      case DEBUG -> {
+        String line = "[Pyrium DEBUG] " + A + " num=" + num + " i64=" + i64;
+        yield vm -> { System.out.println(line); return next; };
+      }
+      case ASSERT -> vm -> {
+        if (!cond.test(vm)) throw new IllegalStateException("ASSERT failed: " + A);
+        return next;
+      };
+      case RETURN -> vm -> end;
+
+      // ===== Math/Vars =====
+      case VAR_SET -> vm -> { vm.varSet(a, i64); return next; };
+      case VAR_INC, MATH_ADD -> vm -> { vm.varSet(a, vm.ints[a] + i64); return next; };
+      case VAR_DEC, MATH_SUB -> vm -> { vm.varSet(a, vm.ints[a] - i64); return next; };
+      case MATH_MUL -> vm -> { vm.varSet(a, vm.ints[a] * i64); return next; };
+      case MATH_DIV -> i64 == 0 ? vm -> next : vm -> { vm.varSet(a, vm.ints[a] / i64); return next; };
+      case RAND_INT -> {
+        int bound = (int) Math.max(1, i64);
+        yield vm -> { vm.varSet(a, ThreadLocalRandom.current().nextInt(bound)); return next; };
+      }
+      case RAND_FLOAT -> vm -> { vm.floatSet(a, ThreadLocalRandom.current().nextDouble()); return next; };
+      case BATCH_ROW -> vm -> { vm.batchRow(vm.ints[a]); return next; };
+
+      // ===== Control flow =====
+      case IF_BEGIN, WHILE_CHECK -> vm -> cond.test(vm) ? next : jump;
+      case IF_ELSE, WHILE_END, BREAK, CONTINUE, CATCH -> vm -> jump;
+      case FOR_INIT -> vm -> { vm.varSet(a, i64); return next; };
+      case FOR_ITER -> {
+        long step = num == 0.0 ? 1 : (long) num;
+        yield step > 0
+          ? vm -> vm.ints[a] < i64 ? next : jump
+          : vm -> vm.ints[a] > i64 ? next : jump;
+      }
+      case FOR_END -> {
+        double itStep = fn.num(jump);
+        long step = itStep == 0.0 ? 1 : (long) itStep;
+        yield vm -> { vm.varSet(a, vm.ints[a] + step); return jump; };
+      }
+
+      // ===== World/time/weather =====
+      case SET_TIME -> vm -> { vm.world.setTime(i64); return next; };
+      case GET_TIME -> vm -> { vm.varSet(a, vm.world.getTime()); return next; };
+      case SET_WEATHER -> vm -> { vm.world.setWeather(A); return next; };
+
+      // ===== Entities =====
+      case REMOVE_ENTITY -> vm -> { vm.world.removeEntities(A); return next; };
+      case FIND_ENTITIES -> vm -> { vm.varSet(a, vm.world.countEntities(A)); return next; };
+      case FIND_ENTITIES_REGION -> {
+        int[] c = fn.coords[pc];
+        String type = fn.texts[pc];
+        yield vm -> { vm.varSet(a, vm.world.countEntitiesInRegion(type, c[0], c[1], c[2], c[3], c[4], c[5])); return next; };
+      }
+      case SET_ENTITY_ATTR -> vm -> { vm.world.setAttrBulk(A, B, num); return next; };
+      case SET_ENTITY_NBT -> { String v = fn.texts[pc]; yield vm -> { vm.world.setNbtBulk(A, B, v); return next; }; }
+      case MUL_ENTITY_SPEED -> {
+        String type = A.isEmpty() ? "Zombie" : A;
+        double factor = num == 0.0 ? 1.0 : num;
+        yield vm -> { vm.world.scaleAttribute(type, PyBCRuntime.WorldFacade.ATTR_SPEED, factor); return next; };
+      }
+
+      // ===== Players =====
+      case BROADCAST -> vm -> { vm.world.broadcast(A); return next; };
+      case MESSAGE_PLAYER -> vm -> { vm.world.messagePlayer(A, B); return next; };
+      case GIVE_ITEM -> { int count = (int) i64; yield vm -> { vm.world.giveItem(A, itemB, count); return next; }; }
+      case TAKE_ITEM -> { int count = (int) i64; yield vm -> { vm.world.takeItem(A, itemB, count); return next; }; }
+      case EXEC_CMD -> vm -> { vm.world.execCommand(A); return next; };
+      case TELEPORT_PLAYER -> { double y = i64; yield vm -> { vm.world.teleportPlayer(A, num, y, 0.0); return next; }; }
+
+      // ===== Scoreboard, tags, data storage =====
+      case SCOREBOARD_CREATE -> { String criteria = fn.texts[pc]; yield vm -> { vm.world.createObjective(A, criteria); return next; }; }
+      case SCOREBOARD_REMOVE -> vm -> { vm.world.removeObjective(A); return next; };
+      case SCOREBOARD_SET_DISPLAY -> vm -> { vm.world.setDisplaySlot(A, B); return next; };
+      case SCORE_SET, SCORE_ADD -> {
+        int value = (int) i64;
+        boolean add = fn.opCode(pc) == PyBCModule.OpCode.SCORE_ADD;
+        String entry = fn.texts[pc];
+        int ref = fn.refs[pc];
+        if (ref >= 0) yield add
+          ? vm -> { vm.world.addScore(A, vm.text(ref), value); return next; }
+          : vm -> { vm.world.setScore(A, vm.text(ref), value); return next; };
+        yield add
+          ? vm -> { vm.world.addScore(A, entry, value); return next; }
+          : vm -> { vm.world.setScore(A, entry, value); return next; };
+      }
+      case SCORE_RESET -> {
+        String entry = fn.texts[pc];
+        int ref = fn.refs[pc];
+        yield vm -> { vm.world.resetScore(A, ref < 0 ? entry : vm.text(ref)); return next; };
+      }
+      case SCORE_GET -> {
+        String objective = pool.left(fn.sIdxB(pc)), entry = fn.texts[pc];
+        int ref = fn.refs[pc];
+        yield vm -> { vm.varSet(a, vm.world.getScore(objective, ref < 0 ? entry : vm.text(ref))); return next; };
+      }
+      case TAG_ADD -> vm -> { vm.world.addTag(A, B); return next; };
+      case TAG_REMOVE -> vm -> { vm.world.removeTag(A, B); return next; };
+      case TAG_HAS -> {
+        String type = pool.left(fn.sIdxB(pc)), tag = fn.texts[pc];
+        yield vm -> { vm.varSet(a, vm.world.countTagged(type, tag)); return next; };
+      }
+      case DATA_STORE_SET -> {
+        int ref = fn.refs[pc];
+        Object v = ref >= 0 ? null : PyBCRuntime.dataConst(pool, fn.sIdxB(pc), i64);
+        yield vm -> {
+          Object value = ref >= 0 ? vm.value(ref) : v;
+          if (value == null) vm.world.dataDelete(A); else vm.world.dataSet(A, value);
+          return next;
+        };
+      }
+      case DATA_STORE_GET -> vm -> { vm.valueSet(a, vm.world.dataGet(B)); return next; };
+      case DATA_STORE_DELETE -> vm -> { vm.world.dataDelete(A); return next; };
+
+      // ===== Blocks =====
+      case SET_BLOCK -> {
+        int[] c = fn.coords[pc];
+        int x = c[0], y = c[1], z = c[2];
+        String block = pool.resourceId(fn.sIdxA(pc));
+        yield vm -> { vm.world.setBlock(x, y, z, block); return next; };
+      }
+      case GET_BLOCK -> {
+        int[] c = fn.coords[pc];
+        int x = c[0], y = c[1], z = c[2];
+        yield vm -> { vm.strSet(a, BlockStates.name(vm.world.getBlockState(x, y, z))); return next; };
+      }
+      case FILL_REGION -> {
+        int[] c = fn.coords[pc];
+        String block = pool.resourceId(fn.sIdxA(pc));
+        yield vm -> { vm.world.fillRegion(c[0], c[1], c[2], c[3], c[4], c[5], block); return next; };
+      }
+      case REPLACE_REGION -> {
+        int[] c = fn.coords[pc];
+        String from = fn.texts[pc], to = pool.resourceId(fn.sIdxA(pc));
+        yield vm -> { vm.world.replaceRegion(c[0], c[1], c[2], c[3], c[4], c[5], from, to); return next; };
+      }
+
+      // alles andere bleibt im Interpreter
+      default -> null;
+    };
+  }
+}
@@ -0,0 +1,113 @@
+package io.pyrium.core;
+
+import java.util.*;
+
+/**
+ * PyBCLinker löst die "structured ops" einer Funktion beim ersten Aufruf in echte
+ * Sprungziele (PC-Offsets) auf.
+ *
+ * - jumps[pc]: Sprungziel der Op an pc (-1 = kein Sprung)
+ *   - IF_BEGIN: Ziel wenn die Bedingung falsch ist (nach IF_ELSE bzw. IF_END)
+ *   - IF_ELSE: Ende des then-Blocks, springt hinter IF_END
+ *   - WHILE_CHECK / FOR_ITER: Ziel wenn die Schleife endet (hinter *_END)
+ *   - WHILE_END / FOR_END: Rücksprung auf WHILE_CHECK bzw. FOR_ITER
+ *   - BREAK / CONTINUE: Ziel in der innersten Schleife
+ *   - CATCH: normaler Fluss überspringt den catch-Block (hinter TRY_END)
+ * - handlers[pc]: Einsprung in den catch-Block der innersten try-Region (-1 = keiner)
+ */
+public final class PyBCLinker {
+
+  public record Links(int[] jumps, int[] handlers) {}
+
+  private enum Kind { IF, WHILE, FOR, TRY }
+
+  private static final class Block {
+    final Kind kind;
+    final int begin;
+    int mid = -1; // IF_ELSE, WHILE_CHECK, FOR_ITER oder CATCH
+    final List<Integer> breaks = new ArrayList<>();
+    final List<Integer> continues = new ArrayList<>();
+    Block(Kind kind, int begin) { this.kind = kind; this.begin = begin; }
+  }
+
+  public static Links link(PyBCModule.Function fn) {
+    String fnName = fn.name;
+    int n = fn.size();
+    int[] jumps = new int[n];
+    int[] handlers = new int[n];
+    Arrays.fill(jumps, -1);
+    Arrays.fill(handlers, -1);
+
+    Deque<Block> open = new ArrayDeque<>();
+    for (int pc = 0; pc < n; pc++) {
+      switch (fn.opCode(pc)) {
+        case IF_BEGIN -> open.push(new Block(Kind.IF, pc));
+        case WHILE_BEGIN -> open.push(new Block(Kind.WHILE, pc));
+        case FOR_INIT -> open.push(new Block(Kind.FOR, pc));
+        case TRY_BEGIN -> open.push(new Block(Kind.TRY, pc));
+
+        case IF_ELSE -> expect(open, Kind.IF, fnName, pc).mid = pc;
+        case WHILE_CHECK -> expect(open, Kind.WHILE, fnName, pc).mid = pc;
+        case FOR_ITER -> expect(open, Kind.FOR, fnName, pc).mid = pc;
+        case CATCH -> expect(open, Kind.TRY, fnName, pc).mid = pc;
+
+        case IF_END -> {
+          Block b = expect(open, Kind.IF, fnName, pc);
+          open.pop();
+          if (b.mid >= 0) { jumps[b.begin] = b.mid + 1; jumps[b.mid] = pc + 1; }
+          else jumps[b.begin] = pc + 1;
+        }
+        case WHILE_END -> {
+          Block b = expect(open, Kind.WHILE, fnName, pc);
+          open.pop();
+          int check = b.mid >= 0 ? b.mid : b.begin;
+          if (b.mid >= 0) jumps[b.mid] = pc + 1;
+          jumps[pc] = check;
+          for (int br : b.breaks) jumps[br] = pc + 1;
+          for (int co : b.continues) jumps[co] = check;
+        }
+        case FOR_END -> {
+          Block b = expect(open, Kind.FOR, fnName, pc);
+          open.pop();
+          if (b.mid < 0) throw new IllegalStateException("FOR_END without FOR_ITER in " + fnName + " at pc=" + pc);
+          jumps[b.mid] = pc + 1;
+          jumps[pc] = b.mid;
+          for (int br : b.breaks) jumps[br] = pc + 1;
+          // continue läuft über FOR_END, damit der Schritt ausgeführt wird
+          for (int co : b.continues) jumps[co] = pc;
+        }
+        case TRY_END -> {
+          Block b = expect(open, Kind.TRY, fnName, pc);
+          open.pop();
+          int bodyEnd = b.mid >= 0 ? b.mid : pc;
+          int handler = b.mid >= 0 ? b.mid + 1 : pc + 1;
+          // innere try-Regionen wurden zuerst geschlossen und behalten ihren Handler
+          for (int i = b.begin + 1; i < bodyEnd; i++) if (handlers[i] < 0) handlers[i] = handler;
+          if (b.mid >= 0) jumps[b.mid] = pc + 1;
+        }
+
+        case BREAK -> innermostLoop(open, fnName, pc).breaks.add(pc);
+        case CONTINUE -> innermostLoop(open, fnName, pc).continues.add(pc);
+        default -> {}
+      }
+    }
+    if (!open.isEmpty()) {
+      Block b = open.peek();
+      throw new IllegalStateException("Unclosed " + b.kind + " block in " + fnName + " at pc=" + b.begin);
+    }
+    return new Links(jumps, handlers);
+  }
+
+  private static Block expect(Deque<Block> open, Kind kind, String fnName, int pc) {
+    Block b = open.peek();
+    if (b == null || b.kind != kind) {
+      throw new IllegalStateException("Unbalanced " + kind + " block in " + fnName + " at pc=" + pc);
+    }
+    return b;
+  }
+
+  private static Block innermostLoop(Deque<Block> open, String fnName, int pc) {
+    for (Block b : open) if (b.kind == Kind.WHILE || b.kind == Kind.FOR) return b;
+    throw new IllegalStateException("BREAK/CONTINUE outside of loop in " + fnName + " at pc=" + pc);
+  }
+}
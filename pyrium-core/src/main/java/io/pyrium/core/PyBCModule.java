@@ -1,14 +1,48 @@
 package io.pyrium.core;
 
 import java.io.*;
-import java.nio.file.Path;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
 
 /**
  * PyBCModule repräsentiert ein kompiliertes .pybc Modul.
- * Format v2 mit String-Konstantenpool und erweiterten Feldern.
  *
- * Binary layout (big-endian):
+ * Format v3 (aktuell, little-endian, per FileChannel.map eingeblendet):
+ * - 32 Byte Header:
+ *   - 4 Byte MAGIC "PYBC", u32 VERSION = 3, u32 flags (FLAG_WIDE_COORDS)
+ *   - u32 poolCount, u32 fnCount
+ *   - u32 poolOffset, u32 fnTableOffset, u32 codeOffset (absolute Byte-Offsets)
+ * - ab Byte 32: u32 len + UTF-8 moduleName
+ * - poolOffset: poolCount x { u32 len, UTF-8 }
+ * - fnTableOffset: fnCount x { u32 nameIdx (Pool), u32 codeStart (absolut), u32 opCount, u32 reserved }
+ * - codeOffset (32-Byte-aligned): Instruktionen mit fester Breite, 32 Byte pro Op:
+ *   { s32 opcode, s32 strAIndex, s32 strBIndex, s32 flags, f64 numberPayload, s64 intPayload }
+ *   flags: OPF_REF_B (v2-Dateien und ältere Compiler schreiben 0)
+ *
+ * Blockkoordinaten (SET_BLOCK, GET_BLOCK, FILL_REGION, REPLACE_REGION, FIND_ENTITIES_REGION,
+ * SPAWN_CUSTOM_MOB): mit FLAG_WIDE_COORDS i64 = x | z << 32 (je 32 Bit mit Vorzeichen),
+ * num = y; die zweite Ecke der Region-Ops steht als "x2,y2,z2" in strB (REPLACE:
+ * "x2,y2,z2|vonBlock", FIND_ENTITIES_REGION: "x2,y2,z2|Typ", Anzahl in die Variable strA).
+ * Ohne das Flag (ältere Dateien, v2) gilt für die Punkt-Ops die alte 16-Bit-Packung
+ * x | y << 16 | z << 32; die Region-Ops sind immer breit (der Compiler hat
+ * FIND_ENTITIES_REGION vorher nicht erzeugt).
+ *
+ * Scoreboard, Tags und Datenspeicher (240-252): strA = Objective, Entity-Typ oder Schlüssel,
+ * strB = Eintrag, Kriterium, Anzeige, Tag oder Wert, i64 = Punkte. Ops mit Ergebnis
+ * (SCORE_GET, TAG_HAS, DATA_STORE_GET) schreiben in die Variable strA, ihre Operanden stehen
+ * als "links|rechts" in strB. Mit OPF_REF_B ist der Eintrag bzw. Wert (bei SCORE_GET die
+ * rechte Hälfte) der Name einer Variablen, deren Wert gelesen wird; ohne das Flag ist jeder
+ * String literal, auch "$name". Eine Variable, die im Modul nirgends gesetzt wird und kein
+ * Event-Argument ist, lässt die Funktion beim Linken scheitern.
+ *
+ * Die VM liest Ops direkt aus dem gemappten Puffer (keine Op-Objekte). Funktionen werden
+ * erst beim ersten Aufruf gelinkt (Sprungziele, Bedingungen), siehe Function.ensureLinked;
+ * beim Hot Reload prüft der Watcher-Thread vorher nur, ob alle linken (Function.linkError).
+ *
+ * Format v2 (alt, big-endian, wird weiterhin gelesen und beim Laden ins v3-Op-Layout gepackt):
  * - u32 MAGIC = 'PYBC' (0x50594243)
  * - u32 VERSION = 2
  * - UTF moduleName
@@ -29,25 +63,396 @@ import java.util.*;
  */
 public final class PyBCModule {
   public static final int MAGIC = 0x50594243; // 'PYBC'
-  public static final int VERSION = 2;
+  public static final int VERSION = 3;
+  static final int V2 = 2;
+  public static final int FLAG_WIDE_COORDS = 1;
+  static final int HEADER_SIZE = 32, FN_ENTRY_SIZE = 16;
+  // Op-Layout (v3 und im Speicher): Byte-Offsets innerhalb eines 32-Byte-Eintrags
+  static final int OP_SHIFT = 5, OP_CODE = 0, OP_A = 4, OP_B = 8, OP_FLAGS = 12, OP_NUM = 16, OP_I64 = 24;
+  /** Op-Flag: der Eintrag/Wert in strB ist ein Variablenname (Score-/Data-Ops). */
+  public static final int OPF_REF_B = 1;
 
   // ========= Const pool =========
+  /**
+   * Typisierter Konstantenpool: alle Formen eines Eintrags werden einmal beim Laden berechnet.
+   * Strings werden modulübergreifend interniert, damit viele ähnliche Mods dieselben Instanzen teilen.
+   */
   public static final class ConstPool {
-    public final List<String> strings;
-    public ConstPool(List<String> strings){ this.strings = strings; }
-    public String get(int idx){
-      if (idx < 0 || idx >= strings.size()) return "";
-      return strings.get(idx);
+    private static final byte NONE = 0;
+    private final String[] strings;
+    // Zahlform (PyBCRuntime.INT/FLOAT, NONE wenn keine Zahl)
+    private final byte[] numKind;
+    private final long[] longs;
+    private final double[] doubles;
+    // Resource-ID mit Namespace ("stone" -> "minecraft:stone"), null wenn keine gültige ID
+    private final String[] ids;
+    // "links|rechts"-Kodierung (z.B. SET_CUSTOM_MOB_EQUIP: slot|item), rechts null ohne '|'
+    private final String[] left, right;
+
+    public ConstPool(List<String> strings){
+      int n = strings.size();
+      this.strings = new String[n];
+      this.numKind = new byte[n];
+      this.longs = new long[n];
+      this.doubles = new double[n];
+      this.ids = new String[n];
+      this.left = new String[n];
+      this.right = new String[n];
+      for (int i = 0; i < n; i++) {
+        String v = strings.get(i).intern();
+        this.strings[i] = v;
+        parseNumber(i, v);
+        ids[i] = numKind[i] == NONE ? resourceId(v) : null;
+        int bar = v.indexOf('|');
+        left[i] = bar < 0 ? v : v.substring(0, bar).intern();
+        right[i] = bar < 0 ? null : v.substring(bar + 1).intern();
+      }
+    }
+
+    private void parseNumber(int i, String v) {
+      if (v.isEmpty()) return;
+      try {
+        longs[i] = Long.parseLong(v);
+        doubles[i] = longs[i];
+        numKind[i] = PyBCRuntime.INT;
+      } catch (NumberFormatException e) {
+        char c = v.charAt(v.length() - 1);
+        if (!Character.isDigit(c) && c != '.') return; // "NaN", "1f" usw. sind keine Pool-Zahlen
+        try {
+          doubles[i] = Double.parseDouble(v);
+          longs[i] = (long) doubles[i];
+          numKind[i] = PyBCRuntime.FLOAT;
+        } catch (NumberFormatException ignored) {}
+      }
+    }
+
+    static String resourceId(String v) {
+      if (v.isEmpty()) return null;
+      int colon = v.indexOf(':');
+      if (colon != v.lastIndexOf(':') || colon == 0 || colon == v.length() - 1) return null;
+      for (int k = 0; k < v.length(); k++) {
+        char c = v.charAt(k);
+        boolean ok = (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '-' || c == '.'
+          || c == ':' || (c == '/' && k > colon);
+        if (!ok) return null;
+      }
+      return colon < 0 ? ("minecraft:" + v).intern() : v;
+    }
+
+    private boolean valid(int idx) { return idx >= 0 && idx < strings.length; }
+
+    public String get(int idx){ return valid(idx) ? strings[idx] : ""; }
+    public int size(){ return strings.length; }
+
+    public boolean isNumber(int idx) { return valid(idx) && numKind[idx] != NONE; }
+    public boolean isInt(int idx) { return valid(idx) && numKind[idx] == PyBCRuntime.INT; }
+    public long asLong(int idx, long dflt) { return isNumber(idx) ? longs[idx] : dflt; }
+    public double asDouble(int idx, double dflt) { return isNumber(idx) ? doubles[idx] : dflt; }
+
+    /** Block-/Item-ID mit Namespace; Einträge, die keine ID sind, kommen unverändert zurück. */
+    public String resourceId(int idx) { return valid(idx) && ids[idx] != null ? ids[idx] : get(idx); }
+
+    public String left(int idx) { return valid(idx) ? left[idx] : ""; }
+    public String right(int idx) { return valid(idx) ? right[idx] : null; }
+  }
+
+  /**
+   * Vorberechnete Strings pro pc (beim Linken), damit der Tick-Pfad keine Strings baut:
+   * der NBT-Wert für SET_ENTITY_NBT, die Item-ID für SET_CUSTOM_MOB_EQUIP, das Kriterium
+   * für SCOREBOARD_CREATE und der literale Eintrag bzw. Wert der Score-/Data-Ops.
+   */
+  static String[] templates(Function fn, ConstPool pool) {
+    String[] out = new String[fn.size()];
+    for (int pc = 0; pc < out.length; pc++) {
+      String A = pool.get(fn.sIdxA(pc));
+      String t = switch (fn.opCode(pc)) {
+        case SCOREBOARD_CREATE -> { String c = pool.get(fn.sIdxB(pc)); yield c.isEmpty() ? "dummy" : c; }
+        case TAG_HAS -> pool.right(fn.sIdxB(pc)) == null ? "" : pool.right(fn.sIdxB(pc));
+        case SCORE_SET, SCORE_ADD, SCORE_GET, SCORE_RESET, DATA_STORE_SET -> refName(fn, pool, pc) != null ? null : refOperand(fn, pool, pc);
+        case SET_ENTITY_NBT -> String.valueOf(fn.num(pc));
+        case FIND_ENTITIES_REGION -> pool.right(fn.sIdxB(pc)) == null ? "" : pool.right(fn.sIdxB(pc));
+        case REPLACE_REGION -> {
+          String from = pool.right(fn.sIdxB(pc));
+          String id = from == null ? null : ConstPool.resourceId(from);
+          yield from == null ? "minecraft:air" : id != null ? id : from;
+        }
+        case SET_CUSTOM_MOB_EQUIP -> {
+          String item = pool.right(fn.sIdxB(pc));
+          String id = item == null ? null : ConstPool.resourceId(item);
+          yield item == null ? "minecraft:stone_sword" : id != null ? id : item;
+        }
+        default -> null;
+      };
+      if (t != null) out[pc] = t.intern();
     }
-    public int size(){ return strings.size(); }
+    return out;
+  }
+
+  /**
+   * Blockkoordinaten pro pc (beim Linken): {x, y, z} bzw. {x1, y1, z1, x2, y2, z2} für
+   * FILL_REGION/REPLACE_REGION/FIND_ENTITIES_REGION, null für andere Ops. Fill/Replace über
+   * BlockEdits.MAX_REGION werden abgelehnt.
+   */
+  static int[][] coords(Function fn, ConstPool pool, boolean wide) {
+    int[][] out = new int[fn.size()][];
+    for (int pc = 0; pc < out.length; pc++) {
+      switch (fn.opCode(pc)) {
+        case SET_BLOCK, GET_BLOCK, SPAWN_CUSTOM_MOB -> out[pc] = wide ? wide(fn, pc) : legacy(fn.i64(pc));
+        case FILL_REGION, REPLACE_REGION -> {
+          int[] c = region(fn, pool, pc);
+          long volume = BlockEdits.volume(c[0], c[1], c[2], c[3], c[4], c[5]);
+          if (volume > BlockEdits.MAX_REGION) {
+            throw new IllegalStateException(fn.opCode(pc) + " at pc=" + pc + ": region of " + volume
+              + " blocks exceeds pyrium.blocks.maxRegion=" + BlockEdits.MAX_REGION);
+          }
+          out[pc] = c;
+        }
+        // Abfrage, keine Änderung: kein Volumenlimit
+        case FIND_ENTITIES_REGION -> out[pc] = region(fn, pool, pc);
+        default -> {}
+      }
+    }
+    return out;
+  }
+
+  /** {x1, y1, z1, x2, y2, z2}: erste Ecke aus i64/num, zweite aus "x2,y2,z2" links in strB. */
+  private static int[] region(Function fn, ConstPool pool, int pc) {
+    int[] a = wide(fn, pc);
+    String corner = pool.left(fn.sIdxB(pc));
+    String[] b = corner.split(",");
+    if (b.length != 3) throw new IllegalStateException(fn.opCode(pc) + " at pc=" + pc + ": bad corner '" + corner + "'");
+    int[] c = new int[6];
+    System.arraycopy(a, 0, c, 0, 3);
+    try {
+      for (int k = 0; k < 3; k++) c[3 + k] = Integer.parseInt(b[k].trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalStateException(fn.opCode(pc) + " at pc=" + pc + ": bad corner '" + corner + "'");
+    }
+    return c;
+  }
+
+  /** Eintrag bzw. Wert der Score-/Data-Ops, der eine Variable sein darf (OPF_REF_B); sonst null. */
+  static String refOperand(Function fn, ConstPool pool, int pc) {
+    return switch (fn.opCode(pc)) {
+      case SCORE_SET, SCORE_ADD, SCORE_RESET, DATA_STORE_SET -> pool.get(fn.sIdxB(pc));
+      case SCORE_GET -> pool.right(fn.sIdxB(pc)) == null ? "" : pool.right(fn.sIdxB(pc));
+      default -> null;
+    };
+  }
+
+  /** Name der Variablen, die der Operand an pc liest (OPF_REF_B), null für Literale. */
+  static String refName(Function fn, ConstPool pool, int pc) {
+    return (fn.flags(pc) & OPF_REF_B) == 0 ? null : refOperand(fn, pool, pc);
+  }
+
+  /** Variablen-Slot pro pc für Variablen-Operanden, -1 für Literale; ungebundene Namen scheitern. */
+  static int[] refs(Function fn, ConstPool pool, VarTable vars) {
+    int[] out = new int[fn.size()];
+    for (int pc = 0; pc < out.length; pc++) {
+      String name = refName(fn, pool, pc);
+      if (name != null && !vars.isBound(name)) {
+        throw new IllegalStateException(fn.opCode(pc) + " at pc=" + pc + ": variable '" + name + "' is never set");
+      }
+      out[pc] = name == null ? -1 : vars.slotOf(name);
+    }
+    return out;
+  }
+
+  private static int[] wide(Function fn, int pc) {
+    long i64 = fn.i64(pc);
+    return new int[]{ (int) i64, (int) fn.num(pc), (int) (i64 >> 32) };
+  }
+
+  private static int[] legacy(long i64) {
+    return new int[]{ (short) i64, (short) (i64 >>> 16), (short) (i64 >>> 32) };
   }
 
   // ========= Function =========
+  /**
+   * Eine Funktion als Sicht auf ihren Instruktionsbereich (32 Byte pro Op, little-endian).
+   * Bei v3 ist das ein Ausschnitt der gemappten Datei, bei v2 ein Heap-Puffer.
+   */
   public static final class Function {
     public final String name;
-    public final List<Op> ops;
-    public Function(String name, List<Op> ops) { this.name = name; this.ops = ops; }
-    public int size(){ return ops.size(); }
+    private final ByteBuffer code;
+    private final int size;
+    PyBCModule module;
+    // beim ersten Aufruf aufgelöst (ensureLinked): Sprungziele (PyBCLinker), Bedingungen (PyBCExpr),
+    // vorberechnete Strings (templates), Blockkoordinaten (coords), Variablen-Operanden (refs)
+    private volatile boolean linked;
+    private boolean broken;
+    int[] jumps;
+    int[] handlers;
+    PyBCExpr[] conds;
+    String[] texts;
+    int[][] coords;
+    int[] refs;
+    // unterbrochene Ausführung (Budget, SLEEP, YIELD): Fortsetzungs-pc und Weckzeit
+    int resumePc = -1;
+    long wakeAtNanos;
+    // JIT-Stufe: Aufrufzähler und übersetzte Fassung, siehe PyBCJit
+    int calls;
+    PyBCJit.Compiled jit;
+    boolean jitRejected;
+    // Batch-Handler: der ausgelieferte Batch, nach einer Unterbrechung eine eigene Kopie
+    Events.Batch batch;
+
+    Function(String name, ByteBuffer code, int size) {
+      this.name = name; this.code = code; this.size = size;
+    }
+
+    /** Baut eine Funktion aus einzelnen Ops (Tools, Tests); packt sie ins Op-Layout. */
+    public Function(String name, List<Op> ops) {
+      this(name, pack(ops), ops.size());
+    }
+
+    public int size(){ return size; }
+
+    // Direkter Zugriff auf die Op-Felder an pc, ohne Op-Objekte
+    public OpCode opCode(int pc) { return OpCode.of(code.getInt((pc << OP_SHIFT) + OP_CODE)); }
+    public int sIdxA(int pc) { return code.getInt((pc << OP_SHIFT) + OP_A); }
+    public int sIdxB(int pc) { return code.getInt((pc << OP_SHIFT) + OP_B); }
+    public double num(int pc) { return code.getDouble((pc << OP_SHIFT) + OP_NUM); }
+    public long i64(int pc) { return code.getLong((pc << OP_SHIFT) + OP_I64); }
+    public int flags(int pc) { return code.getInt((pc << OP_SHIFT) + OP_FLAGS); }
+
+    /** Materialisiert die Op an pc; nur für Diagnose, nicht im Ausführungspfad. */
+    public Op op(int pc) { return new Op(opCode(pc), sIdxA(pc), sIdxB(pc), num(pc), i64(pc), flags(pc)); }
+
+    /**
+     * Linkt die Funktion beim ersten Aufruf. Liefert false, wenn sie nicht gelinkt werden
+     * kann; der Fehler wird einmal gemeldet und die Funktion danach übersprungen.
+     */
+    boolean ensureLinked() {
+      if (linked) return !broken;
+      synchronized (this) {
+        if (!linked) {
+          try {
+            link(true);
+          } catch (IllegalStateException e) {
+            broken = true;
+            System.err.println("[Pyrium] " + module.moduleName + ": " + e.getMessage() + " (function disabled)");
+          }
+          linked = true;
+        }
+      }
+      return !broken;
+    }
+
+    /**
+     * Linkt probeweise und verwirft das Ergebnis: null, wenn die Funktion linkt, sonst der
+     * Fehler. Für den Watcher-Thread (ModReloader); gelinkt wird weiterhin beim ersten Aufruf.
+     */
+    String linkError() {
+      try {
+        link(false);
+        return null;
+      } catch (IllegalStateException e) {
+        return e.getMessage();
+      }
+    }
+
+    private void link(boolean keep) {
+      var links = PyBCLinker.link(this);
+      var c = PyBCExpr.compileAll(this, module.pool, module.vars);
+      var t = templates(this, module.pool);
+      var xyz = coords(this, module.pool, (module.flags & FLAG_WIDE_COORDS) != 0);
+      var r = refs(this, module.pool, module.vars);
+      if (!keep) return;
+      jumps = links.jumps();
+      handlers = links.handlers();
+      conds = c;
+      texts = t;
+      coords = xyz;
+      refs = r;
+    }
+
+    private static ByteBuffer pack(List<Op> ops) {
+      ByteBuffer b = ByteBuffer.allocate(ops.size() << OP_SHIFT).order(ByteOrder.LITTLE_ENDIAN);
+      for (int pc = 0; pc < ops.size(); pc++) {
+        Op op = ops.get(pc);
+        int base = pc << OP_SHIFT;
+        b.putInt(base + OP_CODE, op.code.id);
+        b.putInt(base + OP_A, op.sIdxA);
+        b.putInt(base + OP_B, op.sIdxB);
+        b.putInt(base + OP_FLAGS, op.flags);
+        b.putDouble(base + OP_NUM, op.num);
+        b.putLong(base + OP_I64, op.i64);
+      }
+      return b;
+    }
+  }
+
+  // ========= Variablen-Slots =========
+  /**
+   * Weist jedem Variablennamen eines Moduls beim Laden einen festen Slot zu.
+   * Slot 0 ist für den leeren Namen reserviert, damit Ops ohne Operand nie ins Leere greifen.
+   */
+  public static final class VarTable {
+    private final Map<String, Integer> slots = new HashMap<>();
+    // Namen, die eine Op als Variable führt, plus die Event-Argumente: dürfen gelesen werden
+    private final Set<String> bound = new HashSet<>(PyBCRuntime.EVENT_ARGS);
+    private final List<String> names = new ArrayList<>();
+    private final int[] poolSlot;
+
+    VarTable(ConstPool pool, Collection<Function> fns) {
+      slot("");
+      poolSlot = new int[pool.size()];
+      Arrays.fill(poolSlot, -1);
+      // ein Durchlauf über die Op-Felder; prüft dabei auch alle Opcodes
+      for (Function fn : fns) {
+        for (int pc = 0; pc < fn.size(); pc++) {
+          OpCode code = fn.opCode(pc);
+          if (writesVarA(code)) { poolSlot(pool, fn.sIdxA(pc)); bound.add(pool.get(fn.sIdxA(pc))); }
+          if (code == OpCode.SPAWN_ENTITY) poolSlot(pool, fn.sIdxB(pc));
+          String ref = refName(fn, pool, pc);
+          if (ref != null) slot(ref);
+          if (isCondition(code)) {
+            for (String ident : PyBCExpr.identifiers(pool.get(fn.sIdxA(pc)))) slot(ident);
+          }
+        }
+      }
+    }
+
+    private void poolSlot(ConstPool pool, int idx) {
+      if (idx >= 0 && idx < poolSlot.length) poolSlot[idx] = slot(pool.get(idx));
+    }
+
+    private int slot(String name) {
+      Integer s = slots.get(name);
+      if (s != null) return s;
+      int ns = names.size();
+      names.add(name);
+      slots.put(name, ns);
+      return ns;
+    }
+
+    /** Slot einer Variablen, deren Name an Pool-Index idx steht. */
+    public int slotOf(int poolIdx) {
+      if (poolIdx < 0 || poolIdx >= poolSlot.length || poolSlot[poolIdx] < 0) return 0;
+      return poolSlot[poolIdx];
+    }
+
+    /** Slot per Name, -1 wenn das Modul die Variable nicht kennt. */
+    public int slotOf(String name) { return slots.getOrDefault(name, -1); }
+    public String name(int slot) { return names.get(slot); }
+    boolean isBound(String name) { return !name.isEmpty() && bound.contains(name); }
+    public int size() { return names.size(); }
+
+    static boolean writesVarA(OpCode c) {
+      return switch (c) {
+        case VAR_SET, VAR_GET, VAR_INC, VAR_DEC, MATH_ADD, MATH_SUB, MATH_MUL, MATH_DIV,
+             RAND_INT, RAND_FLOAT, BATCH_ROW, FOR_INIT, FOR_ITER, FOR_END, GET_TIME,
+             FIND_ENTITIES, FIND_ENTITIES_REGION, GET_ENTITY_NBT, GET_ENTITY_ATTR, GET_BLOCK,
+             TAG_HAS, DATA_STORE_GET, SCORE_GET -> true;
+        default -> false;
+      };
+    }
+
+    static boolean isCondition(OpCode c) {
+      return c == OpCode.IF_BEGIN || c == OpCode.WHILE_BEGIN || c == OpCode.WHILE_CHECK || c == OpCode.ASSERT;
+    }
+
   }
 
   // ========= OpCode (subset; erweitere bei Bedarf 1:1 zu ops.py) =========
@@ -79,13 +484,17 @@ public final class PyBCModule {
     EXEC_CMD(129), TELEPORT_PLAYER(130),
 
     // Blocks
-    SET_BLOCK(200), GET_BLOCK(201),
+    SET_BLOCK(200), GET_BLOCK(201), FILL_REGION(204), REPLACE_REGION(205),
 
-    // Scoreboard (minimal)
-    SCOREBOARD_CREATE(240), SCOREBOARD_REMOVE(241),
+    // Scoreboard, tags, data storage
+    SCOREBOARD_CREATE(240), SCOREBOARD_REMOVE(241), SCOREBOARD_SET_DISPLAY(242),
+    TAG_ADD(243), TAG_REMOVE(244), TAG_HAS(245),
+    DATA_STORE_SET(246), DATA_STORE_GET(247), DATA_STORE_DELETE(248),
+    SCORE_SET(249), SCORE_ADD(250), SCORE_GET(251), SCORE_RESET(252),
 
     // Events (registration no-op at runtime tick)
     ON_TICK(330), ON_ENTITY_SPAWN(331), ON_PLAYER_JOIN(333),
+    BATCH_ROW(350), // Batch-Handler: Event-Variablen auf die Zeile aus Variable A
 
     // Math/vars
     VAR_SET(360), VAR_GET(361), VAR_INC(362), VAR_DEC(363),
@@ -94,17 +503,28 @@ public final class PyBCModule {
     RAND_INT(374), RAND_FLOAT(375),
 
     // Misc
-    SLEEP(490), YIELD(491);
+    SLEEP(490), YIELD(491),
 
     // Custom Mobs
-    REGISTER_CUSTOM_MOB(600), SET_CUSTOM_MOD_MODEL(601), SET_CUSTOM_MOB_TEXTURE(602), SET_CUSTOM_MOB_SIZE(603);
-    SET_CUSTOM_MOB_ATTR(610), SET_CUSTOM_MOB_LOOT_TABLE(611), SET_CUSTOM_MOB_EQUIP(612), SET_CUSTOM_MOB_AI(613);
+    REGISTER_CUSTOM_MOB(600), SET_CUSTOM_MOB_MODEL(601), SET_CUSTOM_MOB_TEXTURE(602), SET_CUSTOM_MOB_SIZE(603),
+    SET_CUSTOM_MOB_ATTR(610), SET_CUSTOM_MOB_LOOT_TABLE(611), SET_CUSTOM_MOB_EQUIP(612), SET_CUSTOM_MOB_AI(613),
     SPAWN_CUSTOM_MOB(620), REMOVE_CUSTOM_MOBS(621);
     
     public final int id; OpCode(int id){ this.id = id; }
+
+    // dichte Tabelle id -> OpCode statt Suche über values()
+    private static final OpCode[] BY_ID;
+    static {
+      int max = 0;
+      for (var o : values()) max = Math.max(max, o.id);
+      BY_ID = new OpCode[max + 1];
+      for (var o : values()) BY_ID[o.id] = o;
+    }
+
     public static OpCode of(int id){
-      for (var o : values()) if (o.id == id) return o;
-      throw new IllegalArgumentException("Unknown opcode: " + id);
+      OpCode o = id >= 0 && id < BY_ID.length ? BY_ID[id] : null;
+      if (o == null) throw new IllegalArgumentException("Unknown opcode: " + id);
+      return o;
     }
   }
 
@@ -115,13 +535,18 @@ public final class PyBCModule {
     public final int sIdxB;
     public final double num;
     public final long i64;
+    public final int flags;
 
     public Op(OpCode code, int sIdxA, int sIdxB, double num, long i64){
-      this.code = code; this.sIdxA = sIdxA; this.sIdxB = sIdxB; this.num = num; this.i64 = i64;
+      this(code, sIdxA, sIdxB, num, i64, 0);
+    }
+
+    public Op(OpCode code, int sIdxA, int sIdxB, double num, long i64, int flags){
+      this.code = code; this.sIdxA = sIdxA; this.sIdxB = sIdxB; this.num = num; this.i64 = i64; this.flags = flags;
     }
 
     @Override public String toString() {
-      return "Op{" + code + ", sA=" + sIdxA + ", sB=" + sIdxB + ", num=" + num + ", i64=" + i64 + "}";
+      return "Op{" + code + ", sA=" + sIdxA + ", sB=" + sIdxB + ", num=" + num + ", i64=" + i64 + (flags != 0 ? ", flags=" + flags : "") + "}";
     }
   }
 
@@ -129,21 +554,83 @@ public final class PyBCModule {
   public final String moduleName;
   public final ConstPool pool;
   public final Map<String, Function> functions;
+  public final VarTable vars;
+  public final int flags;
 
   public PyBCModule(String moduleName, ConstPool pool, Map<String, Function> functions) {
+    this(moduleName, pool, functions, 0);
+  }
+
+  public PyBCModule(String moduleName, ConstPool pool, Map<String, Function> functions, int flags) {
     this.moduleName = moduleName;
+    this.flags = flags;
     this.pool = pool;
     this.functions = functions;
+    this.vars = new VarTable(pool, functions.values());
+    for (Function fn : functions.values()) fn.module = this;
   }
 
   // ========= Reader =========
   public static PyBCModule read(Path file) throws IOException {
-    try (var in = new DataInputStream(new BufferedInputStream(new FileInputStream(file.toFile())))) {
-      int magic = in.readInt();
-      if (magic != MAGIC) throw new IOException("Bad magic in " + file);
-      int ver = in.readInt();
+    try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      long len = ch.size();
+      if (len < 8 || len > Integer.MAX_VALUE) throw new IOException("Bad pybc size in " + file + ": " + len);
+      MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, len);
+      if (buf.getInt(0) != MAGIC) throw new IOException("Bad magic in " + file);
+      if (buf.getInt(4) == V2) return readV2(file);
+      buf.order(ByteOrder.LITTLE_ENDIAN);
+      int ver = buf.getInt(4);
       if (ver != VERSION) throw new IOException("Unsupported pybc version: " + ver);
+      try {
+        return readV3(buf);
+      } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+        throw new IOException("Corrupt pybc " + file + ": " + e.getMessage(), e);
+      } catch (IllegalStateException e) {
+        throw new IOException("Load error in " + file + ": " + e.getMessage(), e);
+      }
+    }
+  }
+
+  /** Liest Header, Pool und Funktionstabelle; die Instruktionen bleiben im gemappten Puffer. */
+  private static PyBCModule readV3(ByteBuffer buf) {
+    int poolCount = buf.getInt(12);
+    int fnCount = buf.getInt(16);
+    int poolOffset = buf.getInt(20);
+    int fnTableOffset = buf.getInt(24);
+
+    String modName = utf8(buf, HEADER_SIZE);
+
+    List<String> strings = new ArrayList<>(Math.max(poolCount, 8));
+    int pos = poolOffset;
+    for (int k = 0; k < poolCount; k++) {
+      int n = buf.getInt(pos);
+      strings.add(utf8(buf, pos));
+      pos += 4 + n;
+    }
+    ConstPool pool = new ConstPool(strings);
+
+    Map<String, Function> fns = new HashMap<>(Math.max(fnCount, 4));
+    for (int i = 0; i < fnCount; i++) {
+      int e = fnTableOffset + i * FN_ENTRY_SIZE;
+      String fname = pool.get(buf.getInt(e));
+      int start = buf.getInt(e + 4);
+      int opCount = buf.getInt(e + 8);
+      ByteBuffer code = buf.slice(start, opCount << OP_SHIFT).order(ByteOrder.LITTLE_ENDIAN);
+      fns.put(fname, new Function(fname, code, opCount));
+    }
+    return new PyBCModule(modName, pool, fns, buf.getInt(8));
+  }
+
+  private static String utf8(ByteBuffer buf, int pos) {
+    byte[] b = new byte[buf.getInt(pos)];
+    buf.get(pos + 4, b);
+    return new String(b, StandardCharsets.UTF_8);
+  }
 
+  private static PyBCModule readV2(Path file) throws IOException {
+    try (var in = new DataInputStream(new BufferedInputStream(new FileInputStream(file.toFile())))) {
+      in.readInt(); // MAGIC
+      in.readInt(); // VERSION
       String modName = in.readUTF();
 
       int poolCount = in.readInt();
@@ -158,19 +645,24 @@ public final class PyBCModule {
       for (int i = 0; i < fnCount; i++) {
         String fname = in.readUTF();
         int opCount = in.readInt();
-        List<Op> ops = new ArrayList<>(Math.max(opCount, 8));
+        // direkt ins v3-Op-Layout packen, ohne Op-Objekte
+        ByteBuffer code = ByteBuffer.allocate(opCount << OP_SHIFT).order(ByteOrder.LITTLE_ENDIAN);
         for (int j = 0; j < opCount; j++) {
-          int opcode = in.readInt();
-          int sA = in.readInt();
-          int sB = in.readInt();
-          double num = in.readDouble();
-          long i64 = in.readLong();
-          ops.add(new Op(OpCode.of(opcode), sA, sB, num, i64));
+          int base = j << OP_SHIFT;
+          code.putInt(base + OP_CODE, in.readInt());
+          code.putInt(base + OP_A, in.readInt());
+          code.putInt(base + OP_B, in.readInt());
+          code.putDouble(base + OP_NUM, in.readDouble());
+          code.putLong(base + OP_I64, in.readLong());
         }
-        fns.put(fname, new Function(fname, ops));
+        fns.put(fname, new Function(fname, code, opCount));
       }
 
-      return new PyBCModule(modName, pool, fns);
+      try {
+        return new PyBCModule(modName, pool, fns);
+      } catch (IllegalArgumentException | IllegalStateException e) {
+        throw new IOException("Load error in " + file + ": " + e.getMessage(), e);
+      }
     }
   }
 }
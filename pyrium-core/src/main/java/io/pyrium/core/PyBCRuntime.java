@@ -2,19 +2,18 @@ package io.pyrium.core;
 
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 /**
  * PyBCRuntime führt Funktionen (Ops) eines PyBCModule aus.
  * Enthält eine einfache VM mit Variablen, Kontrollfluss (if/for/while) und
  * Bridge-Methoden auf die Welt/Spieler/Entities.
  *
- * Hinweis: Kontrollfluss wird mit "structured ops" umgesetzt:
- * - IF_BEGIN evaluiert eine Bedingung (als String-Expr oder bool Variable) und setzt einen Flag.
- * - IF_ELSE/IF_END werden in der Ausführung verwendet, um Blöcke zu überspringen.
- * - FOR_INIT/FOR_ITER/FOR_END verwenden Variablen und einfache Grenzen.
- * - WHILE_BEGIN/WHILE_CHECK/WHILE_END ähnlich, mit unoptimiertem Ausdruckseval.
- *
- * In einer späteren Version kann dies durch echte Sprungziele (PC-Offsets) ersetzt werden.
+ * Hinweis: Kontrollfluss wird als "structured ops" kompiliert und beim Laden
+ * durch PyBCLinker in echte Sprungziele (PC-Offsets) aufgelöst:
+ * - IF_BEGIN evaluiert eine Bedingung und springt bei false direkt in den else-Block bzw. hinter IF_END.
+ * - FOR_INIT/FOR_ITER/FOR_END und WHILE_BEGIN/WHILE_CHECK/WHILE_END springen zurück, Schleifen laufen also wirklich.
+ * - BREAK/CONTINUE springen in die innerste Schleife, Fehler in TRY-Regionen in den CATCH-Block.
  */
 public final class PyBCRuntime {
 
@@ -26,6 +25,35 @@ public final class PyBCRuntime {
     void spawnEntity(String type, double x, double y, double z);
     void removeEntity(EntityFacade e);
 
+    // Abfragen ohne Listenaufbau; die VM nutzt nur diese. Bridges mit EntityIndex
+    // überschreiben sie, die Defaults fallen auf die Listen-Methoden zurück.
+    default int countEntities(String type) { return entities(type).size(); }
+    default int countEntitiesInRegion(String type, int x1, int y1, int z1, int x2, int y2, int z2) {
+      return entitiesInRegion(type, x1, y1, z1, x2, y2, z2).size();
+    }
+    /** Besucht alle Entities des Typs; der Visitor darf die besuchte Entity entfernen. */
+    default void forEachEntity(String type, Consumer<EntityFacade> visitor) {
+      for (var e : entities(type)) visitor.accept(e);
+    }
+    default void forEachEntityInRegion(String type, int x1, int y1, int z1, int x2, int y2, int z2, Consumer<EntityFacade> visitor) {
+      for (var e : entitiesInRegion(type, x1, y1, z1, x2, y2, z2)) visitor.accept(e);
+    }
+
+    // Bulk-Mutationen: eine Änderung für alle Entities eines Typs in einem Fassadenaufruf,
+    // damit die Bridge sie in einem Durchlauf über ihren eigenen Speicher ausführen kann.
+    /** Pseudo-Attribut für EntityFacade.getSpeed/setSpeed. */
+    String ATTR_SPEED = "speed";
+    default void scaleAttribute(String type, String attr, double factor) {
+      if (ATTR_SPEED.equals(attr)) forEachEntity(type, e -> e.setSpeed(e.getSpeed() * factor));
+      else forEachEntity(type, e -> setEntityAttr(e, attr, getEntityAttr(e, attr) * factor));
+    }
+    default void setAttrBulk(String type, String attr, double value) {
+      if (ATTR_SPEED.equals(attr)) forEachEntity(type, e -> e.setSpeed(value));
+      else forEachEntity(type, e -> setEntityAttr(e, attr, value));
+    }
+    default void setNbtBulk(String type, String path, String value) { forEachEntity(type, e -> nbtSet(e, path, value)); }
+    default void removeEntities(String type) { forEachEntity(type, this::removeEntity); }
+
     // Spieler/Welt
     void broadcast(String msg);
     void messagePlayer(String playerName, String msg);
@@ -34,10 +62,61 @@ public final class PyBCRuntime {
     void takeItem(String playerName, String itemId, int count);
     void setBlock(int x, int y, int z, String blockId);
     String getBlock(int x, int y, int z);
+    /** Blockzustand als BlockStates-id; Bridges mit BlockCache überschreiben das. */
+    default int getBlockState(int x, int y, int z) { return BlockStates.id(getBlock(x, y, z)); }
     void setTime(long timeTicks);
     long getTime();
     void setWeather(String mode);
 
+    // Blockbereiche (FILL_REGION/REPLACE_REGION, Ecken inklusive). Die Defaults gehen Block
+    // für Block über setBlock/getBlock; Bridges mit BlockEdits sammeln sie pro Abschnitt.
+    default void fillRegion(int x1, int y1, int z1, int x2, int y2, int z2, String blockId) {
+      for (int x = Math.min(x1, x2); x <= Math.max(x1, x2); x++)
+        for (int z = Math.min(z1, z2); z <= Math.max(z1, z2); z++)
+          for (int y = Math.min(y1, y2); y <= Math.max(y1, y2); y++) setBlock(x, y, z, blockId);
+    }
+    /** Ersetzt alle Blöcke vom Typ from (Zustände egal) durch to. */
+    default void replaceRegion(int x1, int y1, int z1, int x2, int y2, int z2, String from, String to) {
+      for (int x = Math.min(x1, x2); x <= Math.max(x1, x2); x++)
+        for (int z = Math.min(z1, z2); z <= Math.max(z1, z2); z++)
+          for (int y = Math.min(y1, y2); y <= Math.max(y1, y2); y++)
+            if (BlockEdits.sameBlock(getBlock(x, y, z), from)) setBlock(x, y, z, to);
+    }
+    /** Übernimmt einen fertigen Block-Stapel (DeferredWorld); edits ist danach leer. */
+    default void applyEdits(BlockEdits edits) { edits.apply((x, y, z, id, edge) -> setBlock(x, y, z, id), false); }
+
+    /** Teleportiert einen Spieler; ohne Spieler-API über /tp. */
+    default void teleportPlayer(String playerName, double x, double y, double z) {
+      execCommand("tp " + playerName + " " + x + " " + y + " " + z);
+    }
+
+    // Scoreboard (SCOREBOARD_*, SCORE_*). Die Defaults schicken je einen Befehl; Bridges mit
+    // ScoreTable halten die Werte selbst und schreiben sie einmal pro Tick gesammelt zurück.
+    default void createObjective(String objective, String criteria) { execCommand("scoreboard objectives add " + objective + " " + criteria); }
+    default void removeObjective(String objective) { execCommand("scoreboard objectives remove " + objective); }
+    default void setDisplaySlot(String objective, String slot) { execCommand("scoreboard objectives setdisplay " + slot + " " + objective); }
+    default void setScore(String objective, String entry, int value) { execCommand("scoreboard players set " + entry + " " + objective + " " + value); }
+    default void addScore(String objective, String entry, int delta) {
+      execCommand("scoreboard players " + (delta < 0 ? "remove " : "add ") + entry + " " + objective + " " + Math.abs((long) delta));
+    }
+    default void resetScore(String objective, String entry) { execCommand("scoreboard players reset " + entry + " " + objective); }
+    /** Punktestand, 0 ohne Wert; Befehle liefern keinen, daher 0 ohne ScoreTable. */
+    default int getScore(String objective, String entry) { return 0; }
+
+    // Entity-Tags (TAG_*) für alle Entities eines Typs
+    default void addTag(String type, String tag) { forEachEntity(type, e -> e.addTag(tag)); }
+    default void removeTag(String type, String tag) { forEachEntity(type, e -> e.removeTag(tag)); }
+    default int countTagged(String type, String tag) {
+      int[] n = {0};
+      forEachEntity(type, e -> { if (e.hasTag(tag)) n[0]++; });
+      return n[0];
+    }
+
+    // Datenspeicher (DATA_STORE_*): Long, Double oder String je Schlüssel, prozessweit
+    default void dataSet(String key, Object value) { DataStore.shared().set(key, value); }
+    default Object dataGet(String key) { return DataStore.shared().get(key); }
+    default void dataDelete(String key) { DataStore.shared().delete(key); }
+
     // NBT/Attr
     void nbtSet(EntityFacade e, String path, String value);
     String nbtGet(EntityFacade e, String path);
@@ -47,6 +126,18 @@ public final class PyBCRuntime {
     // Vars (für VM-Integration auf Server-Seite optional)
     void setVar(String name, long value);
     long getVar(String name);
+
+    // Custom Mobs
+    void registerCustomMob(String mobId, String displayName);
+    void setCustomMobModel(String mobId, String model);
+    void setCustomMobTexture(String mobId, String texture);
+    void setCustomMobSize(String mobId, double scale);
+    void setCustomMobAttr(String mobId, String attr, double value);
+    void setCustomMobLootTable(String mobId, String lootTable);
+    void setCustomMobEquip(String mobId, String slot, String itemId);
+    void setCustomMobAI(String mobId, String aiProfile);
+    void spawnCustomMob(String mobId, int x, int y, int z);
+    void removeCustomMobs(String mobId);
   }
 
   public interface EntityFacade {
@@ -55,312 +146,514 @@ public final class PyBCRuntime {
     String getName();
     void setName(String s);
     void teleport(double x, double y, double z);
+
+    // Scoreboard-Tags; Fassaden ohne Tags ignorieren sie
+    default boolean hasTag(String tag) { return false; }
+    default void addTag(String tag) {}
+    default void removeTag(String tag) {}
   }
 
+  // ========= Budgets (pro Aufruf) =========
+  static final int OPS_BUDGET = Integer.getInteger("pyrium.budget.ops", 200_000);
+  static final long BUDGET_NANOS = Long.getLong("pyrium.budget.micros", 5_000L) * 1_000L;
+  static final int STRIKE_LIMIT = Integer.getInteger("pyrium.budget.strikes", 5);
+
   // ========= Laufzeitzustand =========
-  private final WorldFacade world;
+  final WorldFacade world;
+  private final String moduleName;
+  private int strikes;
+  private volatile boolean quarantined;
   private final PyBCModule.ConstPool pool;
+  final PyBCModule.VarTable vars;
+
+  // Registerdateien: ein Slot pro Variablenname (siehe PyBCModule.VarTable)
+  static final byte UNSET = 0, INT = 1, FLOAT = 2, STR = 3;
+  final long[] ints;
+  final double[] floats;
+  final String[] strs;
+  final byte[] kinds;
+
+  // Slots, deren Wert seit dem letzten Sync-Punkt geändert wurde
+  private final boolean[] dirty;
+  private final int[] dirtyList;
+  private int dirtyCount;
+
+  // unterbrochene Nicht-Tick-Handler und Slots der Event-Argumente (-1 = vom Mod nicht benutzt)
+  private final ArrayList<PyBCModule.Function> suspendedEvents = new ArrayList<>();
+  private final int slotPlayer, slotMessage, slotCommand, slotEntity, slotEntityId, slotBlock, slotItem, slotX, slotY, slotZ;
+  private final int slotBatchSize;
+  // Namen der Event-Argumente (bind); gelten beim Linken als gesetzt
+  static final Set<String> EVENT_ARGS = Set.of("player", "message", "command", "entity", "entity_id", "block", "item", "x", "y", "z", "batch_size");
+  // Batch des laufenden Handlers (BATCH_ROW), null außerhalb von Batch-Handlern
+  private Events.Batch batch;
+
+  // persistente Variablen des Mods (null = ohne); Index im Store pro Slot
+  private VarStore store;
+  private int[] storeIdx;
+
+  public PyBCRuntime(WorldFacade world, PyBCModule mod){
+    this.world = world; this.pool = mod.pool; this.vars = mod.vars;
+    this.moduleName = mod.moduleName;
+    int n = vars.size();
+    this.ints = new long[n];
+    this.floats = new double[n];
+    this.strs = new String[n];
+    this.kinds = new byte[n];
+    this.dirty = new boolean[n];
+    this.dirtyList = new int[n];
+    this.slotPlayer = vars.slotOf("player");
+    this.slotMessage = vars.slotOf("message");
+    this.slotCommand = vars.slotOf("command");
+    this.slotEntity = vars.slotOf("entity");
+    this.slotEntityId = vars.slotOf("entity_id");
+    this.slotBlock = vars.slotOf("block");
+    this.slotItem = vars.slotOf("item");
+    this.slotX = vars.slotOf("x");
+    this.slotY = vars.slotOf("y");
+    this.slotZ = vars.slotOf("z");
+    this.slotBatchSize = vars.slotOf("batch_size");
+    pullFromWorld();
+  }
 
-  // VM Variablen und Stack (sehr simpel für PoC)
-  private final Map<String, Long> intVars = new HashMap<>();
-  private final Map<String, Double> floatVars = new HashMap<>();
-  private final Map<String, String> strVars = new HashMap<>();
+  // ========= Sync-Punkte mit der Fassade =========
 
-  public PyBCRuntime(WorldFacade world, PyBCModule.ConstPool pool){
-    this.world = world; this.pool = pool;
+  /** Lädt die Int-Variablen aus der Fassade (beim Erzeugen der VM). */
+  public void pullFromWorld() {
+    for (int s = 1; s < ints.length; s++) ints[s] = world.getVar(vars.name(s));
   }
 
-  // ========= Hilfsfunktionen (Eval) =========
+  /** Schreibt alle seit dem letzten Sync geänderten Int-Variablen in die Fassade, alle Arten in den VarStore. */
+  public void syncToWorld() {
+    for (int i = 0; i < dirtyCount; i++) {
+      int s = dirtyList[i];
+      dirty[s] = false;
+      if (kinds[s] == INT) world.setVar(vars.name(s), ints[s]);
+      if (store != null) {
+        switch (kinds[s]) {
+          case INT -> store.putLong(storeIdx[s], ints[s]);
+          case FLOAT -> store.putDouble(storeIdx[s], floats[s]);
+          case STR -> store.putString(storeIdx[s], strs[s]);
+          default -> {}
+        }
+      }
+    }
+    dirtyCount = 0;
+  }
 
-  private boolean evalConditionString(String expr) {
-    // Minimales Parsing: unterstützt "varName == 5", "varName < 10", etc.
-    // Für echte Nutzung sollte hier ein kleiner Ausdrucksparser hin.
-    if (expr == null || expr.isEmpty()) return false;
-    try {
-      // sehr grob: spalte nach Leerzeichen
-      String[] parts = expr.split("\\s+");
-      if (parts.length < 3) {
-        // versuche bool aus Variable
-        String v = strVars.getOrDefault(expr, "");
-        if ("true".equalsIgnoreCase(v)) return true;
-        return intVars.getOrDefault(expr, 0L) != 0;
+  /**
+   * Übernimmt die gespeicherten Werte aus store (nach pullFromWorld, vor dem ersten Aufruf)
+   * und schreibt künftige Änderungen dorthin. Event-Argumente (player, x, ...) werden nicht
+   * gespeichert, sie sind pro Event neu gebunden.
+   */
+  public void attachStore(VarStore store) {
+    int[] idx = new int[kinds.length];
+    for (int s = 1; s < kinds.length; s++) {
+      idx[s] = store.index(vars.name(s));
+      switch (store.kind(idx[s])) {
+        case INT -> { ints[s] = store.longValue(idx[s]); kinds[s] = INT; }
+        case FLOAT -> { floats[s] = store.doubleValue(idx[s]); kinds[s] = FLOAT; }
+        case STR -> { strs[s] = store.stringValue(idx[s]); kinds[s] = STR; }
+        default -> {}
       }
-      String left = parts[0];
-      String op = parts[1];
-      String right = parts[2];
-      long lVal = intVars.getOrDefault(left, 0L);
-      long rVal;
-      if (right.matches("-?\\d+")) rVal = Long.parseLong(right);
-      else rVal = intVars.getOrDefault(right, 0L);
-      return switch (op) {
-        case "==" -> lVal == rVal;
-        case "!=" -> lVal != rVal;
-        case "<" -> lVal < rVal;
-        case "<=" -> lVal <= rVal;
-        case ">" -> lVal > rVal;
-        case ">=" -> lVal >= rVal;
-        default -> false;
-      };
-    } catch (Throwable t) { return false; }
+    }
+    this.storeIdx = idx;
+    this.store = store;
   }
 
-  private void varSet(String name, long v){ intVars.put(name, v); world.setVar(name, v); }
-  private long varGet(String name){ return intVars.getOrDefault(name, world.getVar(name)); }
-  private void varInc(String name, long step){ varSet(name, varGet(name) + step); }
-  private void varDec(String name, long step){ varSet(name, varGet(name) - step); }
+  /**
+   * Übernimmt beim Hot Reload die Variablenwerte der alten VM, per Name; Variablen, die
+   * das neue Modul nicht mehr kennt, entfallen. Muss auf dem Tick-Thread laufen.
+   */
+  public void migrateFrom(PyBCRuntime old) {
+    for (int s = 1; s < kinds.length; s++) {
+      int o = old.vars.slotOf(vars.name(s));
+      if (o < 0 || old.kinds[o] == UNSET) continue;
+      if (ints[s] != old.ints[o]) varSet(s, old.ints[o]); // geänderte Ints gehen beim nächsten Sync an die Fassade
+      kinds[s] = old.kinds[o];
+      floats[s] = old.floats[o];
+      strs[s] = old.strs[o];
+    }
+  }
+
+  // ========= Hilfsfunktionen (Eval) =========
+
+  void varSet(int slot, long v){
+    ints[slot] = v;
+    kinds[slot] = INT;
+    mark(slot);
+  }
+  void floatSet(int slot, double v){ floats[slot] = v; kinds[slot] = FLOAT; mark(slot); }
+  double floatGet(int slot, double dflt){ return kinds[slot] == FLOAT ? floats[slot] : dflt; }
+  void strSet(int slot, String v){ strs[slot] = v; kinds[slot] = STR; mark(slot); }
+  private void mark(int slot){ if (!dirty[slot]) { dirty[slot] = true; dirtyList[dirtyCount++] = slot; } }
+
+  /** Wert einer Variablen als Text (Score-Einträge). */
+  String text(int slot) {
+    return switch (kinds[slot]) {
+      case STR -> strs[slot];
+      case FLOAT -> String.valueOf(floats[slot]);
+      case INT -> String.valueOf(ints[slot]);
+      default -> "";
+    };
+  }
+
+  /** Wert einer Variablen für den Datenspeicher, null wenn sie keinen hat. */
+  Object value(int slot) {
+    return switch (kinds[slot]) {
+      case STR -> strs[slot];
+      case FLOAT -> floats[slot];
+      case INT -> ints[slot];
+      default -> null;
+    };
+  }
+
+  /** Übernimmt einen Datenspeicher-Wert in die Variable; ohne Wert 0. */
+  void valueSet(int slot, Object v) {
+    if (v instanceof String str) strSet(slot, str);
+    else if (v instanceof Double d) floatSet(slot, d);
+    else varSet(slot, v instanceof Long l ? l : 0L);
+  }
 
   // ========= Ausführung =========
 
   public void executeTick(PyBCModule.Function fn, Events.Tick evt) {
-    // Strukturierter Kontrollfluss ohne PC-Sprünge:
-    boolean skipUntilElse = false;
-    boolean skipUntilEndIf = false;
-
-    // Für FOR-Schleifen halten wir (name -> end, step)
-    record ForState(long end, long step) {}
-    Map<String, ForState> forStates = new HashMap<>();
-
-    for (int pc = 0; pc < fn.ops.size(); pc++) {
-      PyBCModule.Op op = fn.ops.get(pc);
-      String A = pool.get(op.sIdxA);
-      String B = pool.get(op.sIdxB);
-
-      switch (op.code) {
-        // ===== Core =====
-        case NOP -> {}
-        case LOG -> System.out.println("[Pyrium Mod] " + A);
-        case DEBUG -> System.out.println("[Pyrium DEBUG] " + A + " num=" + op.num + " i64=" + op.i64);
-        case ASSERT -> {
-          boolean ok = evalConditionString(A);
-          if (!ok) throw new IllegalStateException("ASSERT failed: " + A);
-        }
-        case RETURN -> { return; }
-
-        // ===== Math/Vars =====
-        case VAR_SET -> varSet(A, (long) op.i64);
-        case VAR_GET -> { /* no-op: reading handled via conditions; could push to stack in advanced VM */ }
-        case VAR_INC -> varInc(A, (long) op.i64);
-        case VAR_DEC -> varDec(A, (long) op.i64);
-        case MATH_ADD -> varSet(A, varGet(A) + (long) op.i64);
-        case MATH_SUB -> varSet(A, varGet(A) - (long) op.i64);
-        case MATH_MUL -> varSet(A, varGet(A) * (long) op.i64);
-        case MATH_DIV -> { long d = (long) op.i64; if (d != 0) varSet(A, varGet(A) / d); }
-        case RAND_INT -> varSet(A, ThreadLocalRandom.current().nextInt((int)Math.max(1, op.i64)));
-        case RAND_FLOAT -> floatVars.put(A, ThreadLocalRandom.current().nextDouble());
-
-        // ===== Control flow: IF =====
-        case IF_BEGIN -> {
-          boolean cond = evalConditionString(A);
-          if (!cond) { skipUntilElse = true; skipUntilEndIf = false; }
-          else { skipUntilElse = false; skipUntilEndIf = false; }
-        }
-        case IF_ELSE -> {
-          if (skipUntilElse) {
-            // wir haben bis hierher alles übersprungen; ab jetzt führen wir aus
-            skipUntilElse = false;
-            skipUntilEndIf = false;
-          } else {
-            // else-Block überspringen, bis IF_END
-            skipUntilEndIf = true;
-          }
-        }
-        case IF_END -> { skipUntilElse = false; skipUntilEndIf = false; }
-
-        // ===== Control flow: FOR =====
-        case FOR_INIT -> {
-          // i64: start; num: optional step (wenn 0 -> 1), sIdxB: optional end in pool?
-          long start = op.i64;
-          long end = (long)op.num; // wir verwenden num als end, falls vom Compiler so gesetzt
-          if (end == 0 && !B.isEmpty()) {
-            try { end = Long.parseLong(B); } catch (Throwable ignored) {}
-          }
-          long step = 1;
-          varSet(A, start);
-          forStates.put(A, new ForState(end, step));
-        }
-        case FOR_ITER -> {
-          ForState st = forStates.get(A);
-          if (st == null) break;
-          long cur = varGet(A);
-          long next = cur + st.step();
-          if (cur > st.end()) {
-            // wir sind am Ende der Schleife: bis FOR_END skippen
-            // skip logisch: wir laufen weiter, aber ignorieren Body (vereinfachte Umsetzung)
-            // echte Umsetzung würde PC bis nach FOR_END setzen.
-          } else {
-            varSet(A, next);
-          }
-        }
-        case FOR_END -> { /* keine Aktion in der vereinfachten Form */ }
+    run(fn, evt.nowNanos());
+  }
 
-        case BREAK -> {
-          // vereinfachte Umsetzung: beendet die Ausführung komplett
-          return;
-        }
-        case CONTINUE -> {
-          // vereinfachte Umsetzung: keine effektive Änderung ohne echten PC-Jump
-        }
+  /**
+   * Führt den Handler fn für ein beliebiges Event aus. Die Event-Felder werden vorher in
+   * die gleichnamigen Variablen (player, message, entity, block, x, y, z, ...) geschrieben.
+   * Unterbrochene Event-Handler laufen über resumeSuspended() im Tick weiter.
+   */
+  public void execute(PyBCModule.Function fn, Events.Event e) {
+    if (e instanceof Events.Tick t) { executeTick(fn, t); return; }
+    if (quarantined) return;
+    if (fn.resumePc >= 0) { fn.resumePc = -1; suspendedEvents.remove(fn); } // neues Event verwirft die alte Fortsetzung
+    bind(e);
+    fn.batch = e instanceof Events.Batch b ? b : null;
+    run(fn, e.nowNanos());
+    if (fn.resumePc < 0) fn.batch = null;
+    else {
+      // der Batch wird nach der Auslieferung geleert: die Fortsetzung braucht eigene Zeilen
+      if (fn.batch != null) fn.batch = fn.batch.copy();
+      suspendedEvents.add(fn);
+    }
+  }
 
-        // ===== Control flow: WHILE (vereinfachte Demo) =====
-        case WHILE_BEGIN -> { /* markiert Beginn; keine Aktion */ }
-        case WHILE_CHECK -> {
-          boolean cond = evalConditionString(A);
-          if (!cond) {
-            // ohne echte Sprünge ignorieren wir den folgenden Body (nur Demo)
-          }
-        }
-        case WHILE_END -> { /* Ende der while-Schleife */ }
-
-        // ===== World/time/weather =====
-        case SET_TIME -> world.setTime((long)op.i64);
-        case GET_TIME -> varSet(A, world.getTime());
-        case SET_WEATHER -> world.setWeather(A);
-
-        // ===== Entities =====
-        case SPAWN_ENTITY -> world.spawnEntity(A, op.num /*x*/, floatVars.getOrDefault(B, 64.0), 0.0);
-        case REMOVE_ENTITY -> {
-          var list = world.entities(A);
-          for (var e : list) world.removeEntity(e);
-        }
-        case FIND_ENTITIES -> {
-          // schreibt Größe der Liste in Var A
-          var list = world.entities(A);
-          varSet(A, list.size());
-        }
-        case FIND_ENTITIES_REGION -> {
-          // i64 packing ist PoC; echte Version sollte separate Felder haben
-          int x1 = (int)(op.i64 & 0xFFFF);
-          int y1 = (int)((op.i64 >>> 16) & 0xFFFF);
-          int z1 = (int)((op.i64 >>> 32) & 0xFFFF);
-          int x2 = (int)((op.i64 >>> 48) & 0xFFFF);
-          var list = world.entitiesInRegion(A, x1,y1,z1,x2,y1,z1);
-          varSet(A, list.size());
-        }
-        case SET_ENTITY_NBT -> {
-          var list = world.entities(A);
-          for (var e : list) world.nbtSet(e, B, String.valueOf(op.num));
-        }
-        case GET_ENTITY_NBT -> {
-          var list = world.entities(A);
-          for (var e : list) { String v = world.nbtGet(e, B); strVars.put(A, v); }
-        }
-        case SET_ENTITY_ATTR -> {
-          var list = world.entities(A);
-          for (var e : list) world.setEntityAttr(e, B, op.num);
-        }
-        case GET_ENTITY_ATTR -> {
-          var list = world.entities(A);
-          double last = 0.0;
-          for (var e : list) last = world.getEntityAttr(e, B);
-          floatVars.put(A, last);
-        }
-        case ADD_EFFECT -> { /* später */ }
-        case CLEAR_EFFECT -> { /* später */ }
-        case MUL_ENTITY_SPEED -> {
-          String type = A.isEmpty() ? "Zombie" : A;
-          double factor = op.num == 0.0 ? 1.0 : op.num;
-          var list = world.entities(type);
-          for (var e : list) { e.setSpeed(e.getSpeed() * factor); }
-        }
+  /** Setzt unterbrochene Event-Handler fort; wird pro Tick aufgerufen. */
+  public void resumeSuspended(Events.Tick evt) {
+    for (int i = 0; i < suspendedEvents.size(); ) {
+      var fn = suspendedEvents.get(i);
+      run(fn, evt.nowNanos());
+      if (fn.resumePc < 0) { fn.batch = null; suspendedEvents.remove(i); } else i++;
+    }
+  }
 
-        // ===== Players =====
-        case BROADCAST -> world.broadcast(A);
-        case MESSAGE_PLAYER -> world.messagePlayer(A, B);
-        case GIVE_ITEM -> world.giveItem(A, B, (int)op.i64);
-        case TAKE_ITEM -> world.takeItem(A, B, (int)op.i64);
-        case EXEC_CMD -> world.execCommand(A);
-        case TELEPORT_PLAYER -> {
-          // num als X; i64 als Y (nicht ideal); demo only
-          world.execCommand("tp " + A + " " + op.num + " " + op.i64 + " 0");
-        }
+  public boolean hasSuspendedEvents() { return !suspendedEvents.isEmpty(); }
+
+  private void bind(Events.Event e) {
+    if (e instanceof Events.Batch b) {
+      // Batches: Anzahl plus Felder der ersten Zeile, BATCH_ROW wählt die weiteren
+      bindInt(slotBatchSize, b.size());
+      if (b.size() > 0) bindRow(b, 0);
+    } else if (e instanceof Events.PlayerEvent p) {
+      bindStr(slotPlayer, p.player());
+    } else if (e instanceof Events.ChatEvent c) {
+      bindStr(slotPlayer, c.player());
+      bindStr(slotMessage, c.message());
+      bindStr(slotCommand, c.message());
+    } else if (e instanceof Events.EntityEvent en) {
+      bindStr(slotEntity, en.entityType());
+      bindInt(slotEntityId, en.entityId());
+      bindFloat(slotX, en.x()); bindFloat(slotY, en.y()); bindFloat(slotZ, en.z());
+    } else if (e instanceof Events.BlockEvent b) {
+      bindStr(slotPlayer, b.player());
+      bindStr(slotBlock, b.block());
+      bindInt(slotX, b.x()); bindInt(slotY, b.y()); bindInt(slotZ, b.z());
+    } else if (e instanceof Events.CraftEvent c) {
+      bindStr(slotPlayer, c.player());
+      bindStr(slotItem, c.item());
+    }
+  }
 
-        // ===== Blocks =====
-        case SET_BLOCK -> {
-          // i64 packing demo: x in low16, y in next16, z in next16
-          int x = (int)(op.i64 & 0xFFFF);
-          int y = (int)((op.i64 >>> 16) & 0xFFFF);
-          int z = (int)((op.i64 >>> 32) & 0xFFFF);
-          world.setBlock(x, y, z, A);
-        }
-        case GET_BLOCK -> {
-          int x = (int)(op.i64 & 0xFFFF);
-          int y = (int)((op.i64 >>> 16) & 0xFFFF);
-          int z = (int)((op.i64 >>> 32) & 0xFFFF);
-          String id = world.getBlock(x, y, z);
-          strVars.put(A, id);
-        }
+  /** Bindet Zeile row wie das entsprechende Einzel-Event (Blockkoordinaten als int, Entity-Positionen als float). */
+  private void bindRow(Events.Batch b, int row) {
+    var src = b.source();
+    bindStr(slotPlayer, b.player(row));
+    if (src == Events.ENTITY_SPAWN || src == Events.ENTITY_DEATH) {
+      bindStr(slotEntity, b.id(row));
+      bindInt(slotEntityId, b.key(row));
+      bindFloat(slotX, b.x(row)); bindFloat(slotY, b.y(row)); bindFloat(slotZ, b.z(row));
+    } else if (src == Events.CHAT || src == Events.COMMAND) {
+      bindStr(slotMessage, b.id(row));
+      bindStr(slotCommand, b.id(row));
+    } else if (src == Events.CRAFT) {
+      bindStr(slotItem, b.id(row));
+    } else if (src == Events.BLOCK_PLACE || src == Events.BLOCK_BREAK || src == Events.INTERACT) {
+      bindStr(slotBlock, b.id(row));
+      bindInt(slotX, (long) b.x(row)); bindInt(slotY, (long) b.y(row)); bindInt(slotZ, (long) b.z(row));
+    }
+  }
 
-        // ===== Scoreboard =====
-        case SCOREBOARD_CREATE -> world.execCommand("scoreboard objectives add " + A + " dummy");
-        case SCOREBOARD_REMOVE -> world.execCommand("scoreboard objectives remove " + A);
+  /** BATCH_ROW: Event-Variablen auf Zeile row des Batches, den der laufende Handler bekommen hat. */
+  void batchRow(long row) {
+    int size = batch == null ? 0 : batch.size();
+    if (row < 0 || row >= size) throw new IllegalStateException("batch_row(" + row + ") outside the batch of " + size);
+    bindRow(batch, (int) row);
+  }
 
-        // ===== Misc =====
-        case SLEEP -> {
-          try { Thread.sleep((long)op.i64); } catch (InterruptedException ignored) {}
-        }
-        case YIELD -> { Thread.yield(); }
+  // Event-Argumente: ohne Dirty-Markierung, sie gehen weder an die Fassade noch in den VarStore
+  private void bindStr(int slot, String v) { if (slot >= 0) { strs[slot] = v == null ? "" : v; kinds[slot] = STR; } }
+  private void bindInt(int slot, long v) { if (slot >= 0) { ints[slot] = v; kinds[slot] = INT; } }
+  private void bindFloat(int slot, double v) { if (slot >= 0) { floats[slot] = v; kinds[slot] = FLOAT; } }
+
+  private void run(PyBCModule.Function fn, long nowNanos) {
+    if (quarantined || !fn.ensureLinked()) return;
+    batch = fn.batch;
+    int start = 0;
+    if (fn.resumePc >= 0) {
+      // unterbrochene Ausführung (Budget, SLEEP, YIELD) fortsetzen, sobald sie fällig ist
+      if (nowNanos < fn.wakeAtNanos) return;
+      start = fn.resumePc;
+      fn.resumePc = -1;
+    }
+    PyBCJit.Compiled jit = fn.jit;
+    if (jit == null && PyBCJit.ENABLED && !fn.jitRejected && ++fn.calls >= PyBCJit.THRESHOLD) {
+      jit = fn.jit = PyBCJit.compile(fn, pool, vars);
+      fn.jitRejected = jit == null;
+    }
+    int strikesBefore = strikes;
+    try {
+      if (jit != null) executeCompiled(fn, jit, start);
+      else interpret(fn, nowNanos, start);
+      if (strikes == strikesBefore) strikes = 0; // nur aufeinanderfolgende Überläufe zählen
+    } finally {
+      syncToWorld();
+    }
+  }
 
-        default -> { /* nicht implementierte Ops: no-op */ }
-      }
+  // ========= Budget & Watchdog =========
 
-      // ===== Custom Mobs =====
-      case REGISTER_CUSTOM_MOB -> {
-        world.registerCustomMob(A, B);
-      }
+  /** true, wenn das Op- oder Zeitbudget dieser Ausführung verbraucht ist. */
+  private static boolean overBudget(int executed, long deadlineNanos) {
+    return executed > OPS_BUDGET || ((executed & 1023) == 0 && System.nanoTime() > deadlineNanos);
+  }
+
+  /** Unterbricht fn an pc; sie läuft im nächsten Tick (bzw. ab wakeAtNanos) dort weiter. */
+  private void suspend(PyBCModule.Function fn, int pc, long wakeAtNanos) {
+    fn.resumePc = pc;
+    fn.wakeAtNanos = wakeAtNanos;
+  }
 
-      case SET_CUSTOM_MOB_MODEL -> {
-        world.setCustomMobModel(A, B);
+  private void overrun(PyBCModule.Function fn, int pc) {
+    suspend(fn, pc, 0);
+    if (++strikes >= STRIKE_LIMIT) {
+      quarantined = true;
+      System.err.println("[Pyrium] Watchdog: quarantined mod " + moduleName + " after " + strikes
+        + " consecutive budget overruns (" + fn.name + " at pc=" + pc + ")");
+    }
+  }
+
+  public boolean isQuarantined() { return quarantined; }
+
+  private void executeCompiled(PyBCModule.Function fn, PyBCJit.Compiled jit, int start) {
+    final PyBCJit.Step[] steps = jit.steps;
+    final int[] handlers = fn.handlers;
+    final int n = steps.length;
+    final long deadline = System.nanoTime() + BUDGET_NANOS;
+    int executed = 0;
+    int pc = start;
+    while (pc < n) {
+      if (overBudget(++executed, deadline)) { overrun(fn, pc); return; }
+      try {
+        pc = steps[pc].run(this);
+      } catch (RuntimeException ex) {
+        if (handlers[pc] < 0) throw ex;
+        pc = handlers[pc];
       }
+    }
+  }
 
-case SET_CUSTOM_MOB_TEXTURE -> {
-    world.setCustomMobTexture(A, B);
-}
+  /** Konstanter Datenspeicher-Wert: Zahl aus dem Pool, sonst der String, ohne B das i64. */
+  static Object dataConst(PyBCModule.ConstPool pool, int sB, long i64) {
+    String b = pool.get(sB);
+    if (b.isEmpty()) return i64;
+    if (!pool.isNumber(sB)) return b;
+    return pool.isInt(sB) ? (Object) pool.asLong(sB, 0L) : (Object) pool.asDouble(sB, 0.0);
+  }
 
-case SET_CUSTOM_MOB_SIZE -> {
-    world.setCustomMobSize(A, op.num);
-}
+  private void interpret(PyBCModule.Function fn, long nowNanos, int start) {
+    // Sprungziele wurden beim Laden durch PyBCLinker aufgelöst
+    final int[] jumps = fn.jumps;
+    final int[] handlers = fn.handlers;
+    final PyBCExpr[] conds = fn.conds;
+    final String[] texts = fn.texts;
+    final int[][] coords = fn.coords;
+    final int[] refs = fn.refs;
+    final int n = fn.size();
+    final long deadline = System.nanoTime() + BUDGET_NANOS;
+    int executed = 0;
+
+    int pc = start;
+    while (pc < n) {
+      if (overBudget(++executed, deadline)) { overrun(fn, pc); return; }
+      // Op-Felder direkt aus dem Instruktionspuffer
+      final PyBCModule.OpCode code = fn.opCode(pc);
+      final int sA = fn.sIdxA(pc), sB = fn.sIdxB(pc);
+      final double num = fn.num(pc);
+      final long i64 = fn.i64(pc);
+      String A = pool.get(sA);
+      String B = pool.get(sB);
+      int a = vars.slotOf(sA);
+      int next = pc + 1;
+
+      try {
+        switch (code) {
+          // ===== Core =====
+          case NOP -> {}
+          case LOG -> System.out.println("[Pyrium Mod] " + A);
+          case DEBUG -> System.out.println("[Pyrium DEBUG] " + A + " num=" + num + " i64=" + i64);
+          case ASSERT -> {
+            if (!conds[pc].test(this)) throw new IllegalStateException("ASSERT failed: " + A);
+          }
+          case RETURN -> { return; }
+
+          // ===== Math/Vars =====
+          case VAR_SET -> varSet(a, i64);
+          case VAR_GET -> { /* no-op: reading handled via conditions; could push to stack in advanced VM */ }
+          case VAR_INC, MATH_ADD -> varSet(a, ints[a] + i64);
+          case VAR_DEC, MATH_SUB -> varSet(a, ints[a] - i64);
+          case MATH_MUL -> varSet(a, ints[a] * i64);
+          case MATH_DIV -> { if (i64 != 0) varSet(a, ints[a] / i64); }
+          case RAND_INT -> varSet(a, ThreadLocalRandom.current().nextInt((int)Math.max(1, i64)));
+          case RAND_FLOAT -> floatSet(a, ThreadLocalRandom.current().nextDouble());
+          case BATCH_ROW -> batchRow(ints[a]);
+
+          // ===== Control flow: IF =====
+          case IF_BEGIN -> { if (!conds[pc].test(this)) next = jumps[pc]; }
+          case IF_ELSE -> next = jumps[pc]; // Ende des then-Blocks: else überspringen
+          case IF_END -> {}
+
+          // ===== Control flow: FOR (range-Semantik, Ende exklusiv) =====
+          case FOR_INIT -> varSet(a, i64);
+          case FOR_ITER -> {
+            // i64: end; num: step (0 -> 1)
+            long step = num == 0.0 ? 1 : (long) num;
+            long cur = ints[a];
+            boolean more = step > 0 ? cur < i64 : cur > i64;
+            if (!more) next = jumps[pc];
+          }
+          case FOR_END -> {
+            int iter = jumps[pc];
+            double itStep = fn.num(iter);
+            long step = itStep == 0.0 ? 1 : (long) itStep;
+            varSet(a, ints[a] + step);
+            next = iter;
+          }
 
-case SET_CUSTOM_MOB_ATTR -> {
-    world.setCustomMobAttr(A, B, op.num);
-}
+          case BREAK, CONTINUE -> next = jumps[pc];
 
-case SET_CUSTOM_MOB_LOOT_TABLE -> {
-    world.setCustomMobLootTable(A, B);
-}
+          // ===== Control flow: WHILE =====
+          case WHILE_BEGIN -> {}
+          case WHILE_CHECK -> { if (!conds[pc].test(this)) next = jumps[pc]; }
+          case WHILE_END -> next = jumps[pc];
 
-case SET_CUSTOM_MOB_EQUIP -> {
-    // hier musst du definieren, wo das itemId herkommt -> z.B. in pool string B = slot|itemId getrennt durch ':'
-    world.setCustomMobEquip(A, B, "minecraft:stone_sword"); // Platzhalter
-}
+          // ===== Control flow: TRY =====
+          case TRY_BEGIN, TRY_END -> {}
+          case CATCH -> next = jumps[pc]; // try-Block ohne Fehler beendet: catch überspringen
 
-case SET_CUSTOM_MOB_AI -> {
-    world.setCustomMobAI(A, B);
-}
+          // ===== World/time/weather =====
+          case SET_TIME -> world.setTime(i64);
+          case GET_TIME -> varSet(a, world.getTime());
+          case SET_WEATHER -> world.setWeather(A);
 
-case SPAWN_CUSTOM_MOB -> {
-    int x = (int)(op.i64 & 0xFFFF);
-    int y = (int)((op.i64 >>> 16) & 0xFFFF);
-    int z = (int)((op.i64 >>> 32) & 0xFFFF);
-    world.spawnCustomMob(A, x, y, z);
-}
+          // ===== Entities =====
+          case SPAWN_ENTITY -> {
+            // y: Zahl-Literal aus dem Pool oder Variable B (Standard 64)
+            double y = pool.isNumber(sB) ? pool.asDouble(sB, 64.0) : floatGet(vars.slotOf(sB), 64.0);
+            world.spawnEntity(A, num /*x*/, y, 0.0);
+          }
+          case REMOVE_ENTITY -> world.removeEntities(A);
+          case FIND_ENTITIES -> varSet(a, world.countEntities(A)); // nur die Anzahl
+          case FIND_ENTITIES_REGION -> { int[] c = coords[pc]; varSet(a, world.countEntitiesInRegion(texts[pc], c[0], c[1], c[2], c[3], c[4], c[5])); }
+          case SET_ENTITY_NBT -> world.setNbtBulk(A, B, texts[pc]);
+          case GET_ENTITY_NBT -> world.forEachEntity(A, e -> strSet(a, world.nbtGet(e, B)));
+          case SET_ENTITY_ATTR -> world.setAttrBulk(A, B, num);
+          case GET_ENTITY_ATTR -> {
+            floatSet(a, 0.0); // Wert der letzten Entity, 0.0 ohne Treffer
+            world.forEachEntity(A, e -> floatSet(a, world.getEntityAttr(e, B)));
+          }
+          case ADD_EFFECT -> { /* später */ }
+          case CLEAR_EFFECT -> { /* später */ }
+          case MUL_ENTITY_SPEED -> {
+            String type = A.isEmpty() ? "Zombie" : A;
+            double factor = num == 0.0 ? 1.0 : num;
+            world.scaleAttribute(type, WorldFacade.ATTR_SPEED, factor);
+          }
 
-case REMOVE_CUSTOM_MOBS -> {
-    world.removeCustomMobs(A);
-}
+          // ===== Players =====
+          case BROADCAST -> world.broadcast(A);
+          case MESSAGE_PLAYER -> world.messagePlayer(A, B);
+          case GIVE_ITEM -> world.giveItem(A, pool.resourceId(sB), (int)i64);
+          case TAKE_ITEM -> world.takeItem(A, pool.resourceId(sB), (int)i64);
+          case EXEC_CMD -> world.execCommand(A);
+          // x = num, y = i64 (ganze Blöcke), z = 0
+          case TELEPORT_PLAYER -> world.teleportPlayer(A, num, i64, 0.0);
+
+          // ===== Blocks =====
+          // Koordinaten beim Linken entpackt (PyBCModule.coords)
+          case SET_BLOCK -> { int[] c = coords[pc]; world.setBlock(c[0], c[1], c[2], pool.resourceId(sA)); }
+          case GET_BLOCK -> { int[] c = coords[pc]; strSet(a, BlockStates.name(world.getBlockState(c[0], c[1], c[2]))); }
+          case FILL_REGION -> { int[] c = coords[pc]; world.fillRegion(c[0], c[1], c[2], c[3], c[4], c[5], pool.resourceId(sA)); }
+          case REPLACE_REGION -> { int[] c = coords[pc]; world.replaceRegion(c[0], c[1], c[2], c[3], c[4], c[5], texts[pc], pool.resourceId(sA)); }
+
+          // ===== Scoreboard =====
+          // Einträge/Werte: Literal (texts) oder Variable (refs, "$name")
+          case SCOREBOARD_CREATE -> world.createObjective(A, texts[pc]);
+          case SCOREBOARD_REMOVE -> world.removeObjective(A);
+          case SCOREBOARD_SET_DISPLAY -> world.setDisplaySlot(A, B);
+          case SCORE_SET -> world.setScore(A, refs[pc] < 0 ? texts[pc] : text(refs[pc]), (int) i64);
+          case SCORE_ADD -> world.addScore(A, refs[pc] < 0 ? texts[pc] : text(refs[pc]), (int) i64);
+          case SCORE_RESET -> world.resetScore(A, refs[pc] < 0 ? texts[pc] : text(refs[pc]));
+          case SCORE_GET -> varSet(a, world.getScore(pool.left(sB), refs[pc] < 0 ? texts[pc] : text(refs[pc])));
+          case TAG_ADD -> world.addTag(A, B);
+          case TAG_REMOVE -> world.removeTag(A, B);
+          case TAG_HAS -> varSet(a, world.countTagged(pool.left(sB), texts[pc]));
+          case DATA_STORE_SET -> {
+            Object v = refs[pc] >= 0 ? value(refs[pc]) : dataConst(pool, sB, i64);
+            if (v == null) world.dataDelete(A); else world.dataSet(A, v);
+          }
+          case DATA_STORE_GET -> valueSet(a, world.dataGet(B));
+          case DATA_STORE_DELETE -> world.dataDelete(A);
+
+          // ===== Custom Mobs =====
+          case REGISTER_CUSTOM_MOB -> world.registerCustomMob(A, B);
+          case SET_CUSTOM_MOB_MODEL -> world.setCustomMobModel(A, B);
+          case SET_CUSTOM_MOB_TEXTURE -> world.setCustomMobTexture(A, B);
+          case SET_CUSTOM_MOB_SIZE -> world.setCustomMobSize(A, num);
+          case SET_CUSTOM_MOB_ATTR -> world.setCustomMobAttr(A, B, num);
+          case SET_CUSTOM_MOB_LOOT_TABLE -> world.setCustomMobLootTable(A, B);
+          case SET_CUSTOM_MOB_EQUIP -> {
+            // B = "slot|itemId" (compiler.py); ohne Item bleibt der alte Platzhalter
+            world.setCustomMobEquip(A, pool.left(sB), texts[pc]);
+          }
+          case SET_CUSTOM_MOB_AI -> world.setCustomMobAI(A, B);
+          case SPAWN_CUSTOM_MOB -> { int[] c = coords[pc]; world.spawnCustomMob(A, c[0], c[1], c[2]); }
+          case REMOVE_CUSTOM_MOBS -> world.removeCustomMobs(A);
 
+          // ===== Misc =====
+          // blockieren nie den Tick: die Funktion wird unterbrochen und später fortgesetzt
+          case SLEEP -> { suspend(fn, next, nowNanos + Math.max(1, i64) * 1_000_000L); return; }
+          case YIELD -> { suspend(fn, next, 0); return; }
 
-      // Block-Skip nach IF_ELSE/IF_END
-      if (skipUntilEndIf) {
-        // Wir führen nichts aus, bis IF_END kommt
-        if (op.code == PyBCModule.OpCode.IF_END) {
-          skipUntilEndIf = false;
-        }
-      } else if (skipUntilElse) {
-        // Wir führen nichts aus, bis IF_ELSE oder IF_END kommt
-        if (op.code == PyBCModule.OpCode.IF_ELSE || op.code == PyBCModule.OpCode.IF_END) {
-          skipUntilElse = false;
+          default -> { /* nicht implementierte Ops: no-op */ }
         }
+      } catch (RuntimeException ex) {
+        // Fehler innerhalb einer try-Region: weiter im catch-Block
+        if (handlers[pc] < 0) throw ex;
+        next = handlers[pc];
       }
+      pc = next;
     }
   }
 }
@@ -0,0 +1,194 @@
+package io.pyrium.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+/**
+ * Scoreboard scores held on the Pyrium side: objective x entry -> int, one int row per
+ * objective indexed by an interned entry id.
+ *
+ * Writes only mark the cell dirty; flush() hands the objective changes of the tick (in
+ * call order) and then the last value of every dirty cell to the Sink, so a mod setting
+ * a score for every player every tick costs one server call per changed cell per tick
+ * instead of one command parse per op. Reads of objectives created here ("dummy"
+ * criteria) come from the table; the server value is read once per cell, for scores that
+ * survived a restart. Other objectives (criteria driven, created by commands or
+ * datapacks) are read through the Sink unless this tick wrote the cell.
+ *
+ * Synchronized: DeferredWorld reads scores from worker threads.
+ */
+public final class ScoreTable {
+  /** Sink.read result for "no score". */
+  public static final int UNSET = Integer.MIN_VALUE;
+
+  /** The server scoreboard. */
+  public interface Sink {
+    void create(String objective, String criteria);
+    void remove(String objective);
+    void display(String objective, String slot);
+    void set(String objective, String entry, int value);
+    void reset(String objective, String entry);
+    /** The server's score, UNSET if there is none or the sink cannot read. */
+    default int read(String objective, String entry) { return UNSET; }
+  }
+
+  private static final byte UNKNOWN = 0, SET = 1, RESET = 2;
+
+  private static final class Objective {
+    final String name;
+    // Werte kommen aus der Tabelle, nicht vom Server
+    final boolean owned;
+    int[] values = new int[8];
+    byte[] states = new byte[8];
+    boolean[] dirty = new boolean[8];
+    int[] dirtyList = new int[8];
+    int dirtyCount;
+
+    Objective(String name, boolean owned) { this.name = name; this.owned = owned; }
+
+    void ensure(int id) {
+      if (id < values.length) return;
+      int n = Math.max(values.length * 2, id + 1);
+      values = Arrays.copyOf(values, n);
+      states = Arrays.copyOf(states, n);
+      dirty = Arrays.copyOf(dirty, n);
+    }
+
+    void write(int id, int value, byte state) {
+      values[id] = value;
+      states[id] = state;
+      if (dirty[id]) return;
+      dirty[id] = true;
+      if (dirtyCount == dirtyList.length) dirtyList = Arrays.copyOf(dirtyList, dirtyCount * 2);
+      dirtyList[dirtyCount++] = id;
+    }
+  }
+
+  private record Change(byte kind, String objective, String arg) {}
+  private static final byte CREATE = 0, REMOVE = 1, DISPLAY = 2;
+
+  private final Sink sink;
+  private final HashMap<String, Integer> entryIds = new HashMap<>();
+  private final ArrayList<String> entries = new ArrayList<>();
+  private final HashMap<String, Objective> objectives = new HashMap<>();
+  private final ArrayList<Change> changes = new ArrayList<>();
+  private long writes, flushed;
+
+  public ScoreTable(Sink sink) { this.sink = sink; }
+
+  private int entry(String name) {
+    Integer id = entryIds.get(name);
+    if (id != null) return id;
+    int n = entries.size();
+    entries.add(name);
+    entryIds.put(name, n);
+    return n;
+  }
+
+  private Objective objective(String name) {
+    var o = objectives.get(name);
+    if (o == null) objectives.put(name, o = new Objective(name, false));
+    return o;
+  }
+
+  public synchronized void create(String objective, String criteria) {
+    String c = criteria == null || criteria.isEmpty() ? "dummy" : criteria;
+    // alte Zeile samt offener Werte verwerfen; create an eine bestehende Objective ignoriert der Server
+    objectives.put(objective, new Objective(objective, c.equals("dummy")));
+    changes.add(new Change(CREATE, objective, c));
+  }
+
+  public synchronized void remove(String objective) {
+    objectives.remove(objective);
+    changes.add(new Change(REMOVE, objective, null));
+  }
+
+  public synchronized void display(String objective, String slot) {
+    changes.add(new Change(DISPLAY, objective, slot));
+  }
+
+  public synchronized void set(String objective, String entry, int value) {
+    var o = objective(objective);
+    int id = entry(entry);
+    o.ensure(id);
+    o.write(id, value, SET);
+    writes++;
+  }
+
+  public synchronized void add(String objective, String entry, int delta) {
+    set(objective, entry, get(objective, entry) + delta);
+  }
+
+  public synchronized void reset(String objective, String entry) {
+    var o = objective(objective);
+    int id = entry(entry);
+    o.ensure(id);
+    o.write(id, 0, RESET);
+    writes++;
+  }
+
+  /** The score, 0 if the entry has none. */
+  public synchronized int get(String objective, String entry) {
+    var o = objective(objective);
+    int id = entry(entry);
+    o.ensure(id);
+    byte state = o.states[id];
+    if (state != UNKNOWN && (o.owned || o.dirty[id])) return state == SET ? o.values[id] : 0;
+    int v = sink.read(objective, entry);
+    if (o.owned) {
+      o.values[id] = v == UNSET ? 0 : v;
+      o.states[id] = v == UNSET ? RESET : SET;
+    }
+    return v == UNSET ? 0 : v;
+  }
+
+  /** Cells written since the last flush. */
+  public synchronized int pending() {
+    int n = 0;
+    for (var o : objectives.values()) n += o.dirtyCount;
+    return n + changes.size();
+  }
+
+  /** Hands this tick's changes to the sink; server thread. Returns the number of sink calls. */
+  public synchronized int flush() {
+    int calls = 0;
+    for (var c : changes) {
+      switch (c.kind()) {
+        case CREATE -> sink.create(c.objective(), c.arg());
+        case REMOVE -> sink.remove(c.objective());
+        default -> sink.display(c.objective(), c.arg());
+      }
+      calls++;
+    }
+    changes.clear();
+    for (var o : objectives.values()) {
+      for (int i = 0; i < o.dirtyCount; i++) {
+        int id = o.dirtyList[i];
+        o.dirty[id] = false;
+        if (o.states[id] == SET) sink.set(o.name, entries.get(id), o.values[id]);
+        else sink.reset(o.name, entries.get(id));
+      }
+      calls += o.dirtyCount;
+      o.dirtyCount = 0;
+    }
+    flushed += calls;
+    return calls;
+  }
+
+  public synchronized String summary() {
+    return objectives.size() + " objectives, " + entries.size() + " entries, " + writes + " writes, " + flushed + " server updates";
+  }
+
+  /** Sink for bridges without a scoreboard API: one vanilla command per change. */
+  public static Sink commands(Consumer<String> exec) {
+    return new Sink() {
+      public void create(String objective, String criteria) { exec.accept("scoreboard objectives add " + objective + " " + criteria); }
+      public void remove(String objective) { exec.accept("scoreboard objectives remove " + objective); }
+      public void display(String objective, String slot) { exec.accept("scoreboard objectives setdisplay " + slot + " " + objective); }
+      public void set(String objective, String entry, int value) { exec.accept("scoreboard players set " + entry + " " + objective + " " + value); }
+      public void reset(String objective, String entry) { exec.accept("scoreboard players reset " + entry + " " + objective); }
+    };
+  }
+}
@@ -0,0 +1,58 @@
+package io.pyrium.core;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed-rate tick source for servers without a tick hook (vanilla).
+ *
+ * Deadlines are absolute (start + n * period), so the time a tick takes and sleep
+ * overshoot do not accumulate into drift. A tick that is late by a whole period or
+ * more does not trigger a catch-up burst: the missed slots are skipped and show up
+ * as dropped ticks in Diagnostics.Ticks, and mods see the real dt.
+ *
+ * Runs on its own thread, not the server thread. World access must therefore go
+ * through a facade that is safe off-thread, or a server-thread hook has to call
+ * BridgeServer.serverTick(), which stops this scheduler.
+ */
+final class TickScheduler implements Runnable {
+  private final long period;
+  private volatile boolean stopped;
+  private Thread thread;
+
+  TickScheduler(long periodNanos) { this.period = periodNanos; }
+
+  static TickScheduler start() {
+    var s = new TickScheduler(Diagnostics.Ticks.PERIOD_NANOS);
+    s.thread = new Thread(s, "PyriumTick");
+    s.thread.setDaemon(true);
+    s.thread.start();
+    return s;
+  }
+
+  /** Stops ticking; returns after a tick that is currently running has finished. */
+  void stop() {
+    stopped = true;
+    if (thread != null) LockSupport.unpark(thread);
+    synchronized (this) {}
+  }
+
+  public void run() {
+    long next = System.nanoTime() + period;
+    while (!stopped) {
+      long wait;
+      while ((wait = next - System.nanoTime()) > 0 && !stopped) LockSupport.parkNanos(this, wait);
+      synchronized (this) {
+        if (stopped) return;
+        try {
+          EventBus.dispatchTick(System.nanoTime());
+        } catch (Throwable t) {
+          t.printStackTrace();
+        }
+      }
+      next += period;
+      long behind = System.nanoTime() - next;
+      // Skip the slots that already passed, staying on the original grid
+      if (behind >= period) next += behind / period * period;
+    }
+  }
+}
@@ -0,0 +1,437 @@
+package io.pyrium.core;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent variables of one mod: name -> INT, FLOAT or STR value, in dataDir as
+ * generation files <mod>.<gen>.snap (full state) and <mod>.<gen>.log (changes since).
+ *
+ * The VM only marks values dirty (putX, a short lock, no I/O). The writer thread collects
+ * the dirty values of all stores every COMMIT_MILLIS and appends them to each store's log
+ * in one write plus one fsync (group commit); a variable changed every tick costs one log
+ * record per commit, not one per change. When the log passes COMPACT_BYTES the state is
+ * written as snapshot gen+1 and a new log is started; the old generation is deleted only
+ * after the new snapshot is on disk.
+ *
+ * Both files are read memory-mapped at open. Log records carry a CRC32, replay stops at the
+ * first torn or corrupt record (crash during a commit) and the store compacts right away,
+ * so at most the last commit interval is lost. A commit that fails while the process keeps
+ * running marks its values dirty again and the next commit compacts into a new generation
+ * instead of appending behind a possibly torn record. A torn snapshot falls back to the
+ * previous generation. Files are never renamed or truncated, which also works with mapped
+ * files on Windows.
+ *
+ * Formats (little-endian): entry = u8 kind, u16 nameLen, UTF-8 name, s64 | f64 | (u32 len, UTF-8).
+ * Snapshot: "PYVS", u32 version, u64 gen, u32 count, entries, u32 CRC32 of all before.
+ * Log: "PYVL", u32 version, u64 gen, then records { u32 len, u32 CRC32, entry }.
+ */
+public final class VarStore {
+  // -Dpyrium.vars.persist=false: variables live only as long as the server process
+  static final boolean PERSIST = !"false".equalsIgnoreCase(System.getProperty("pyrium.vars.persist", "true"));
+  static final long COMMIT_MILLIS = Long.getLong("pyrium.vars.commitMillis", 50L);
+  static final long COMPACT_BYTES = Long.getLong("pyrium.vars.compactBytes", 1L << 20);
+
+  private static final int SNAP_MAGIC = 0x53565950, LOG_MAGIC = 0x4C565950; // "PYVS", "PYVL"
+  private static final int VERSION = 1, HEADER = 16;
+
+  private final Path dir;
+  private final String name;
+
+  // Zustand; Zugriff nur unter this
+  private final HashMap<String, Integer> index = new HashMap<>();
+  private final ArrayList<String> names = new ArrayList<>();
+  private byte[] kinds = new byte[16];
+  private long[] longs = new long[16];
+  private double[] doubles = new double[16];
+  private String[] strings = new String[16];
+  private boolean[] dirty = new boolean[16];
+  private int[] dirtyList = new int[16];
+  private int dirtyCount;
+
+  // nur Writer-Thread (bzw. open/close)
+  private long gen;
+  private FileChannel log;
+  private long logBytes;
+  private ByteBuffer buf = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+  private boolean closed;
+  // letzter Commit fehlgeschlagen: das Log-Ende kann zerrissen sein, nicht weiter anhängen
+  private boolean torn;
+  private long commits, records;
+
+  private VarStore(Path dir, String name) { this.dir = dir; this.name = name; }
+
+  /**
+   * Opens (or creates) the store of mod name in dir and loads its last committed state.
+   * Registers it with the writer thread.
+   */
+  public static VarStore open(Path dir, String name) throws IOException {
+    Files.createDirectories(dir);
+    var w = Writer.INSTANCE;
+    synchronized (w) {
+      // the same mod unloaded and loaded again: its old store must be closed before the files are read
+      for (var c : w.closing) if (c.dir.equals(dir) && c.name.equals(name)) c.close();
+      var s = new VarStore(dir, name);
+      boolean torn = s.load();
+      s.startLog();
+      if (torn || s.logBytes >= COMPACT_BYTES) s.compact();
+      w.stores.add(s);
+      return s;
+    }
+  }
+
+  // ========= VM-Seite =========
+
+  /** Index of a variable; new names start UNSET. */
+  public synchronized int index(String var) {
+    Integer i = index.get(var);
+    return i != null ? i : add(var);
+  }
+
+  public synchronized byte kind(int i) { return kinds[i]; }
+  public synchronized long longValue(int i) { return longs[i]; }
+  public synchronized double doubleValue(int i) { return doubles[i]; }
+  public synchronized String stringValue(int i) { return strings[i]; }
+  public synchronized int size() { return names.size(); }
+
+  public synchronized void putLong(int i, long v) {
+    if (kinds[i] == PyBCRuntime.INT && longs[i] == v) return;
+    kinds[i] = PyBCRuntime.INT; longs[i] = v;
+    mark(i);
+  }
+
+  public synchronized void putDouble(int i, double v) {
+    if (kinds[i] == PyBCRuntime.FLOAT && Double.compare(doubles[i], v) == 0) return;
+    kinds[i] = PyBCRuntime.FLOAT; doubles[i] = v;
+    mark(i);
+  }
+
+  public synchronized void putString(int i, String v) {
+    if (v == null) v = "";
+    if (kinds[i] == PyBCRuntime.STR && v.equals(strings[i])) return;
+    kinds[i] = PyBCRuntime.STR; strings[i] = v;
+    mark(i);
+  }
+
+  private void mark(int i) {
+    if (dirty[i]) return;
+    dirty[i] = true;
+    dirtyList[dirtyCount++] = i;
+  }
+
+  private int add(String var) {
+    int i = names.size();
+    if (i == kinds.length) {
+      int n = i * 2;
+      kinds = Arrays.copyOf(kinds, n); longs = Arrays.copyOf(longs, n); doubles = Arrays.copyOf(doubles, n);
+      strings = Arrays.copyOf(strings, n); dirty = Arrays.copyOf(dirty, n); dirtyList = Arrays.copyOf(dirtyList, n);
+    }
+    names.add(var);
+    index.put(var, i);
+    return i;
+  }
+
+  // ========= Writer-Seite =========
+
+  /** Appends the dirty values to the log and forces it; writer thread. */
+  void commit() throws IOException {
+    if (torn) { compact(); return; }
+    int n;
+    int[] batch;
+    synchronized (this) {
+      if (dirtyCount == 0 || closed) return;
+      buf.clear();
+      for (int k = 0; k < dirtyCount; k++) {
+        int i = dirtyList[k];
+        dirty[i] = false;
+        int start = buf.position();
+        ensure(8);
+        buf.position(start + 8);
+        writeEntry(i);
+        int len = buf.position() - start - 8;
+        buf.putInt(start, len);
+        buf.putInt(start + 4, crc(buf, start + 8, len));
+      }
+      n = dirtyCount;
+      batch = Arrays.copyOf(dirtyList, n);
+      dirtyCount = 0;
+    }
+    buf.flip();
+    try {
+      while (buf.hasRemaining()) logBytes += log.write(buf);
+      log.force(false);
+    } catch (IOException e) {
+      failed(batch);
+      throw e;
+    }
+    commits++;
+    records += n;
+    if (logBytes >= COMPACT_BYTES) compact();
+  }
+
+  /**
+   * After a failed write or snapshot: the values are marked dirty again (they still hold
+   * the latest state) and the next commit writes a new generation, so no later record ends
+   * up behind a torn one.
+   */
+  private void failed(int[] batch) {
+    synchronized (this) { for (int i : batch) mark(i); }
+    torn = true;
+  }
+
+  /** Writes the state as the next generation and starts its log; writer thread (or open/close). */
+  void compact() throws IOException {
+    long next = gen + 1;
+    int[] batch;
+    synchronized (this) {
+      // Snapshot enthält alle Werte, offene Änderungen sind damit geschrieben
+      buf.clear();
+      ensure(HEADER + 4);
+      buf.putInt(SNAP_MAGIC).putInt(VERSION).putLong(next).putInt(0);
+      int count = 0;
+      for (int i = 0; i < names.size(); i++) {
+        if (kinds[i] == PyBCRuntime.UNSET) continue;
+        writeEntry(i);
+        count++;
+      }
+      buf.putInt(HEADER, count);
+      batch = Arrays.copyOf(dirtyList, dirtyCount);
+      for (int i : batch) dirty[i] = false;
+      dirtyCount = 0;
+    }
+    ensure(4);
+    buf.putInt(crc(buf, 0, buf.position()));
+    buf.flip();
+    long old = gen;
+    try {
+      try (var ch = FileChannel.open(file(next, "snap"), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        while (buf.hasRemaining()) ch.write(buf);
+        ch.force(true);
+      }
+      gen = next;
+      if (log != null) log.close();
+      startLog();
+    } catch (IOException e) {
+      // the next attempt writes the same generation again (or the one after, if the snapshot made it)
+      failed(batch);
+      throw e;
+    }
+    torn = false;
+    // noch gemappte Dateien lassen sich unter Windows nicht löschen: dann beim nächsten Start
+    try { Files.deleteIfExists(file(old, "log")); Files.deleteIfExists(file(old, "snap")); } catch (IOException ignored) {}
+  }
+
+  /** Commits, compacts and closes; the store is unusable afterwards. Blocks for the file I/O. */
+  public void close() {
+    synchronized (Writer.INSTANCE) {
+      Writer.INSTANCE.stores.remove(this);
+      Writer.INSTANCE.closing.remove(this);
+      synchronized (this) { if (closed) return; }
+      try {
+        commit();
+        if (torn || logBytes > HEADER) compact();
+        if (log != null) log.close();
+      } catch (IOException e) {
+        System.err.println("[Pyrium] Vars " + name + ": close failed: " + e);
+      }
+      synchronized (this) { closed = true; }
+    }
+  }
+
+  /** Hands close() to the writer thread and returns at once; for the tick thread (mod unload). */
+  public void closeLater() {
+    Writer.INSTANCE.closing.add(this);
+    LockSupport.unpark(Writer.INSTANCE);
+  }
+
+  public synchronized String summary() {
+    return name + ": " + names.size() + " vars, gen " + gen + ", " + commits + " commits, " + records + " records, log " + logBytes + " bytes";
+  }
+
+  // ========= Dateien =========
+
+  private Path file(long g, String ext) { return dir.resolve(name + "." + g + "." + ext); }
+
+  /** Loads snapshot + log; true if the log ended in a torn record. */
+  private boolean load() throws IOException {
+    var gens = new TreeSet<Long>(Comparator.reverseOrder());
+    String prefix = name + ".";
+    try (var files = Files.list(dir)) {
+      for (var p : (Iterable<Path>) files::iterator) {
+        String f = p.getFileName().toString();
+        if (!f.startsWith(prefix) || !f.endsWith(".snap")) continue;
+        try { gens.add(Long.parseLong(f.substring(prefix.length(), f.length() - 5))); } catch (NumberFormatException ignored) {}
+      }
+    }
+    gen = 0;
+    int restored = 0;
+    for (long g : gens) {
+      int n = readSnapshot(file(g, "snap"), g);
+      if (n >= 0) { gen = g; restored = n; break; }
+      System.err.println("[Pyrium] Vars " + name + ": snapshot " + g + " is damaged, trying the previous one");
+    }
+    int replayed = 0;
+    boolean torn = false;
+    Path logFile = file(gen, "log");
+    if (Files.exists(logFile)) {
+      long[] result = readLog(logFile);
+      replayed = (int) result[0];
+      torn = result[1] != 0;
+      if (torn) System.err.println("[Pyrium] Vars " + name + ": log ends in a torn record (crash during commit), kept " + replayed + " records");
+    }
+    // von früheren Läufen: Generationen ohne Snapshot-Gegenstück
+    try (var files = Files.list(dir)) {
+      for (var p : (Iterable<Path>) files::iterator) {
+        String f = p.getFileName().toString();
+        if (f.startsWith(prefix) && !f.equals(file(gen, "snap").getFileName().toString()) && !f.equals(logFile.getFileName().toString())) {
+          try { Files.deleteIfExists(p); } catch (IOException ignored) {}
+        }
+      }
+    }
+    if (restored + replayed > 0) {
+      System.out.println("[Pyrium] Vars " + name + ": " + names.size() + " restored (snapshot gen " + gen + ", " + replayed + " log records)");
+    }
+    return torn;
+  }
+
+  /** Number of entries, -1 if the file is not a complete snapshot of generation g. */
+  private int readSnapshot(Path file, long g) throws IOException {
+    try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = ch.size();
+      if (size < HEADER + 4 || size > Integer.MAX_VALUE) return -1;
+      MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      m.order(ByteOrder.LITTLE_ENDIAN);
+      int end = (int) size - 4;
+      if (m.getInt(0) != SNAP_MAGIC || m.getInt(4) != VERSION || m.getLong(8) != g) return -1;
+      if (crc(m, 0, end) != m.getInt(end)) return -1;
+      int count = m.getInt(HEADER);
+      m.position(HEADER + 4).limit(end);
+      for (int k = 0; k < count; k++) readEntry(m);
+      return count;
+    } catch (BufferUnderflowException | IllegalArgumentException e) {
+      return -1;
+    }
+  }
+
+  /** {records, torn (0/1)} */
+  private long[] readLog(Path file) throws IOException {
+    try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = ch.size();
+      if (size < HEADER) return new long[]{0, size > 0 ? 1 : 0};
+      MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE));
+      m.order(ByteOrder.LITTLE_ENDIAN);
+      if (m.getInt(0) != LOG_MAGIC || m.getInt(4) != VERSION || m.getLong(8) != gen) return new long[]{0, 1};
+      int pos = HEADER, n = 0, limit = m.capacity();
+      while (pos + 8 <= limit) {
+        int len = m.getInt(pos), crc = m.getInt(pos + 4);
+        if (len <= 0 || pos + 8L + len > limit || crc(m, pos + 8, len) != crc) break;
+        m.limit(pos + 8 + len).position(pos + 8);
+        readEntry(m);
+        m.limit(limit);
+        pos += 8 + len;
+        n++;
+      }
+      return new long[]{n, pos < size ? 1 : 0};
+    }
+  }
+
+  private void startLog() throws IOException {
+    Path f = file(gen, "log");
+    log = FileChannel.open(f, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    logBytes = log.size();
+    if (logBytes < HEADER) {
+      var h = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN).putInt(LOG_MAGIC).putInt(VERSION).putLong(gen).flip();
+      log.position(0);
+      while (h.hasRemaining()) log.write(h);
+      log.force(true);
+      logBytes = HEADER;
+    }
+    log.position(logBytes);
+  }
+
+  // ========= Einträge =========
+
+  private void writeEntry(int i) {
+    byte[] n = names.get(i).getBytes(StandardCharsets.UTF_8);
+    byte[] s = kinds[i] == PyBCRuntime.STR ? strings[i].getBytes(StandardCharsets.UTF_8) : null;
+    ensure(3 + n.length + (s == null ? 8 : 4 + s.length));
+    buf.put(kinds[i]).putShort((short) n.length).put(n);
+    switch (kinds[i]) {
+      case PyBCRuntime.INT -> buf.putLong(longs[i]);
+      case PyBCRuntime.FLOAT -> buf.putDouble(doubles[i]);
+      default -> buf.putInt(s.length).put(s);
+    }
+  }
+
+  private void readEntry(ByteBuffer m) {
+    byte kind = m.get();
+    byte[] n = new byte[m.getShort() & 0xFFFF];
+    m.get(n);
+    int i = index(new String(n, StandardCharsets.UTF_8));
+    switch (kind) {
+      case PyBCRuntime.INT -> { kinds[i] = kind; longs[i] = m.getLong(); }
+      case PyBCRuntime.FLOAT -> { kinds[i] = kind; doubles[i] = m.getDouble(); }
+      case PyBCRuntime.STR -> {
+        byte[] s = new byte[m.getInt()];
+        m.get(s);
+        kinds[i] = kind; strings[i] = new String(s, StandardCharsets.UTF_8);
+      }
+      default -> throw new IllegalArgumentException("bad kind " + kind);
+    }
+  }
+
+  private void ensure(int more) {
+    if (buf.remaining() >= more) return;
+    var b = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + more)).order(ByteOrder.LITTLE_ENDIAN);
+    buf.flip();
+    buf = b.put(buf);
+  }
+
+  private static int crc(ByteBuffer b, int from, int len) {
+    var c = new CRC32();
+    c.update(b.duplicate().limit(from + len).position(from));
+    return (int) c.getValue();
+  }
+
+  // ========= Writer-Thread =========
+
+  /** Commits all open stores every COMMIT_MILLIS; flushes them at JVM shutdown. */
+  private static final class Writer extends Thread {
+    static final Writer INSTANCE = new Writer();
+    final CopyOnWriteArrayList<VarStore> stores = new CopyOnWriteArrayList<>();
+    final CopyOnWriteArrayList<VarStore> closing = new CopyOnWriteArrayList<>();
+
+    private Writer() {
+      super("PyriumVarWriter");
+      setDaemon(true);
+      start();
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        for (var s : closing) s.close();
+        for (var s : stores) s.close();
+      }, "PyriumVarShutdown"));
+    }
+
+    @Override public void run() {
+      while (true) {
+        LockSupport.parkNanos(COMMIT_MILLIS * 1_000_000L);
+        synchronized (this) {
+          for (var s : stores) {
+            try { s.commit(); }
+            catch (IOException e) { System.err.println("[Pyrium] Vars " + s.name + ": commit failed, retrying as a new generation: " + e); }
+          }
+          for (var s : closing) s.close();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,8 @@
+package com.destroystokyo.paper.event.entity;
+
+import org.bukkit.entity.Entity;
+import org.bukkit.event.entity.EntityEvent;
+
+public class EntityAddToWorldEvent extends EntityEvent {
+  public EntityAddToWorldEvent(Entity entity) { super(entity); }
+}
@@ -0,0 +1,13 @@
+package io.papermc.paper.event.entity;
+
+import org.bukkit.Location;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.event.entity.EntityEvent;
+
+public class EntityMoveEvent extends EntityEvent {
+  private final Location to;
+
+  public EntityMoveEvent(LivingEntity entity, Location to) { super(entity); this.to = to; }
+
+  public Location getTo() { return to; }
+}
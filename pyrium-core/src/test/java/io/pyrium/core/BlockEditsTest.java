@@ -0,0 +1,186 @@
+package io.pyrium.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockEditsTest {
+  private static final String[] IDS = { "minecraft:stone", "minecraft:dirt", "minecraft:air", "minecraft:glass" };
+
+  private record Pos(int x, int y, int z) {}
+
+  private record Change(Pos pos, String id, boolean edge) {}
+
+  /** Everything apply hands to the sink, in order. */
+  private static List<Change> apply(BlockEdits edits, boolean edgesLast) {
+    var out = new ArrayList<Change>();
+    edits.apply((x, y, z, id, edge) -> out.add(new Change(new Pos(x, y, z), id, edge)), edgesLast);
+    return out;
+  }
+
+  private static void fill(Map<Pos, String> model, int x1, int y1, int z1, int x2, int y2, int z2, String id) {
+    for (int x = Math.min(x1, x2); x <= Math.max(x1, x2); x++)
+      for (int y = Math.min(y1, y2); y <= Math.max(y1, y2); y++)
+        for (int z = Math.min(z1, z2); z <= Math.max(z1, z2); z++) model.put(new Pos(x, y, z), id);
+  }
+
+  private static boolean edge(Map<Pos, String> model, Pos p) {
+    return !model.containsKey(new Pos(p.x() - 1, p.y(), p.z())) || !model.containsKey(new Pos(p.x() + 1, p.y(), p.z()))
+      || !model.containsKey(new Pos(p.x(), p.y() - 1, p.z())) || !model.containsKey(new Pos(p.x(), p.y() + 1, p.z()))
+      || !model.containsKey(new Pos(p.x(), p.y(), p.z() - 1)) || !model.containsKey(new Pos(p.x(), p.y(), p.z() + 1));
+  }
+
+  /** Random set_block and fills around the origin, so sections on both sides of 0 are hit. */
+  private static void randomEdits(Random r, BlockEdits edits, Map<Pos, String> model, int n) {
+    for (int i = 0; i < n; i++) {
+      String id = IDS[r.nextInt(IDS.length)];
+      switch (r.nextInt(4)) {
+        case 0, 1 -> {
+          int x = r.nextInt(80) - 40, y = r.nextInt(64) - 24, z = r.nextInt(80) - 40;
+          edits.set(x, y, z, id);
+          model.put(new Pos(x, y, z), id);
+        }
+        case 2 -> {
+          // small box: stays sparse or makes the section dense
+          int x = r.nextInt(80) - 40, y = r.nextInt(64) - 24, z = r.nextInt(80) - 40;
+          int x2 = x + r.nextInt(6) - 3, y2 = y + r.nextInt(6) - 3, z2 = z + r.nextInt(6) - 3;
+          edits.fill(x, y, z, x2, y2, z2, id);
+          fill(model, x, y, z, x2, y2, z2, id);
+        }
+        default -> {
+          // whole sections (uniform), sometimes with a ragged border
+          int sx = r.nextInt(4) - 2, sy = r.nextInt(3) - 1, sz = r.nextInt(4) - 2;
+          int x1 = sx << 4, y1 = sy << 4, z1 = sz << 4;
+          int x2 = x1 + 15 + (r.nextBoolean() ? 0 : r.nextInt(20)), y2 = y1 + 15, z2 = z1 + 15;
+          edits.fill(x2, y2, z2, x1, y1, z1, id);
+          fill(model, x1, y1, z1, x2, y2, z2, id);
+        }
+      }
+    }
+  }
+
+  private static void assertMatches(Map<Pos, String> model, BlockEdits edits, boolean edgesLast, String msg) {
+    for (var e : model.entrySet()) {
+      var p = e.getKey();
+      assertEquals(e.getValue(), edits.get(p.x(), p.y(), p.z()), msg + " get " + p);
+    }
+    assertEquals(model.size(), edits.size(), msg + " size");
+
+    var changes = apply(edits, edgesLast);
+    assertTrue(edits.isEmpty(), msg + " apply clears the batch");
+    var seen = new HashSet<Pos>();
+    boolean edges = false;
+    for (var c : changes) {
+      assertTrue(seen.add(c.pos()), msg + " each position once: " + c.pos());
+      assertEquals(model.get(c.pos()), c.id(), msg + " block at " + c.pos());
+      if (edgesLast) {
+        assertEquals(edge(model, c.pos()), c.edge(), msg + " edge at " + c.pos());
+        assertFalse(edges && !c.edge(), msg + " interior after an edge at " + c.pos());
+        edges |= c.edge();
+      }
+    }
+    assertEquals(model.size(), changes.size(), msg + " applied");
+  }
+
+  @Test
+  void sectionSwitchesBetweenSparseDenseAndUniform() {
+    var edits = new BlockEdits();
+    var model = new HashMap<Pos, String>();
+    // sparse, then one write past SPARSE_MAX makes it dense
+    for (int i = 0; i <= BlockEdits.SPARSE_MAX; i++) {
+      edits.set(i & 15, 64 + (i >> 4), 3, IDS[i % 2]);
+      model.put(new Pos(i & 15, 64 + (i >> 4), 3), IDS[i % 2]);
+    }
+    assertEquals(model.size(), edits.size());
+    // a fill of the whole section replaces everything, then a single write splits it again
+    edits.fill(0, 64, 0, 15, 79, 15, "minecraft:glass");
+    model.clear();
+    fill(model, 0, 64, 0, 15, 79, 15, "minecraft:glass");
+    assertEquals(4096, edits.size());
+    edits.set(5, 70, 5, "minecraft:stone");
+    model.put(new Pos(5, 70, 5), "minecraft:stone");
+    // a rewrite of the same position stays one change
+    edits.set(-1, 64, 0, "minecraft:dirt");
+    edits.set(-1, 64, 0, "minecraft:stone");
+    model.put(new Pos(-1, 64, 0), "minecraft:stone");
+    assertNull(edits.get(16, 64, 0));
+    assertMatches(model, edits, true, "");
+  }
+
+  @Test
+  void edgesAreBlocksWithANeighbourOutsideTheBatch() {
+    var edits = new BlockEdits();
+    edits.fill(-2, 60, -2, 17, 65, 1, "minecraft:stone");
+    var model = new HashMap<Pos, String>();
+    fill(model, -2, 60, -2, 17, 65, 1, "minecraft:stone");
+    var changes = apply(edits, true);
+    // interior of the 20x6x4 box: 18x4x2 blocks, all before the first edge
+    long interior = changes.stream().filter(c -> !c.edge()).count();
+    assertEquals(18 * 4 * 2, interior);
+    for (int i = 0; i < changes.size(); i++) assertEquals(i >= interior, changes.get(i).edge(), "at " + changes.get(i));
+    for (var c : changes) assertEquals(edge(model, c.pos()), c.edge(), "at " + c.pos());
+  }
+
+  @Test
+  void addAllMovesChangesAndLaterWritesWin() {
+    var a = new BlockEdits();
+    var b = new BlockEdits();
+    a.fill(0, 0, 0, 15, 15, 15, "minecraft:stone");
+    a.set(20, 0, 0, "minecraft:stone");
+    b.set(1, 1, 1, "minecraft:dirt");
+    b.fill(16, 0, 0, 31, 15, 15, "minecraft:glass");
+    b.set(-5, 0, 0, "minecraft:air");
+    a.addAll(b);
+    assertTrue(b.isEmpty());
+    assertEquals("minecraft:dirt", a.get(1, 1, 1));
+    assertEquals("minecraft:stone", a.get(2, 1, 1));
+    assertEquals("minecraft:glass", a.get(20, 0, 0), "a uniform section replaces the older one");
+    assertEquals("minecraft:air", a.get(-5, 0, 0));
+    assertEquals(4096 * 2 + 1, a.size());
+  }
+
+  @Test
+  void randomEditsMatchAPlainMap() {
+    for (int seed = 0; seed < 40; seed++) {
+      var r = new Random(seed);
+      var edits = new BlockEdits();
+      var model = new HashMap<Pos, String>();
+      randomEdits(r, edits, model, 1 + r.nextInt(120));
+      if (r.nextBoolean()) {
+        var later = new BlockEdits();
+        randomEdits(r, later, model, 1 + r.nextInt(60));
+        edits.addAll(later);
+        assertTrue(later.isEmpty(), "seed " + seed);
+        // the merged batch keeps taking writes
+        randomEdits(r, edits, model, r.nextInt(20));
+      }
+      assertMatches(model, edits, seed % 2 == 0, "seed " + seed + ":");
+    }
+  }
+
+  @Test
+  void applyVisitsSectionsInChunkOrder() {
+    var r = new Random(7);
+    var edits = new BlockEdits();
+    randomEdits(r, edits, new HashMap<>(), 200);
+    var order = new ArrayList<int[]>();
+    edits.apply(new BlockEdits.Sink() {
+      @Override public void section(int sx, int sy, int sz) { order.add(new int[]{ sx, sz, sy }); }
+      @Override public void set(int x, int y, int z, String blockId, boolean edge) {
+        int[] s = order.get(order.size() - 1);
+        assertArrayEquals(s, new int[]{ x >> 4, z >> 4, y >> 4 }, "block in the announced section");
+      }
+    }, false);
+    for (int i = 1; i < order.size(); i++) {
+      int[] p = order.get(i - 1), c = order.get(i);
+      assertTrue(p[0] < c[0] || p[0] == c[0] && (p[1] < c[1] || p[1] == c[1] && p[2] < c[2]), "section " + i);
+    }
+  }
+}
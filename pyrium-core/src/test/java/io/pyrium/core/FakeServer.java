@@ -0,0 +1,223 @@
+package io.pyrium.core;
+
+import org.bukkit.*;
+import org.bukkit.attribute.Attribute;
+import org.bukkit.attribute.AttributeInstance;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.PlayerInventory;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.scoreboard.*;
+
+import java.util.*;
+
+/**
+ * In-memory Bukkit server for PaperWorld tests. Every call that changes the world or
+ * reaches a player is appended to log in order; async tasks wait in async until the
+ * test runs them.
+ */
+final class FakeServer implements Server {
+  final List<String> log = new ArrayList<>();
+  final Map<Long, String> blocks = new HashMap<>();
+  final Map<String, Map<String, Integer>> board = new HashMap<>();
+  final Map<String, FakePlayer> players = new HashMap<>();
+  final List<Entity> entities = new ArrayList<>();
+  final List<Runnable> async = new ArrayList<>();
+  final Plugin plugin = new Plugin() {};
+  final FakeWorld world = new FakeWorld();
+  int getEntitiesCalls;
+  private int nextId = 1;
+  private final List<Object[]> handlers = new ArrayList<>();
+
+  /** Runs the executors registered for the event's class, like Bukkit's HandlerList. */
+  void fire(Event e) throws Exception {
+    for (Object[] h : handlers) if (h[0] == e.getClass()) ((EventExecutor) h[2]).execute((Listener) h[1], e);
+  }
+
+  /** Runs the queued async tasks, as the scheduler's thread pool would. */
+  void runAsync() {
+    var tasks = new ArrayList<>(async);
+    async.clear();
+    tasks.forEach(Runnable::run);
+  }
+
+  FakeMob mob(EntityType type, double x, double y, double z) {
+    var e = new FakeMob(nextId++, type);
+    e.at(x, y, z);
+    return e;
+  }
+
+  /** An entity without a move event, like a dropped item. */
+  FakeEntity item(double x, double y, double z) {
+    var e = new FakeEntity(nextId++, EntityType.ITEM);
+    e.at(x, y, z);
+    return e;
+  }
+
+  FakePlayer player(String name) {
+    var p = new FakePlayer(nextId++, name);
+    players.put(name, p);
+    return p;
+  }
+
+  private static long key(int x, int y, int z) { return BlockPos.pack(x, y, z); }
+
+  // ========= Server =========
+
+  public List<World> getWorlds() { return List.of(world); }
+  public World getWorld(String name) { return world; }
+  public BlockData createBlockData(String data) { return () -> data; }
+  public Player getPlayerExact(String name) { return players.get(name); }
+  public ConsoleCommandSender getConsoleSender() { return new ConsoleCommandSender() {}; }
+  public boolean dispatchCommand(CommandSender sender, String command) { log.add("command " + command); return true; }
+  public int broadcastMessage(String message) { log.add("broadcast " + message); return players.size(); }
+
+  public BukkitScheduler getScheduler() {
+    return new BukkitScheduler() {
+      public BukkitTask runTaskTimer(Plugin p, Runnable task, long delay, long period) { return new BukkitTask() {}; }
+      public BukkitTask runTaskAsynchronously(Plugin p, Runnable task) { async.add(task); return new BukkitTask() {}; }
+    };
+  }
+
+  public PluginManager getPluginManager() {
+    return new PluginManager() {
+      public Plugin[] getPlugins() { return new Plugin[]{plugin}; }
+      public void registerEvent(Class<? extends Event> event, Listener listener, EventPriority priority, EventExecutor executor,
+                                Plugin p, boolean ignoreCancelled) {
+        handlers.add(new Object[]{event, listener, executor});
+      }
+    };
+  }
+
+  public ScoreboardManager getScoreboardManager() { return () -> scoreboard; }
+
+  private final Scoreboard scoreboard = new Scoreboard() {
+    public Objective getObjective(String name) { return board.containsKey(name) ? objective(name) : null; }
+    public Objective registerNewObjective(String name, String criteria, String displayName) {
+      log.add("objective " + name);
+      board.put(name, new HashMap<>());
+      return objective(name);
+    }
+  };
+
+  private Objective objective(String name) {
+    return new Objective() {
+      public void unregister() { board.remove(name); }
+      public void setDisplaySlot(DisplaySlot slot) { log.add("display " + name + " " + slot); }
+      public Score getScore(String entry) {
+        return new Score() {
+          public int getScore() { return board.get(name).getOrDefault(entry, 0); }
+          public void setScore(int score) { log.add("score " + name + " " + entry + " " + score); board.get(name).put(entry, score); }
+          public boolean isScoreSet() { return board.get(name).containsKey(entry); }
+          public void resetScore() { log.add("reset " + name + " " + entry); board.get(name).remove(entry); }
+        };
+      }
+    };
+  }
+
+  // ========= World =========
+
+  final class FakeWorld implements World {
+    public Chunk getChunkAt(int cx, int cz) {
+      log.add("chunk " + cx + "," + cz);
+      return new Chunk() {
+        public int getX() { return cx; }
+        public int getZ() { return cz; }
+        public World getWorld() { return FakeWorld.this; }
+        public Block getBlock(int x, int y, int z) { return block((cx << 4) + x, y, (cz << 4) + z); }
+      };
+    }
+
+    public Block getBlockAt(int x, int y, int z) { return block(x, y, z); }
+    public long getTime() { return 0; }
+    public void setTime(long time) {}
+    public void setStorm(boolean storm) {}
+    public void setThundering(boolean thundering) {}
+    public List<Entity> getEntities() { getEntitiesCalls++; return new ArrayList<>(entities); }
+
+    public Entity spawnEntity(Location location, EntityType type) {
+      var e = type == EntityType.ITEM ? item(location.getX(), location.getY(), location.getZ())
+        : mob(type, location.getX(), location.getY(), location.getZ());
+      entities.add(e);
+      return e;
+    }
+  }
+
+  private Block block(int x, int y, int z) {
+    return new Block() {
+      public int getX() { return x; }
+      public int getY() { return y; }
+      public int getZ() { return z; }
+      public World getWorld() { return world; }
+      public BlockData getBlockData() {
+        String b = blocks.getOrDefault(key(x, y, z), "minecraft:air");
+        return () -> b;
+      }
+      public void setBlockData(BlockData data, boolean applyPhysics) {
+        log.add("block " + x + "," + y + "," + z + " " + data.getAsString());
+        blocks.put(key(x, y, z), data.getAsString());
+      }
+    };
+  }
+
+  // ========= Entities =========
+
+  class FakeEntity implements Entity {
+    final int id;
+    final EntityType type;
+    final Set<String> tags = new HashSet<>();
+    Location location;
+    String customName;
+
+    FakeEntity(int id, EntityType type) { this.id = id; this.type = type; }
+
+    void at(double x, double y, double z) { location = new Location(world, x, y, z); }
+
+    public int getEntityId() { return id; }
+    public EntityType getType() { return type; }
+    public World getWorld() { return world; }
+    public Location getLocation() { return location; }
+    public boolean teleport(Location l) { location = l; return true; }
+    public void remove() { entities.remove(this); }
+    public String getName() { return type.name(); }
+    public String getCustomName() { return customName; }
+    public void setCustomName(String name) { customName = name; }
+    public Set<String> getScoreboardTags() { return tags; }
+    public boolean addScoreboardTag(String tag) { return tags.add(tag); }
+    public boolean removeScoreboardTag(String tag) { return tags.remove(tag); }
+    public PersistentDataContainer getPersistentDataContainer() { return null; }
+  }
+
+  class FakeMob extends FakeEntity implements LivingEntity {
+    FakeMob(int id, EntityType type) { super(id, type); }
+    public AttributeInstance getAttribute(Attribute attribute) { return null; }
+  }
+
+  final class FakePlayer extends FakeMob implements Player {
+    final String name;
+    FakePlayer(int id, String name) { super(id, EntityType.PLAYER); this.name = name; }
+    @Override public String getName() { return name; }
+    public void sendMessage(String message) { log.add("message " + name + " " + message); }
+    public PlayerInventory getInventory() {
+      return new PlayerInventory() {
+        public HashMap<Integer, ItemStack> addItem(ItemStack... items) { return new HashMap<>(); }
+        public HashMap<Integer, ItemStack> removeItem(ItemStack... items) { return new HashMap<>(); }
+      };
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package io.pyrium.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModsTest {
+  private static final Path MODS = Path.of("server", "mods");
+
+  @Test
+  void storeNamesAreReadableAndStable() {
+    String name = Mods.storeName(MODS, MODS.resolve("economy/mod.pybc"));
+    assertTrue(name.matches("economy-[0-9a-f]{8}"), name);
+    assertEquals(name, Mods.storeName(MODS.toAbsolutePath(), MODS.resolve("./economy/../economy/mod.pybc")));
+    assertTrue(Mods.storeName(MODS, MODS.resolve("foo.pybc")).startsWith("foo-"));
+  }
+
+  @Test
+  void differentModFilesNeverShareAStore() {
+    var files = List.of("my.mod.pybc", "my_mod.pybc", "a/foo.pybc", "b/foo.pybc", "foo.pybc",
+      "x/mod.pybc", "y/x/mod.pybc", "a/b/mod.pybc", "a_b/mod.pybc");
+    var names = new HashSet<String>();
+    for (var f : files) names.add(Mods.storeName(MODS, MODS.resolve(f)));
+    assertEquals(files.size(), names.size(), "unique: " + names);
+  }
+}
@@ -0,0 +1,152 @@
+package io.pyrium.core;
+
+import com.destroystokyo.paper.event.entity.EntityAddToWorldEvent;
+import com.destroystokyo.paper.event.entity.EntityRemoveFromWorldEvent;
+import io.papermc.paper.event.entity.EntityMoveEvent;
+import org.bukkit.Location;
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaperWorldTest {
+  private FakeServer server;
+  private PaperWorld world;
+
+  @BeforeEach
+  void setUp() throws Throwable {
+    server = new FakeServer();
+    world = PaperWorld.create(server, server.plugin);
+  }
+
+  private int first(String prefix) {
+    for (int i = 0; i < server.log.size(); i++) if (server.log.get(i).startsWith(prefix)) return i;
+    return -1;
+  }
+
+  private int last(String prefix) {
+    for (int i = server.log.size() - 1; i >= 0; i--) if (server.log.get(i).startsWith(prefix)) return i;
+    return -1;
+  }
+
+  @Test
+  void flushAppliesBlocksThenScoresThenHandsChatToTheScheduler() {
+    world.createObjective("kills", "dummy");
+    world.broadcast("round over");
+    world.setBlock(1, 64, 1, "minecraft:stone");
+    world.setBlock(17, 64, 1, "minecraft:stone");
+    world.setBlock(2, 64, 1, "minecraft:stone");
+    world.setScore("kills", "Steve", 3);
+    assertEquals("minecraft:stone", world.getBlock(17, 64, 1), "queued write visible before flush");
+    assertTrue(server.log.isEmpty(), "nothing reaches the server before flush: " + server.log);
+
+    world.flush();
+    assertEquals(first("block 1,64,1") + 1, first("block 2,64,1"), "blocks of one chunk are placed together: " + server.log);
+    assertEquals(3, server.log.stream().filter(l -> l.startsWith("block ")).count());
+    assertTrue(last("block ") < first("objective kills"), "blocks before scores: " + server.log);
+    assertTrue(first("objective kills") < first("score kills Steve 3"), "objective before its scores: " + server.log);
+    assertEquals(-1, first("broadcast"), "chat is sent by the async task");
+
+    server.runAsync();
+    assertEquals("broadcast round over", server.log.get(server.log.size() - 1));
+    assertEquals("minecraft:stone", server.blocks.get(BlockPos.pack(2, 64, 1)));
+  }
+
+  @Test
+  void chatKeepsOrderAndDropsUnknownPlayers() {
+    server.player("Alex");
+    world.messagePlayer("Alex", "one");
+    world.messagePlayer("Nobody", "lost");
+    world.broadcast("two");
+    world.messagePlayer("Alex", "three");
+    world.flush();
+    assertTrue(server.log.isEmpty(), "players are looked up at flush, messages sent async: " + server.log);
+    assertEquals(1, server.async.size(), "one task per tick");
+
+    server.runAsync();
+    assertEquals(List.of("message Alex one", "broadcast two", "message Alex three"), server.log);
+    world.flush();
+    assertTrue(server.async.isEmpty(), "no task without chat");
+  }
+
+  @Test
+  void scoresAreWrittenOncePerChangedCellPerTick() {
+    world.createObjective("kills", "dummy");
+    world.flush();
+    server.log.clear();
+
+    for (int i = 0; i < 1000; i++) world.addScore("kills", "p" + (i & 3), 1);
+    assertEquals(250, world.getScore("kills", "p0"), "reads see the pending value");
+    assertTrue(server.log.isEmpty());
+    world.flush();
+    assertEquals(4, server.log.size(), "one setScore per cell: " + server.log);
+    assertEquals(250, server.board.get("kills").get("p3"));
+
+    world.flush();
+    assertEquals(4, server.log.size(), "unchanged cells are not written again");
+    world.resetScore("kills", "p1");
+    world.flush();
+    assertEquals("reset kills p1", server.log.get(4));
+    assertFalse(server.board.get("kills").containsKey("p1"));
+  }
+
+  @Test
+  void entityIndexFollowsEventsWithoutRescanning() throws Exception {
+    var zombie = server.mob(EntityType.ZOMBIE, 0.5, 64, 0.5);
+    server.entities.add(zombie);
+    assertEquals(1, world.countEntities("minecraft:zombie"));
+    assertEquals(1, server.getEntitiesCalls, "seeded once");
+
+    var pig = server.mob(EntityType.PIG, 40, 64, 40);
+    server.entities.add(pig);
+    server.fire(new EntityAddToWorldEvent(pig));
+    assertEquals(1, world.countEntitiesInRegion("pig", 32, 60, 32, 48, 70, 48));
+
+    var to = new Location(server.world, 100, 64, 100);
+    pig.location = to;
+    server.fire(new EntityMoveEvent(pig, to));
+    assertEquals(0, world.countEntitiesInRegion("pig", 32, 60, 32, 48, 70, 48));
+    assertEquals(1, world.countEntitiesInRegion("pig", 96, 60, 96, 104, 70, 104));
+
+    var alex = server.player("Alex");
+    alex.at(0, 64, 0);
+    server.fire(new EntityAddToWorldEvent(alex));
+    server.fire(new PlayerMoveEvent(alex, new Location(server.world, 8, 64, 8)));
+    assertEquals(1, world.countEntitiesInRegion("player", 8, 64, 8, 8, 64, 8));
+
+    server.entities.remove(zombie);
+    server.fire(new EntityRemoveFromWorldEvent(zombie));
+    assertEquals(0, world.countEntities("zombie"));
+
+    // items have no move event: their position is re-read once per tick
+    var item = server.item(0, 64, 0);
+    server.entities.add(item);
+    server.fire(new EntityAddToWorldEvent(item));
+    world.flush();
+    item.at(20, 64, 20);
+    assertEquals(1, world.countEntitiesInRegion("item", 20, 64, 20, 20, 64, 20));
+
+    world.spawnEntity("zombie", 5, 64, 5);
+    assertEquals(1, world.countEntities("zombie"), "own spawns are visible in the same tick");
+    world.forEachEntity("pig", world::removeEntity);
+    assertEquals(0, world.countEntities("pig"), "own removals too");
+    assertEquals(1, server.getEntitiesCalls, "no rebuild after the seed");
+  }
+
+  @Test
+  void doorOpenedByHandIsNotServedFromTheCache() throws Exception {
+    server.blocks.put(BlockPos.pack(3, 64, 3), "minecraft:oak_door[half=upper,open=false]");
+    assertEquals("minecraft:oak_door[half=upper,open=false]", world.getBlock(3, 64, 3));
+    // the server toggles both halves itself; only the interact event tells about it
+    server.blocks.put(BlockPos.pack(3, 64, 3), "minecraft:oak_door[half=upper,open=true]");
+    assertEquals("minecraft:oak_door[half=upper,open=false]", world.getBlock(3, 64, 3), "cached");
+
+    server.fire(new PlayerInteractEvent(server.player("Alex"), server.world.getBlockAt(3, 63, 3)));
+    assertEquals("minecraft:oak_door[half=upper,open=true]", world.getBlock(3, 64, 3), "upper half dropped with the clicked lower half");
+  }
+}
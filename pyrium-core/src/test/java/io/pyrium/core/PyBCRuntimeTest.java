@@ -0,0 +1,119 @@
+package io.pyrium.core;
+
+import io.pyrium.core.PyBCModule.OpCode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PyBCRuntimeTest {
+  private final List<String> pool = new ArrayList<>();
+  private final List<PyBCModule.Op> ops = new ArrayList<>();
+
+  private int str(String s) {
+    if (s.isEmpty()) return -1;
+    int i = pool.indexOf(s);
+    if (i >= 0) return i;
+    pool.add(s);
+    return pool.size() - 1;
+  }
+
+  private PyBCRuntimeTest op(OpCode code, String a, long i64) { return op(code, a, "", i64, 0); }
+
+  private PyBCRuntimeTest op(OpCode code, String a, String b, long i64, int flags) {
+    ops.add(new PyBCModule.Op(code, str(a), str(b), 0.0, i64, flags));
+    return this;
+  }
+
+  private PyBCModule module(String fn) {
+    str(fn);
+    var f = new PyBCModule.Function(fn, ops);
+    return new PyBCModule("test", new PyBCModule.ConstPool(pool), Map.of(fn, f), PyBCModule.FLAG_WIDE_COORDS);
+  }
+
+  /** on_block_break_batch: counts rows at x == 3 (int compare) of stone, walking the rows with BATCH_ROW. */
+  private PyBCModule countStoneAtX3() {
+    String cond = "x == 3 and block == 'minecraft:stone'";
+    return op(OpCode.VAR_SET, "hits", 0).op(OpCode.VAR_SET, "i", 0)
+      .op(OpCode.WHILE_BEGIN, "i < batch_size", 0).op(OpCode.WHILE_CHECK, "i < batch_size", 0)
+      .op(OpCode.BATCH_ROW, "i", 0)
+      .op(OpCode.IF_BEGIN, cond, 0).op(OpCode.VAR_INC, "hits", 1).op(OpCode.IF_END, "", 0)
+      .op(OpCode.VAR_INC, "i", 1)
+      .op(OpCode.WHILE_END, "", 0)
+      .module("on_block_break_batch");
+  }
+
+  private static Events.Batch breaks() {
+    var b = new Events.Batch(Events.BLOCK_BREAK, false);
+    b.add(BlockPos.pack(3, 64, 0), "Alex", "minecraft:stone", 3, 64, 0);
+    b.add(BlockPos.pack(4, 64, 0), "Alex", "minecraft:stone", 4, 64, 0);
+    b.add(BlockPos.pack(3, 65, 0), "Steve", "minecraft:dirt", 3, 65, 0);
+    b.add(BlockPos.pack(3, 66, 0), "Steve", "minecraft:stone", 3, 66, 0);
+    return b;
+  }
+
+  @Test
+  void batchHandlerReadsEveryRow() {
+    var mod = countStoneAtX3();
+    var world = new Mods.DemoWorld();
+    var vm = new PyBCRuntime(world, mod);
+    var fn = mod.functions.get("on_block_break_batch");
+    // past the JIT threshold: the interpreter and the compiled steps must agree
+    for (int run = 0; run < PyBCJit.THRESHOLD + 5; run++) {
+      vm.execute(fn, breaks());
+      assertEquals(2L, world.getVar("hits"), "run " + run);
+    }
+    assertEquals(PyBCJit.ENABLED, fn.jit != null);
+  }
+
+  @Test
+  void rowFieldsMatchTheSingleEvent() {
+    var mod = op(OpCode.VAR_SET, "i", 2).op(OpCode.BATCH_ROW, "i", 0)
+      .op(OpCode.ASSERT, "x + y > 0 and player != block", 0).module("on_block_break_batch");
+    var vm = new PyBCRuntime(new Mods.DemoWorld(), mod);
+    vm.execute(mod.functions.get("on_block_break_batch"), breaks());
+    assertEquals(PyBCRuntime.INT, vm.kinds[mod.vars.slotOf("x")], "block coordinates are ints, as in BlockEvent");
+    assertEquals(65L, vm.ints[mod.vars.slotOf("y")]);
+    assertEquals("Steve", vm.strs[mod.vars.slotOf("player")]);
+    assertEquals("minecraft:dirt", vm.strs[mod.vars.slotOf("block")]);
+  }
+
+  @Test
+  void onlyFlaggedOperandsReadVariables() {
+    var mod = op(OpCode.SCOREBOARD_CREATE, "joins", 0)
+      .op(OpCode.SCORE_SET, "joins", "player", 1, PyBCModule.OPF_REF_B)
+      .op(OpCode.SCORE_SET, "joins", "$global", 2, 0)
+      .module("on_player_join");
+    var world = new Mods.DemoWorld();
+    var vm = new PyBCRuntime(world, mod);
+    var join = new Events.PlayerEvent(Events.PLAYER_JOIN);
+    join.player = "Alex";
+    vm.execute(mod.functions.get("on_player_join"), join);
+    assertEquals(1, world.getScore("joins", "Alex"));
+    assertEquals(2, world.getScore("joins", "$global"), "a literal starting with $ stays a literal");
+  }
+
+  @Test
+  void unboundVariableOperandFailsToLink() {
+    var mod = op(OpCode.SCORE_SET, "joins", "nobody", 1, PyBCModule.OPF_REF_B).module("on_player_join");
+    var e = assertThrows(IOException.class, () -> Mods.checkLinks(mod));
+    assertTrue(e.getMessage().contains("on_player_join"), e.getMessage());
+    assertTrue(e.getMessage().contains("'nobody'"), e.getMessage());
+    assertFalse(mod.functions.get("on_player_join").ensureLinked());
+  }
+
+  @Test
+  void checkingLinksKeepsLinkingLazy() throws IOException {
+    var mod = op(OpCode.VAR_SET, "i", 0).op(OpCode.WHILE_BEGIN, "i < 3", 0).op(OpCode.WHILE_CHECK, "i < 3", 0)
+      .op(OpCode.VAR_INC, "i", 1).op(OpCode.WHILE_END, "", 0).module("on_tick");
+    var fn = mod.functions.get("on_tick");
+    Mods.checkLinks(mod);
+    assertNull(fn.jumps, "checkLinks does not keep the linked arrays");
+    assertTrue(fn.ensureLinked());
+    assertNotNull(fn.jumps);
+  }
+}
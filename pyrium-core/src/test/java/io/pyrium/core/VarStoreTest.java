@@ -0,0 +1,137 @@
+package io.pyrium.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VarStoreTest {
+  private Path dir;
+
+  @BeforeEach
+  void setUp() throws IOException { dir = Files.createTempDirectory("pyrium-vars"); }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    try (var files = Files.walk(dir)) {
+      for (var p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.deleteIfExists(p);
+    }
+  }
+
+  private static VarStore withLong(VarStore s, String var, long v) { s.putLong(s.index(var), v); return s; }
+
+  private static long get(VarStore s, String var) {
+    int i = s.index(var);
+    assertEquals(PyBCRuntime.INT, s.kind(i), var + " is set");
+    return s.longValue(i);
+  }
+
+  private static void assertUnset(VarStore s, String var) { assertEquals(PyBCRuntime.UNSET, s.kind(s.index(var)), var + " is unset"); }
+
+  /** A log record { u32 len, u32 CRC32, entry } for an int variable, as commit writes it. */
+  private static byte[] record(String var, long v) {
+    byte[] n = var.getBytes(StandardCharsets.UTF_8);
+    var e = ByteBuffer.allocate(3 + n.length + 8).order(ByteOrder.LITTLE_ENDIAN)
+      .put(PyBCRuntime.INT).putShort((short) n.length).put(n).putLong(v);
+    var crc = new CRC32();
+    crc.update(e.array());
+    return ByteBuffer.allocate(8 + e.capacity()).order(ByteOrder.LITTLE_ENDIAN)
+      .putInt(e.capacity()).putInt((int) crc.getValue()).put(e.array()).array();
+  }
+
+  /** Appends raw bytes to the store's current log, like a commit the process did not finish. */
+  private void append(byte[]... parts) throws IOException {
+    Path log;
+    try (var files = Files.list(dir)) {
+      log = files.filter(p -> p.getFileName().toString().endsWith(".log")).findFirst().orElseThrow();
+    }
+    try (var ch = FileChannel.open(log, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+      for (byte[] p : parts) ch.write(ByteBuffer.wrap(p));
+    }
+  }
+
+  @Test
+  void tornTailKeepsTheRecordsBeforeIt() throws IOException {
+    withLong(VarStore.open(dir, "t"), "a", 1).close();
+    byte[] c = record("c", 3);
+    append(record("b", 2), Arrays.copyOf(c, c.length - 3));
+
+    var s = VarStore.open(dir, "t");
+    assertEquals(1, get(s, "a"));
+    assertEquals(2, get(s, "b"));
+    assertUnset(s, "c");
+    withLong(s, "d", 4).close();
+
+    s = VarStore.open(dir, "t");
+    assertEquals(1, get(s, "a"));
+    assertEquals(2, get(s, "b"));
+    assertEquals(4, get(s, "d"), "writes after a torn tail survive the next restart");
+    s.close();
+  }
+
+  @Test
+  void corruptRecordInTheMiddleStopsReplayThere() throws IOException {
+    withLong(VarStore.open(dir, "t"), "a", 1).close();
+    byte[] c = record("c", 3);
+    c[c.length - 1] ^= 0x40;
+    append(record("b", 2), c, record("e", 5));
+
+    var s = VarStore.open(dir, "t");
+    assertEquals(1, get(s, "a"));
+    assertEquals(2, get(s, "b"));
+    assertUnset(s, "c");
+    assertUnset(s, "e");
+    withLong(s, "f", 6).close();
+
+    s = VarStore.open(dir, "t");
+    assertEquals(2, get(s, "b"));
+    assertEquals(6, get(s, "f"), "later commits are not hidden behind the corrupt record");
+    s.close();
+  }
+
+  @Test
+  void failedCommitKeepsTheValuesAndStartsANewGeneration() throws Exception {
+    var s = VarStore.open(dir, "t");
+    String gen0 = s.summary().replaceAll(".*(gen \\d+).*", "$1");
+    var log = VarStore.class.getDeclaredField("log");
+    log.setAccessible(true);
+    ((FileChannel) log.get(s)).close();
+    withLong(s, "a", 7);
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (s.summary().contains(gen0 + ",") && System.currentTimeMillis() < deadline) Thread.sleep(10);
+    assertFalse(s.summary().contains(gen0 + ","), "the writer compacted after the failed write: " + s.summary());
+    withLong(s, "b", 8).close();
+
+    s = VarStore.open(dir, "t");
+    assertEquals(7, get(s, "a"));
+    assertEquals(8, get(s, "b"));
+    s.close();
+  }
+
+  @Test
+  void reopenWaitsForACloseHandedToTheWriter() throws IOException {
+    withLong(VarStore.open(dir, "t"), "a", 1).closeLater();
+    var s = VarStore.open(dir, "t");
+    assertEquals(1, get(s, "a"), "the pending close committed before the files were read");
+    withLong(s, "a", 2).closeLater();
+    s.closeLater();
+
+    s = VarStore.open(dir, "t");
+    assertEquals(2, get(s, "a"));
+    s.close();
+  }
+}
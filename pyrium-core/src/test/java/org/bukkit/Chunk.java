@@ -0,0 +1,8 @@
+package org.bukkit;
+
+public interface Chunk {
+  int getX();
+  int getZ();
+  World getWorld();
+  org.bukkit.block.Block getBlock(int x, int y, int z);
+}
@@ -0,0 +1,15 @@
+package org.bukkit;
+
+import java.util.Locale;
+
+public enum Material {
+  STONE, DIAMOND;
+
+  public static Material matchMaterial(String name) {
+    try {
+      return valueOf(name.replace("minecraft:", "").toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
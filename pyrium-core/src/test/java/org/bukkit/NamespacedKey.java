@@ -0,0 +1,13 @@
+package org.bukkit;
+
+public final class NamespacedKey {
+  private final String key;
+
+  private NamespacedKey(String key) { this.key = key; }
+
+  public static NamespacedKey fromString(String key) { return new NamespacedKey(key); }
+
+  @Override public boolean equals(Object o) { return o instanceof NamespacedKey k && k.key.equals(key); }
+  @Override public int hashCode() { return key.hashCode(); }
+  @Override public String toString() { return key; }
+}
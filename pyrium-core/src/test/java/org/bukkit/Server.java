@@ -0,0 +1,20 @@
+package org.bukkit;
+
+import java.util.List;
+
+/**
+ * Test stand-in for the Bukkit API: only the types and members PaperWorld resolves
+ * reflectively, so the facade can run against fakes without a server jar.
+ */
+public interface Server {
+  List<World> getWorlds();
+  World getWorld(String name);
+  org.bukkit.block.data.BlockData createBlockData(String data);
+  org.bukkit.entity.Player getPlayerExact(String name);
+  org.bukkit.command.ConsoleCommandSender getConsoleSender();
+  boolean dispatchCommand(org.bukkit.command.CommandSender sender, String command);
+  int broadcastMessage(String message);
+  org.bukkit.scheduler.BukkitScheduler getScheduler();
+  org.bukkit.plugin.PluginManager getPluginManager();
+  org.bukkit.scoreboard.ScoreboardManager getScoreboardManager();
+}
@@ -0,0 +1,14 @@
+package org.bukkit;
+
+import java.util.List;
+
+public interface World {
+  Chunk getChunkAt(int x, int z);
+  org.bukkit.block.Block getBlockAt(int x, int y, int z);
+  long getTime();
+  void setTime(long time);
+  void setStorm(boolean storm);
+  void setThundering(boolean thundering);
+  List<org.bukkit.entity.Entity> getEntities();
+  org.bukkit.entity.Entity spawnEntity(Location location, org.bukkit.entity.EntityType type);
+}
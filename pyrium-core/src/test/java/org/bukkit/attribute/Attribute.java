@@ -0,0 +1,5 @@
+package org.bukkit.attribute;
+
+public enum Attribute {
+  MOVEMENT_SPEED, MAX_HEALTH
+}
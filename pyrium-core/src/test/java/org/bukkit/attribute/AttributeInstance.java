@@ -0,0 +1,6 @@
+package org.bukkit.attribute;
+
+public interface AttributeInstance {
+  double getBaseValue();
+  void setBaseValue(double value);
+}
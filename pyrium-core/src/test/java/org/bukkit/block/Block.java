@@ -0,0 +1,10 @@
+package org.bukkit.block;
+
+public interface Block {
+  int getX();
+  int getY();
+  int getZ();
+  org.bukkit.World getWorld();
+  org.bukkit.block.data.BlockData getBlockData();
+  void setBlockData(org.bukkit.block.data.BlockData data, boolean applyPhysics);
+}
@@ -0,0 +1,18 @@
+package org.bukkit.entity;
+
+import java.util.Set;
+
+public interface Entity extends org.bukkit.persistence.PersistentDataHolder {
+  int getEntityId();
+  EntityType getType();
+  org.bukkit.World getWorld();
+  org.bukkit.Location getLocation();
+  boolean teleport(org.bukkit.Location location);
+  void remove();
+  String getName();
+  String getCustomName();
+  void setCustomName(String name);
+  Set<String> getScoreboardTags();
+  boolean addScoreboardTag(String tag);
+  boolean removeScoreboardTag(String tag);
+}
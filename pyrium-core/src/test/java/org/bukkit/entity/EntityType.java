@@ -0,0 +1,5 @@
+package org.bukkit.entity;
+
+public enum EntityType {
+  ZOMBIE, PIG, ITEM, PLAYER
+}
@@ -0,0 +1,5 @@
+package org.bukkit.entity;
+
+public interface LivingEntity extends Entity {
+  org.bukkit.attribute.AttributeInstance getAttribute(org.bukkit.attribute.Attribute attribute);
+}
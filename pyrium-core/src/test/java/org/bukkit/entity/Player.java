@@ -0,0 +1,6 @@
+package org.bukkit.entity;
+
+public interface Player extends LivingEntity, org.bukkit.command.CommandSender {
+  void sendMessage(String message);
+  org.bukkit.inventory.PlayerInventory getInventory();
+}
@@ -0,0 +1,7 @@
+package org.bukkit.event.block;
+
+import org.bukkit.block.Block;
+
+public class BlockBreakEvent extends BlockEvent {
+  public BlockBreakEvent(Block block) { super(block); }
+}
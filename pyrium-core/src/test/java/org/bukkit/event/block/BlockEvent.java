@@ -0,0 +1,11 @@
+package org.bukkit.event.block;
+
+import org.bukkit.block.Block;
+
+public abstract class BlockEvent extends org.bukkit.event.Event {
+  private final Block block;
+
+  protected BlockEvent(Block block) { this.block = block; }
+
+  public Block getBlock() { return block; }
+}
@@ -0,0 +1,11 @@
+package org.bukkit.event.entity;
+
+import org.bukkit.entity.Entity;
+
+public abstract class EntityEvent extends org.bukkit.event.Event {
+  private final Entity entity;
+
+  protected EntityEvent(Entity entity) { this.entity = entity; }
+
+  public Entity getEntity() { return entity; }
+}
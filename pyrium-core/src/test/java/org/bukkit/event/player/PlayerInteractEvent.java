@@ -0,0 +1,14 @@
+package org.bukkit.event.player;
+
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+
+public class PlayerInteractEvent extends org.bukkit.event.Event {
+  private final Player player;
+  private final Block clicked;
+
+  public PlayerInteractEvent(Player player, Block clicked) { this.player = player; this.clicked = clicked; }
+
+  public Player getPlayer() { return player; }
+  public Block getClickedBlock() { return clicked; }
+}
@@ -0,0 +1,8 @@
+package org.bukkit.inventory;
+
+import java.util.HashMap;
+
+public interface Inventory {
+  HashMap<Integer, ItemStack> addItem(ItemStack... items);
+  HashMap<Integer, ItemStack> removeItem(ItemStack... items);
+}
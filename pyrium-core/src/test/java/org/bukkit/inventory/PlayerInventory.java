@@ -0,0 +1,4 @@
+package org.bukkit.inventory;
+
+public interface PlayerInventory extends Inventory {
+}
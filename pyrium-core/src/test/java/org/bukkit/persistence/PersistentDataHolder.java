@@ -0,0 +1,5 @@
+package org.bukkit.persistence;
+
+public interface PersistentDataHolder {
+  PersistentDataContainer getPersistentDataContainer();
+}
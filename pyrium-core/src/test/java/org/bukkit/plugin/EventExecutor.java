@@ -0,0 +1,8 @@
+package org.bukkit.plugin;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.Listener;
+
+public interface EventExecutor {
+  void execute(Listener listener, Event event) throws Exception;
+}
@@ -0,0 +1,5 @@
+package org.bukkit.scoreboard;
+
+public enum DisplaySlot {
+  BELOW_NAME, PLAYER_LIST, SIDEBAR
+}
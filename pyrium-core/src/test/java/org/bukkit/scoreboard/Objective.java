@@ -0,0 +1,7 @@
+package org.bukkit.scoreboard;
+
+public interface Objective {
+  void unregister();
+  void setDisplaySlot(DisplaySlot slot);
+  Score getScore(String entry);
+}
@@ -0,0 +1,8 @@
+package org.bukkit.scoreboard;
+
+public interface Score {
+  int getScore();
+  void setScore(int score);
+  boolean isScoreSet();
+  void resetScore();
+}
@@ -0,0 +1,6 @@
+package org.bukkit.scoreboard;
+
+public interface Scoreboard {
+  Objective getObjective(String name);
+  Objective registerNewObjective(String name, String criteria, String displayName);
+}
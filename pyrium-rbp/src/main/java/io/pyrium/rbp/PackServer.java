@@ -0,0 +1,327 @@
+package io.pyrium.rpb;
+
+import io.pyrium.bootstrap.RuntimeLayout;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Embedded HTTP server for the resource pack and the per-mod split packs.
+ *
+ * One selector thread serves all connections: GET/HEAD with strong ETags (the pack
+ * SHA-1), If-None-Match, single byte ranges (Range/If-Range) and keep-alive. File
+ * bodies go from a shared FileChannel to the socket with transferTo, in slices so a
+ * mass download after a restart is shared fairly. At most MAX_CONNECTIONS are open;
+ * beyond that, accepting pauses and further clients wait in the listen backlog.
+ *
+ * Enabled with -Dpyrium.pack.http=<port>; serves /pyrium-resource-pack.zip and
+ * /packs/<mod>.zip.
+ */
+public final class PackServer implements AutoCloseable {
+
+  static final int MAX_CONNECTIONS = Integer.getInteger("pyrium.pack.http.maxConnections", 64);
+  static final long IDLE_MILLIS = Long.getLong("pyrium.pack.http.idleMillis", 30_000);
+  private static final int SLICE = 1 << 20;    // bytes per transferTo before the next connection's turn
+  private static final int MAX_HEADER = 8192;
+
+  record Pack(FileChannel file, long size, String etag) {}
+
+  private static final class Conn {
+    final SocketChannel ch;
+    final ByteBuffer in = ByteBuffer.allocate(MAX_HEADER);
+    ByteBuffer head;
+    Pack body;
+    long pos, end;
+    boolean close;
+    long lastActive = System.currentTimeMillis();
+    Conn(SocketChannel ch) { this.ch = ch; }
+  }
+
+  private final Map<String, Pack> packs = new ConcurrentHashMap<>();
+  private final ServerSocketChannel server;
+  private final Selector selector;
+  private final SelectionKey acceptKey;
+  private final Thread thread;
+  private volatile boolean running = true;
+  private int connections;
+
+  /** Starts the server if pyrium.pack.http is set and publishes the packs found on disk; null otherwise. */
+  public static PackServer startIfEnabled(RuntimeLayout rt) {
+    Integer port = Integer.getInteger("pyrium.pack.http");
+    if (port == null) return null;
+    try {
+      var s = new PackServer(new InetSocketAddress(System.getProperty("pyrium.pack.http.host", "0.0.0.0"), port));
+      Path versionDir = rt.modsDir().getParent();
+      s.publishIfPresent("/" + ResourcePackBuilder.PACK_NAME, versionDir.resolve(ResourcePackBuilder.PACK_NAME));
+      Path split = versionDir.resolve(ResourcePackBuilder.SPLIT_DIR);
+      if (Files.isDirectory(split)) {
+        try (var files = Files.list(split)) {
+          for (Path f : (Iterable<Path>) files::iterator) {
+            if (f.toString().endsWith(".zip")) s.publishIfPresent("/" + ResourcePackBuilder.SPLIT_DIR + "/" + f.getFileName(), f);
+          }
+        }
+      }
+      System.out.println("[Pyrium] Pack server on port " + s.port() + " (" + s.packs.size() + " packs, max "
+        + MAX_CONNECTIONS + " connections)");
+      var main = s.packs.get("/" + ResourcePackBuilder.PACK_NAME);
+      if (main != null) {
+        System.out.println("[Pyrium]   resource-pack=http://<server-address>:" + s.port() + "/" + ResourcePackBuilder.PACK_NAME);
+        System.out.println("[Pyrium]   resource-pack-sha1=" + main.etag().substring(1, main.etag().length() - 1));
+      }
+      return s;
+    } catch (IOException e) {
+      System.err.println("[Pyrium] Pack server failed to start: " + e.getMessage());
+      return null;
+    }
+  }
+
+  public PackServer(InetSocketAddress bind) throws IOException {
+    selector = Selector.open();
+    server = ServerSocketChannel.open();
+    server.bind(bind, 512);
+    server.configureBlocking(false);
+    acceptKey = server.register(selector, SelectionKey.OP_ACCEPT);
+    thread = new Thread(this::loop, "PyriumPackServer");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  public int port() { return server.socket().getLocalPort(); }
+
+  /**
+   * Serves file at path with ETag "sha1". The channel stays open, so an atomic
+   * replacement of the file does not affect the published version; publish again
+   * to switch.
+   */
+  public void publish(String path, Path file, String sha1) throws IOException {
+    var ch = FileChannel.open(file, StandardOpenOption.READ);
+    // A replaced version is not closed here: in-flight downloads may still read from it
+    packs.put(path, new Pack(ch, ch.size(), "\"" + sha1 + "\""));
+  }
+
+  /** Publishes file with the SHA-1 from its .sha1 side file, if both exist. */
+  void publishIfPresent(String path, Path file) throws IOException {
+    Path sha1 = file.resolveSibling(file.getFileName() + ".sha1");
+    if (Files.exists(file) && Files.exists(sha1)) publish(path, file, Files.readString(sha1).trim());
+  }
+
+  @Override public void close() throws IOException {
+    running = false;
+    selector.wakeup();
+    try {
+      thread.join(2000);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    for (var p : packs.values()) p.file().close();
+  }
+
+  // ========= Event loop =========
+
+  private void loop() {
+    try {
+      while (running) {
+        selector.select(1000);
+        var it = selector.selectedKeys().iterator();
+        while (it.hasNext()) {
+          var key = it.next();
+          it.remove();
+          if (!key.isValid()) continue;
+          try {
+            if (key.isAcceptable()) accept();
+            else if (key.isReadable()) read(key);
+            else if (key.isWritable()) write(key);
+          } catch (IOException e) {
+            close(key); // client went away mid-request or mid-body
+          }
+        }
+        sweepIdle();
+      }
+      for (var key : selector.keys()) if (key != acceptKey) close(key);
+      server.close();
+      selector.close();
+    } catch (IOException e) {
+      System.err.println("[Pyrium] Pack server stopped: " + e.getMessage());
+    }
+  }
+
+  private void accept() throws IOException {
+    SocketChannel ch;
+    while (connections < MAX_CONNECTIONS && (ch = server.accept()) != null) {
+      ch.configureBlocking(false);
+      ch.socket().setTcpNoDelay(true);
+      ch.register(selector, SelectionKey.OP_READ, new Conn(ch));
+      connections++;
+    }
+    if (connections >= MAX_CONNECTIONS) acceptKey.interestOps(0);
+  }
+
+  private void close(SelectionKey key) {
+    if (!key.isValid()) return; // already closed (cancelled keys stay in keys() until the next select)
+    key.cancel();
+    if (key.attachment() instanceof Conn c) {
+      try { c.ch.close(); } catch (IOException ignored) {}
+      if (connections-- == MAX_CONNECTIONS) acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+    }
+  }
+
+  private void sweepIdle() {
+    long now = System.currentTimeMillis();
+    for (var key : selector.keys()) {
+      if (key.attachment() instanceof Conn c && now - c.lastActive > IDLE_MILLIS) close(key);
+    }
+  }
+
+  private void read(SelectionKey key) throws IOException {
+    var c = (Conn) key.attachment();
+    if (c.ch.read(c.in) < 0) { close(key); return; }
+    c.lastActive = System.currentTimeMillis();
+    handle(key, c);
+  }
+
+  /** Starts the response to the next complete request in the input buffer, if there is one. */
+  private void handle(SelectionKey key, Conn c) {
+    int endOfHead = indexOfHeaderEnd(c.in);
+    if (endOfHead < 0) {
+      if (!c.in.hasRemaining()) { c.close = true; respond(key, c, error(431, "Request Header Fields Too Large", true)); }
+      return;
+    }
+    String req = new String(c.in.array(), 0, endOfHead, StandardCharsets.ISO_8859_1);
+    // Drop the consumed request; pipelined bytes stay for the next round
+    c.in.flip().position(endOfHead + 4);
+    c.in.compact();
+    respond(key, c, response(c, req));
+  }
+
+  private static int indexOfHeaderEnd(ByteBuffer in) {
+    byte[] a = in.array();
+    for (int i = 0, n = in.position() - 3; i < n; i++) {
+      if (a[i] == '\r' && a[i + 1] == '\n' && a[i + 2] == '\r' && a[i + 3] == '\n') return i;
+    }
+    return -1;
+  }
+
+  private void respond(SelectionKey key, Conn c, ByteBuffer head) {
+    c.head = head;
+    key.interestOps(SelectionKey.OP_WRITE);
+  }
+
+  private void write(SelectionKey key) throws IOException {
+    var c = (Conn) key.attachment();
+    c.lastActive = System.currentTimeMillis();
+    if (c.head.hasRemaining()) {
+      c.ch.write(c.head);
+      if (c.head.hasRemaining()) return;
+    }
+    if (c.body != null && c.pos < c.end) {
+      c.pos += c.body.file().transferTo(c.pos, Math.min(SLICE, c.end - c.pos), c.ch);
+      if (c.pos < c.end) return;
+    }
+    c.body = null;
+    if (c.close) { close(key); return; }
+    key.interestOps(SelectionKey.OP_READ);
+    handle(key, c);
+  }
+
+  // ========= HTTP =========
+
+  /** Builds the response head and sets up the body range on c. */
+  private ByteBuffer response(Conn c, String req) {
+    String[] lines = req.split("\r\n");
+    String[] rl = lines[0].split(" ");
+    if (rl.length != 3 || !rl[2].startsWith("HTTP/1.")) { c.close = true; return error(400, "Bad Request", true); }
+    var h = new HashMap<String, String>();
+    for (int i = 1; i < lines.length; i++) {
+      int colon = lines[i].indexOf(':');
+      if (colon > 0) h.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT), lines[i].substring(colon + 1).trim());
+    }
+    String conn = h.getOrDefault("connection", "").toLowerCase(Locale.ROOT);
+    c.close = rl[2].equals("HTTP/1.0") ? !conn.contains("keep-alive") : conn.contains("close");
+
+    boolean head = rl[0].equals("HEAD");
+    if (!head && !rl[0].equals("GET")) return error(405, "Method Not Allowed", c.close, "Allow: GET, HEAD\r\n");
+    String path = rl[1];
+    int q = path.indexOf('?');
+    if (q >= 0) path = path.substring(0, q);
+    var pack = packs.get(path);
+    if (pack == null) return error(404, "Not Found", c.close);
+
+    String inm = h.get("if-none-match");
+    if (inm != null && (inm.equals("*") || Arrays.stream(inm.split(",")).map(String::trim).anyMatch(pack.etag()::equals))) {
+      return head(304, "Not Modified", c.close, "ETag: " + pack.etag() + "\r\n");
+    }
+
+    long size = pack.size(), from = 0, to = size - 1;
+    int status = 200;
+    String extra = "";
+    String range = h.get("range");
+    String ifRange = h.get("if-range");
+    if (range != null && (ifRange == null || ifRange.equals(pack.etag()))) {
+      long[] r = parseRange(range, size);
+      if (r == null) {
+        return head(416, "Range Not Satisfiable", c.close, "Content-Range: bytes */" + size + "\r\nContent-Length: 0\r\n");
+      }
+      if (r.length == 2) {
+        status = 206; from = r[0]; to = r[1];
+        extra = "Content-Range: bytes " + from + "-" + to + "/" + size + "\r\n";
+      }
+    }
+    if (!head) { c.body = pack; c.pos = from; c.end = to + 1; }
+    return head(status, status == 206 ? "Partial Content" : "OK", c.close,
+      "Content-Type: application/zip\r\nContent-Length: " + (to + 1 - from) + "\r\nETag: " + pack.etag()
+        + "\r\nAccept-Ranges: bytes\r\nCache-Control: no-cache\r\n" + extra);
+  }
+
+  /**
+   * Single range "bytes=a-b", "bytes=a-" or "bytes=-n": {from, to}; empty array to
+   * ignore the header (malformed or multi-range, served as 200); null if unsatisfiable.
+   */
+  static long[] parseRange(String range, long size) {
+    if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) return new long[0];
+    String spec = range.substring(6).trim();
+    int dash = spec.indexOf('-');
+    if (dash < 0) return new long[0];
+    try {
+      String a = spec.substring(0, dash).trim(), b = spec.substring(dash + 1).trim();
+      long from, to;
+      if (a.isEmpty()) {
+        if (b.isEmpty()) return new long[0];
+        long n = Long.parseLong(b);
+        if (n == 0 || size == 0) return null;
+        from = Math.max(0, size - n); to = size - 1;
+      } else {
+        from = Long.parseLong(a);
+        to = b.isEmpty() ? Long.MAX_VALUE : Long.parseLong(b);
+        if (to < from) return new long[0];
+        if (from >= size) return null;
+        to = Math.min(to, size - 1);
+      }
+      return new long[]{from, to};
+    } catch (NumberFormatException e) {
+      return new long[0];
+    }
+  }
+
+  private static ByteBuffer error(int status, String reason, boolean close) {
+    return error(status, reason, close, "");
+  }
+
+  private static ByteBuffer error(int status, String reason, boolean close, String extra) {
+    String body = status + " " + reason + "\n";
+    var h = head(status, reason, close, extra + "Content-Type: text/plain\r\nContent-Length: " + body.length() + "\r\n");
+    var b = ByteBuffer.allocate(h.remaining() + body.length());
+    return b.put(h).put(body.getBytes(StandardCharsets.ISO_8859_1)).flip();
+  }
+
+  private static ByteBuffer head(int status, String reason, boolean close, String headers) {
+    String s = "HTTP/1.1 " + status + " " + reason + "\r\n" + headers
+      + (close ? "Connection: close\r\n" : "") + "\r\n";
+    return ByteBuffer.wrap(s.getBytes(StandardCharsets.ISO_8859_1));
+  }
+}
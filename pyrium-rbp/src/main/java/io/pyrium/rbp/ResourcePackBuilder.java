@@ -3,52 +3,258 @@ package io.pyrium.rpb;
 import io.pyrium.bootstrap.RuntimeLayout;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.*;
 import java.util.zip.*;
 
 public final class ResourcePackBuilder {
 
-  public static void buildIfNeeded(RuntimeLayout rt) {
+  // Bump when the archive layout changes, so existing packs are rebuilt once
+  private static final int FORMAT = 2;
+  private static final String MCMETA = """
+    {
+      "pack": { "pack_format": 48, "description": "Pyrium Resource Pack" }
+    }
+    """;
+
+  /** One asset file; sha1/crc come from the manifest when size and mtime are unchanged. */
+  record Asset(String name, Path file, long size, long mtime, String sha1, long crc) {}
+
+  static final String PACK_NAME = "pyrium-resource-pack.zip";
+  static final String SPLIT_DIR = "packs";
+  // Per-mod packs in <version>/packs/<mod>.zip, e.g. for PackServer or per-world delivery
+  static final boolean SPLIT = "true".equalsIgnoreCase(System.getProperty("pyrium.pack.split", "false"));
+
+  /**
+   * Builds pyrium-resource-pack.zip from mods/*&#47;assets unless it is already up to date.
+   *
+   * A manifest in cacheDir records SHA-1, CRC, size and mtime per asset; only new or
+   * touched files are hashed, and the archive is rewritten only when the content set
+   * changed. PNG and OGG are stored without deflate. Returns the pack's SHA-1 (for the
+   * resource-pack-sha1 server property, also written to pyrium-resource-pack.zip.sha1),
+   * or null if the build failed.
+   */
+  public static String buildIfNeeded(RuntimeLayout rt) {
     // modsDir zeigt jetzt direkt auf .pyrium/runtime/<version>/mods
     Path modsDir = rt.modsDir();
-    Path assetsZip = modsDir.getParent().resolve("pyrium-resource-pack.zip");
+    Path assetsZip = modsDir.getParent().resolve(PACK_NAME);
+    Path manifestFile = rt.cacheDir().resolve("resource-pack.manifest");
     try {
-      try (var out = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(assetsZip)))) {
-        // Scan mods/*/assets and include into zip (namespaced)
-        if (Files.exists(modsDir)) {
-          try (var mods = Files.list(modsDir).filter(Files::isDirectory)) {
-            for (Path modDir : (Iterable<Path>) mods::iterator) {
-              Path assets = modDir.resolve("assets");
-              if (!Files.exists(assets)) continue;
-              Files.walk(assets).filter(Files::isRegularFile).forEach(f -> {
-                try {
-                  String rel = assets.relativize(f).toString().replace('\\','/');
-                  // Namespace: pyrium/<modname>/<assetpath>
-                  String entryName = "pyrium/" + modDir.getFileName() + "/" + rel;
-                  out.putNextEntry(new ZipEntry(entryName));
-                  Files.copy(f, out);
-                  out.closeEntry();
-                } catch (IOException e) {
-                  e.printStackTrace();
-                }
-              });
-            }
+      var old = Manifest.read(manifestFile);
+      var assets = scan(modsDir, old);
+      String sha1 = build(assetsZip, manifestFile, assets, old);
+      if (SPLIT) buildSplit(rt, assets);
+      // Delivery: PackServer serves the pack over HTTP when pyrium.pack.http is set
+      return sha1;
+    } catch (IOException e) {
+      System.err.println("[Pyrium] Resource pack build failed: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /** Rebuilds zip from assets unless manifest old describes exactly this content and file. */
+  private static String build(Path zip, Path manifestFile, List<Asset> assets, Manifest old) throws IOException {
+    if (old != null && old.sameAssets(assets) && old.matchesZip(zip)) {
+      // Record new mtimes of touched-but-identical files so they are not hashed again
+      new Manifest(old.packSha1, old.zipSize, old.zipMtime, assets).write(manifestFile);
+      System.out.println("[Pyrium] Resource pack up to date: " + zip + " (sha1 " + old.packSha1 + ")");
+      return old.packSha1;
+    }
+    String sha1 = write(zip, assets, old);
+    Files.writeString(zip.resolveSibling(zip.getFileName() + ".sha1"), sha1);
+    new Manifest(sha1, Files.size(zip), Files.getLastModifiedTime(zip).toMillis(), assets).write(manifestFile);
+    System.out.println("[Pyrium] Built resource pack: " + zip + " (" + assets.size() + " assets, sha1 " + sha1 + ")");
+    return sha1;
+  }
+
+  /** One pack per mod from the already hashed asset list; packs of removed mods are deleted. */
+  private static void buildSplit(RuntimeLayout rt, List<Asset> assets) throws IOException {
+    var byMod = new TreeMap<String, List<Asset>>();
+    for (var a : assets) byMod.computeIfAbsent(modOf(a.name()), m -> new ArrayList<>()).add(a);
+    Path dir = rt.modsDir().getParent().resolve(SPLIT_DIR);
+    Files.createDirectories(dir);
+    for (var e : byMod.entrySet()) {
+      Path manifestFile = rt.cacheDir().resolve("resource-pack-" + e.getKey() + ".manifest");
+      build(dir.resolve(e.getKey() + ".zip"), manifestFile, e.getValue(), Manifest.read(manifestFile));
+    }
+    try (var files = Files.list(dir)) {
+      for (Path f : (Iterable<Path>) files::iterator) {
+        String n = f.getFileName().toString();
+        String mod = n.endsWith(".zip") ? n.substring(0, n.length() - 4) : n.endsWith(".zip.sha1") ? n.substring(0, n.length() - 9) : null;
+        if (mod != null && !byMod.containsKey(mod)) Files.deleteIfExists(f);
+      }
+    }
+  }
+
+  private static String modOf(String name) {
+    // pyrium/<modname>/<assetpath>
+    return name.substring(7, name.indexOf('/', 7));
+  }
+
+  /** Lists mods/*&#47;assets files in entry-name order, hashing only files the manifest does not cover. */
+  static List<Asset> scan(Path modsDir, Manifest old) throws IOException {
+    var out = new ArrayList<Asset>();
+    if (!Files.exists(modsDir)) return out;
+    try (var mods = Files.list(modsDir).filter(Files::isDirectory)) {
+      for (Path modDir : (Iterable<Path>) mods::iterator) {
+        Path assets = modDir.resolve("assets");
+        if (!Files.exists(assets)) continue;
+        try (var files = Files.walk(assets).filter(Files::isRegularFile)) {
+          for (Path f : (Iterable<Path>) files::iterator) {
+            String rel = assets.relativize(f).toString().replace('\\','/');
+            // Namespace: pyrium/<modname>/<assetpath>
+            String name = "pyrium/" + modDir.getFileName() + "/" + rel;
+            long size = Files.size(f), mtime = Files.getLastModifiedTime(f).toMillis();
+            Asset known = old == null ? null : old.assets.get(name);
+            out.add(known != null && known.size() == size && known.mtime() == mtime
+              ? new Asset(name, f, size, mtime, known.sha1(), known.crc())
+              : hash(name, f, size, mtime));
           }
         }
-        // Add mandatory pack.mcmeta
-        out.putNextEntry(new ZipEntry("pack.mcmeta"));
-        String mcmeta = """
-          {
-            "pack": { "pack_format": 48, "description": "Pyrium Resource Pack" }
-          }
-          """;
-        out.write(mcmeta.getBytes());
-        out.closeEntry();
       }
-      System.out.println("[Pyrium] Built resource pack: " + assetsZip);
-      // Delivery to players is server-specific; for Bukkit/Paper, you'd call ResourcePack API per player.
-    } catch (IOException e) {
-      System.err.println("[Pyrium] Resource pack build failed: " + e.getMessage());
     }
+    out.sort(Comparator.comparing(Asset::name));
+    return out;
+  }
+
+  private static Asset hash(String name, Path f, long size, long mtime) throws IOException {
+    var md = sha1();
+    var crc = new CRC32();
+    try (var in = Files.newInputStream(f)) {
+      byte[] buf = new byte[1 << 16];
+      int n;
+      while ((n = in.read(buf)) > 0) { md.update(buf, 0, n); crc.update(buf, 0, n); }
+    }
+    return new Asset(name, f, size, mtime, hex(md.digest()), crc.getValue());
+  }
+
+  /**
+   * Writes the pack to a temp file with ZipAssembler, then moves it into place.
+   * Text assets whose content the previous pack already holds are copied raw from it
+   * instead of being deflated again.
+   */
+  private static String write(Path assetsZip, List<Asset> assets, Manifest old) throws IOException {
+    Path tmp = assetsZip.resolveSibling(assetsZip.getFileName() + ".tmp");
+    FileChannel prev = null;
+    Map<String, ZipAssembler.Raw> reusable = Map.of();
+    if (old != null && old.matchesZip(assetsZip)) {
+      prev = FileChannel.open(assetsZip, StandardOpenOption.READ);
+      reusable = ZipAssembler.readCentral(prev);
+    }
+    int reused = 0;
+    try (var zip = new ZipAssembler(tmp, ZipAssembler.THREADS)) {
+      for (var a : assets) {
+        if (isCompressed(a.name())) { zip.addStored(a.name(), a.file(), a.size(), a.crc()); continue; }
+        var was = old == null ? null : old.assets.get(a.name());
+        var raw = reusable.get(a.name());
+        if (was != null && raw != null && was.sha1().equals(a.sha1()) && raw.crc() == a.crc() && raw.size() == a.size()) {
+          zip.addRaw(a.name(), prev, raw);
+          reused++;
+        } else {
+          zip.addDeflated(a.name(), a.file());
+        }
+      }
+      // Add mandatory pack.mcmeta
+      zip.addDeflated("pack.mcmeta", MCMETA.getBytes(StandardCharsets.UTF_8));
+      zip.finish();
+    } finally {
+      if (prev != null) prev.close();
+    }
+    if (reused > 0) System.out.println("[Pyrium] Resource pack: " + reused + " unchanged entries copied from the previous pack");
+    Files.move(tmp, assetsZip, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    return hex(digest(assetsZip));
+  }
+
+  /** SHA-1 of the finished file; stored entries bypass the heap while writing, so it is hashed afterwards. */
+  private static byte[] digest(Path file) throws IOException {
+    var md = sha1();
+    var buf = ByteBuffer.allocateDirect(1 << 20);
+    try (var ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      while (ch.read(buf) > 0) { md.update(buf.flip()); buf.clear(); }
+    }
+    return md.digest();
+  }
+
+  /** Formats that are already compressed; deflating them costs time and saves nothing. */
+  static boolean isCompressed(String name) {
+    return name.endsWith(".png") || name.endsWith(".ogg");
+  }
+
+  // ========= Manifest =========
+
+  /**
+   * Text file: "pyrium-pack <FORMAT>", "zip <sha1> <size> <mtime>", then one line per asset
+   * "<sha1> <crc> <size> <mtime> <name>" (tab-separated).
+   */
+  static final class Manifest {
+    final String packSha1;
+    final long zipSize, zipMtime;
+    final Map<String, Asset> assets = new LinkedHashMap<>();
+
+    Manifest(String packSha1, long zipSize, long zipMtime, List<Asset> list) {
+      this.packSha1 = packSha1; this.zipSize = zipSize; this.zipMtime = zipMtime;
+      for (var a : list) assets.put(a.name(), a);
+    }
+
+    boolean sameAssets(List<Asset> now) {
+      if (now.size() != assets.size()) return false;
+      for (var a : now) {
+        var b = assets.get(a.name());
+        if (b == null || !b.sha1().equals(a.sha1())) return false;
+      }
+      return true;
+    }
+
+    /** The archive on disk is the one this manifest describes. */
+    boolean matchesZip(Path zip) throws IOException {
+      return Files.exists(zip) && Files.size(zip) == zipSize && Files.getLastModifiedTime(zip).toMillis() == zipMtime;
+    }
+
+    static Manifest read(Path file) {
+      if (!Files.exists(file)) return null;
+      try {
+        var lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.size() < 2 || !lines.get(0).equals("pyrium-pack\t" + FORMAT)) return null;
+        String[] z = lines.get(1).split("\t");
+        var list = new ArrayList<Asset>();
+        for (String line : lines.subList(2, lines.size())) {
+          String[] f = line.split("\t", 5);
+          list.add(new Asset(f[4], null, Long.parseLong(f[2]), Long.parseLong(f[3]), f[0], Long.parseLong(f[1])));
+        }
+        return new Manifest(z[1], Long.parseLong(z[2]), Long.parseLong(z[3]), list);
+      } catch (IOException | RuntimeException e) {
+        return null; // unreadable manifest: rebuild
+      }
+    }
+
+    void write(Path file) throws IOException {
+      var sb = new StringBuilder();
+      sb.append("pyrium-pack\t").append(FORMAT).append('\n');
+      sb.append("zip\t").append(packSha1).append('\t').append(zipSize).append('\t').append(zipMtime).append('\n');
+      for (var a : assets.values()) {
+        sb.append(a.sha1()).append('\t').append(a.crc()).append('\t').append(a.size()).append('\t')
+          .append(a.mtime()).append('\t').append(a.name()).append('\n');
+      }
+      Files.createDirectories(file.getParent());
+      Files.writeString(file, sb, StandardCharsets.UTF_8);
+    }
+  }
+
+  private static MessageDigest sha1() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String hex(byte[] b) {
+    var sb = new StringBuilder(b.length * 2);
+    for (byte x : b) sb.append(String.format("%02x", x));
+    return sb.toString();
   }
 }
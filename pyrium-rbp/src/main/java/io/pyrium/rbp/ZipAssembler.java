@@ -0,0 +1,319 @@
+package io.pyrium.rpb;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+/**
+ * Zip writer for the resource pack.
+ *
+ * Entries are deflated concurrently on a worker pool into finished buffers; the
+ * calling thread is the only writer and appends local headers, data and finally
+ * the central directory to a FileChannel, in the order entries were added. Only a
+ * few entries per worker are in flight, so memory stays bounded for large asset trees.
+ *
+ * Entries that need no compression go out without passing through the heap:
+ * already-compressed files are transferred straight from their source file, and
+ * unchanged entries of the previous pack are copied raw (compressed bytes as-is).
+ *
+ * Zip64 where needed, as ZipOutputStream does it: entries of 4 GiB or more and entries
+ * past 4 GiB get a zip64 extra field, more than 65535 entries or a central directory
+ * past 4 GiB add the zip64 end records. Smaller packs are plain zip32.
+ */
+final class ZipAssembler implements Closeable {
+
+  static final int THREADS = Integer.getInteger("pyrium.pack.threads", Runtime.getRuntime().availableProcessors());
+  static final int LEVEL = Integer.getInteger("pyrium.pack.level", Deflater.DEFAULT_COMPRESSION);
+
+  private static final int LOCAL_SIG = 0x04034b50, CENTRAL_SIG = 0x02014b50, END_SIG = 0x06054b50;
+  private static final int ZIP64_END_SIG = 0x06064b50, ZIP64_LOCATOR_SIG = 0x07064b50, ZIP64_EXTRA = 0x0001;
+  private static final int VERSION = 20, VERSION_ZIP64 = 45;
+  // zip32 field values that mean "see the zip64 extra field / end record"
+  private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+  private static final int ZIP64_COUNT = 0xFFFF;
+  private static final int FLAG_UTF8 = 0x0800;
+  // 1980-01-01 00:00 in DOS format: fixed, so equal content gives an equal pack
+  private static final int DOS_TIME = 0, DOS_DATE = (1 << 5) | 1;
+
+  /** Raw entry location in an existing archive. */
+  record Raw(int method, long crc, long csize, long size, long localOffset) {}
+
+  /** One entry ready to be written; data comes from a buffer, a whole file or a region of an archive. */
+  private record Part(String name, int method, long crc, long csize, long size,
+                      byte[] data, Path file, FileChannel src, long srcOffset) {}
+
+  private record Central(byte[] name, int method, long crc, long csize, long size, long offset) {}
+
+  private final FileChannel out;
+  private final ExecutorService pool;
+  private final int window;
+  private final ArrayDeque<Future<Part>> pending = new ArrayDeque<>();
+  private final List<Central> central = new ArrayList<>();
+  // one Deflater per compressing thread; ended on that thread (endDeflater) when it stops
+  private final ThreadLocal<Deflater> deflaters = new ThreadLocal<>();
+  private final ByteBuffer header = ByteBuffer.allocate(46 + 0xFFFF + 28).order(ByteOrder.LITTLE_ENDIAN);
+  private long position;
+
+  /** threads <= 1 compresses on the calling thread. */
+  ZipAssembler(Path file, int threads) throws IOException {
+    out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    pool = threads <= 1 ? null : Executors.newFixedThreadPool(threads, r -> {
+      // a worker leaves r.run() once the pool is shut down and it is idle
+      Thread t = new Thread(() -> {
+        try {
+          r.run();
+        } finally {
+          endDeflater();
+        }
+      }, "PyriumPackDeflate");
+      t.setDaemon(true);
+      return t;
+    });
+    window = Math.max(1, threads) * 4;
+  }
+
+  // ========= Adding entries =========
+
+  /** Reads and deflates file on a worker; falls back to STORED if deflate does not shrink it. */
+  void addDeflated(String name, Path file) throws IOException {
+    submit(() -> deflate(name, Files.readAllBytes(file)));
+  }
+
+  void addDeflated(String name, byte[] data) throws IOException {
+    submit(() -> deflate(name, data));
+  }
+
+  /** Stores file uncompressed, copied by the channel; crc and size must be known. */
+  void addStored(String name, Path file, long size, long crc) throws IOException {
+    enqueue(CompletableFuture.completedFuture(new Part(name, ZipEntry.STORED, crc, size, size, null, file, null, 0)));
+  }
+
+  /** Copies an entry of another archive without recompressing it. */
+  void addRaw(String name, FileChannel archive, Raw raw) throws IOException {
+    var lh = ByteBuffer.allocate(30).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(archive, lh, raw.localOffset());
+    if (lh.getInt(0) != LOCAL_SIG) throw new ZipException("bad local header for " + name);
+    long data = raw.localOffset() + 30 + (lh.getShort(26) & 0xFFFF) + (lh.getShort(28) & 0xFFFF);
+    enqueue(CompletableFuture.completedFuture(new Part(name, raw.method(), raw.crc(), raw.csize(), raw.size(), null, null, archive, data)));
+  }
+
+  private void submit(Callable<Part> task) throws IOException {
+    if (pool != null) { enqueue(pool.submit(task)); return; }
+    try {
+      enqueue(CompletableFuture.completedFuture(task.call()));
+    } catch (IOException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IOException(e);
+    }
+  }
+
+  private void enqueue(Future<Part> f) throws IOException {
+    pending.add(f);
+    while (pending.size() > window) writeNext();
+  }
+
+  private Part deflate(String name, byte[] data) {
+    var crc = new CRC32();
+    crc.update(data);
+    var d = deflaters.get();
+    if (d == null) deflaters.set(d = new Deflater(LEVEL, true));
+    else d.reset();
+    d.setInput(data);
+    d.finish();
+    byte[] buf = new byte[Math.max(64, data.length / 2)];
+    int n = 0;
+    while (!d.finished()) {
+      if (n == buf.length) {
+        // Incompressible: store the original bytes instead of growing past them
+        if (n >= data.length) return new Part(name, ZipEntry.STORED, crc.getValue(), data.length, data.length, data, null, null, 0);
+        buf = Arrays.copyOf(buf, Math.min(buf.length * 2, data.length + 64));
+      }
+      n += d.deflate(buf, n, buf.length - n);
+    }
+    if (n >= data.length) return new Part(name, ZipEntry.STORED, crc.getValue(), data.length, data.length, data, null, null, 0);
+    return new Part(name, ZipEntry.DEFLATED, crc.getValue(), n, data.length, buf, null, null, 0);
+  }
+
+  // ========= Writing =========
+
+  private void writeNext() throws IOException {
+    Part p;
+    try {
+      p = pending.poll().get();
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("pack build interrupted");
+    }
+    byte[] name = p.name().getBytes(StandardCharsets.UTF_8);
+    central.add(new Central(name, p.method(), p.crc(), p.csize(), p.size(), position));
+
+    // sizes are known up front, so only entries of 4 GiB or more need zip64 here
+    boolean zip64 = p.size() >= ZIP64_MAGIC || p.csize() >= ZIP64_MAGIC;
+    header.clear();
+    header.putInt(LOCAL_SIG).putShort((short) (zip64 ? VERSION_ZIP64 : VERSION)).putShort((short) FLAG_UTF8).putShort((short) p.method())
+      .putShort((short) DOS_TIME).putShort((short) DOS_DATE).putInt((int) p.crc());
+    if (zip64) {
+      header.putInt((int) ZIP64_MAGIC).putInt((int) ZIP64_MAGIC)
+        .putShort((short) name.length).putShort((short) 20).put(name)
+        .putShort((short) ZIP64_EXTRA).putShort((short) 16).putLong(p.size()).putLong(p.csize());
+    } else {
+      header.putInt((int) p.csize()).putInt((int) p.size())
+        .putShort((short) name.length).putShort((short) 0).put(name);
+    }
+    write(header.flip());
+
+    if (p.data() != null) {
+      write(ByteBuffer.wrap(p.data(), 0, (int) p.csize()));
+    } else if (p.file() != null) {
+      try (var src = FileChannel.open(p.file(), StandardOpenOption.READ)) {
+        transfer(src, 0, p.csize(), p.name());
+      }
+    } else {
+      transfer(p.src(), p.srcOffset(), p.csize(), p.name());
+    }
+  }
+
+  /** Writes all pending entries and the central directory. */
+  void finish() throws IOException {
+    while (!pending.isEmpty()) writeNext();
+    long cdStart = position;
+    for (var c : central) {
+      // zip64 extra: only the fields that overflow, in the order size, csize, offset
+      boolean bigSize = c.size() >= ZIP64_MAGIC, bigCsize = c.csize() >= ZIP64_MAGIC, bigOffset = c.offset() >= ZIP64_MAGIC;
+      int extra = (bigSize ? 8 : 0) + (bigCsize ? 8 : 0) + (bigOffset ? 8 : 0);
+      int version = extra > 0 ? VERSION_ZIP64 : VERSION;
+      header.clear();
+      header.putInt(CENTRAL_SIG).putShort((short) version).putShort((short) version).putShort((short) FLAG_UTF8)
+        .putShort((short) c.method()).putShort((short) DOS_TIME).putShort((short) DOS_DATE)
+        .putInt((int) c.crc()).putInt((int) (bigCsize ? ZIP64_MAGIC : c.csize())).putInt((int) (bigSize ? ZIP64_MAGIC : c.size()))
+        .putShort((short) c.name().length).putShort((short) (extra > 0 ? 4 + extra : 0)).putShort((short) 0) // extra, comment
+        .putShort((short) 0).putShort((short) 0).putInt(0)                                                    // disk, internal, external attrs
+        .putInt((int) (bigOffset ? ZIP64_MAGIC : c.offset())).put(c.name());
+      if (extra > 0) {
+        header.putShort((short) ZIP64_EXTRA).putShort((short) extra);
+        if (bigSize) header.putLong(c.size());
+        if (bigCsize) header.putLong(c.csize());
+        if (bigOffset) header.putLong(c.offset());
+      }
+      write(header.flip());
+    }
+    long cdEnd = position, cdSize = cdEnd - cdStart;
+    int count = central.size();
+    boolean zip64 = count >= ZIP64_COUNT || cdSize >= ZIP64_MAGIC || cdStart >= ZIP64_MAGIC;
+    if (zip64) {
+      header.clear();
+      header.putInt(ZIP64_END_SIG).putLong(44).putShort((short) VERSION_ZIP64).putShort((short) VERSION_ZIP64)
+        .putInt(0).putInt(0).putLong(count).putLong(count).putLong(cdSize).putLong(cdStart);
+      header.putInt(ZIP64_LOCATOR_SIG).putInt(0).putLong(cdEnd).putInt(1);
+      write(header.flip());
+    }
+    header.clear();
+    header.putInt(END_SIG).putShort((short) 0).putShort((short) 0)
+      .putShort((short) Math.min(count, ZIP64_COUNT)).putShort((short) Math.min(count, ZIP64_COUNT))
+      .putInt((int) Math.min(cdSize, ZIP64_MAGIC)).putInt((int) Math.min(cdStart, ZIP64_MAGIC)).putShort((short) 0);
+    write(header.flip());
+    out.force(false);
+  }
+
+  private void write(ByteBuffer b) throws IOException {
+    while (b.hasRemaining()) position += out.write(b);
+  }
+
+  /** Zero-copy from a source file (or the previous pack) into the output channel. */
+  private void transfer(FileChannel src, long off, long len, String name) throws IOException {
+    while (len > 0) {
+      long n = src.transferTo(off, len, out);
+      if (n <= 0) throw new EOFException("source truncated: " + name);
+      off += n; len -= n; position += n;
+    }
+  }
+
+  /** Frees the native zlib state of the current thread's Deflater, if it has one. */
+  private void endDeflater() {
+    var d = deflaters.get();
+    if (d == null) return;
+    d.end();
+    deflaters.remove();
+  }
+
+  @Override public void close() throws IOException {
+    if (pool != null) pool.shutdownNow();
+    else endDeflater();
+    for (var f : pending) f.cancel(true);
+    out.close();
+  }
+
+  // ========= Reading an existing pack =========
+
+  /** Central directory of a zip32 or zip64 archive, by entry name; empty if the file is not a readable zip. */
+  static Map<String, Raw> readCentral(FileChannel ch) throws IOException {
+    long size = ch.size();
+    int tail = (int) Math.min(size, 22 + 0xFFFF);
+    var buf = ByteBuffer.allocate(tail).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(ch, buf, size - tail);
+    int end = -1;
+    for (int i = tail - 22; i >= 0; i--) if (buf.getInt(i) == END_SIG) { end = i; break; }
+    if (end < 0) return Map.of();
+    long count = buf.getShort(end + 10) & 0xFFFF;
+    long cdSize = buf.getInt(end + 12) & 0xFFFFFFFFL, cdStart = buf.getInt(end + 16) & 0xFFFFFFFFL;
+    if (count == ZIP64_COUNT || cdSize == ZIP64_MAGIC || cdStart == ZIP64_MAGIC) {
+      // zip64: the locator sits right before the end record and points at the zip64 end record
+      long locator = size - tail + end - 20;
+      if (locator < 0) return Map.of();
+      var loc = ByteBuffer.allocate(20).order(ByteOrder.LITTLE_ENDIAN);
+      readFully(ch, loc, locator);
+      if (loc.getInt(0) != ZIP64_LOCATOR_SIG) return Map.of();
+      long at = loc.getLong(8);
+      if (at < 0 || at + 56 > size) return Map.of();
+      var e64 = ByteBuffer.allocate(56).order(ByteOrder.LITTLE_ENDIAN);
+      readFully(ch, e64, at);
+      if (e64.getInt(0) != ZIP64_END_SIG) return Map.of();
+      count = e64.getLong(32);
+      cdSize = e64.getLong(40);
+      cdStart = e64.getLong(48);
+    }
+    if (cdStart < 0 || cdSize < 0 || cdSize > Integer.MAX_VALUE || cdStart + cdSize > size) return Map.of();
+
+    var cd = ByteBuffer.allocate((int) cdSize).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(ch, cd, cdStart);
+    var map = new HashMap<String, Raw>((int) Math.min(count * 2, 1 << 20));
+    int p = 0;
+    for (long i = 0; i < count && p + 46 <= cdSize; i++) {
+      if (cd.getInt(p) != CENTRAL_SIG) return Map.of();
+      int nameLen = cd.getShort(p + 28) & 0xFFFF, extraLen = cd.getShort(p + 30) & 0xFFFF, commentLen = cd.getShort(p + 32) & 0xFFFF;
+      if (p + 46L + nameLen + extraLen > cdSize) return Map.of();
+      String name = new String(cd.array(), p + 46, nameLen, StandardCharsets.UTF_8);
+      long csize = cd.getInt(p + 20) & 0xFFFFFFFFL, usize = cd.getInt(p + 24) & 0xFFFFFFFFL, offset = cd.getInt(p + 42) & 0xFFFFFFFFL;
+      // zip64 extra: present fields follow the order size, csize, offset
+      for (int x = p + 46 + nameLen, xEnd = x + extraLen; x + 4 <= xEnd; ) {
+        int id = cd.getShort(x) & 0xFFFF, len = cd.getShort(x + 2) & 0xFFFF;
+        if (id == ZIP64_EXTRA) {
+          int f = x + 4, fEnd = Math.min(x + 4 + len, xEnd);
+          if (usize == ZIP64_MAGIC && f + 8 <= fEnd) { usize = cd.getLong(f); f += 8; }
+          if (csize == ZIP64_MAGIC && f + 8 <= fEnd) { csize = cd.getLong(f); f += 8; }
+          if (offset == ZIP64_MAGIC && f + 8 <= fEnd) offset = cd.getLong(f);
+        }
+        x += 4 + len;
+      }
+      map.put(name, new Raw(cd.getShort(p + 10) & 0xFFFF, cd.getInt(p + 16) & 0xFFFFFFFFL, csize, usize, offset));
+      p += 46 + nameLen + extraLen + commentLen;
+    }
+    return map;
+  }
+
+  private static void readFully(FileChannel ch, ByteBuffer b, long at) throws IOException {
+    while (b.hasRemaining()) {
+      int n = ch.read(b, at + b.position());
+      if (n < 0) throw new EOFException();
+    }
+  }
+}